@@ -0,0 +1,111 @@
+package meta1sd;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * BenchmarkCompare - Compara dois resultados do JMH (formato JSON) e assinala
+ * as regressões.
+ * Um benchmark regride quando fica pior do que a referência em mais de
+ * {@code limite}% e a diferença é maior do que a soma das margens de erro das
+ * duas medições. Termina com código 1 se houver regressões, para poder ser
+ * usado em scripts.
+ * <p>
+ * Uso: {@code BenchmarkCompare <referencia.json> <atual.json> [limite%]}
+ */
+public class BenchmarkCompare {
+
+    /**
+     * Resultado de um benchmark com uma combinação de parâmetros.
+     */
+    private static class Result {
+        final double score;
+        final double error;
+        final String unit;
+        final boolean higherIsBetter;
+
+        Result(double score, double error, String unit, boolean higherIsBetter) {
+            this.score = score;
+            this.error = error;
+            this.unit = unit;
+            this.higherIsBetter = higherIsBetter;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Uso: BenchmarkCompare <referencia.json> <atual.json> [limite%]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10.0;
+        Map<String, Result> baseline = read(args[0]);
+        Map<String, Result> current = read(args[1]);
+
+        int regressions = 0;
+        System.out.printf("%-70s %14s %14s %9s%n", "Benchmark", "Referência", "Atual", "Variação");
+        for (Map.Entry<String, Result> entry : current.entrySet()) {
+            Result now = entry.getValue();
+            Result before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("%-70s %14s %14.3f %9s%n", entry.getKey(), "-", now.score, "novo");
+                continue;
+            }
+            double change = (now.score - before.score) / before.score * 100;
+            double worse = now.higherIsBetter ? -change : change;
+            boolean significant = Math.abs(now.score - before.score) > now.error + before.error;
+            String verdict = "";
+            if (worse > threshold && significant) {
+                verdict = "  REGRESSÃO";
+                regressions++;
+            } else if (-worse > threshold && significant) {
+                verdict = "  melhoria";
+            }
+            System.out.printf("%-70s %14.3f %14.3f %+8.1f%% %s%s%n", entry.getKey(), before.score, now.score, change,
+                    now.unit, verdict);
+        }
+        System.out.println(regressions == 0 ? "Sem regressões." : regressions + " regressão(ões).");
+        System.exit(regressions == 0 ? 0 : 1);
+    }
+
+    /**
+     * Lê um ficheiro de resultados do JMH ({@code -rf json}).
+     *
+     * @param path Caminho do ficheiro.
+     * @return Resultados por benchmark e parâmetros, por ordem.
+     * @throws IOException Se não for possível ler o ficheiro.
+     */
+    private static Map<String, Result> read(String path) throws IOException {
+        Map<String, Result> results = new LinkedHashMap<>();
+        try (Reader reader = new FileReader(path)) {
+            JsonArray runs = JsonParser.parseReader(reader).getAsJsonArray();
+            for (JsonElement element : runs) {
+                JsonObject run = element.getAsJsonObject();
+                StringBuilder key = new StringBuilder(run.get("benchmark").getAsString()
+                        .replaceFirst("^meta1sd\\.", ""));
+                if (run.has("params")) {
+                    Map<String, String> params = new TreeMap<>();
+                    run.getAsJsonObject("params").entrySet()
+                            .forEach(param -> params.put(param.getKey(), param.getValue().getAsString()));
+                    key.append(params);
+                }
+                JsonObject metric = run.getAsJsonObject("primaryMetric");
+                double error = metric.get("scoreError").isJsonPrimitive()
+                        && metric.get("scoreError").getAsJsonPrimitive().isNumber()
+                                ? metric.get("scoreError").getAsDouble()
+                                : 0; // "NaN" quando há uma só iteração
+                results.put(key.toString(), new Result(metric.get("score").getAsDouble(), error,
+                        metric.get("scoreUnit").getAsString(), "thrpt".equals(run.get("mode").getAsString())));
+            }
+        }
+        return results;
+    }
+}
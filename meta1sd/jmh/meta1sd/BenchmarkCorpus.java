@@ -0,0 +1,87 @@
+package meta1sd;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.rmi.NoSuchObjectException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.List;
+
+import com.google.gson.Gson;
+
+/**
+ * BenchmarkCorpus - Dados e barrels partilhados pelos benchmarks.
+ * Todas as execuções usam o mesmo corpus sintético (mesma semente), pelo que
+ * os resultados de execuções diferentes são comparáveis. As barrels dos
+ * benchmarks usam IDs a partir de {@link #FIRST_BARREL_ID} para não tocarem no
+ * estado das barrels reais guardado em {@code data/}.
+ */
+final class BenchmarkCorpus {
+    static final String BASE_URL = "http://bench.local";
+    static final int VOCABULARY = 50_000;
+    static final double ZIPF_EXPONENT = 1.0;
+    static final int WORDS_PER_PAGE = 150;
+    static final int FAN_OUT = 10;
+    static final long SEED = 42;
+    static final int FIRST_BARREL_ID = 9000;
+
+    private BenchmarkCorpus() {
+    }
+
+    /**
+     * Retorna o corpus dos benchmarks.
+     *
+     * @param seed Semente (a mesma semente gera as mesmas páginas).
+     * @return O corpus.
+     */
+    static SyntheticCorpus corpus(long seed) {
+        return new SyntheticCorpus(BASE_URL, VOCABULARY, ZIPF_EXPONENT, seed);
+    }
+
+    /**
+     * Cria uma barrel com as páginas indicadas já indexadas. As páginas são
+     * escritas no ficheiro de estado da barrel e carregadas pelo construtor,
+     * tal como no arranque de uma barrel real.
+     *
+     * @param barrelId ID da barrel.
+     * @param pages    Páginas a indexar.
+     * @return A barrel.
+     * @throws IOException Se não for possível escrever o ficheiro de estado.
+     */
+    static IndexStorageBarrel loadBarrel(int barrelId, List<SiteData> pages) throws IOException {
+        File state = stateFile(barrelId);
+        state.getParentFile().mkdirs();
+        try (Writer writer = new FileWriter(state)) {
+            new Gson().toJson(pages, writer);
+        }
+        return new IndexStorageBarrel(barrelId);
+    }
+
+    /**
+     * Retira a barrel do RMI e apaga o seu ficheiro de estado.
+     *
+     * @param barrelId ID da barrel.
+     * @param barrel   A barrel (pode ser null).
+     */
+    static void close(int barrelId, IndexStorageBarrel barrel) {
+        if (barrel != null) {
+            try {
+                UnicastRemoteObject.unexportObject(barrel, true);
+            } catch (NoSuchObjectException e) {
+                // Já não estava exportada
+            }
+        }
+        stateFile(barrelId).delete();
+    }
+
+    /**
+     * Retorna o ficheiro de estado de uma barrel.
+     *
+     * @param barrelId ID da barrel.
+     * @return O ficheiro.
+     */
+    static File stateFile(int barrelId) {
+        return new File("data/estado_barrel_" + barrelId + ".json");
+    }
+}
@@ -0,0 +1,74 @@
+package meta1sd;
+
+import java.io.IOException;
+import java.rmi.RemoteException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * IndexingBenchmark - Custo de indexar uma página numa barrel que já tem
+ * {@code corpusSize} páginas.
+ * Cada operação de {@link #updatePage()} substitui uma página existente por
+ * uma nova versão (outro texto e outros links), pelo que o tamanho do índice
+ * se mantém durante a medição. A operação inclui a gravação do estado que a
+ * barrel faz depois de cada atualização.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexingBenchmark {
+    private static final int BARREL_ID = BenchmarkCorpus.FIRST_BARREL_ID;
+    private static final int VERSIONS = 512; // Versões novas de páginas, usadas em ciclo
+
+    @Param({ "1000", "10000" })
+    public int corpusSize;
+
+    private IndexStorageBarrel barrel;
+    private SiteData[] updates;
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        List<SiteData> pages = BenchmarkCorpus.corpus(BenchmarkCorpus.SEED)
+                .pages(corpusSize, BenchmarkCorpus.WORDS_PER_PAGE, BenchmarkCorpus.FAN_OUT);
+        barrel = BenchmarkCorpus.loadBarrel(BARREL_ID, pages);
+
+        // Outra semente gera outro texto e outros links para as mesmas URLs
+        SyntheticCorpus changed = BenchmarkCorpus.corpus(BenchmarkCorpus.SEED + 1);
+        updates = new SiteData[VERSIONS];
+        for (int i = 0; i < VERSIONS; i++) {
+            int page = (int) ((long) i * corpusSize / VERSIONS);
+            updates[i] = changed.page(page, corpusSize, BenchmarkCorpus.WORDS_PER_PAGE, BenchmarkCorpus.FAN_OUT);
+            updates[i].setPropagated(true); // Sem réplicas: mede só a indexação local
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkCorpus.close(BARREL_ID, barrel);
+    }
+
+    /**
+     * Indexa uma nova versão de uma página existente.
+     */
+    @Benchmark
+    public void updatePage() throws RemoteException {
+        barrel.storeSiteData(updates[next++ & (VERSIONS - 1)]);
+    }
+}
@@ -0,0 +1,60 @@
+package meta1sd;
+
+import java.io.IOException;
+import java.rmi.RemoteException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * LinkRankingBenchmark - Custo de ordenar as páginas de uma barrel com
+ * {@code corpusSize} páginas pelo número de links que recebem.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LinkRankingBenchmark {
+    private static final int BARREL_ID = BenchmarkCorpus.FIRST_BARREL_ID + 2;
+
+    @Param({ "1000", "10000" })
+    public int corpusSize;
+
+    private IndexStorageBarrel barrel;
+
+    @Setup
+    public void setup() throws IOException {
+        barrel = BenchmarkCorpus.loadBarrel(BARREL_ID, BenchmarkCorpus.corpus(BenchmarkCorpus.SEED)
+                .pages(corpusSize, BenchmarkCorpus.WORDS_PER_PAGE, BenchmarkCorpus.FAN_OUT));
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkCorpus.close(BARREL_ID, barrel);
+    }
+
+    /**
+     * Ordena todas as páginas pelo número de links que recebem.
+     *
+     * @return As páginas ordenadas.
+     */
+    @Benchmark
+    public List<Map.Entry<String, Integer>> pagesOrderedByIncomingLinks() throws RemoteException {
+        return barrel.getPagesOrderedByIncomingLinks();
+    }
+}
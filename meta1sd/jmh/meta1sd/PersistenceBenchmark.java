@@ -0,0 +1,70 @@
+package meta1sd;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * PersistenceBenchmark - Custo de gravar o estado de uma barrel com
+ * {@code corpusSize} páginas e de o voltar a carregar (leitura do JSON e
+ * reindexação de todas as páginas).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PersistenceBenchmark {
+    private static final int BARREL_ID = BenchmarkCorpus.FIRST_BARREL_ID + 3;
+
+    @Param({ "1000", "10000" })
+    public int corpusSize;
+
+    private IndexStorageBarrel barrel;
+    private String savedState;
+    private String loadedState;
+
+    @Setup
+    public void setup() throws IOException {
+        barrel = BenchmarkCorpus.loadBarrel(BARREL_ID, BenchmarkCorpus.corpus(BenchmarkCorpus.SEED)
+                .pages(corpusSize, BenchmarkCorpus.WORDS_PER_PAGE, BenchmarkCorpus.FAN_OUT));
+        savedState = File.createTempFile("bench-save", ".json").getPath();
+        loadedState = BenchmarkCorpus.stateFile(BARREL_ID).getPath();
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkCorpus.close(BARREL_ID, barrel);
+        new File(savedState).delete();
+    }
+
+    /**
+     * Grava o estado completo da barrel em JSON.
+     */
+    @Benchmark
+    public void saveState() {
+        barrel.saveState(savedState);
+    }
+
+    /**
+     * Carrega o estado da barrel a partir do JSON e reindexa todas as páginas.
+     */
+    @Benchmark
+    public void loadState() {
+        barrel.carregarEstadoDeJSON(loadedState);
+    }
+}
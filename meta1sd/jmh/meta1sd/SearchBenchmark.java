@@ -0,0 +1,105 @@
+package meta1sd;
+
+import java.io.IOException;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * SearchBenchmark - Custo das pesquisas de uma barrel com {@code corpusSize}
+ * páginas.
+ * A seletividade escolhe a zona do vocabulário de onde vêm as palavras
+ * pesquisadas: {@code HEAD} são as 10 palavras mais frequentes (presentes em
+ * quase todas as páginas), {@code TORSO} as de ordem 100 a 1000 e
+ * {@code TAIL} a metade menos frequente do vocabulário (poucas páginas).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+    private static final int BARREL_ID = BenchmarkCorpus.FIRST_BARREL_ID + 1;
+    private static final int QUERIES = 256; // Pesquisas diferentes, usadas em ciclo
+
+    @Param({ "1000", "10000" })
+    public int corpusSize;
+
+    @Param({ "HEAD", "TORSO", "TAIL" })
+    public String selectivity;
+
+    @Param({ "1", "3" })
+    public int queryTerms;
+
+    private IndexStorageBarrel barrel;
+    private List<Set<String>> queries;
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        SyntheticCorpus corpus = BenchmarkCorpus.corpus(BenchmarkCorpus.SEED);
+        barrel = BenchmarkCorpus.loadBarrel(BARREL_ID,
+                corpus.pages(corpusSize, BenchmarkCorpus.WORDS_PER_PAGE, BenchmarkCorpus.FAN_OUT));
+
+        int from;
+        int to;
+        switch (selectivity) {
+            case "HEAD":
+                from = 0;
+                to = 10;
+                break;
+            case "TORSO":
+                from = 100;
+                to = 1000;
+                break;
+            case "TAIL":
+                from = corpus.vocabularySize() / 2;
+                to = corpus.vocabularySize();
+                break;
+            default:
+                throw new IllegalArgumentException("Seletividade desconhecida: " + selectivity);
+        }
+        Random random = new Random(BenchmarkCorpus.SEED);
+        queries = new ArrayList<>(QUERIES);
+        for (int i = 0; i < QUERIES; i++) {
+            Set<String> query = new HashSet<>();
+            while (query.size() < queryTerms) {
+                query.add(corpus.term(from + random.nextInt(to - from)));
+            }
+            queries.add(query);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkCorpus.close(BARREL_ID, barrel);
+    }
+
+    /**
+     * Pesquisa páginas com todas as palavras (BM25 + popularidade).
+     *
+     * @return Os resultados.
+     */
+    @Benchmark
+    public List<SiteData> searchPagesByWords() throws RemoteException {
+        return barrel.searchPagesByWords(queries.get(next++ & (QUERIES - 1)));
+    }
+}
@@ -0,0 +1,103 @@
+package meta1sd;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.Gson;
+
+/**
+ * SiteDataBenchmark - Custo de tokenizar e de serializar uma página de
+ * {@code words} palavras nos formatos usados pelo sistema: serialização Java
+ * (RMI), {@link SiteDataCodec} (transporte binário entre barrels) e JSON
+ * (ficheiro de estado). Cada operação de serialização escreve e volta a ler
+ * a página.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SiteDataBenchmark {
+    @Param({ "150", "1500" })
+    public int words;
+
+    private final Gson gson = new Gson();
+    private SiteData page;
+
+    @Setup
+    public void setup() {
+        page = BenchmarkCorpus.corpus(BenchmarkCorpus.SEED).page(0, 10_000, words, BenchmarkCorpus.FAN_OUT);
+    }
+
+    /**
+     * Extrai os termos e as frequências do texto da página, como o downloader
+     * faz antes de a enviar.
+     *
+     * @return Os termos da página.
+     */
+    @Benchmark
+    public String[] tokenize() {
+        SiteData raw = new SiteData(page.url, page.tokens, page.links);
+        Tokenizer.tokenize(raw);
+        return raw.terms;
+    }
+
+    /**
+     * Serialização Java, usada nas chamadas RMI.
+     *
+     * @return A página lida.
+     */
+    @Benchmark
+    public Object javaSerialization() throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(page);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return in.readObject();
+        }
+    }
+
+    /**
+     * Formato binário do transporte de dados entre barrels.
+     *
+     * @return A página lida.
+     */
+    @Benchmark
+    public SiteData binaryCodec() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            SiteDataCodec.write(out, page);
+        }
+        return SiteDataCodec.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    /**
+     * JSON, usado no ficheiro de estado das barrels.
+     *
+     * @return A página lida.
+     */
+    @Benchmark
+    public SiteData json() {
+        return gson.fromJson(gson.toJson(page), SiteData.class);
+    }
+}
@@ -0,0 +1,224 @@
+package meta1sd;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * SyntheticCorpus - Gerador determinístico de páginas sintéticas para
+ * benchmarks e testes de carga.
+ * As palavras seguem uma distribuição de Zipf (a palavra de ordem {@code r}
+ * aparece com frequência proporcional a {@code 1 / (r + 1)^s}), como num texto
+ * real, e cada página aponta para {@code fanOut} outras, escolhidas com
+ * preferência pelas primeiras páginas para que existam páginas muito
+ * referenciadas. A mesma semente gera sempre o mesmo corpus, pelo que
+ * execuções diferentes medem exatamente os mesmos dados.
+ * <p>
+ * As palavras são formadas por sílabas sem {@code s} final e começam por
+ * {@code z}, para que não sejam stopwords nem sejam alteradas pelo stemmer: o
+ * termo indexado é igual à palavra gerada.
+ */
+public final class SyntheticCorpus {
+    private static final String[] SYLLABLES = {
+            "ba", "be", "bi", "bo", "bu", "ca", "ce", "ci", "co", "cu", "da", "de", "di", "do", "du",
+            "fa", "fe", "fi", "fo", "fu", "ga", "ge", "gi", "go", "gu", "la", "le", "li", "lo", "lu",
+            "ma", "me", "mi", "mo", "mu", "na", "ne", "ni", "no", "nu", "pa", "pe", "pi", "po", "pu",
+            "ra", "re", "ri", "ro", "ru", "ta", "te", "ti", "to", "tu", "va", "ve", "vi", "vo", "vu" };
+
+    private final String baseUrl;
+    private final long seed;
+    private final String[] vocabulary;
+    private final double[] cumulative; // Probabilidade acumulada de cada ordem
+
+    /**
+     * Construtor.
+     *
+     * @param baseUrl        Início das URLs das páginas (ex.:
+     *                       {@code http://localhost:8080}).
+     * @param vocabularySize Número de palavras distintas.
+     * @param zipfExponent   Expoente da distribuição de Zipf (1 é o típico de
+     *                       texto natural).
+     * @param seed           Semente do gerador.
+     */
+    public SyntheticCorpus(String baseUrl, int vocabularySize, double zipfExponent, long seed) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.seed = seed;
+        this.vocabulary = new String[Math.max(1, vocabularySize)];
+        this.cumulative = new double[vocabulary.length];
+        double total = 0;
+        for (int rank = 0; rank < vocabulary.length; rank++) {
+            vocabulary[rank] = word(rank);
+            total += 1.0 / Math.pow(rank + 1, zipfExponent);
+            cumulative[rank] = total;
+        }
+        for (int rank = 0; rank < cumulative.length; rank++) {
+            cumulative[rank] /= total;
+        }
+    }
+
+    /**
+     * Retorna o número de palavras distintas.
+     *
+     * @return O tamanho do vocabulário.
+     */
+    public int vocabularySize() {
+        return vocabulary.length;
+    }
+
+    /**
+     * Retorna a palavra de uma ordem (0 é a mais frequente).
+     *
+     * @param rank Ordem da palavra.
+     * @return A palavra.
+     */
+    public String term(int rank) {
+        return vocabulary[rank];
+    }
+
+    /**
+     * Sorteia uma palavra segundo a distribuição de Zipf.
+     *
+     * @param random Gerador a usar.
+     * @return A palavra sorteada.
+     */
+    public String sampleTerm(Random random) {
+        return vocabulary[sampleRank(random)];
+    }
+
+    /**
+     * Sorteia a ordem de uma palavra segundo a distribuição de Zipf.
+     *
+     * @param random Gerador a usar.
+     * @return A ordem sorteada.
+     */
+    public int sampleRank(Random random) {
+        double u = random.nextDouble();
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulative[mid] < u) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Gera uma pesquisa com palavras distintas sorteadas segundo a distribuição
+     * de Zipf.
+     *
+     * @param random Gerador a usar.
+     * @param terms  Número de palavras.
+     * @return As palavras separadas por espaços.
+     */
+    public String query(Random random, int terms) {
+        Set<String> words = new LinkedHashSet<>();
+        int limit = Math.min(terms, vocabulary.length);
+        while (words.size() < limit) {
+            words.add(sampleTerm(random));
+        }
+        return String.join(" ", words);
+    }
+
+    /**
+     * Retorna a URL de uma página.
+     *
+     * @param page Número da página.
+     * @return A URL.
+     */
+    public String url(int page) {
+        return baseUrl + "/page/" + page;
+    }
+
+    /**
+     * Extrai o número da página de uma URL gerada por {@link #url(int)}.
+     *
+     * @param url A URL.
+     * @return O número da página, ou -1 se a URL não for deste corpus.
+     */
+    public int pageOf(String url) {
+        String prefix = baseUrl + "/page/";
+        if (url == null || !url.startsWith(prefix)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(url.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Gera uma página. O conteúdo depende apenas da semente e do número da
+     * página.
+     *
+     * @param page      Número da página.
+     * @param pageCount Número total de páginas (destino dos links).
+     * @param words     Número de palavras do texto.
+     * @param fanOut    Número de links de saída.
+     * @return Os dados da página, no formato enviado pelos downloaders.
+     */
+    public SiteData page(int page, int pageCount, int words, int fanOut) {
+        Random random = new Random(seed * 1_000_003L + page);
+
+        StringBuilder title = new StringBuilder();
+        for (int i = 0; i < 3; i++) {
+            title.append(i > 0 ? " " : "").append(sampleTerm(random));
+        }
+        StringBuilder text = new StringBuilder(words * 8);
+        for (int i = 0; i < words; i++) {
+            text.append(i > 0 ? " " : "").append(sampleTerm(random));
+        }
+
+        // Links com preferência pelas primeiras páginas (distribuição quadrática)
+        List<String> links = new ArrayList<>(fanOut);
+        for (int i = 0; i < fanOut && pageCount > 1; i++) {
+            int target = (int) (pageCount * Math.pow(random.nextDouble(), 2));
+            if (target != page) {
+                links.add(url(target));
+            }
+        }
+
+        SiteData siteData = new SiteData(url(page), title + " " + text, String.join(" ", links));
+        siteData.title = title.toString();
+        siteData.text = text.length() > 200 ? text.substring(0, 200) : text.toString();
+        siteData.outlinks = links.toArray(new String[0]);
+        Tokenizer.tokenize(siteData);
+        return siteData;
+    }
+
+    /**
+     * Gera as páginas {@code 0 .. count - 1}.
+     *
+     * @param count  Número de páginas.
+     * @param words  Número de palavras de cada página.
+     * @param fanOut Número de links de saída de cada página.
+     * @return As páginas.
+     */
+    public List<SiteData> pages(int count, int words, int fanOut) {
+        List<SiteData> pages = new ArrayList<>(count);
+        for (int page = 0; page < count; page++) {
+            pages.add(page(page, count, words, fanOut));
+        }
+        return pages;
+    }
+
+    /**
+     * Forma a palavra de uma ordem: {@code z} seguido da ordem escrita em base
+     * {@link #SYLLABLES}.
+     */
+    private static String word(int rank) {
+        StringBuilder word = new StringBuilder("z");
+        int value = rank;
+        do {
+            word.append(SYLLABLES[value % SYLLABLES.length]);
+            value /= SYLLABLES.length;
+        } while (value > 0);
+        return word.toString();
+    }
+}
@@ -0,0 +1,144 @@
+package meta1sd;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * IngestProbe - Mede quanto tempo passa entre um downloader pedir uma página
+ * ao {@link SyntheticWebServer} e a página poder ser pesquisada.
+ * Uma em cada {@code every} páginas é acompanhada: depois de ser pedida, o
+ * termo único da página é pesquisado periodicamente em cada barrel. Regista o
+ * tempo até a página aparecer na primeira barrel (indexação) e em todas
+ * (indexação e replicação).
+ */
+public class IngestProbe implements Runnable {
+    private final SyntheticWebServer web;
+    private final Map<Integer, RMIIndexStorageBarrel> barrels;
+    private final long intervalMs;
+
+    private final Metrics.Histogram firstBarrel = new Metrics.Histogram(1e-6); // ms
+    private final Metrics.Histogram allBarrels = new Metrics.Histogram(1e-6); // ms
+    private final Map<Integer, Set<Integer>> pending = new HashMap<>(); // Página -> barrels sem a página
+    private volatile boolean stopped;
+    private volatile int errors;
+
+    /**
+     * Construtor.
+     *
+     * @param web        Servidor das páginas.
+     * @param barrels    Barrels a verificar.
+     * @param every      Acompanha uma em cada {@code every} páginas.
+     * @param intervalMs Intervalo entre verificações.
+     */
+    public IngestProbe(SyntheticWebServer web, Map<Integer, RMIIndexStorageBarrel> barrels, int every,
+            long intervalMs) {
+        this.web = web;
+        this.barrels = barrels;
+        this.intervalMs = intervalMs;
+        for (int page = 0; page < web.pageCount(); page += Math.max(1, every)) {
+            pending.put(page, new HashSet<>(barrels.keySet()));
+        }
+    }
+
+    @Override
+    public void run() {
+        while (!stopped && !isDone()) {
+            check();
+            try {
+                Thread.sleep(intervalMs);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Para as verificações.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Indica se todas as páginas acompanhadas já podem ser pesquisadas em todas
+     * as barrels.
+     *
+     * @return true se não houver páginas pendentes.
+     */
+    public synchronized boolean isDone() {
+        return pending.isEmpty();
+    }
+
+    /**
+     * Retorna o número de páginas acompanhadas que ainda não estão em todas as
+     * barrels.
+     *
+     * @return O número de páginas.
+     */
+    public synchronized int pendingPages() {
+        return pending.size();
+    }
+
+    /**
+     * Retorna o número de pesquisas que falharam.
+     *
+     * @return O número de erros.
+     */
+    public int errors() {
+        return errors;
+    }
+
+    /**
+     * Retorna os tempos até cada página aparecer na primeira barrel.
+     *
+     * @return Histograma em milissegundos.
+     */
+    public Metrics.Histogram firstBarrel() {
+        return firstBarrel;
+    }
+
+    /**
+     * Retorna os tempos até cada página aparecer em todas as barrels.
+     *
+     * @return Histograma em milissegundos.
+     */
+    public Metrics.Histogram allBarrels() {
+        return allBarrels;
+    }
+
+    private synchronized void check() {
+        List<Integer> found = new ArrayList<>();
+        for (Map.Entry<Integer, Set<Integer>> entry : pending.entrySet()) {
+            int page = entry.getKey();
+            long fetchedAt = web.firstFetch(page);
+            if (fetchedAt == 0) {
+                continue; // Ainda não foi pedida
+            }
+            Set<Integer> missing = entry.getValue();
+            boolean first = missing.size() == barrels.size();
+            Set<String> query = Set.of(SyntheticWebServer.marker(page));
+            for (Integer id : new ArrayList<>(missing)) {
+                try {
+                    if (!barrels.get(id).searchPagesByWords(query).isEmpty()) {
+                        missing.remove(id);
+                    }
+                } catch (Exception e) {
+                    errors++;
+                }
+            }
+            long elapsed = System.nanoTime() - fetchedAt;
+            if (first && missing.size() < barrels.size()) {
+                firstBarrel.record(elapsed);
+            }
+            if (missing.isEmpty()) {
+                allBarrels.record(elapsed);
+                found.add(page);
+            }
+        }
+        found.forEach(pending::remove);
+    }
+}
@@ -0,0 +1,329 @@
+package meta1sd;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LoadTest - Teste de carga de ponta a ponta do sistema na máquina local.
+ * Para cada combinação do número de barrels e de downloaders indicada na
+ * configuração, inicia um sistema vazio ({@link LocalCluster}), manda-o
+ * indexar uma web sintética servida localmente ({@link SyntheticWebServer}) e
+ * mede:
+ * <ul>
+ * <li>o ritmo do crawl (páginas distintas pedidas por segundo);</li>
+ * <li>o tempo entre uma página ser pedida e poder ser pesquisada, na primeira
+ * barrel e em todas ({@link IngestProbe});</li>
+ * <li>a latência das pesquisas feitas ao gateway por várias threads, com
+ * palavras sorteadas segundo a distribuição de Zipf do corpus.</li>
+ * </ul>
+ * Os resultados são mostrados no fim e acrescentados a {@code report.csv} no
+ * diretório de trabalho.
+ * <p>
+ * Uso: {@code LoadTest <loadtest.properties>}
+ */
+public class LoadTest {
+    private final Properties prop;
+    private final PrintStream out;
+    private final File workDir;
+    private final SyntheticWebServer web;
+
+    /**
+     * Resultados de uma execução.
+     */
+    private static class RunResult {
+        int barrels;
+        int downloaders;
+        int pagesFetched;
+        double crawlSeconds;
+        double ingestFirstP50;
+        double ingestFirstP99;
+        double ingestAllP50;
+        double ingestAllP99;
+        int ingestPending;
+        long queries;
+        long queryErrors;
+        double queriesPerSecond;
+        double queryP50;
+        double queryP99;
+
+        double pagesPerSecond() {
+            return crawlSeconds > 0 ? pagesFetched / crawlSeconds : 0;
+        }
+    }
+
+    private LoadTest(Properties prop, PrintStream out) throws IOException {
+        this.prop = prop;
+        this.out = out;
+        this.workDir = new File(get("workDir", "target/loadtest"));
+        this.web = new SyntheticWebServer(getInt("webPort", 0), getInt("pages", 2000), getInt("wordsPerPage", 80),
+                getInt("fanOut", 8), getLong("seed", 42), getInt("vocabulary", 20000),
+                Double.parseDouble(get("zipfExponent", "1.0")), getInt("webThreads", 8));
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Uso: java meta1sd.LoadTest <loadtest.properties>");
+            return;
+        }
+        Properties prop = new Properties();
+        try (InputStream input = new FileInputStream(args[0])) {
+            prop.load(input);
+        }
+        // A saída do processo pode ser redirecionada para o log dos componentes
+        PrintStream out = System.out;
+        LoadTest test = new LoadTest(prop, out);
+        int status = test.run() ? 0 : 1;
+        out.flush();
+        System.exit(status);
+    }
+
+    /**
+     * Corre todas as combinações configuradas.
+     *
+     * @return true se todas as execuções terminaram.
+     */
+    private boolean run() throws Exception {
+        LocalCluster.Mode mode = LocalCluster.Mode.valueOf(get("mode", "processes").toUpperCase(Locale.ROOT));
+        int[] barrelCounts = getInts("barrels", "1");
+        int[] downloaderCounts = getInts("downloaders", "1");
+        if (mode == LocalCluster.Mode.SINGLE && barrelCounts.length * downloaderCounts.length > 1) {
+            out.println("❌ O modo single só corre uma configuração por processo; use mode = processes"
+                    + " para comparar várias.");
+            return false;
+        }
+
+        workDir.mkdirs();
+        web.start();
+        out.println("🌐 Web sintética: " + web.pageCount() + " páginas em " + web.corpus().url(0));
+
+        List<RunResult> results = new ArrayList<>();
+        try {
+            for (int barrels : barrelCounts) {
+                for (int downloaders : downloaderCounts) {
+                    results.add(runOnce(mode, barrels, downloaders));
+                }
+            }
+        } finally {
+            web.stop();
+        }
+        report(results);
+        return true;
+    }
+
+    /**
+     * Uma execução com um sistema vazio.
+     */
+    private RunResult runOnce(LocalCluster.Mode mode, int barrels, int downloaders) throws Exception {
+        out.println();
+        out.println("▶️ " + barrels + " barrel(s), " + downloaders + " downloader(s)");
+        RunResult result = new RunResult();
+        result.barrels = barrels;
+        result.downloaders = downloaders;
+
+        File runDir = new File(workDir, "run-b" + barrels + "-d" + downloaders);
+        deleteRecursively(runDir);
+        runDir.mkdirs();
+        web.reset();
+
+        int basePort = getInt("rmiBasePort", 12090);
+        Properties gatewayProp = componentConfig("gateway.properties", "gateway.");
+        gatewayProp.setProperty("gatewayDownloaderPort", String.valueOf(basePort));
+        gatewayProp.setProperty("gatewayIBSDownloaderPort", String.valueOf(basePort + 1));
+        gatewayProp.setProperty("gatewayClientPort", String.valueOf(basePort + 2));
+        // Todas as URLs encontradas entram na fila (sem limite de profundidade)
+        gatewayProp.setProperty("urlSearchDepth", String.valueOf(Integer.MAX_VALUE - 1));
+        String downloaderRegistry = "rmi://localhost:" + basePort + "/" + gatewayProp.getProperty("gatewayDownloaderN");
+        String ibsRegistry = "rmi://localhost:" + (basePort + 1) + "/"
+                + gatewayProp.getProperty("gatewayIBSDownloaderN");
+
+        Properties barrelProp = componentConfig("indexstoragebarrels.properties", "barrel.");
+        barrelProp.setProperty("registryNibs", ibsRegistry);
+        Properties downloaderProp = componentConfig("downloaders.properties", "downloader.");
+        downloaderProp.setProperty("registryN", downloaderRegistry);
+        downloaderProp.setProperty("registryNibs", ibsRegistry);
+
+        List<String> jvmArgs = Arrays.asList(get("componentJvmArgs", "").trim().split("\\s+"));
+        try (LocalCluster cluster = new LocalCluster(mode, runDir, gatewayProp, barrelProp, downloaderProp,
+                barrels, downloaders, getInt("firstBarrelId", 100),
+                jvmArgs.get(0).isEmpty() ? List.of() : jvmArgs)) {
+            cluster.start();
+            Map<Integer, RMIIndexStorageBarrel> barrelMap = cluster.barrels();
+            out.println("✅ Sistema iniciado (" + barrelMap.size() + " barrels)");
+
+            IngestProbe probe = new IngestProbe(web, barrelMap, getInt("probeEvery", 10),
+                    getLong("probeIntervalMs", 50));
+            Thread probeThread = new Thread(probe, "ingest-probe");
+            probeThread.setDaemon(true);
+
+            // Crawl: a partir da página 0 até todas as páginas terem sido pedidas
+            long crawlStart = System.nanoTime();
+            cluster.client().clientIndexUrl(web.corpus().url(0));
+            probeThread.start();
+            long crawlDeadline = crawlStart + TimeUnit.SECONDS.toNanos(getLong("crawlTimeoutSeconds", 300));
+            long nextProgress = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (web.pagesFetched() < web.pageCount() && System.nanoTime() < crawlDeadline) {
+                Thread.sleep(100);
+                if (System.nanoTime() > nextProgress) {
+                    out.println("   crawl: " + web.pagesFetched() + "/" + web.pageCount() + " páginas");
+                    nextProgress += TimeUnit.SECONDS.toNanos(5);
+                }
+            }
+            result.crawlSeconds = (System.nanoTime() - crawlStart) / 1e9;
+            result.pagesFetched = web.pagesFetched();
+            out.printf(Locale.ROOT, "   crawl: %d páginas em %.1f s%n", result.pagesFetched, result.crawlSeconds);
+
+            // Espera que as páginas acompanhadas possam ser pesquisadas
+            long ingestDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(getLong("ingestTimeoutSeconds", 60));
+            while (!probe.isDone() && System.nanoTime() < ingestDeadline) {
+                Thread.sleep(100);
+            }
+            probe.stop();
+            result.ingestPending = probe.pendingPages();
+            result.ingestFirstP50 = probe.firstBarrel().quantile(0.5);
+            result.ingestFirstP99 = probe.firstBarrel().quantile(0.99);
+            result.ingestAllP50 = probe.allBarrels().quantile(0.5);
+            result.ingestAllP99 = probe.allBarrels().quantile(0.99);
+
+            runQueries(cluster.client(), result);
+        }
+        return result;
+    }
+
+    /**
+     * Pesquisas ao gateway durante {@code queryDurationSeconds}, por
+     * {@code queryThreads} threads.
+     */
+    private void runQueries(RMIGatewayClientInterface client, RunResult result) throws InterruptedException {
+        int threads = getInt("queryThreads", 8);
+        int terms = getInt("queryTerms", 2);
+        long duration = TimeUnit.SECONDS.toNanos(getLong("queryDurationSeconds", 30));
+        Metrics.Histogram latency = new Metrics.Histogram(1e-6); // ms
+        LongAdder errors = new LongAdder();
+        SyntheticCorpus corpus = web.corpus();
+
+        long start = System.nanoTime();
+        long end = start + duration;
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Random random = new Random(getLong("seed", 42) * 31 + t);
+            Thread worker = new Thread(() -> {
+                while (System.nanoTime() < end) {
+                    String query = corpus.query(random, terms);
+                    long queryStart = System.nanoTime();
+                    try {
+                        client.returnPagesbyWords(query);
+                        latency.recordSince(queryStart);
+                    } catch (Exception e) {
+                        errors.increment();
+                    }
+                }
+            }, "query-" + t);
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        result.queries = latency.count();
+        result.queryErrors = errors.sum();
+        result.queriesPerSecond = result.queries / seconds;
+        result.queryP50 = latency.quantile(0.5);
+        result.queryP99 = latency.quantile(0.99);
+        out.printf(Locale.ROOT, "   pesquisas: %d em %.1f s (%d erros)%n", result.queries, seconds, result.queryErrors);
+    }
+
+    /**
+     * Mostra a tabela dos resultados e acrescenta-os a {@code report.csv}.
+     */
+    private void report(List<RunResult> results) throws IOException {
+        out.println();
+        out.printf("%-8s %-11s %9s %10s %12s %12s %12s %12s %8s %12s %11s %11s%n", "Barrels", "Downloaders",
+                "Páginas", "Pág/s", "Ingest p50", "Ingest p99", "Réplica p50", "Réplica p99", "Pendent.",
+                "Pesquisas/s", "Pesq. p50", "Pesq. p99");
+        for (RunResult r : results) {
+            out.printf(Locale.ROOT, "%-8d %-11d %9d %10.1f %9.1f ms %9.1f ms %9.1f ms %9.1f ms %8d %12.1f %8.2f ms %8.2f ms%n",
+                    r.barrels, r.downloaders, r.pagesFetched, r.pagesPerSecond(), r.ingestFirstP50,
+                    r.ingestFirstP99, r.ingestAllP50, r.ingestAllP99, r.ingestPending, r.queriesPerSecond,
+                    r.queryP50, r.queryP99);
+        }
+
+        File csv = new File(workDir, "report.csv");
+        boolean header = !csv.exists();
+        try (PrintWriter writer = new PrintWriter(new FileWriter(csv, true))) {
+            if (header) {
+                writer.println("timestamp,pages,barrels,downloaders,pagesFetched,crawlSeconds,pagesPerSecond,"
+                        + "ingestFirstP50Ms,ingestFirstP99Ms,ingestAllP50Ms,ingestAllP99Ms,ingestPending,"
+                        + "queries,queryErrors,queriesPerSecond,queryP50Ms,queryP99Ms");
+            }
+            long timestamp = System.currentTimeMillis();
+            for (RunResult r : results) {
+                writer.println(String.format(Locale.ROOT,
+                        "%d,%d,%d,%d,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%d,%d,%d,%.3f,%.3f,%.3f", timestamp,
+                        web.pageCount(), r.barrels, r.downloaders, r.pagesFetched, r.crawlSeconds,
+                        r.pagesPerSecond(), r.ingestFirstP50, r.ingestFirstP99, r.ingestAllP50, r.ingestAllP99,
+                        r.ingestPending, r.queries, r.queryErrors, r.queriesPerSecond, r.queryP50, r.queryP99));
+            }
+        }
+        out.println();
+        out.println("📊 Resultados acrescentados a " + csv.getPath());
+    }
+
+    /**
+     * Lê a configuração base de um componente (de {@code configDir}) e aplica
+     * os valores da configuração do teste com o prefixo indicado.
+     */
+    private Properties componentConfig(String fileName, String prefix) throws IOException {
+        Properties component = new Properties();
+        try (InputStream input = new FileInputStream(new File(get("configDir", "config"), fileName))) {
+            component.load(input);
+        }
+        for (String key : prop.stringPropertyNames()) {
+            if (key.startsWith(prefix)) {
+                component.setProperty(key.substring(prefix.length()), prop.getProperty(key).trim());
+            }
+        }
+        return component;
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    private String get(String key, String defaultValue) {
+        return prop.getProperty(key, defaultValue).trim();
+    }
+
+    private int getInt(String key, int defaultValue) {
+        return Integer.parseInt(get(key, String.valueOf(defaultValue)));
+    }
+
+    private long getLong(String key, long defaultValue) {
+        return Long.parseLong(get(key, String.valueOf(defaultValue)));
+    }
+
+    private int[] getInts(String key, String defaultValue) {
+        return Arrays.stream(get(key, defaultValue).split(",")).map(String::trim).mapToInt(Integer::parseInt)
+                .toArray();
+    }
+}
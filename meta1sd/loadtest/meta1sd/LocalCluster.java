@@ -0,0 +1,237 @@
+package meta1sd;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.rmi.Naming;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LocalCluster - Gateway, barrels e downloaders a correr na máquina local,
+ * para testes de carga.
+ * No modo {@link Mode#PROCESSES} cada componente corre num processo (JVM)
+ * próprio, tal como em produção, com o log em {@code logs/} do diretório da
+ * execução; no modo {@link Mode#SINGLE} correm todos no processo atual, com a
+ * saída padrão redirecionada para {@code logs/cluster.log}. Os componentes de
+ * um processo não podem ser parados, pelo que no modo {@code SINGLE} só pode
+ * ser iniciado um cluster por processo.
+ */
+public class LocalCluster implements AutoCloseable {
+
+    /**
+     * Onde correm os componentes.
+     */
+    public enum Mode {
+        PROCESSES, SINGLE
+    }
+
+    private static final long STARTUP_TIMEOUT_MS = 60_000;
+
+    private final Mode mode;
+    private final File runDir;
+    private final Properties gatewayProp;
+    private final Properties barrelProp;
+    private final Properties downloaderProp;
+    private final int barrelCount;
+    private final int downloaderCount;
+    private final int firstBarrelId;
+    private final List<String> jvmArgs;
+    private final List<Process> processes = new ArrayList<>();
+
+    private RMIGatewayClientInterface client;
+    private RMIGatewayIBSDownloader gateway;
+
+    /**
+     * Construtor. As propriedades dos componentes já devem ter as portas e os
+     * endereços RMI coerentes entre si.
+     *
+     * @param mode            Onde correm os componentes.
+     * @param runDir          Diretório da execução (configurações, logs e, no
+     *                        modo {@code PROCESSES}, os dados das barrels).
+     * @param gatewayProp     Propriedades do gateway.
+     * @param barrelProp      Propriedades das barrels.
+     * @param downloaderProp  Propriedades dos downloaders.
+     * @param barrelCount     Número de barrels.
+     * @param downloaderCount Número de downloaders.
+     * @param firstBarrelId   ID da primeira barrel (as seguintes são
+     *                        consecutivas).
+     * @param jvmArgs         Opções da JVM de cada componente (modo
+     *                        {@code PROCESSES}).
+     */
+    public LocalCluster(Mode mode, File runDir, Properties gatewayProp, Properties barrelProp,
+            Properties downloaderProp, int barrelCount, int downloaderCount, int firstBarrelId,
+            List<String> jvmArgs) {
+        this.mode = mode;
+        this.runDir = runDir;
+        this.gatewayProp = gatewayProp;
+        this.barrelProp = barrelProp;
+        this.downloaderProp = downloaderProp;
+        this.barrelCount = barrelCount;
+        this.downloaderCount = downloaderCount;
+        this.firstBarrelId = firstBarrelId;
+        this.jvmArgs = jvmArgs;
+    }
+
+    /**
+     * Inicia o gateway, as barrels (uma de cada vez, esperando que cada uma
+     * fique registada) e os downloaders.
+     *
+     * @throws Exception Se algum componente não arrancar a tempo.
+     */
+    public void start() throws Exception {
+        File logs = new File(runDir, "logs");
+        logs.mkdirs();
+        File gatewayConfig = write("gateway.properties", gatewayProp);
+        File barrelConfig = write("barrel.properties", barrelProp);
+        File downloaderConfig = write("downloader.properties", downloaderProp);
+
+        if (mode == Mode.SINGLE) {
+            PrintStream log = new PrintStream(new FileOutputStream(new File(logs, "cluster.log")), true, "UTF-8");
+            System.setOut(log);
+            System.setErr(log);
+        }
+
+        launch("gateway", RMIGateway.class, gatewayConfig.getPath());
+        String clientName = "rmi://localhost:" + gatewayProp.getProperty("gatewayClientPort").trim() + "/"
+                + gatewayProp.getProperty("gatewayClientN").trim();
+        client = (RMIGatewayClientInterface) lookup(clientName);
+        gateway = (RMIGatewayIBSDownloader) lookup(barrelProp.getProperty("registryNibs").trim());
+
+        for (int i = 0; i < barrelCount; i++) {
+            int id = firstBarrelId + i;
+            if (mode == Mode.SINGLE) {
+                // As barrels do processo atual gravam em data/ do diretório atual
+                new File("data/estado_barrel_" + id + ".json").delete();
+            }
+            launch("barrel-" + id, IndexStorageBarrel.class, String.valueOf(id), barrelConfig.getPath());
+            long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MS;
+            while (!gateway.getBarrels().containsKey(id)) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IllegalStateException("A barrel " + id + " não se registou no gateway a tempo");
+                }
+                Thread.sleep(100);
+            }
+        }
+
+        for (int i = 0; i < downloaderCount; i++) {
+            launch("downloader-" + i, Downloader.class, downloaderConfig.getPath());
+        }
+    }
+
+    /**
+     * Retorna a interface de clientes do gateway.
+     *
+     * @return O gateway.
+     */
+    public RMIGatewayClientInterface client() {
+        return client;
+    }
+
+    /**
+     * Retorna as barrels registadas no gateway.
+     *
+     * @return As barrels por ID.
+     * @throws Exception Se o gateway não responder.
+     */
+    public Map<Integer, RMIIndexStorageBarrel> barrels() throws Exception {
+        return gateway.getBarrels();
+    }
+
+    /**
+     * Termina os processos dos componentes (no modo {@code SINGLE} os
+     * componentes terminam com o processo atual).
+     */
+    @Override
+    public void close() {
+        for (Process process : processes) {
+            process.destroy();
+        }
+        for (Process process : processes) {
+            try {
+                if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+        processes.clear();
+    }
+
+    /**
+     * Inicia um componente, num processo próprio ou numa thread do processo
+     * atual.
+     */
+    private void launch(String name, Class<?> mainClass, String... args) throws IOException {
+        if (mode == Mode.SINGLE) {
+            Thread thread = new Thread(() -> invokeMain(mainClass, args), name);
+            thread.setDaemon(true);
+            thread.start();
+            return;
+        }
+        List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(classPath());
+        command.add(mainClass.getName());
+        for (String arg : args) {
+            command.add(new File(arg).isFile() ? new File(arg).getAbsolutePath() : arg);
+        }
+        File log = new File(new File(runDir, "logs"), name + ".log");
+        processes.add(new ProcessBuilder(command).directory(runDir).redirectErrorStream(true)
+                .redirectOutput(log).start());
+    }
+
+    /**
+     * Classpath do processo atual com caminhos absolutos, porque os componentes
+     * correm no diretório da execução.
+     */
+    private static String classPath() {
+        List<String> entries = new ArrayList<>();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            entries.add(new File(entry).getAbsolutePath());
+        }
+        return String.join(File.pathSeparator, entries);
+    }
+
+    private static void invokeMain(Class<?> mainClass, String[] args) {
+        try {
+            mainClass.getMethod("main", String[].class).invoke(null, (Object) args);
+        } catch (ReflectiveOperationException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Procura um objeto remoto, tentando de novo até o componente arrancar.
+     */
+    private static Object lookup(String name) throws Exception {
+        long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MS;
+        while (true) {
+            try {
+                return Naming.lookup(name);
+            } catch (Exception e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(200);
+            }
+        }
+    }
+
+    private File write(String fileName, Properties prop) throws IOException {
+        File file = new File(runDir, fileName);
+        try (OutputStream out = new FileOutputStream(file)) {
+            prop.store(out, "Gerado pelo teste de carga");
+        }
+        return file;
+    }
+}
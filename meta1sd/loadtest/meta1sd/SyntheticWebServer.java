@@ -0,0 +1,184 @@
+package meta1sd;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * SyntheticWebServer - Servidor HTTP local que serve as páginas de um
+ * {@link SyntheticCorpus} para os downloaders as indexarem.
+ * Cada página tem o título e o texto gerados pelo corpus, os seus links e um
+ * link para a página seguinte (para que todas as páginas sejam alcançáveis a
+ * partir da página 0). O título começa por um termo único da página
+ * ({@link #marker(int)}), usado para saber quando a página passa a poder ser
+ * pesquisada. O servidor regista o instante do primeiro pedido de cada página.
+ */
+public class SyntheticWebServer {
+    private final SyntheticCorpus corpus;
+    private final int pageCount;
+    private final int words;
+    private final int fanOut;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private volatile AtomicLongArray firstFetch; // Instante (nanoTime) do primeiro pedido, 0 = nunca
+    private final AtomicInteger pagesFetched = new AtomicInteger();
+    private final LongAdder requests = new LongAdder();
+
+    /**
+     * Cria o servidor (ainda parado).
+     *
+     * @param port         Porta (0 escolhe uma porta livre).
+     * @param pageCount    Número de páginas.
+     * @param words        Palavras de texto por página.
+     * @param fanOut       Links de saída por página (além do link para a
+     *                     seguinte).
+     * @param seed         Semente do corpus.
+     * @param vocabulary   Número de palavras distintas.
+     * @param zipfExponent Expoente da distribuição das palavras.
+     * @param threads      Threads que atendem pedidos.
+     * @throws IOException Se não for possível abrir a porta.
+     */
+    public SyntheticWebServer(int port, int pageCount, int words, int fanOut, long seed, int vocabulary,
+            double zipfExponent, int threads) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 256);
+        this.corpus = new SyntheticCorpus("http://127.0.0.1:" + server.getAddress().getPort(), vocabulary,
+                zipfExponent, seed);
+        this.pageCount = pageCount;
+        this.words = words;
+        this.fanOut = fanOut;
+        this.firstFetch = new AtomicLongArray(pageCount);
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "synthetic-web");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.createContext("/page/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Começa a atender pedidos.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Para o servidor.
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Esquece os pedidos anteriores, para uma nova execução com um sistema
+     * vazio.
+     */
+    public void reset() {
+        firstFetch = new AtomicLongArray(pageCount);
+        pagesFetched.set(0);
+        requests.reset();
+    }
+
+    /**
+     * Retorna o corpus servido.
+     *
+     * @return O corpus.
+     */
+    public SyntheticCorpus corpus() {
+        return corpus;
+    }
+
+    /**
+     * Retorna o número de páginas servidas.
+     *
+     * @return O número de páginas.
+     */
+    public int pageCount() {
+        return pageCount;
+    }
+
+    /**
+     * Retorna o número de páginas distintas já pedidas.
+     *
+     * @return O número de páginas.
+     */
+    public int pagesFetched() {
+        return pagesFetched.get();
+    }
+
+    /**
+     * Retorna o número total de pedidos (incluindo repetidos).
+     *
+     * @return O número de pedidos.
+     */
+    public long requests() {
+        return requests.sum();
+    }
+
+    /**
+     * Retorna o instante do primeiro pedido de uma página.
+     *
+     * @param page Número da página.
+     * @return O valor de {@link System#nanoTime()}, ou 0 se ainda não foi pedida.
+     */
+    public long firstFetch(int page) {
+        return firstFetch.get(page);
+    }
+
+    /**
+     * Termo único de uma página, incluído no início do título.
+     *
+     * @param page Número da página.
+     * @return O termo.
+     */
+    public static String marker(int page) {
+        return "zprobe" + page;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.increment();
+        int page = corpus.pageOf("http://127.0.0.1:" + server.getAddress().getPort()
+                + exchange.getRequestURI().getPath());
+        if (page < 0 || page >= pageCount) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        AtomicLongArray fetched = firstFetch;
+        if (fetched.compareAndSet(page, 0, System.nanoTime())) {
+            pagesFetched.incrementAndGet();
+        }
+
+        SiteData data = corpus.page(page, pageCount, words, fanOut);
+        StringBuilder html = new StringBuilder(data.tokens.length() + 64 * (fanOut + 1));
+        html.append("<html><head><title>").append(marker(page)).append(' ').append(data.title)
+                .append("</title></head><body><p>").append(data.tokens.substring(data.title.length()).trim())
+                .append("</p>");
+        for (String link : data.getOutlinks()) {
+            html.append("<a href=\"").append(link).append("\">link</a> ");
+        }
+        if (page + 1 < pageCount) {
+            html.append("<a href=\"").append(corpus.url(page + 1)).append("\">next</a>");
+        }
+        html.append("</body></html>");
+
+        byte[] body = html.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
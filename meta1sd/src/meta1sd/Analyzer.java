@@ -0,0 +1,392 @@
+package meta1sd;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Analyzer - Converte texto em termos de pesquisa: divide por espaços em
+ * branco, converte para minúsculas, remove acentos ("ação" -> "acao"),
+ * descarta pontuação, ignora stopwords e aplica opcionalmente um stemmer leve
+ * de português ou inglês.
+ * A mesma configuração tem de ser usada na indexação (downloader) e nas
+ * pesquisas (barrel), para que os termos coincidam. Cada chamada usa um único
+ * buffer de caracteres; por termo só é alocada a String emitida.
+ */
+public final class Analyzer {
+
+    /** Comprimento mínimo de um termo indexável */
+    public static final int MIN_TERM_LENGTH = 2;
+
+    /** Stopwords portuguesas por omissão (já sem acentos) */
+    public static final List<String> PORTUGUESE_STOPWORDS = Arrays.asList(
+            "de", "da", "do", "das", "dos", "em", "na", "no", "nas", "nos", "um", "uma", "uns", "umas",
+            "os", "as", "ao", "aos", "que", "se", "por", "para", "com", "sem", "mas", "ou", "e", "o", "a",
+            "pelo", "pela", "pelos", "pelas", "como", "ja", "nao", "sim", "mais", "seu", "sua", "seus",
+            "suas", "isso", "isto", "esta", "este", "essa", "esse", "foi", "ser", "tem", "entre");
+
+    /** Stopwords inglesas por omissão */
+    public static final List<String> ENGLISH_STOPWORDS = Arrays.asList(
+            "the", "and", "of", "to", "in", "is", "it", "for", "on", "at", "by", "an", "be", "as", "or",
+            "are", "was", "were", "this", "that", "with", "from", "not", "but", "its", "has", "have");
+
+    /** Stemmers disponíveis */
+    public enum Stemmer {
+        NONE, PORTUGUESE, ENGLISH
+    }
+
+    // Tabela de dobragem (minúsculas sem acentos) para os blocos Latin-1 e Latin Extended-A
+    private static final int FOLD_TABLE_SIZE = 0x0250;
+    private static final char[] FOLD = buildFoldTable();
+
+    private static volatile Analyzer defaultAnalyzer = new Analyzer(defaultStopwords(), Stemmer.PORTUGUESE);
+
+    private final CharArraySet stopwords;
+    private final Stemmer stemmer;
+
+    /**
+     * Recebe cada termo produzido pelo analyzer.
+     */
+    @FunctionalInterface
+    public interface TermConsumer {
+        void accept(String term);
+    }
+
+    /**
+     * Construtor do analyzer.
+     *
+     * @param stopwords Stopwords a ignorar (são normalizadas da mesma forma que
+     *                  o texto).
+     * @param stemmer   Stemmer a aplicar.
+     */
+    public Analyzer(Set<String> stopwords, Stemmer stemmer) {
+        this.stemmer = stemmer;
+        this.stopwords = new CharArraySet(stopwords.size());
+        for (String stopword : stopwords) {
+            char[] folded = new char[stopword.length()];
+            int length = 0;
+            for (int i = 0; i < stopword.length(); i++) {
+                char c = fold(stopword.charAt(i));
+                if (c != 0) {
+                    folded[length++] = c;
+                }
+            }
+            this.stopwords.add(folded, length);
+        }
+    }
+
+    /**
+     * Cria um analyzer a partir das propriedades {@code analyzerStopwords}
+     * (lista separada por vírgulas de "pt", "en" e/ou palavras; "none" desativa)
+     * e {@code analyzerStemmer} ("pt", "en" ou "none").
+     *
+     * @param prop Propriedades do componente.
+     * @return O analyzer configurado.
+     */
+    public static Analyzer fromProperties(Properties prop) {
+        Set<String> stopwords = new LinkedHashSet<>();
+        String stopwordsProperty = prop.getProperty("analyzerStopwords", "pt,en").trim();
+        for (String entry : stopwordsProperty.split(",")) {
+            String value = entry.trim().toLowerCase(Locale.ROOT);
+            if (value.isEmpty() || value.equals("none")) {
+                continue;
+            }
+            if (value.equals("pt")) {
+                stopwords.addAll(PORTUGUESE_STOPWORDS);
+            } else if (value.equals("en")) {
+                stopwords.addAll(ENGLISH_STOPWORDS);
+            } else {
+                stopwords.add(value);
+            }
+        }
+
+        Stemmer stemmer;
+        switch (prop.getProperty("analyzerStemmer", "pt").trim().toLowerCase(Locale.ROOT)) {
+            case "pt":
+                stemmer = Stemmer.PORTUGUESE;
+                break;
+            case "en":
+                stemmer = Stemmer.ENGLISH;
+                break;
+            default:
+                stemmer = Stemmer.NONE;
+        }
+        return new Analyzer(stopwords, stemmer);
+    }
+
+    /**
+     * Define o analyzer usado por omissão neste processo.
+     *
+     * @param analyzer Analyzer a usar.
+     */
+    public static void setDefault(Analyzer analyzer) {
+        defaultAnalyzer = analyzer;
+    }
+
+    /**
+     * Retorna o analyzer usado por omissão neste processo (stopwords pt+en e
+     * stemmer português, se não for configurado).
+     *
+     * @return O analyzer por omissão.
+     */
+    public static Analyzer getDefault() {
+        return defaultAnalyzer;
+    }
+
+    /**
+     * Percorre os termos de um texto, pela ordem em que aparecem.
+     *
+     * @param text     Texto a analisar (pode ser null).
+     * @param consumer Destino de cada termo.
+     */
+    public void analyze(CharSequence text, TermConsumer consumer) {
+        if (text == null) {
+            return;
+        }
+        int length = text.length();
+        char[] buffer = new char[64];
+        int size = 0;
+        for (int i = 0; i <= length; i++) {
+            char c = i < length ? text.charAt(i) : ' ';
+            if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+                emit(buffer, size, consumer);
+                size = 0;
+                continue;
+            }
+            if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                if (Character.isLetterOrDigit(codePoint)) {
+                    if (size + 2 > buffer.length) {
+                        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    }
+                    size += Character.toChars(Character.toLowerCase(codePoint), buffer, size);
+                }
+                continue;
+            }
+            c = fold(c);
+            if (c != 0) {
+                if (size == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, size * 2);
+                }
+                buffer[size++] = c;
+            }
+        }
+    }
+
+    /**
+     * Retorna os termos de um texto, pela ordem em que aparecem (com
+     * repetições).
+     *
+     * @param text Texto a analisar.
+     * @return Lista de termos.
+     */
+    public List<String> terms(CharSequence text) {
+        List<String> terms = new ArrayList<>();
+        analyze(text, terms::add);
+        return terms;
+    }
+
+    /**
+     * Aplica o stemmer e o filtro de stopwords a um termo no buffer e emite-o.
+     *
+     * @param buffer   Buffer com o termo.
+     * @param size     Comprimento do termo.
+     * @param consumer Destino do termo.
+     */
+    private void emit(char[] buffer, int size, TermConsumer consumer) {
+        if (size < MIN_TERM_LENGTH || stopwords.contains(buffer, size)) {
+            return;
+        }
+        switch (stemmer) {
+            case PORTUGUESE:
+                size = stemPortuguese(buffer, size);
+                break;
+            case ENGLISH:
+                size = stemEnglish(buffer, size);
+                break;
+            default:
+                break;
+        }
+        if (size >= MIN_TERM_LENGTH) {
+            consumer.accept(new String(buffer, 0, size));
+        }
+    }
+
+    /**
+     * Stemmer leve de português: reduz plurais (passo de plural do RSLP).
+     *
+     * @param term Buffer com o termo.
+     * @param size Comprimento do termo.
+     * @return Novo comprimento do termo.
+     */
+    static int stemPortuguese(char[] term, int size) {
+        if (size < 4 || term[size - 1] != 's') {
+            return size;
+        }
+        if (endsWith(term, size, "oes") || endsWith(term, size, "aes")) { // ações -> acao, pães -> pao
+            term[size - 3] = 'a';
+            term[size - 2] = 'o';
+            return size - 1;
+        }
+        if (endsWith(term, size, "ns")) { // bons -> bom
+            term[size - 2] = 'm';
+            return size - 1;
+        }
+        if (size >= 5 && (endsWith(term, size, "ais") || endsWith(term, size, "eis")
+                || endsWith(term, size, "ois"))) { // animais -> animal
+            term[size - 2] = 'l';
+            return size - 1;
+        }
+        if (size >= 5 && (endsWith(term, size, "res") || endsWith(term, size, "zes")
+                || endsWith(term, size, "les"))) { // flores -> flor, luzes -> luz
+            return size - 2;
+        }
+        if (endsWith(term, size, "ss") || endsWith(term, size, "us") || endsWith(term, size, "is")) {
+            return size;
+        }
+        return size - 1; // casas -> casa
+    }
+
+    /**
+     * Stemmer leve de inglês (S-stemmer): reduz plurais regulares.
+     *
+     * @param term Buffer com o termo.
+     * @param size Comprimento do termo.
+     * @return Novo comprimento do termo.
+     */
+    static int stemEnglish(char[] term, int size) {
+        if (size < 4 || term[size - 1] != 's') {
+            return size;
+        }
+        if (endsWith(term, size, "ies") && !endsWith(term, size, "eies") && !endsWith(term, size, "aies")) {
+            term[size - 3] = 'y';
+            return size - 2;
+        }
+        if (endsWith(term, size, "es") && !endsWith(term, size, "aes") && !endsWith(term, size, "ees")
+                && !endsWith(term, size, "oes")) {
+            return size - 1;
+        }
+        if (endsWith(term, size, "ss") || endsWith(term, size, "us")) {
+            return size;
+        }
+        return size - 1;
+    }
+
+    /**
+     * Verifica se o termo no buffer termina com um sufixo.
+     */
+    private static boolean endsWith(char[] term, int size, String suffix) {
+        int offset = size - suffix.length();
+        if (offset < 0) {
+            return false;
+        }
+        for (int i = 0; i < suffix.length(); i++) {
+            if (term[offset + i] != suffix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Converte um carácter para minúsculas sem acentos.
+     *
+     * @param c Carácter a converter.
+     * @return O carácter dobrado, ou 0 se não for letra nem dígito.
+     */
+    private static char fold(char c) {
+        if (c < FOLD_TABLE_SIZE) {
+            return FOLD[c];
+        }
+        if (!Character.isLetterOrDigit(c)) {
+            return 0; // Pontuação, símbolos e marcas combinantes
+        }
+        return Character.toLowerCase(c);
+    }
+
+    /**
+     * Constrói a tabela de dobragem usando a decomposição Unicode (NFD).
+     *
+     * @return A tabela.
+     */
+    private static char[] buildFoldTable() {
+        char[] table = new char[FOLD_TABLE_SIZE];
+        for (char c = 0; c < FOLD_TABLE_SIZE; c++) {
+            if (!Character.isLetterOrDigit(c)) {
+                continue;
+            }
+            String decomposed = Normalizer.normalize(String.valueOf(Character.toLowerCase(c)), Normalizer.Form.NFD);
+            table[c] = decomposed.charAt(0);
+        }
+        return table;
+    }
+
+    /**
+     * Stopwords por omissão (português e inglês).
+     */
+    private static Set<String> defaultStopwords() {
+        Set<String> stopwords = new LinkedHashSet<>(PORTUGUESE_STOPWORDS);
+        stopwords.addAll(ENGLISH_STOPWORDS);
+        return stopwords;
+    }
+
+    /**
+     * Conjunto de palavras consultável diretamente a partir de um buffer de
+     * caracteres, sem criar Strings (endereçamento aberto).
+     */
+    private static final class CharArraySet {
+        private final char[][] slots;
+
+        CharArraySet(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(4, expected * 2) - 1) << 1;
+            this.slots = new char[capacity][];
+        }
+
+        void add(char[] word, int length) {
+            if (contains(word, length)) {
+                return;
+            }
+            int slot = hash(word, length) & (slots.length - 1);
+            while (slots[slot] != null) {
+                slot = (slot + 1) & (slots.length - 1);
+            }
+            slots[slot] = Arrays.copyOf(word, length);
+        }
+
+        boolean contains(char[] word, int length) {
+            int slot = hash(word, length) & (slots.length - 1);
+            while (slots[slot] != null) {
+                if (equals(slots[slot], word, length)) {
+                    return true;
+                }
+                slot = (slot + 1) & (slots.length - 1);
+            }
+            return false;
+        }
+
+        private static int hash(char[] word, int length) {
+            int hash = 0;
+            for (int i = 0; i < length; i++) {
+                hash = 31 * hash + word[i];
+            }
+            return hash ^ (hash >>> 16);
+        }
+
+        private static boolean equals(char[] stored, char[] word, int length) {
+            if (stored.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (stored[i] != word[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package meta1sd;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * BarrelTransport - Plano de dados de uma barrel: envio de páginas e
+ * transferência do estado durante a sincronização.
+ * O RMI continua a ser o plano de controlo (registo, pesquisa, pong); os dados
+ * podem seguir por RMI ({@link RMIBarrelTransport}) ou pelo protocolo binário
+ * ({@link BinaryBarrelTransport}), conforme a propriedade {@code dataTransport}.
+ */
+public interface BarrelTransport {
+
+    /** Valor de {@code dataTransport} que ativa o transporte binário */
+    String BINARY = "binary";
+
+    /**
+     * Envia os dados de um site para a barrel.
+     *
+     * @param siteData Dados do site.
+     * @throws IOException Se ocorrer um erro de comunicação.
+     */
+    void storeSiteData(SiteData siteData) throws IOException;
+
+    /**
+     * Envia vários sites para a barrel. O transporte binário envia os pedidos em
+     * pipeline, sem esperar pela resposta de cada um.
+     *
+     * @param batch Sites a enviar, por ordem.
+     * @throws IOException Se ocorrer um erro de comunicação.
+     */
+    void storeSiteData(List<SiteData> batch) throws IOException;
+
+    /**
+     * Apaga uma página na barrel.
+     *
+     * @param url        URL da página.
+     * @param propagated true se o pedido já vem de outra barrel.
+     * @throws IOException Se ocorrer um erro de comunicação.
+     */
+    void deleteSiteData(String url, boolean propagated) throws IOException;
+
+    /**
+     * Obtém os sites armazenados na barrel.
+     *
+     * @return Conjunto de sites.
+     * @throws IOException Se ocorrer um erro de comunicação.
+     */
+    Set<SiteData> getSiteDataSet() throws IOException;
+
+    /**
+     * Obtém os textos das páginas da barrel.
+     *
+     * @return Mapa URL -> texto.
+     * @throws IOException Se ocorrer um erro de comunicação.
+     */
+    Map<String, String> getUrlTexts() throws IOException;
+
+    /**
+     * Obtém o transporte de dados para uma barrel.
+     * Com {@code dataTransport=binary} usa o endpoint binário anunciado pela
+     * barrel; se a barrel não tiver endpoint (ou com qualquer outro valor) usa
+     * RMI.
+     *
+     * @param barrel Referência RMI da barrel.
+     * @param mode   Valor da propriedade {@code dataTransport}.
+     * @return O transporte a usar.
+     * @throws IOException Se ocorrer um erro ao obter o endpoint ou ao ligar.
+     */
+    static BarrelTransport forBarrel(RMIIndexStorageBarrel barrel, String mode) throws IOException {
+        if (BINARY.equalsIgnoreCase(mode)) {
+            BarrelTransport binary = BinaryBarrelTransport.forBarrel(barrel);
+            if (binary != null) {
+                return binary;
+            }
+        }
+        return new RMIBarrelTransport(barrel);
+    }
+}
@@ -0,0 +1,514 @@
+package meta1sd;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * BinaryBarrelServer - Servidor NIO do protocolo binário de uma barrel (ver
+ * {@link BinaryBarrelTransport}).
+ * Uma thread de I/O lê as tramas de todas as ligações e os pedidos são
+ * executados em paralelo por um conjunto limitado de threads de trabalho. Um
+ * cliente pode enviar vários pedidos sem esperar pelas respostas
+ * (pipelining); as respostas de cada ligação voltam pela ordem dos pedidos.
+ * <p>
+ * Cada ligação tem uma janela de {@link #MAX_IN_FLIGHT} pedidos em execução ou
+ * por responder e de {@link #MAX_QUEUED_BYTES} de respostas por escrever: com a
+ * janela cheia o servidor deixa de ler a ligação até as respostas saírem, e o
+ * TCP trava o cliente. As respostas com o estado completo
+ * da barrel (sincronização) são enviadas em blocos de cerca de
+ * {@link #CHUNK_BYTES}; quem as gera espera enquanto houver mais de
+ * {@link #MAX_QUEUED_BYTES} por escrever na ligação.
+ * <p>
+ * As réplicas enviadas por outras barrels têm uma thread própria, para que a
+ * propagação entre duas barrels nunca espere por threads que estão elas
+ * próprias a propagar.
+ */
+public class BinaryBarrelServer implements Closeable {
+    private static final Log LOG = Log.get("barrel");
+
+    static final int MAX_IN_FLIGHT = 128; // Pedidos por responder por ligação
+    static final int CHUNK_BYTES = 1024 * 1024; // Tamanho alvo de cada bloco de uma resposta longa
+    static final int MAX_QUEUED_BYTES = 4 * CHUNK_BYTES; // Bytes por escrever antes de travar os blocos
+
+    private final RMIIndexStorageBarrel barrel; // Barrel local que executa os pedidos
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final ExecutorService workers; // Executa os pedidos originais (não réplicas)
+    private final ExecutorService replicaWorker; // Executa as réplicas, que nunca chamam outras barrels
+    private final Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+    private final Thread ioThread;
+    private volatile boolean running = true;
+
+    /**
+     * Estado de uma ligação de cliente. Os campos mutáveis partilhados com as
+     * threads de trabalho são protegidos pelo próprio objeto.
+     */
+    private static class Connection {
+        final SocketChannel channel;
+        ByteBuffer input = ByteBuffer.allocate(64 * 1024); // Só usado pela thread de I/O
+        final Queue<ByteBuffer> output = new ArrayDeque<>(); // Tramas prontas a escrever
+        final Queue<Reply> replies = new ArrayDeque<>(); // Por ordem dos pedidos
+        int inFlight; // Pedidos lidos cuja resposta ainda não passou toda para output
+        long queuedBytes; // Bytes de resposta ainda não escritos no socket
+        boolean closed;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Indica se a ligação pode aceitar mais pedidos (chamado com o lock).
+         */
+        boolean canAccept() {
+            return inFlight < MAX_IN_FLIGHT && queuedBytes < MAX_QUEUED_BYTES;
+        }
+    }
+
+    /**
+     * Resposta a um pedido: as tramas geradas até agora e se já terminou.
+     */
+    private static class Reply {
+        final Queue<ByteBuffer> frames = new ArrayDeque<>();
+        boolean done;
+    }
+
+    /**
+     * Escreve um elemento de uma resposta em blocos.
+     */
+    @FunctionalInterface
+    private interface ItemWriter<T> {
+        void write(DataOutputStream out, T item) throws IOException;
+    }
+
+    /**
+     * Abre o servidor na porta indicada e inicia a thread de I/O.
+     *
+     * @param barrel  Barrel local que executa os pedidos.
+     * @param port    Porta a escutar (0 = porta anónima).
+     * @param threads Número de threads de trabalho para os pedidos originais.
+     * @throws IOException Se não for possível abrir a porta.
+     */
+    public BinaryBarrelServer(RMIIndexStorageBarrel barrel, int port, int threads) throws IOException {
+        this.barrel = barrel;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        AtomicInteger workerCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "binary-barrel-worker-" + workerCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.replicaWorker = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "binary-barrel-replica");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.ioThread = new Thread(this::run, "binary-barrel-io");
+        ioThread.setDaemon(true);
+        ioThread.start();
+    }
+
+    /**
+     * Retorna a porta em que o servidor está a escutar.
+     *
+     * @return A porta local.
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Ciclo da thread de I/O: aceita ligações, lê tramas e escreve respostas.
+     */
+    private void run() {
+        while (running) {
+            try {
+                selector.select();
+                Connection ready;
+                while ((ready = pendingWrites.poll()) != null) {
+                    SelectionKey key = ready.channel.keyFor(selector);
+                    if (key != null && key.isValid()) {
+                        try {
+                            // Respostas prontas; a janela pode ter reaberto
+                            readFrames(key);
+                        } catch (IOException e) {
+                            closeConnection(key);
+                        }
+                    }
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            if (key.isReadable()) {
+                                read(key);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                write(key);
+                            }
+                        }
+                    } catch (IOException e) {
+                        closeConnection(key);
+                    }
+                }
+            } catch (IOException e) {
+                if (running) {
+                    LOG.error("❌ Erro no servidor binário: " + e.getMessage());
+                }
+            }
+        }
+
+        // Fecha as ligações na própria thread de I/O, depois de sair do select
+        try {
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+            selector.close();
+        } catch (IOException e) {
+            // Ignorado: o servidor está a terminar
+        }
+    }
+
+    /**
+     * Aceita uma nova ligação.
+     *
+     * @throws IOException Se ocorrer um erro ao aceitar.
+     */
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+    }
+
+    /**
+     * Lê dados de uma ligação e trata as tramas completas.
+     *
+     * @param key Chave da ligação.
+     * @throws IOException Se a ligação falhar ou enviar uma trama inválida.
+     */
+    private void read(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        if (connection.channel.read(connection.input) < 0) {
+            throw new IOException("Ligação fechada pelo cliente");
+        }
+        readFrames(key);
+    }
+
+    /**
+     * Envia as tramas completas já lidas para as threads de trabalho, reservando
+     * o lugar da resposta na ordem da ligação, enquanto a janela de pedidos o
+     * permitir. Atualiza depois o interesse da ligação: deixa de ler com a
+     * janela cheia e escreve enquanto houver respostas.
+     *
+     * @param key Chave da ligação.
+     * @throws IOException Se a ligação enviar uma trama inválida.
+     */
+    private void readFrames(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        ByteBuffer input = connection.input;
+        input.flip();
+        while (input.remaining() >= 4) {
+            int length = input.getInt(input.position());
+            if (length < 5 || length > BinaryBarrelTransport.MAX_REQUEST_BYTES) {
+                throw new IOException("Trama inválida (" + length + " bytes)");
+            }
+            if (input.remaining() < 4 + length) {
+                break;
+            }
+            Reply reply = new Reply();
+            synchronized (connection) {
+                if (!connection.canAccept()) {
+                    break; // Janela cheia: a trama fica no buffer
+                }
+                connection.inFlight++;
+                connection.replies.add(reply);
+            }
+            input.getInt();
+            byte[] frame = new byte[length];
+            input.get(frame);
+            (isReplica(frame) ? replicaWorker : workers).execute(() -> handle(connection, frame, reply));
+        }
+        input.compact();
+
+        // Aumenta o buffer se a próxima trama não couber
+        if (input.position() >= 4) {
+            int needed = 4 + input.getInt(0);
+            if (needed > input.capacity()) {
+                ByteBuffer larger = ByteBuffer.allocate(needed);
+                input.flip();
+                larger.put(input);
+                connection.input = larger;
+            }
+        }
+
+        synchronized (connection) {
+            int ops = connection.canAccept() ? SelectionKey.OP_READ : 0;
+            key.interestOps(connection.output.isEmpty() ? ops : ops | SelectionKey.OP_WRITE);
+        }
+    }
+
+    /**
+     * Indica se um pedido é uma réplica de outra barrel (dados já propagados),
+     * sem descodificar o payload.
+     *
+     * @param frame Trama do pedido, sem o prefixo de comprimento.
+     * @return true se o pedido não vai ser propagado.
+     */
+    private static boolean isReplica(byte[] frame) {
+        // Operação (1 byte), ID do pedido (4 bytes) e as flags do SiteData ou o
+        // indicador de propagação da remoção
+        if (frame.length <= 5) {
+            return false;
+        }
+        switch (frame[0]) {
+            case BinaryBarrelTransport.OP_STORE:
+                return (frame[5] & SiteDataCodec.FLAG_PROPAGATED) != 0;
+            case BinaryBarrelTransport.OP_DELETE:
+                return frame[5] != 0;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Escreve as respostas pendentes de uma ligação.
+     *
+     * @param key Chave da ligação.
+     * @throws IOException Se a escrita falhar.
+     */
+    private void write(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        synchronized (connection) {
+            while (!connection.output.isEmpty()) {
+                ByteBuffer buffer = connection.output.peek();
+                connection.channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    return; // Socket cheio; continua quando voltar a estar disponível
+                }
+                connection.output.poll();
+                connection.queuedBytes -= buffer.capacity();
+            }
+            connection.notifyAll(); // Acorda quem espera para gerar mais blocos
+        }
+        readFrames(key); // Retoma os pedidos que esperavam pela janela
+    }
+
+    /**
+     * Executa um pedido (numa thread de trabalho) e responde-lhe. Um erro,
+     * mesmo a meio de uma resposta em blocos, é enviado como trama de erro.
+     *
+     * @param connection Ligação que enviou o pedido.
+     * @param frame      Trama do pedido, sem o prefixo de comprimento.
+     * @param reply      Lugar da resposta na ordem da ligação.
+     */
+    private void handle(Connection connection, byte[] frame, Reply reply) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(64);
+        DataOutputStream response = new DataOutputStream(buffer);
+        int requestId = 0;
+        try {
+            DataInputStream request = new WireFormat.FrameInput(frame);
+            byte op = request.readByte();
+            requestId = request.readInt();
+            execute(op, request, response, connection, reply, requestId);
+            respond(connection, reply, frame(BinaryBarrelTransport.STATUS_OK, requestId, buffer), true);
+        } catch (Exception e) {
+            buffer.reset();
+            try {
+                WireFormat.writeString(response, String.valueOf(e.getMessage()));
+                respond(connection, reply, frame(BinaryBarrelTransport.STATUS_ERROR, requestId, buffer), true);
+            } catch (IOException ignored) {
+                // Ligação fechada: não há a quem responder
+            }
+        }
+    }
+
+    /**
+     * Cria uma trama de resposta.
+     *
+     * @param status    Estado da resposta.
+     * @param requestId Identificador do pedido.
+     * @param payload   Payload da resposta.
+     * @return A trama, pronta a escrever.
+     */
+    private static ByteBuffer frame(byte status, int requestId, ByteArrayOutputStream payload) {
+        ByteBuffer out = ByteBuffer.allocate(4 + 5 + payload.size());
+        out.putInt(5 + payload.size());
+        out.put(status);
+        out.putInt(requestId);
+        out.put(payload.toByteArray());
+        out.flip();
+        return out;
+    }
+
+    /**
+     * Junta uma trama à resposta de um pedido e passa para a fila de saída da
+     * ligação as respostas que já não esperam por pedidos anteriores. Um bloco
+     * intermédio espera enquanto a ligação tiver demasiados bytes por escrever.
+     *
+     * @param connection Ligação que enviou o pedido.
+     * @param reply      Resposta do pedido.
+     * @param frame      Trama a enviar.
+     * @param last       true se é a última trama da resposta.
+     * @throws IOException Se a ligação tiver sido fechada.
+     */
+    private void respond(Connection connection, Reply reply, ByteBuffer frame, boolean last) throws IOException {
+        synchronized (connection) {
+            while (!last && !connection.closed && connection.queuedBytes >= MAX_QUEUED_BYTES) {
+                try {
+                    connection.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Resposta interrompida");
+                }
+            }
+            if (connection.closed) {
+                throw new IOException("Ligação fechada");
+            }
+            reply.frames.add(frame);
+            reply.done = last;
+            connection.queuedBytes += frame.capacity();
+            while (!connection.replies.isEmpty()) {
+                Reply head = connection.replies.peek();
+                connection.output.addAll(head.frames);
+                head.frames.clear();
+                if (!head.done) {
+                    break; // Resposta em blocos ainda em curso
+                }
+                connection.replies.poll();
+                connection.inFlight--;
+            }
+        }
+        pendingWrites.add(connection);
+        selector.wakeup();
+    }
+
+    /**
+     * Escreve uma coleção numa sequência de tramas
+     * {@link BinaryBarrelTransport#STATUS_MORE}, cada uma com
+     * {@code [varint n][n elementos]} e cerca de {@link #CHUNK_BYTES}. Os
+     * restantes elementos ficam em {@code response}, para a trama final.
+     */
+    private <T> void writeChunked(Collection<T> items, ItemWriter<T> writer, DataOutputStream response,
+            Connection connection, Reply reply, int requestId) throws IOException {
+        ByteArrayOutputStream chunk = new ByteArrayOutputStream(CHUNK_BYTES + 64 * 1024);
+        DataOutputStream out = new DataOutputStream(chunk);
+        int count = 0;
+        for (T item : items) {
+            writer.write(out, item);
+            count++;
+            if (chunk.size() >= CHUNK_BYTES) {
+                ByteArrayOutputStream payload = new ByteArrayOutputStream(chunk.size() + 5);
+                WireFormat.writeVarInt(new DataOutputStream(payload), count);
+                chunk.writeTo(payload);
+                respond(connection, reply, frame(BinaryBarrelTransport.STATUS_MORE, requestId, payload), false);
+                chunk.reset();
+                count = 0;
+            }
+        }
+        WireFormat.writeVarInt(response, count);
+        chunk.writeTo(response);
+    }
+
+    /**
+     * Executa uma operação sobre a barrel local.
+     *
+     * @param op         Código da operação.
+     * @param request    Payload do pedido.
+     * @param response   Destino do payload da (última trama da) resposta.
+     * @param connection Ligação que enviou o pedido (para as respostas em blocos).
+     * @param reply      Resposta do pedido.
+     * @param requestId  Identificador do pedido.
+     * @throws IOException Se o pedido for inválido ou a operação falhar.
+     */
+    private void execute(byte op, DataInputStream request, DataOutputStream response, Connection connection,
+            Reply reply, int requestId) throws IOException {
+        switch (op) {
+            case BinaryBarrelTransport.OP_PING:
+                break;
+            case BinaryBarrelTransport.OP_STORE:
+                barrel.storeSiteData(SiteDataCodec.read(request));
+                break;
+            case BinaryBarrelTransport.OP_DELETE: {
+                boolean propagated = request.readBoolean();
+                barrel.deleteSiteData(WireFormat.readString(request), propagated);
+                break;
+            }
+            case BinaryBarrelTransport.OP_GET_SITE_DATA:
+                writeChunked(barrel.getSiteDataSet(), SiteDataCodec::write, response, connection, reply, requestId);
+                break;
+            case BinaryBarrelTransport.OP_GET_URL_TEXTS:
+                writeChunked(barrel.getUrlTexts().entrySet(), (out, entry) -> {
+                    WireFormat.writeString(out, entry.getKey());
+                    WireFormat.writeString(out, entry.getValue());
+                }, response, connection, reply, requestId);
+                break;
+            default:
+                throw new IOException("Operação desconhecida: " + op);
+        }
+    }
+
+    /**
+     * Fecha uma ligação de cliente.
+     *
+     * @param key Chave da ligação.
+     */
+    private void closeConnection(SelectionKey key) {
+        Connection connection = (Connection) key.attachment();
+        if (connection != null) {
+            synchronized (connection) {
+                connection.closed = true;
+                connection.notifyAll(); // Respostas em blocos deixam de esperar
+            }
+        }
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // Ignorado: a ligação já está a ser descartada
+        }
+    }
+
+    /**
+     * Para o servidor e fecha todas as ligações.
+     */
+    @Override
+    public void close() {
+        running = false;
+        workers.shutdownNow();
+        replicaWorker.shutdownNow();
+        selector.wakeup();
+    }
+}
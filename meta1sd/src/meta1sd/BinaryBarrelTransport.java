@@ -0,0 +1,322 @@
+package meta1sd;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.rmi.server.RMISocketFactory;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * BinaryBarrelTransport - Cliente do protocolo binário das barrels
+ * ({@link BinaryBarrelServer}).
+ * Cada pedido é uma trama prefixada pelo comprimento:
+ * {@code [int comprimento][byte operação][int id][payload]}, e cada resposta
+ * {@code [int comprimento][byte estado][int id][payload]}. Os envios em lote
+ * seguem em pipeline, com até {@link #PIPELINE_WINDOW} pedidos sem resposta.
+ * As respostas com o estado completo da barrel chegam em várias tramas
+ * {@link #STATUS_MORE} e terminam numa trama {@link #STATUS_OK}, cada uma com
+ * {@code [varint n][n elementos]}.
+ * As ligações são partilhadas por endpoint e reabertas após um erro.
+ */
+public class BinaryBarrelTransport implements BarrelTransport, Closeable {
+    static final byte OP_PING = 0;
+    static final byte OP_STORE = 1;
+    static final byte OP_GET_SITE_DATA = 2;
+    static final byte OP_GET_URL_TEXTS = 6; // 3-5: operações removidas, não reutilizar
+    static final byte OP_DELETE = 7;
+
+    static final byte STATUS_OK = 0;
+    static final byte STATUS_ERROR = 1;
+    static final byte STATUS_MORE = 2; // Bloco de uma resposta que continua na trama seguinte
+
+    // Limite de uma trama de pedido: uma página ou operação, nunca um estado completo
+    static final int MAX_REQUEST_BYTES = 8 * 1024 * 1024;
+    // Limite de uma trama de resposta: um bloco do estado (até CHUNK_BYTES mais uma página)
+    static final int MAX_RESPONSE_BYTES = 2 * MAX_REQUEST_BYTES;
+    private static final int PIPELINE_WINDOW = 64; // Pedidos em voo num envio em lote
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Endpoint anunciado por cada barrel ("" se não tiver transporte binário)
+    private static final Map<RMIIndexStorageBarrel, String> endpoints = new ConcurrentHashMap<>();
+    // Ligações abertas, por endpoint
+    private static final Map<String, BinaryBarrelTransport> connections = new ConcurrentHashMap<>();
+
+    private final String endpoint;
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private int nextRequestId;
+    private boolean moreFrames; // A última trama recebida é um bloco de uma resposta que continua
+
+    /**
+     * Escreve o payload de um pedido.
+     */
+    @FunctionalInterface
+    private interface Payload {
+        void write(DataOutput out) throws IOException;
+    }
+
+    /**
+     * Lê um elemento de uma resposta em blocos.
+     */
+    @FunctionalInterface
+    private interface ItemReader {
+        void read(DataInputStream in) throws IOException;
+    }
+
+    /**
+     * Abre uma ligação ao endpoint indicado.
+     * Usa a fábrica de sockets RMI instalada, para herdar os mesmos timeouts.
+     *
+     * @param endpoint Endpoint no formato host:porta.
+     * @throws IOException Se não for possível ligar.
+     */
+    private BinaryBarrelTransport(String endpoint) throws IOException {
+        int separator = endpoint.lastIndexOf(':');
+        if (separator <= 0) {
+            throw new IOException("Endpoint binário inválido: " + endpoint);
+        }
+        String host = endpoint.substring(0, separator);
+        int port = Integer.parseInt(endpoint.substring(separator + 1));
+
+        RMISocketFactory factory = RMISocketFactory.getSocketFactory();
+        if (factory == null) {
+            factory = RMISocketFactory.getDefaultSocketFactory();
+        }
+        this.endpoint = endpoint;
+        this.socket = factory.createSocket(host, port);
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+    }
+
+    /**
+     * Obtém o transporte binário de uma barrel, se ela anunciar um endpoint.
+     *
+     * @param barrel Referência RMI da barrel.
+     * @return O transporte, ou null se a barrel só aceitar RMI.
+     * @throws IOException Se ocorrer um erro ao obter o endpoint ou ao ligar.
+     */
+    static BinaryBarrelTransport forBarrel(RMIIndexStorageBarrel barrel) throws IOException {
+        String endpoint = endpoints.get(barrel);
+        if (endpoint == null) {
+            endpoint = barrel.getDataEndpoint();
+            endpoint = endpoint == null ? "" : endpoint;
+            endpoints.put(barrel, endpoint);
+        }
+        if (endpoint.isEmpty()) {
+            return null;
+        }
+        try {
+            return connect(endpoint);
+        } catch (IOException e) {
+            endpoints.remove(barrel); // A barrel pode ter reiniciado noutra porta
+            throw e;
+        }
+    }
+
+    /**
+     * Obtém uma ligação (partilhada) a um endpoint binário.
+     *
+     * @param endpoint Endpoint no formato host:porta.
+     * @return O transporte ligado.
+     * @throws IOException Se não for possível ligar.
+     */
+    public static BinaryBarrelTransport connect(String endpoint) throws IOException {
+        BinaryBarrelTransport transport = connections.get(endpoint);
+        if (transport != null && !transport.socket.isClosed()) {
+            return transport;
+        }
+        synchronized (connections) {
+            transport = connections.get(endpoint);
+            if (transport == null || transport.socket.isClosed()) {
+                transport = new BinaryBarrelTransport(endpoint);
+                connections.put(endpoint, transport);
+            }
+            return transport;
+        }
+    }
+
+    /**
+     * Verifica se a barrel responde no transporte binário.
+     *
+     * @throws IOException Se a barrel não responder.
+     */
+    public void ping() throws IOException {
+        call(OP_PING, null);
+    }
+
+    @Override
+    public void storeSiteData(SiteData siteData) throws IOException {
+        call(OP_STORE, body -> SiteDataCodec.write(body, siteData));
+    }
+
+    @Override
+    public synchronized void storeSiteData(List<SiteData> batch) throws IOException {
+        try {
+            int firstId = nextRequestId;
+            int sent = 0;
+            int acknowledged = 0;
+            while (acknowledged < batch.size()) {
+                // Mantém a janela de pedidos em voo cheia
+                while (sent < batch.size() && sent - acknowledged < PIPELINE_WINDOW) {
+                    SiteData siteData = batch.get(sent);
+                    send(OP_STORE, firstId + sent, body -> SiteDataCodec.write(body, siteData));
+                    sent++;
+                }
+                out.flush();
+                receive(firstId + acknowledged);
+                acknowledged++;
+            }
+            nextRequestId = firstId + sent;
+        } catch (IOException e) {
+            close(); // Restam respostas por ler; a ligação não pode ser reutilizada
+            throw e;
+        }
+    }
+
+    @Override
+    public void deleteSiteData(String url, boolean propagated) throws IOException {
+        call(OP_DELETE, body -> {
+            body.writeBoolean(propagated);
+            WireFormat.writeString(body, url);
+        });
+    }
+
+    @Override
+    public Set<SiteData> getSiteDataSet() throws IOException {
+        Set<SiteData> siteData = new HashSet<>();
+        callChunked(OP_GET_SITE_DATA, body -> siteData.add(SiteDataCodec.read(body)));
+        return siteData;
+    }
+
+    @Override
+    public Map<String, String> getUrlTexts() throws IOException {
+        Map<String, String> texts = new HashMap<>();
+        callChunked(OP_GET_URL_TEXTS, body -> texts.put(WireFormat.readString(body), WireFormat.readString(body)));
+        return texts;
+    }
+
+    /**
+     * Envia um pedido e espera pela resposta.
+     *
+     * @param op      Código da operação.
+     * @param payload Payload do pedido (pode ser null).
+     * @return O payload da resposta.
+     * @throws IOException Se ocorrer um erro de comunicação ou a barrel devolver
+     *                     erro.
+     */
+    private synchronized DataInputStream call(byte op, Payload payload) throws IOException {
+        try {
+            int requestId = nextRequestId++;
+            send(op, requestId, payload);
+            out.flush();
+            return receive(requestId);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Envia um pedido cuja resposta chega em blocos e lê os elementos de cada
+     * bloco à medida que chegam.
+     *
+     * @param op     Código da operação.
+     * @param reader Lê um elemento.
+     * @throws IOException Se ocorrer um erro de comunicação ou a barrel devolver
+     *                     erro (mesmo a meio da resposta).
+     */
+    private synchronized void callChunked(byte op, ItemReader reader) throws IOException {
+        try {
+            int requestId = nextRequestId++;
+            send(op, requestId, null);
+            out.flush();
+            do {
+                DataInputStream body = receive(requestId);
+                int count = WireFormat.checkLength(body, WireFormat.readVarInt(body));
+                for (int i = 0; i < count; i++) {
+                    reader.read(body);
+                }
+            } while (moreFrames);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Escreve uma trama de pedido no buffer de saída (sem flush).
+     *
+     * @param op        Código da operação.
+     * @param requestId Identificador do pedido.
+     * @param payload   Payload do pedido (pode ser null).
+     * @throws IOException Se ocorrer um erro de escrita.
+     */
+    private void send(byte op, int requestId, Payload payload) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+        DataOutputStream body = new DataOutputStream(buffer);
+        body.writeByte(op);
+        body.writeInt(requestId);
+        if (payload != null) {
+            payload.write(body);
+        }
+        out.writeInt(buffer.size());
+        buffer.writeTo(out);
+    }
+
+    /**
+     * Lê a trama de resposta a um pedido (ou o próximo bloco, indicado em
+     * {@link #moreFrames}).
+     *
+     * @param requestId Identificador esperado.
+     * @return O payload da resposta.
+     * @throws IOException Se a resposta for inválida ou indicar erro.
+     */
+    private DataInputStream receive(int requestId) throws IOException {
+        int length = in.readInt();
+        if (length < 5 || length > MAX_RESPONSE_BYTES) {
+            throw new IOException("Trama inválida de " + endpoint + " (" + length + " bytes)");
+        }
+        // readNBytes reserva memória à medida que os dados chegam, não pelo comprimento anunciado
+        byte[] frame = in.readNBytes(length);
+        if (frame.length < length) {
+            throw new EOFException("Trama incompleta de " + endpoint);
+        }
+        DataInputStream body = new WireFormat.FrameInput(frame);
+        byte status = body.readByte();
+        int id = body.readInt();
+        if (id != requestId) {
+            throw new IOException("Resposta " + id + " recebida quando se esperava " + requestId);
+        }
+        if (status != STATUS_OK && status != STATUS_MORE) {
+            throw new IOException("Erro na barrel " + endpoint + ": " + WireFormat.readString(body));
+        }
+        moreFrames = status == STATUS_MORE;
+        return body;
+    }
+
+    /**
+     * Fecha a ligação e remove-a das ligações partilhadas.
+     */
+    @Override
+    public void close() {
+        connections.remove(endpoint, this);
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Ignorado: a ligação já está a ser descartada
+        }
+    }
+}
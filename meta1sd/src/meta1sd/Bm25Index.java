@@ -0,0 +1,662 @@
+package meta1sd;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Bm25Index - Estatísticas de relevância de uma barrel: frequência de cada
+ * termo em cada página (postings) e comprimento de cada página.
+ * Calcula o BM25 das páginas que contêm todos os termos da pesquisa, somado a
+ * uma prior de popularidade (links de entrada), e devolve apenas as k melhores.
+ * A pesquisa segue a estratégia MaxScore: os termos são avaliados do mais raro
+ * para o mais comum e uma página é descartada assim que nem a soma dos limites
+ * superiores dos termos restantes a consegue colocar entre as k melhores.
+ * <p>
+ * O índice está organizado em segmentos (estilo LSM): as escritas vão para um
+ * buffer em memória que, ao atingir {@code flushDocs} páginas, é congelado num
+ * {@link IndexSegment} imutável. Uma página atualizada é escrita no buffer e
+ * marcada como apagada no segmento onde estava. Uma thread em segundo plano
+ * funde os segmentos por níveis de tamanho ({@code mergeFactor} segmentos do
+ * mesmo nível dão um do nível seguinte), eliminando as páginas apagadas.
+ * As pesquisas leem um snapshot (buffer + lista de segmentos) publicado de
+ * forma atómica, sem locks, pelo que não esperam pelas escritas nem pelas
+ * fusões. Os segmentos ficam na heap: não há segmentos em disco.
+ */
+public class Bm25Index {
+    private static final Log LOG = Log.get("barrel");
+
+    /**
+     * Resultado de uma pesquisa: URL e pontuação final.
+     */
+    public static class ScoredPage {
+        public final String url;
+        public final double score;
+
+        ScoredPage(String url, double score) {
+            this.url = url;
+            this.score = score;
+        }
+    }
+
+    /**
+     * Buffer de escrita: postings mutáveis das páginas ainda não congeladas.
+     */
+    private static final class WriteBuffer {
+        final Map<String, Map<String, Integer>> postings = new ConcurrentHashMap<>(); // Termo -> URL -> tf
+        final Map<String, String[]> pageTerms = new ConcurrentHashMap<>(); // URL -> termos
+        final Map<String, int[]> pageFreqs = new ConcurrentHashMap<>(); // URL -> frequências
+
+        void add(String url, String[] terms, int[] freqs) {
+            for (int i = 0; i < terms.length; i++) {
+                postings.computeIfAbsent(terms[i], k -> new ConcurrentHashMap<>()).put(url, freqs[i]);
+            }
+            pageTerms.put(url, terms);
+            pageFreqs.put(url, freqs);
+        }
+
+        void remove(String url) {
+            String[] terms = pageTerms.remove(url);
+            pageFreqs.remove(url);
+            if (terms == null) {
+                return;
+            }
+            for (String term : terms) {
+                postings.computeIfPresent(term, (k, urls) -> {
+                    urls.remove(url);
+                    return urls.isEmpty() ? null : urls;
+                });
+            }
+        }
+
+        int docFreq(String term) {
+            Map<String, Integer> urls = postings.get(term);
+            return urls == null ? 0 : urls.size();
+        }
+    }
+
+    /**
+     * Versão do índice lida pelas pesquisas.
+     */
+    private static final class Snapshot {
+        final WriteBuffer buffer;
+        final List<IndexSegment> segments; // Imutável
+
+        Snapshot(WriteBuffer buffer, List<IndexSegment> segments) {
+            this.buffer = buffer;
+            this.segments = segments;
+        }
+    }
+
+    /**
+     * Localização atual de uma página: segmento e id local (segmento null = buffer).
+     */
+    private static final class Location {
+        final IndexSegment segment;
+        final int doc;
+        final int length;
+
+        Location(IndexSegment segment, int doc, int length) {
+            this.segment = segment;
+            this.doc = doc;
+            this.length = length;
+        }
+    }
+
+    private final Object writeLock = new Object(); // Serializa escritas e publicação de fusões
+    private volatile Snapshot snapshot = new Snapshot(new WriteBuffer(), List.of());
+    private final Map<String, Location> locations = new ConcurrentHashMap<>(); // URL -> versão atual
+    private final AtomicLong totalLength = new AtomicLong();
+
+    private volatile double k1 = 1.2; // Saturação da frequência dos termos
+    private volatile double b = 0.75; // Peso da normalização pelo comprimento
+    private volatile int flushDocs = 1000; // Páginas no buffer antes de congelar um segmento
+    private volatile int mergeFactor = 10; // Segmentos do mesmo nível que disparam uma fusão
+
+    private final AtomicBoolean mergeScheduled = new AtomicBoolean();
+    private ExecutorService merger; // Criado na primeira fusão
+
+    /**
+     * Define os parâmetros do BM25.
+     *
+     * @param k1 Saturação da frequência dos termos (tipicamente 1.2).
+     * @param b  Normalização pelo comprimento, entre 0 e 1 (tipicamente 0.75).
+     */
+    public void setParameters(double k1, double b) {
+        this.k1 = k1;
+        this.b = b;
+    }
+
+    /**
+     * Define a política de segmentos.
+     *
+     * @param flushDocs   Páginas no buffer antes de congelar um segmento.
+     * @param mergeFactor Número de segmentos do mesmo nível fundidos de uma vez
+     *                    (mínimo 2).
+     */
+    public void setSegmentPolicy(int flushDocs, int mergeFactor) {
+        this.flushDocs = Math.max(1, flushDocs);
+        this.mergeFactor = Math.max(2, mergeFactor);
+    }
+
+    /**
+     * Adiciona (ou substitui) as estatísticas de uma página.
+     *
+     * @param url       URL da página.
+     * @param terms     Termos distintos da página.
+     * @param termFreqs Frequência de cada termo (null = 1 para todos).
+     */
+    public void addDocument(String url, String[] terms, int[] termFreqs) {
+        int[] freqs = new int[terms.length];
+        int length = 0;
+        for (int i = 0; i < terms.length; i++) {
+            freqs[i] = termFreqs != null && i < termFreqs.length ? Math.max(1, termFreqs[i]) : 1;
+            length += freqs[i];
+        }
+
+        synchronized (writeLock) {
+            // A versão anterior é apagada antes de a nova ficar visível, para que uma
+            // pesquisa concorrente nunca veja as duas
+            removeLocked(url);
+            Snapshot current = snapshot;
+            current.buffer.add(url, terms, freqs);
+            locations.put(url, new Location(null, -1, length));
+            totalLength.addAndGet(length);
+            if (current.buffer.pageTerms.size() >= flushDocs) {
+                flushLocked();
+            }
+        }
+    }
+
+    /**
+     * Remove as estatísticas de uma página.
+     *
+     * @param url URL da página.
+     */
+    public void removeDocument(String url) {
+        synchronized (writeLock) {
+            removeLocked(url);
+        }
+    }
+
+    /**
+     * Congela o buffer de escrita num segmento, mesmo que não esteja cheio.
+     */
+    public void flush() {
+        synchronized (writeLock) {
+            flushLocked();
+        }
+    }
+
+    /**
+     * Remove todas as estatísticas.
+     */
+    public void clear() {
+        synchronized (writeLock) {
+            snapshot = new Snapshot(new WriteBuffer(), List.of());
+            locations.clear();
+            totalLength.set(0);
+        }
+    }
+
+    /**
+     * Retorna o número de páginas com estatísticas.
+     *
+     * @return Número de páginas.
+     */
+    public int size() {
+        return locations.size();
+    }
+
+    /**
+     * Retorna o número de termos distintos presentes em páginas não apagadas.
+     *
+     * @return Número de termos.
+     */
+    public int termCount() {
+        Snapshot current = snapshot;
+        if (current.segments.isEmpty()) {
+            return current.buffer.postings.size();
+        }
+        Set<String> terms = new HashSet<>(current.buffer.postings.keySet());
+        for (IndexSegment segment : current.segments) {
+            for (int t = 0; t < segment.terms.length; t++) {
+                if (segment.docFreqAt(t) > 0) {
+                    terms.add(segment.terms[t]);
+                }
+            }
+        }
+        return terms.size();
+    }
+
+    /**
+     * Retorna uma cópia do índice invertido (termo -> URLs das páginas não
+     * apagadas que o contêm), montada a partir do buffer e dos segmentos.
+     *
+     * @return Mapa termo -> URLs.
+     */
+    public Map<String, Set<String>> invertedIndex() {
+        Snapshot current = snapshot;
+        Map<String, Set<String>> result = new HashMap<>();
+        for (Map.Entry<String, Map<String, Integer>> entry : current.buffer.postings.entrySet()) {
+            result.computeIfAbsent(entry.getKey(), k -> new HashSet<>()).addAll(entry.getValue().keySet());
+        }
+        for (IndexSegment segment : current.segments) {
+            for (int t = 0; t < segment.terms.length; t++) {
+                if (segment.docFreqAt(t) == 0) {
+                    continue;
+                }
+                Set<String> urls = result.computeIfAbsent(segment.terms[t], k -> new HashSet<>());
+                for (int p = segment.termStarts[t]; p < segment.termStarts[t + 1]; p++) {
+                    if (!segment.isDeleted(segment.docs[p])) {
+                        urls.add(segment.urls[segment.docs[p]]);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Retorna o número de segmentos imutáveis.
+     *
+     * @return Número de segmentos.
+     */
+    public int segmentCount() {
+        return snapshot.segments.size();
+    }
+
+    /**
+     * Remove a versão atual de uma página. Chamado com {@link #writeLock}.
+     */
+    private void removeLocked(String url) {
+        Location location = locations.remove(url);
+        if (location == null) {
+            return;
+        }
+        totalLength.addAndGet(-location.length);
+        if (location.segment == null) {
+            snapshot.buffer.remove(url);
+        } else {
+            location.segment.delete(location.doc);
+            if (location.segment.liveDocs() * 2 < location.segment.size()) {
+                scheduleMerge(); // Reescreve o segmento sem esperar pelo próximo flush
+            }
+        }
+    }
+
+    /**
+     * Congela o buffer num segmento e publica um novo snapshot. Chamado com
+     * {@link #writeLock}.
+     */
+    private void flushLocked() {
+        Snapshot current = snapshot;
+        WriteBuffer buffer = current.buffer;
+        if (buffer.pageTerms.isEmpty()) {
+            return;
+        }
+        List<String> urls = new ArrayList<>(buffer.pageTerms.keySet());
+        List<String[]> terms = new ArrayList<>(urls.size());
+        List<int[]> freqs = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            terms.add(buffer.pageTerms.get(url));
+            freqs.add(buffer.pageFreqs.get(url));
+        }
+        IndexSegment segment = IndexSegment.build(urls, terms, freqs);
+        for (int doc = 0; doc < segment.size(); doc++) {
+            locations.put(segment.urls[doc], new Location(segment, doc, segment.lengths[doc]));
+        }
+
+        List<IndexSegment> segments = new ArrayList<>(current.segments);
+        segments.add(segment);
+        snapshot = new Snapshot(new WriteBuffer(), List.copyOf(segments));
+        scheduleMerge();
+    }
+
+    /**
+     * Agenda uma verificação da política de fusão, se ainda não houver uma
+     * pendente.
+     */
+    private void scheduleMerge() {
+        if (!mergeScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        if (merger == null) {
+            merger = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "index-merge");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        merger.execute(() -> {
+            mergeScheduled.set(false);
+            try {
+                List<IndexSegment> selected;
+                while ((selected = selectMerge(snapshot.segments)) != null) {
+                    merge(selected);
+                }
+            } catch (Exception e) {
+                LOG.error("❌ Erro ao fundir segmentos do índice: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Política de fusão por níveis: o nível de um segmento é
+     * {@code floor(log_mergeFactor(páginas vivas / flushDocs))}; quando um nível
+     * tem {@code mergeFactor} segmentos, os mais pequenos (em páginas totais,
+     * que não mudam) são fundidos. Sem fusões por fazer, um segmento com mais de
+     * metade das páginas apagadas é reescrito sozinho (ou descartado, se já não
+     * tiver páginas vivas).
+     *
+     * @param segments Segmentos atuais.
+     * @return Os segmentos a fundir, ou null se não houver nada a fazer.
+     */
+    private List<IndexSegment> selectMerge(List<IndexSegment> segments) {
+        int factor = mergeFactor;
+        Map<Integer, List<IndexSegment>> tiers = new TreeMap<>();
+        for (IndexSegment segment : segments) {
+            int tier = 0;
+            for (long size = (long) flushDocs * factor; segment.liveDocs() >= size; size *= factor) {
+                tier++;
+            }
+            tiers.computeIfAbsent(tier, k -> new ArrayList<>()).add(segment);
+        }
+        for (List<IndexSegment> tier : tiers.values()) {
+            if (tier.size() >= factor) {
+                tier.sort(Comparator.comparingInt(IndexSegment::size));
+                return tier.subList(0, factor);
+            }
+        }
+        for (IndexSegment segment : segments) {
+            if (segment.liveDocs() * 2 < segment.size()) {
+                return List.of(segment);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Funde segmentos (fora do lock) e publica o resultado, aplicando as
+     * remoções feitas entretanto.
+     *
+     * @param selected Segmentos a fundir.
+     */
+    private void merge(List<IndexSegment> selected) {
+        int[][] remap = new int[selected.size()][];
+        IndexSegment merged = IndexSegment.merge(selected, remap);
+
+        synchronized (writeLock) {
+            Snapshot current = snapshot;
+            if (!current.segments.containsAll(selected)) {
+                return; // O índice foi limpo entretanto
+            }
+            // Só as páginas cuja versão atual continua a ser a dos segmentos fundidos
+            // passam para o novo segmento; as restantes ficam apagadas nele
+            for (int s = 0; s < selected.size(); s++) {
+                IndexSegment source = selected.get(s);
+                for (int doc = 0; doc < remap[s].length; doc++) {
+                    int newDoc = remap[s][doc];
+                    if (newDoc < 0) {
+                        continue;
+                    }
+                    String url = source.urls[doc];
+                    Location location = locations.get(url);
+                    if (location != null && location.segment == source && location.doc == doc) {
+                        locations.put(url, new Location(merged, newDoc, location.length));
+                    } else {
+                        merged.delete(newDoc);
+                    }
+                }
+            }
+            List<IndexSegment> segments = new ArrayList<>(current.segments);
+            segments.removeAll(selected);
+            if (merged.size() > 0) {
+                segments.add(merged);
+            }
+            snapshot = new Snapshot(current.buffer, List.copyOf(segments));
+        }
+    }
+
+    /**
+     * Pesquisa as k páginas mais relevantes que contêm todos os termos.
+     *
+     * @param terms    Termos (já analisados) da pesquisa.
+     * @param k        Número máximo de resultados (0 = todos).
+     * @param prior    Pontuação de popularidade de cada URL (não negativa).
+     * @param excluded URLs a ignorar (páginas apagadas ainda por purgar).
+     * @return As páginas por ordem decrescente de pontuação.
+     */
+    public List<ScoredPage> search(List<String> terms, int k, ToDoubleFunction<String> prior,
+            Set<String> excluded) {
+        int termCount = terms.size();
+        if (termCount == 0) {
+            return new ArrayList<>();
+        }
+        Snapshot current = snapshot;
+
+        // Número de páginas vivas de cada termo em todo o índice; se algum não
+        // existir nenhuma página contém todos
+        String[] ordered = terms.toArray(new String[0]);
+        int[] docFreqs = new int[termCount];
+        for (int i = 0; i < termCount; i++) {
+            docFreqs[i] = current.buffer.docFreq(ordered[i]);
+            for (IndexSegment segment : current.segments) {
+                docFreqs[i] += segment.docFreq(ordered[i]);
+            }
+            if (docFreqs[i] == 0) {
+                return new ArrayList<>();
+            }
+        }
+        // Do termo mais raro (maior idf) para o mais comum
+        Integer[] order = new Integer[termCount];
+        for (int i = 0; i < termCount; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingInt(i -> docFreqs[i]));
+
+        double n = Math.max(1, locations.size());
+        Query query = new Query(k, prior, excluded);
+        query.avgLength = Math.max(1.0, (double) totalLength.get() / n);
+        query.k1 = this.k1;
+        query.b = this.b;
+        query.terms = new String[termCount];
+        query.idf = new double[termCount];
+        query.remainingBound = new double[termCount + 1];
+        for (int i = 0; i < termCount; i++) {
+            query.terms[i] = ordered[order[i]];
+            double df = docFreqs[order[i]];
+            query.idf[i] = Math.log(1 + (n - df + 0.5) / (df + 0.5));
+        }
+        for (int i = termCount - 1; i >= 0; i--) {
+            query.remainingBound[i] = query.remainingBound[i + 1] + query.idf[i] * (query.k1 + 1); // tf/(tf+K) < 1
+        }
+
+        query.searchBuffer(current.buffer);
+        for (IndexSegment segment : current.segments) {
+            query.searchSegment(segment);
+        }
+        return query.results();
+    }
+
+    /**
+     * Estado de uma pesquisa: parâmetros, termos ordenados e as k melhores
+     * páginas encontradas até ao momento (partilhadas entre segmentos, pelo que
+     * a poda aproveita o limiar dos segmentos já percorridos).
+     */
+    private static final class Query {
+        final int limit;
+        final ToDoubleFunction<String> prior;
+        final Set<String> excluded;
+        final PriorityQueue<ScoredPage> top = new PriorityQueue<>(Comparator.comparingDouble(page -> page.score));
+        final Set<String> seen = new HashSet<>(); // Uma página atualizada durante a pesquisa conta uma vez
+        double threshold = Double.NEGATIVE_INFINITY;
+        String[] terms;
+        double[] idf;
+        double[] remainingBound; // Soma dos limites dos termos i..fim
+        double avgLength;
+        double k1;
+        double b;
+
+        Query(int k, ToDoubleFunction<String> prior, Set<String> excluded) {
+            this.limit = k > 0 ? k : Integer.MAX_VALUE;
+            this.prior = prior;
+            this.excluded = excluded;
+        }
+
+        boolean pruned(double score, int nextTerm) {
+            return top.size() >= limit && score + remainingBound[nextTerm] <= threshold;
+        }
+
+        double termScore(int i, int tf, double norm) {
+            return idf[i] * tf * (k1 + 1) / (tf + norm);
+        }
+
+        void searchBuffer(WriteBuffer buffer) {
+            @SuppressWarnings("unchecked")
+            Map<String, Integer>[] lists = new Map[terms.length];
+            for (int i = 0; i < terms.length; i++) {
+                lists[i] = buffer.postings.get(terms[i]);
+                if (lists[i] == null || lists[i].isEmpty()) {
+                    return;
+                }
+            }
+            for (Map.Entry<String, Integer> candidate : lists[0].entrySet()) {
+                String url = candidate.getKey();
+                if (excluded.contains(url)) {
+                    continue;
+                }
+                double score = prior.applyAsDouble(url);
+                if (pruned(score, 0)) {
+                    continue; // Nem com todos os termos no máximo entraria no top-k
+                }
+                int[] freqs = buffer.pageFreqs.get(url);
+                int length = 0;
+                if (freqs != null) {
+                    for (int tf : freqs) {
+                        length += tf;
+                    }
+                }
+                double norm = k1 * (1 - b + b * length / avgLength);
+                boolean matches = true;
+                for (int i = 0; i < terms.length; i++) {
+                    Integer tf = i == 0 ? candidate.getValue() : lists[i].get(url);
+                    if (tf == null) {
+                        matches = false; // Não contém todos os termos
+                        break;
+                    }
+                    score += termScore(i, tf, norm);
+                    if (pruned(score, i + 1)) {
+                        matches = false; // Poda MaxScore
+                        break;
+                    }
+                }
+                if (matches) {
+                    offer(url, score);
+                }
+            }
+        }
+
+        void searchSegment(IndexSegment segment) {
+            int[] position = new int[terms.length];
+            int[] end = new int[terms.length];
+            for (int i = 0; i < terms.length; i++) {
+                int t = segment.find(terms[i]);
+                if (t < 0) {
+                    return;
+                }
+                position[i] = segment.termStarts[t];
+                end[i] = segment.termStarts[t + 1];
+            }
+            candidates: for (int p = position[0]; p < end[0]; p++) {
+                int doc = segment.docs[p];
+                if (segment.isDeleted(doc)) {
+                    continue;
+                }
+                String url = segment.urls[doc];
+                if (excluded.contains(url)) {
+                    continue;
+                }
+                double score = prior.applyAsDouble(url);
+                if (pruned(score, 0)) {
+                    continue;
+                }
+                double norm = k1 * (1 - b + b * segment.lengths[doc] / avgLength);
+                score += termScore(0, segment.freqs[p], norm);
+                for (int i = 1; i < terms.length; i++) {
+                    if (pruned(score, i)) {
+                        continue candidates; // Poda MaxScore
+                    }
+                    // As listas estão ordenadas por id: avança até ao primeiro >= doc
+                    position[i] = advance(segment.docs, position[i], end[i], doc);
+                    if (position[i] == end[i]) {
+                        break candidates; // Nenhuma página seguinte contém este termo
+                    }
+                    if (segment.docs[position[i]] != doc) {
+                        continue candidates;
+                    }
+                    score += termScore(i, segment.freqs[position[i]], norm);
+                }
+                if (!pruned(score, terms.length)) {
+                    offer(url, score);
+                }
+            }
+        }
+
+        /**
+         * Procura exponencial seguida de binária da primeira posição com id >= doc.
+         */
+        static int advance(int[] docs, int from, int to, int doc) {
+            int step = 1;
+            int low = from;
+            int high = from;
+            while (high < to && docs[high] < doc) {
+                low = high + 1;
+                high = from + step;
+                step <<= 1;
+            }
+            high = Math.min(high, to);
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (docs[middle] < doc) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        void offer(String url, double score) {
+            if (!seen.add(url)) {
+                return;
+            }
+            top.add(new ScoredPage(url, score));
+            if (top.size() > limit) {
+                top.poll();
+            }
+            if (top.size() >= limit) {
+                threshold = top.peek().score;
+            }
+        }
+
+        List<ScoredPage> results() {
+            List<ScoredPage> result = new ArrayList<>(top);
+            result.sort(Comparator.comparingDouble((ScoredPage page) -> page.score).reversed());
+            return result;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package meta1sd;
+
+import java.util.Arrays;
+
+/**
+ * CdsTraining - Execução de treino de um componente para gerar o seu arquivo
+ * CDS (AppCDS).
+ * Corre o main do componente numa thread à parte e termina a JVM ao fim do
+ * tempo indicado; com {@code -XX:ArchiveClassesAtExit=<arquivo>.jsa} a JVM
+ * grava à saída as classes carregadas durante o arranque. O arquivo só é usado
+ * com o mesmo JDK e o mesmo classpath (o jar do componente):
+ *
+ * <pre>
+ * java -XX:ArchiveClassesAtExit=gateway.jsa -cp meta1sd-gateway.jar meta1sd.CdsTraining 0 30 meta1sd.RMIGateway gateway.properties
+ * java -XX:SharedArchiveFile=gateway.jsa -jar meta1sd-gateway.jar gateway.properties
+ * </pre>
+ */
+public final class CdsTraining {
+
+    private CdsTraining() {
+    }
+
+    /**
+     * Ponto de entrada.
+     *
+     * @param args Espera inicial em segundos (ex.: até o gateway arrancar),
+     *             duração do treino em segundos, classe do componente e os seus
+     *             argumentos.
+     * @throws Exception Se a classe do componente não existir.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Uso: java meta1sd.CdsTraining <espera_s> <duração_s> <classe> [argumentos...]");
+            System.exit(1);
+        }
+        long delayMs = (long) (Double.parseDouble(args[0]) * 1000);
+        long durationMs = (long) (Double.parseDouble(args[1]) * 1000);
+        Class<?> mainClass = Class.forName(args[2]);
+        String[] componentArgs = Arrays.copyOfRange(args, 3, args.length);
+
+        Thread.sleep(delayMs);
+        Thread component = new Thread(() -> {
+            try {
+                mainClass.getMethod("main", String[].class).invoke(null, (Object) componentArgs);
+            } catch (ReflectiveOperationException e) {
+                e.printStackTrace();
+            }
+        }, "cds-training");
+        component.setDaemon(true);
+        component.start();
+
+        Thread.sleep(durationMs);
+        System.out.println("CDS: treino de " + mainClass.getSimpleName() + " concluído");
+        System.exit(0); // A JVM grava o arquivo à saída
+    }
+}
@@ -0,0 +1,126 @@
+package meta1sd;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * CountMinSketch - Estimativa da frequência de chaves em memória fixa.
+ * Cada chave incrementa um contador em cada uma das {@code depth} linhas (uma
+ * função de hash por linha); a estimativa é o menor desses contadores, pelo
+ * que nunca é inferior à frequência real e o erro é no máximo
+ * {@code 2 * total / width} com probabilidade {@code 1 - 2^-depth}.
+ * Os contadores são atualizados com operações atómicas (sem locks). Dois
+ * sketches com as mesmas dimensões podem ser fundidos somando os contadores,
+ * o que permite juntar as contagens de vários gateways.
+ */
+public class CountMinSketch implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int width; // Contadores por linha (potência de 2)
+    private final int depth; // Número de linhas (funções de hash)
+    private final AtomicLongArray counts; // depth * width contadores
+
+    /**
+     * Construtor do sketch.
+     *
+     * @param width Contadores por linha (arredondado para uma potência de 2).
+     * @param depth Número de linhas.
+     */
+    public CountMinSketch(int width, int depth) {
+        int size = Math.max(16, width);
+        this.width = Integer.bitCount(size) == 1 ? size : Integer.highestOneBit(size) << 1;
+        this.depth = Math.max(1, depth);
+        this.counts = new AtomicLongArray(this.width * this.depth);
+    }
+
+    /**
+     * Conta uma ocorrência de uma chave.
+     *
+     * @param key Chave.
+     * @return A nova estimativa da frequência da chave.
+     */
+    public long add(String key) {
+        long hash = hash(key);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counts.incrementAndGet(index(hash, row)));
+        }
+        return estimate;
+    }
+
+    /**
+     * Estima a frequência de uma chave (nunca inferior à real).
+     *
+     * @param key Chave.
+     * @return A estimativa.
+     */
+    public long estimate(String key) {
+        long hash = hash(key);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counts.get(index(hash, row)));
+        }
+        return estimate;
+    }
+
+    /**
+     * Divide todos os contadores por 2, para que as contagens antigas percam
+     * peso face às recentes.
+     */
+    public void halve() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.updateAndGet(i, count -> count >>> 1);
+        }
+    }
+
+    /**
+     * Soma os contadores de outro sketch a este.
+     *
+     * @param other Sketch com as mesmas dimensões.
+     * @throws IllegalArgumentException Se as dimensões forem diferentes.
+     */
+    public void merge(CountMinSketch other) {
+        if (other.width != width || other.depth != depth) {
+            throw new IllegalArgumentException("Sketches com dimensões diferentes: " + width + "x" + depth
+                    + " e " + other.width + "x" + other.depth);
+        }
+        for (int i = 0; i < counts.length(); i++) {
+            counts.addAndGet(i, other.counts.get(i));
+        }
+    }
+
+    /**
+     * Posição do contador de uma linha: cada linha mistura o hash da chave com
+     * uma constante diferente, para que duas chaves que colidem numa linha não
+     * colidam também nas outras.
+     */
+    private int index(long hash, int row) {
+        return row * width + (int) (mix(hash + (row + 1) * 0x9e3779b97f4a7c15L) & (width - 1));
+    }
+
+    /**
+     * Hash de 64 bits da chave (FNV-1a dos bytes UTF-8 com mistura final), igual
+     * em todos os processos para que os sketches possam ser fundidos.
+     */
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Mistura final de 64 bits (murmur3), que espalha todos os bits de entrada
+     * pelos bits de saída.
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -2,11 +2,14 @@ package meta1sd;
 
 import org.jsoup.HttpStatusException;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.rmi.Naming;
 import java.rmi.RemoteException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Element;
@@ -21,7 +24,27 @@ import org.jsoup.select.Elements;
 public class Downloader {
     private static final int RETRY_DELAY = 5000; // Atraso em milissegundos antes de tentar reconectar
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final Log LOG = Log.get("downloader"); // Mensagens por URL (DEBUG limitado)
+
+    // Métricas (exportadas em /metrics quando metricsPort está configurado)
+    private static final Metrics.Histogram FETCH_TIME = Metrics.timer("downloader_fetch_seconds",
+            "Duração do download e parsing de uma página");
+    private static final Metrics.Counter PAGES_FETCHED = Metrics.counter("downloader_pages_fetched_total",
+            "Páginas descarregadas com sucesso");
+    private static final Metrics.Counter FETCH_ERRORS = Metrics.counter("downloader_fetch_errors_total",
+            "Páginas que não foi possível descarregar");
+    private static final Metrics.Counter PAGES_SENT = Metrics.counter("downloader_pages_sent_total",
+            "Páginas enviadas para as barrels");
+    private static final Metrics.Histogram POP_TIME = Metrics.timer("rmi_call_seconds",
+            "Duração das chamadas RMI feitas por este processo", "method", "popqueue");
+    private static final Metrics.Histogram QUEUE_TIME = Metrics.timer("rmi_call_seconds",
+            "Duração das chamadas RMI feitas por este processo", "method", "queueUrls");
+    private static final Metrics.Histogram RANDOM_BARREL_TIME = Metrics.timer("rmi_call_seconds",
+            "Duração das chamadas RMI feitas por este processo", "method", "getRandomBarrel");
+    private static final Metrics.Histogram STORE_TIME = Metrics.timer("rmi_call_seconds",
+            "Duração das chamadas RMI feitas por este processo", "method", "storeSiteData");
     private RMIGatewayIBSDownloader gatewayibs; // Gateway RMI para armazenar dados
+    private String dataTransport = "rmi"; // Transporte usado para enviar dados às barrels
 
     /**
      * Construtor padrão da classe Downloader.
@@ -59,7 +82,7 @@ public class Downloader {
      */
     private boolean sendToBarrels(SiteData siteData) {
         if (gatewayibs == null) {
-            System.err.println(getTimestamp() + " : ❌ Erro: Gateway não configurado. Não é possível enviar dados.");
+            LOG.error("❌ Erro: Gateway não configurado. Não é possível enviar dados.");
             return false;
         }
 
@@ -69,18 +92,17 @@ public class Downloader {
         for (int attempt = 1; attempt <= MAX_RETRIES; attempt++) {
             try {
                 // Solicita um barrel aleatório do gateway
-                System.out.printf(
-                        "[%s] 🔄 Tentativa %d de %d: Solicitando barrel aleatória do gateway...%n",
-                        getTimestamp(),
-                        attempt, MAX_RETRIES);
+                final int currentAttempt = attempt;
+                LOG.debug(() -> "🔄 Tentativa " + currentAttempt + " de " + MAX_RETRIES
+                        + ": Solicitando barrel aleatória do gateway...");
 
+                long start = System.nanoTime();
                 RMIIndexStorageBarrel barrel = gatewayibs.getRandomBarrel();
+                RANDOM_BARREL_TIME.recordSince(start);
 
                 if (barrel == null) {
-                    System.out.printf(
-                            "[%s] ⚠️ Nenhuma barrel disponível no momento. Aguardando %dms antes de tentar novamente...%n",
-                            getTimestamp(),
-                            waitTime);
+                    LOG.warn("⚠️ Nenhuma barrel disponível no momento. Aguardando " + waitTime
+                            + "ms antes de tentar novamente...");
 
                     // Aguardar antes de tentar novamente com backoff exponencial
                     Thread.sleep(waitTime);
@@ -89,21 +111,17 @@ public class Downloader {
                 }
 
                 // Tenta enviar os dados do site para o barrel obtido
-                barrel.storeSiteData(siteData);
+                start = System.nanoTime();
+                BarrelTransport.forBarrel(barrel, dataTransport).storeSiteData(siteData);
+                STORE_TIME.recordSince(start);
+                PAGES_SENT.inc();
 
-                System.out.printf(
-                        "[%s] ✅ Sucesso: SiteData enviado para barrel - URL: %s%n",
-                        getTimestamp(),
-                        siteData.url);
+                LOG.debug(() -> "✅ Sucesso: SiteData enviado para barrel - URL: " + siteData.url);
 
                 return true;
 
-            } catch (RemoteException e) {
-                System.err.printf(
-                        "[%s] ❌ Erro: Falha ao enviar SiteData - URL: %s - Erro: %s%n",
-                        getTimestamp(),
-                        siteData.url,
-                        e.getMessage());
+            } catch (IOException e) {
+                LOG.error("❌ Erro: Falha ao enviar SiteData - URL: " + siteData.url + " - Erro: " + e.getMessage());
 
                 // A exceção já foi tratada no gateway, que deve ter removido o barrel
                 // problemático
@@ -122,15 +140,33 @@ public class Downloader {
             }
         }
 
-        System.err.printf(
-                "[%s] ❌ Falha: Não foi possível enviar SiteData após %d tentativas - URL: %s%n",
-                getTimestamp(),
-                MAX_RETRIES,
-                siteData.url);
+        LOG.error("❌ Falha: Não foi possível enviar SiteData após " + MAX_RETRIES + " tentativas - URL: "
+                + siteData.url);
 
         return false;
     }
 
+    /**
+     * Pede a uma barrel que apague uma página que deixou de existir (a barrel
+     * propaga o pedido às restantes).
+     * 
+     * @param url URL da página.
+     */
+    private void deleteFromBarrels(String url) {
+        if (gatewayibs == null) {
+            return;
+        }
+        try {
+            RMIIndexStorageBarrel barrel = gatewayibs.getRandomBarrel();
+            if (barrel != null) {
+                BarrelTransport.forBarrel(barrel, dataTransport).deleteSiteData(url, false);
+                LOG.info("🪦 Pedido de remoção enviado - URL: " + url);
+            }
+        } catch (IOException e) {
+            LOG.error("❌ Erro: Falha ao pedir remoção - URL: " + url + " - Erro: " + e.getMessage());
+        }
+    }
+
     /**
      * Método principal para iniciar a aplicação Downloader.
      * Inicializa as propriedades, conecta-se ao gateway RMI
@@ -159,6 +195,16 @@ public class Downloader {
             System.out.println(downloader.getTimestamp() + " : Carregando arquivo de propriedades");
             prop.load(input);
             System.out.println(downloader.getTimestamp() + " : Arquivo de propriedades carregado");
+            Log.configure(prop);
+            // Métricas: metricsPort (0 escolhe uma porta livre; negativa ou ausente desativa)
+            // em metricsHost (por omissão só o loopback)
+            String metricsHost = prop.getProperty("metricsHost", "127.0.0.1").trim();
+            int metricsPort = Metrics.startServer(metricsHost,
+                    Integer.parseInt(prop.getProperty("metricsPort", "-1").trim()));
+            if (metricsPort >= 0) {
+                System.out.println(downloader.getTimestamp() + " : 📊 Métricas em http://" + metricsHost + ":"
+                        + metricsPort + "/metrics");
+            }
 
             // Carrega as propriedades do arquivo
             registryN = prop.getProperty("registryN");
@@ -171,6 +217,12 @@ public class Downloader {
             maxSizeTitle = Integer.parseInt(prop.getProperty("maxSizeTitle"));
             maxSizeTokens = Integer.parseInt(prop.getProperty("maxSizeTokens"));
 
+            // Timeouts nos sockets RMI para não ficar bloqueado numa barrel ou gateway lenta
+            RMITimeoutSocketFactory.install(prop);
+            downloader.dataTransport = prop.getProperty("dataTransport", "rmi").trim();
+            // Analyzer da indexação (tem de coincidir com o das barrels)
+            Analyzer.setDefault(Analyzer.fromProperties(prop));
+
             RMIGatewayDownloaderInterface gateway = null;
             RMIGatewayIBSDownloader gatewayibs = null;
 
@@ -192,27 +244,30 @@ public class Downloader {
                     while (true) {
                         SiteData siteData = new SiteData();
                         try {
+                            long popStart = System.nanoTime();
                             siteData.url = gateway.popqueue(); // Recupera uma URL da fila
-                            System.out.println(downloader.getTimestamp() + " : Tentando pegar queue: " + siteData.url);
+                            POP_TIME.recordSince(popStart);
+                            LOG.debug(() -> "Tentando pegar queue: " + siteData.url);
 
                             if (siteData.url == null) {
-                                Thread.sleep(1000); // Aguardar se nenhuma URL estiver disponível
-                                continue;
+                                continue; // A gateway já esperou por uma URL; tentar de novo
                             }
 
                             // Valida a URL antes de tentar conectar
                             if (!siteData.url.startsWith("http://") && !siteData.url.startsWith("https://")) {
-                                System.out.println(
-                                        downloader.getTimestamp() + " : URL inválida ignorada: " + siteData.url);
+                                LOG.debug(() -> "URL inválida ignorada: " + siteData.url);
                                 continue;
                             }
 
+                            long fetchStart = System.nanoTime();
                             try {
                                 // Conecta-se à URL e busca o documento
                                 Document doc = Jsoup.connect(siteData.url)
                                         .timeout(10000) // Timeout de 10 segundos
                                         .userAgent("Mozilla/5.0") // User agent para evitar bloqueios
                                         .get();
+                                FETCH_TIME.recordSince(fetchStart);
+                                PAGES_FETCHED.inc();
 
                                 // Processa o título
                                 try {
@@ -221,11 +276,9 @@ public class Downloader {
                                     int lim = Math.min(maxSizeTitle, size.length);
                                     title = new String(size, 0, lim);
                                     siteData.title = title.replace("\n", " ");
-                                    System.out.println(downloader.getTimestamp() + " : Title: " + siteData.title);
+                                    LOG.debug(() -> "Title: " + siteData.title);
                                 } catch (Exception e) {
-                                    System.out.println(
-                                            downloader.getTimestamp() + " : Erro ao processar título: "
-                                                    + e.getMessage());
+                                    LOG.warn("Erro ao processar título: " + e.getMessage());
                                     siteData.title = ""; // Define o título como vazio em caso de erro
                                 }
 
@@ -236,11 +289,9 @@ public class Downloader {
                                     int lim = Math.min(maxSizeText, size.length);
                                     String textCit = new String(size, 0, lim);
                                     siteData.text = textCit.replace("\n", " ");
-                                    System.out.println(downloader.getTimestamp() + " : Text processado");
+                                    LOG.debug("Text processado");
                                 } catch (Exception e) {
-                                    System.out.println(
-                                            downloader.getTimestamp() + " : Erro ao processar texto: "
-                                                    + e.getMessage());
+                                    LOG.warn("Erro ao processar texto: " + e.getMessage());
                                     siteData.text = ""; // Define o texto como vazio em caso de erro
                                 }
 
@@ -251,39 +302,41 @@ public class Downloader {
                                     byte[] size = token.getBytes();
                                     int lim = Math.min(maxSizeTokens, size.length);
                                     token = new String(size, 0, lim);
-                                    siteData.tokens = token.toLowerCase().replace("\n", " ");
-                                    System.out.println(downloader.getTimestamp() + " : Tokens processados");
+                                    // Tokeniza uma única vez aqui; as barrels recebem apenas os termos
+                                    siteData.tokens = token;
+                                    Tokenizer.tokenize(siteData);
+                                    siteData.tokens = "";
+                                    LOG.debug(() -> "Tokens processados (" + siteData.terms.length + " termos)");
                                 } catch (Exception e) {
-                                    System.out.println(
-                                            downloader.getTimestamp() + " : Erro ao processar tokens: "
-                                                    + e.getMessage());
+                                    LOG.warn("Erro ao processar tokens: " + e.getMessage());
                                     siteData.tokens = ""; // Define os tokens como vazios em caso de erro
+                                    siteData.terms = new String[0];
+                                    siteData.termFreqs = new int[0];
                                 }
 
                                 // Processa links
                                 try {
                                     Elements links = doc.select("a[href]");
-                                    StringBuilder coupleLinks = new StringBuilder();
+                                    List<String> outlinks = new ArrayList<>(links.size());
                                     for (Element link : links) {
                                         String href = link.attr("abs:href");
                                         if (href != null && !href.isEmpty() &&
                                                 (href.startsWith("http://") || href.startsWith("https://"))) {
-                                            coupleLinks.append(href).append(" ");
+                                            outlinks.add(href);
                                             try {
+                                                long queueStart = System.nanoTime();
                                                 gateway.queueUrls(href); // Adiciona a URL encontrada à fila
+                                                QUEUE_TIME.recordSince(queueStart);
                                             } catch (Exception e) {
-                                                System.out.println(downloader.getTimestamp()
-                                                        + " : Erro ao adicionar URL à fila: " + href);
+                                                LOG.debug(() -> "Erro ao adicionar URL à fila: " + href);
                                             }
                                         }
                                     }
-                                    siteData.links = coupleLinks.toString().replace("\n", " ");
-                                    System.out.println(downloader.getTimestamp() + " : Links processados");
+                                    siteData.outlinks = outlinks.toArray(new String[0]);
+                                    LOG.debug("Links processados");
                                 } catch (Exception e) {
-                                    System.out.println(
-                                            downloader.getTimestamp() + " : Erro ao processar links: "
-                                                    + e.getMessage());
-                                    siteData.links = ""; // Define os links como vazios em caso de erro
+                                    LOG.warn("Erro ao processar links: " + e.getMessage());
+                                    siteData.outlinks = new String[0]; // Define os links como vazios em caso de erro
                                 }
 
                                 // Tenta enviar os dados processados para os barrels
@@ -292,19 +345,24 @@ public class Downloader {
                                 }
 
                             } catch (org.jsoup.HttpStatusException e) {
-                                System.out.println(downloader.getTimestamp() + " : A URL (" + siteData.url
-                                        + ") retornou status " + e.getStatusCode());
+                                FETCH_ERRORS.inc();
+                                LOG.debug(() -> "A URL (" + siteData.url + ") retornou status " + e.getStatusCode());
+                                if (e.getStatusCode() == 404 || e.getStatusCode() == 410) {
+                                    // A página deixou de existir: remove-a do índice
+                                    downloader.deleteFromBarrels(siteData.url);
+                                }
                             } catch (java.net.MalformedURLException e) {
-                                System.out.println(downloader.getTimestamp() + " : URL mal formada: " + siteData.url);
+                                FETCH_ERRORS.inc();
+                                LOG.debug(() -> "URL mal formada: " + siteData.url);
                             } catch (java.net.UnknownHostException e) {
-                                System.out.println(downloader.getTimestamp() + " : Host desconhecido: " + siteData.url);
+                                FETCH_ERRORS.inc();
+                                LOG.debug(() -> "Host desconhecido: " + siteData.url);
                             } catch (java.net.SocketTimeoutException e) {
-                                System.out
-                                        .println(downloader.getTimestamp() + " : Timeout ao acessar: " + siteData.url);
+                                FETCH_ERRORS.inc();
+                                LOG.debug(() -> "Timeout ao acessar: " + siteData.url);
                             } catch (Exception e) {
-                                System.out
-                                        .println(downloader.getTimestamp() + " : Erro ao processar URL " + siteData.url
-                                                + ": " + e.getMessage());
+                                FETCH_ERRORS.inc();
+                                LOG.warn("Erro ao processar URL " + siteData.url + ": " + e.getMessage());
                             }
 
                         } catch (RemoteException e) {
@@ -0,0 +1,249 @@
+package meta1sd;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * HeavyHitters - Chaves mais frequentes de um fluxo (ex.: pesquisas) em
+ * memória limitada, combinando um {@link CountMinSketch} com o algoritmo
+ * Space-Saving.
+ * O sketch estima a frequência de qualquer chave; o Space-Saving acompanha as
+ * {@code capacity} chaves com maior estimativa num heap mínimo indexado. Uma
+ * chave nova só substitui a menos frequente do heap quando a sua estimativa é
+ * maior, pelo que pesquisas feitas uma única vez não expulsam as frequentes.
+ * Opcionalmente as contagens são divididas por 2 a cada {@code decayEvery}
+ * ocorrências, para que o top reflita a procura recente.
+ * <p>
+ * A lista ordenada do top é reconstruída só quando é lida depois de uma
+ * alteração, pelo que leituras repetidas custam tempo constante. Duas
+ * instâncias com as mesmas dimensões podem ser fundidas (ex.: vários
+ * gateways).
+ */
+public class HeavyHitters implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final CountMinSketch sketch;
+    private final int capacity;
+    private final long decayEvery; // 0 = sem decaimento
+    private long additions;
+
+    // Heap mínimo por contagem; positions dá a posição de cada chave no heap
+    private final String[] keys;
+    private final long[] counts;
+    private final Map<String, Integer> positions = new HashMap<>();
+    private int size;
+
+    // Top ordenado, reconstruído a pedido depois de alterações
+    private transient volatile List<SystemStats.QueryCount> ranking = Collections.emptyList();
+    private transient volatile boolean dirty;
+
+    /**
+     * Construtor.
+     *
+     * @param capacity    Número de chaves acompanhadas.
+     * @param sketchWidth Contadores por linha do sketch.
+     * @param sketchDepth Linhas do sketch.
+     * @param decayEvery  Ocorrências entre cada divisão das contagens por 2 (0
+     *                    desativa).
+     */
+    public HeavyHitters(int capacity, int sketchWidth, int sketchDepth, long decayEvery) {
+        this.sketch = new CountMinSketch(sketchWidth, sketchDepth);
+        this.capacity = Math.max(1, capacity);
+        this.decayEvery = Math.max(0, decayEvery);
+        this.keys = new String[this.capacity];
+        this.counts = new long[this.capacity];
+    }
+
+    /**
+     * Regista uma ocorrência de uma chave.
+     *
+     * @param key Chave (já normalizada).
+     * @return A frequência estimada da chave, incluindo esta ocorrência.
+     */
+    public long record(String key) {
+        long estimate = sketch.add(key);
+        synchronized (this) {
+            Integer position = positions.get(key);
+            if (position != null) {
+                counts[position] = Math.max(counts[position], estimate);
+                siftDown(position);
+            } else if (size < capacity) {
+                keys[size] = key;
+                counts[size] = estimate;
+                positions.put(key, size);
+                siftUp(size++);
+            } else if (estimate > counts[0]) {
+                positions.remove(keys[0]); // Substitui a chave menos frequente
+                keys[0] = key;
+                counts[0] = estimate;
+                positions.put(key, 0);
+                siftDown(0);
+            } else {
+                decayIfDue();
+                return estimate; // O top não mudou
+            }
+            dirty = true;
+            decayIfDue();
+        }
+        return estimate;
+    }
+
+    /**
+     * Estima a frequência de uma chave (nunca inferior à real).
+     *
+     * @param key Chave.
+     * @return A estimativa.
+     */
+    public long estimate(String key) {
+        return sketch.estimate(key);
+    }
+
+    /**
+     * Retorna as chaves mais frequentes, da mais frequente para a menos.
+     *
+     * @param n Número máximo de chaves.
+     * @return As chaves e as respetivas frequências estimadas.
+     */
+    public List<SystemStats.QueryCount> top(int n) {
+        List<SystemStats.QueryCount> current = ranking;
+        if (dirty) {
+            synchronized (this) {
+                if (dirty) {
+                    List<SystemStats.QueryCount> sorted = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        sorted.add(new SystemStats.QueryCount(keys[i], counts[i]));
+                    }
+                    sorted.sort(Comparator.comparingLong(SystemStats.QueryCount::getCount).reversed()
+                            .thenComparing(SystemStats.QueryCount::getQuery));
+                    ranking = Collections.unmodifiableList(sorted);
+                    dirty = false;
+                }
+                current = ranking;
+            }
+        }
+        return current.size() <= n ? current : current.subList(0, n);
+    }
+
+    /**
+     * Junta as contagens de outra instância com as mesmas dimensões: os sketches
+     * são somados e o top passa a ser formado pelas chaves de ambos com maior
+     * estimativa no sketch resultante.
+     *
+     * @param other A outra instância.
+     */
+    public void merge(HeavyHitters other) {
+        Set<String> candidates = new LinkedHashSet<>();
+        synchronized (other) {
+            for (int i = 0; i < other.size; i++) {
+                candidates.add(other.keys[i]);
+            }
+        }
+        synchronized (this) {
+            sketch.merge(other.sketch);
+            for (int i = 0; i < size; i++) {
+                candidates.add(keys[i]);
+            }
+            List<SystemStats.QueryCount> merged = new ArrayList<>(candidates.size());
+            for (String key : candidates) {
+                merged.add(new SystemStats.QueryCount(key, sketch.estimate(key)));
+            }
+            merged.sort(Comparator.comparingLong(SystemStats.QueryCount::getCount).reversed());
+            positions.clear();
+            size = Math.min(capacity, merged.size());
+            for (int i = 0; i < size; i++) {
+                keys[i] = merged.get(i).getQuery();
+                counts[i] = merged.get(i).getCount();
+            }
+            heapify();
+            dirty = true;
+        }
+    }
+
+    /**
+     * Divide as contagens por 2 a cada {@code decayEvery} ocorrências. Deve ser
+     * chamado com o lock da instância.
+     */
+    private void decayIfDue() {
+        if (decayEvery == 0 || ++additions % decayEvery != 0) {
+            return;
+        }
+        sketch.halve();
+        for (int i = 0; i < size; i++) {
+            counts[i] >>>= 1;
+        }
+        dirty = true; // A ordem relativa mantém-se, mas as contagens mudaram
+    }
+
+    /**
+     * Reconstrói o heap e as posições a partir dos arrays.
+     */
+    private void heapify() {
+        for (int i = 0; i < size; i++) {
+            positions.put(keys[i], i);
+        }
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (counts[parent] <= counts[i]) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && counts[left] < counts[smallest]) {
+                smallest = left;
+            }
+            if (right < size && counts[right] < counts[smallest]) {
+                smallest = right;
+            }
+            if (smallest == i) {
+                return;
+            }
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        String key = keys[a];
+        keys[a] = keys[b];
+        keys[b] = key;
+        long count = counts[a];
+        counts[a] = counts[b];
+        counts[b] = count;
+        positions.put(keys[a], a);
+        positions.put(keys[b], b);
+    }
+
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        ranking = Collections.emptyList();
+        dirty = true;
+    }
+}
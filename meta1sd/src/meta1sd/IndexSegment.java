@@ -0,0 +1,265 @@
+package meta1sd;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * IndexSegment - Segmento imutável do índice de relevância de uma barrel.
+ * Guarda os termos ordenados e, para cada termo, a lista de páginas (ids locais
+ * crescentes) e frequências em arrays contíguos, pelo que a procura de um termo
+ * é uma pesquisa binária e a interseção de listas avança apenas para a frente.
+ * A única parte mutável é o conjunto de páginas apagadas (substituídas por uma
+ * versão mais recente), marcado com operações atómicas, e o número de páginas
+ * vivas de cada termo, descontado ao apagar (com a lista de termos de cada
+ * página); as páginas apagadas só desaparecem quando o segmento é fundido com
+ * outros.
+ * Os segmentos existem apenas em memória (não há segmentos em disco); o
+ * estado persistente da barrel continua a ser o ficheiro JSON.
+ */
+public final class IndexSegment {
+    final String[] terms; // Termos, por ordem
+    final int[] termStarts; // Início das páginas de cada termo (tamanho terms.length + 1)
+    final int[] docs; // Ids locais das páginas, crescentes dentro de cada termo
+    final int[] freqs; // Frequência do termo em cada página
+    final String[] urls; // Id local -> URL
+    final int[] lengths; // Id local -> número de termos da página
+    private final int[] docTermStarts; // Início dos termos de cada página (tamanho urls.length + 1)
+    private final int[] docTerms; // Índices dos termos de cada página
+
+    private final AtomicLongArray deleted;
+    private final AtomicInteger deletedCount = new AtomicInteger();
+    private final AtomicIntegerArray liveDocFreqs; // Páginas vivas de cada termo
+
+    private IndexSegment(String[] terms, int[] termStarts, int[] docs, int[] freqs, String[] urls, int[] lengths) {
+        this.terms = terms;
+        this.termStarts = termStarts;
+        this.docs = docs;
+        this.freqs = freqs;
+        this.urls = urls;
+        this.lengths = lengths;
+        this.deleted = new AtomicLongArray((urls.length + 63) >>> 6);
+
+        // Lista direta página -> termos, a partir das listas de cada termo
+        docTermStarts = new int[urls.length + 1];
+        for (int doc : docs) {
+            docTermStarts[doc + 1]++;
+        }
+        for (int doc = 0; doc < urls.length; doc++) {
+            docTermStarts[doc + 1] += docTermStarts[doc];
+        }
+        docTerms = new int[docs.length];
+        int[] cursors = Arrays.copyOf(docTermStarts, urls.length);
+        int[] counts = new int[terms.length];
+        for (int t = 0; t < terms.length; t++) {
+            for (int p = termStarts[t]; p < termStarts[t + 1]; p++) {
+                docTerms[cursors[docs[p]]++] = t;
+            }
+            counts[t] = termStarts[t + 1] - termStarts[t];
+        }
+        liveDocFreqs = new AtomicIntegerArray(counts);
+    }
+
+    /**
+     * Cria um segmento a partir de páginas (o id local de cada uma é a sua
+     * posição na lista).
+     *
+     * @param urls      URL de cada página.
+     * @param pageTerms Termos distintos de cada página.
+     * @param pageFreqs Frequência de cada termo de cada página.
+     * @return O segmento.
+     */
+    static IndexSegment build(List<String> urls, List<String[]> pageTerms, List<int[]> pageFreqs) {
+        // 1ª passagem: número de páginas de cada termo
+        Map<String, int[]> counts = new HashMap<>();
+        int total = 0;
+        for (String[] page : pageTerms) {
+            for (String term : page) {
+                counts.computeIfAbsent(term, k -> new int[1])[0]++;
+            }
+            total += page.length;
+        }
+        String[] terms = counts.keySet().toArray(new String[0]);
+        Arrays.sort(terms);
+        int[] termStarts = new int[terms.length + 1];
+        for (int t = 0; t < terms.length; t++) {
+            int[] cursor = counts.get(terms[t]);
+            termStarts[t + 1] = termStarts[t] + cursor[0];
+            cursor[0] = termStarts[t]; // Passa a ser a próxima posição livre do termo
+        }
+
+        // 2ª passagem: as páginas são percorridas por id, pelo que cada lista fica
+        // ordenada
+        int[] docs = new int[total];
+        int[] freqs = new int[total];
+        int[] lengths = new int[urls.size()];
+        for (int doc = 0; doc < urls.size(); doc++) {
+            String[] page = pageTerms.get(doc);
+            int[] pageFreq = pageFreqs.get(doc);
+            for (int i = 0; i < page.length; i++) {
+                int position = counts.get(page[i])[0]++;
+                docs[position] = doc;
+                freqs[position] = pageFreq[i];
+                lengths[doc] += pageFreq[i];
+            }
+        }
+        return new IndexSegment(terms, termStarts, docs, freqs, urls.toArray(new String[0]), lengths);
+    }
+
+    /**
+     * Funde vários segmentos num só, sem as páginas apagadas.
+     *
+     * @param segments Segmentos a fundir.
+     * @param remap    Preenchido com o novo id de cada página de cada segmento
+     *                 ({@code remap[s][doc]}, -1 se estava apagada).
+     * @return O segmento resultante.
+     */
+    static IndexSegment merge(List<IndexSegment> segments, int[][] remap) {
+        // Novos ids: páginas vivas de cada segmento, pela ordem dos segmentos
+        List<String> urls = new ArrayList<>();
+        List<Integer> lengthList = new ArrayList<>();
+        int maxPostings = 0;
+        List<String> allTerms = new ArrayList<>();
+        for (int s = 0; s < segments.size(); s++) {
+            IndexSegment segment = segments.get(s);
+            remap[s] = new int[segment.urls.length];
+            for (int doc = 0; doc < segment.urls.length; doc++) {
+                if (segment.isDeleted(doc)) {
+                    remap[s][doc] = -1;
+                } else {
+                    remap[s][doc] = urls.size();
+                    urls.add(segment.urls[doc]);
+                    lengthList.add(segment.lengths[doc]);
+                }
+            }
+            maxPostings += segment.docs.length;
+            allTerms.addAll(Arrays.asList(segment.terms));
+        }
+        String[] terms = allTerms.stream().distinct().sorted().toArray(String[]::new);
+
+        // Listas de cada termo: concatenação das listas dos segmentos (os ids novos
+        // de um segmento são todos maiores que os do anterior, logo ficam ordenadas)
+        int[] termStarts = new int[terms.length + 1];
+        int[] docs = new int[maxPostings];
+        int[] freqs = new int[maxPostings];
+        int[] cursors = new int[segments.size()]; // Posição em segment.terms
+        int size = 0;
+        int kept = 0;
+        for (String term : terms) {
+            int start = size;
+            for (int s = 0; s < segments.size(); s++) {
+                IndexSegment segment = segments.get(s);
+                while (cursors[s] < segment.terms.length && segment.terms[cursors[s]].compareTo(term) < 0) {
+                    cursors[s]++;
+                }
+                if (cursors[s] == segment.terms.length || !segment.terms[cursors[s]].equals(term)) {
+                    continue;
+                }
+                int t = cursors[s];
+                for (int p = segment.termStarts[t]; p < segment.termStarts[t + 1]; p++) {
+                    int doc = remap[s][segment.docs[p]];
+                    if (doc >= 0) {
+                        docs[size] = doc;
+                        freqs[size] = segment.freqs[p];
+                        size++;
+                    }
+                }
+            }
+            if (size > start) { // Termos só de páginas apagadas desaparecem
+                terms[kept++] = term;
+                termStarts[kept] = size;
+            }
+        }
+
+        int[] lengths = new int[urls.size()];
+        for (int doc = 0; doc < lengths.length; doc++) {
+            lengths[doc] = lengthList.get(doc);
+        }
+        return new IndexSegment(Arrays.copyOf(terms, kept), Arrays.copyOf(termStarts, kept + 1),
+                Arrays.copyOf(docs, size), Arrays.copyOf(freqs, size), urls.toArray(new String[0]), lengths);
+    }
+
+    /**
+     * Procura um termo.
+     *
+     * @param term Termo.
+     * @return O índice do termo, ou negativo se não existir.
+     */
+    int find(String term) {
+        return Arrays.binarySearch(terms, term);
+    }
+
+    /**
+     * Retorna o número de páginas não apagadas que contêm o termo de um índice.
+     *
+     * @param t Índice do termo.
+     * @return Número de páginas vivas.
+     */
+    int docFreqAt(int t) {
+        return liveDocFreqs.get(t);
+    }
+
+    /**
+     * Retorna o número de páginas não apagadas que contêm um termo.
+     *
+     * @param term Termo.
+     * @return Número de páginas vivas.
+     */
+    int docFreq(String term) {
+        int t = find(term);
+        return t < 0 ? 0 : liveDocFreqs.get(t);
+    }
+
+    /**
+     * Verifica se uma página foi apagada.
+     *
+     * @param doc Id local.
+     * @return true se foi apagada.
+     */
+    boolean isDeleted(int doc) {
+        return (deleted.get(doc >>> 6) & (1L << doc)) != 0;
+    }
+
+    /**
+     * Marca uma página como apagada e desconta-a dos seus termos.
+     *
+     * @param doc Id local.
+     */
+    void delete(int doc) {
+        long bit = 1L << doc;
+        long word;
+        do {
+            word = deleted.get(doc >>> 6);
+            if ((word & bit) != 0) {
+                return;
+            }
+        } while (!deleted.compareAndSet(doc >>> 6, word, word | bit));
+        deletedCount.incrementAndGet();
+        for (int i = docTermStarts[doc]; i < docTermStarts[doc + 1]; i++) {
+            liveDocFreqs.decrementAndGet(docTerms[i]);
+        }
+    }
+
+    /**
+     * Retorna o número de páginas (incluindo apagadas).
+     *
+     * @return Número de páginas.
+     */
+    public int size() {
+        return urls.length;
+    }
+
+    /**
+     * Retorna o número de páginas não apagadas.
+     *
+     * @return Número de páginas vivas.
+     */
+    public int liveDocs() {
+        return urls.length - deletedCount.get();
+    }
+}
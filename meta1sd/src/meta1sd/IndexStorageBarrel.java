@@ -3,14 +3,18 @@ package meta1sd;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileWriter;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.rmi.Naming;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.AbstractMap;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -18,6 +22,13 @@ import java.util.HashSet;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -34,29 +45,96 @@ import com.google.gson.reflect.TypeToken;
 public class IndexStorageBarrel extends UnicastRemoteObject implements RMIIndexStorageBarrel {
     private static final long serialVersionUID = 1L;
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final Log LOG = Log.get("barrel"); // Caminho de atualização e pesquisa (DEBUG limitado)
+
+    // Métricas (exportadas em /metrics quando metricsPort está configurado)
+    private static final Metrics.Counter DOCS_INDEXED = Metrics.counter("barrel_docs_indexed_total",
+            "Páginas indexadas (recebidas de downloaders ou replicadas)");
+    private static final Metrics.Histogram UPDATE_TIME = Metrics.timer("barrel_update_seconds",
+            "Duração da indexação de uma página");
+    private static final Metrics.Histogram PAGE_POSTINGS = Metrics.histogram("barrel_page_postings",
+            "Termos distintos (postings) de cada página indexada");
+    private static final Metrics.Histogram QUERY_TIME = Metrics.timer("barrel_query_seconds",
+            "Duração das pesquisas por palavras");
+    private static final Metrics.Histogram REPLICATION_TIME = Metrics.timer("barrel_replication_seconds",
+            "Atraso da replicação de uma página para outra barrel (do envio à aplicação remota)");
+    private static final Metrics.Counter REPLICATION_FAILURES = Metrics.counter("barrel_replication_failures_total",
+            "Envios de réplicas que falharam");
 
     // Identificador único da barrel
     private final int barrelId;
 
-    // Locks para controle de concorrência
+    // Locks para controle de concorrência: o lock do índice é partilhado pelas
+    // atualizações de páginas (serializadas por URL com os locks em stripes) e
+    // exclusivo para operações sobre todo o índice
+    private static final int URL_LOCK_STRIPES = 64;
     private final ReadWriteLock indexLock = new ReentrantReadWriteLock();
     private final ReadWriteLock stateLock = new ReentrantReadWriteLock();
+    private final Object[] urlLocks = new Object[URL_LOCK_STRIPES];
+    private volatile boolean loadingState; // O estado está a ser lido do ficheiro (não há nada a gravar)
+
+    // Gravação do estado em segundo plano: as atualizações só marcam o estado como
+    // alterado e uma gravação agendada escreve todas as feitas até então
+    private final AtomicBoolean saveScheduled = new AtomicBoolean();
+    private volatile long stateSaveDelayMs = 1000; // Atraso entre a primeira alteração e a gravação
+    private final ScheduledExecutorService stateSaver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "state-save");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    {
+        for (int i = 0; i < URL_LOCK_STRIPES; i++) {
+            urlLocks[i] = new Object();
+        }
+    }
 
     // Referências para outras barrels no sistema - Thread-safe
     private final Map<Integer, RMIIndexStorageBarrel> barrels = new ConcurrentHashMap<>();
 
     // Estruturas para indexação e rastreamento - Thread-safe
-    private final Map<String, Set<String>> invertedIndex = new ConcurrentHashMap<>(); // Palavras -> URLs
     private final Map<String, Integer> urlReferences = new ConcurrentHashMap<>(); // URL -> contagem de referências
     private final Map<String, String> urlTexts = new ConcurrentHashMap<>(); // URL -> Texto associado
-    private final Map<String, List<String>> incomingLinks = new ConcurrentHashMap<>(); // URL -> Lista de URLs que
-                                                                                       // apontam para ela
+    private final LinkGraph linkGraph = new LinkGraph(); // Ligações entre URLs (ids inteiros)
+
+    // Páginas apagadas (404/410) escondidas das pesquisas até à purga em segundo plano
+    private final Set<String> tombstones = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService purgeScheduler;
+
+    // Estatísticas de relevância (frequências dos termos e comprimentos das páginas)
+    private final Bm25Index bm25 = new Bm25Index();
+    private volatile double linkPriorWeight = 0.5; // Peso da popularidade na pontuação final
+    private volatile int searchMaxResults = 0; // Limite de resultados por pesquisa (0 = todos)
+
+    // PageRank calculado em segundo plano (null se desativado) e versão do grafo de
+    // links, incrementada a cada alteração
+    private PageRankJob pageRank;
+    private ScheduledExecutorService pageRankScheduler;
+    private final AtomicLong linkGraphVersion = new AtomicLong();
+
+    // Versão imutável do grafo de links lida pelas consultas sem locks, recriada a
+    // pedido de uma consulta quando o grafo mudou, no máximo uma vez por intervalo
+    private final AtomicReference<LinkGraph.Snapshot> linkSnapshot = new AtomicReference<>(
+            LinkGraph.Snapshot.EMPTY);
+    private volatile long linkSnapshotTime; // Instante (ms) da criação do snapshot atual
+    private volatile long linkSnapshotIntervalMs; // Idade máxima de um snapshot desatualizado
+
+    // Envio periódico do tamanho do índice ao gateway (estatísticas do sistema)
+    private ScheduledExecutorService statsReportScheduler;
+
+    // Sites armazenados localmente (URL -> versão atual), lidos sem locks
+    private final Map<String, SiteData> siteDataByUrl = new ConcurrentHashMap<>();
+
+    // Transporte de dados usado para enviar para outras barrels ("rmi" ou "binary")
+    private String dataTransport = "rmi";
 
-    // Conjunto de sites armazenados localmente - Sincronizado externamente
-    private final Set<SiteData> siteDataSet = Collections.synchronizedSet(new HashSet<>());
+    // Servidor do transporte binário (null se desativado) e endpoint anunciado
+    private BinaryBarrelServer dataServer;
+    private String dataEndpoint;
 
     /**
-     * Retorna o índice invertido (palavra -> conjunto de URLs).
+     * Retorna o índice invertido (palavra -> conjunto de URLs), montado a partir
+     * das postings do índice de relevância.
      *
      * @return Mapa contendo o índice invertido.
      * @throws RemoteException Se ocorrer um erro de comunicação remota.
@@ -65,12 +143,7 @@ public class IndexStorageBarrel extends UnicastRemoteObject implements RMIIndexS
     public Map<String, Set<String>> getInvertedIndex() throws RemoteException {
         indexLock.readLock().lock();
         try {
-            // Retorna uma cópia para evitar modificações externas
-            Map<String, Set<String>> result = new ConcurrentHashMap<>();
-            for (Map.Entry<String, Set<String>> entry : invertedIndex.entrySet()) {
-                result.put(entry.getKey(), new HashSet<>(entry.getValue()));
-            }
-            return result;
+            return bm25.invertedIndex();
         } finally {
             indexLock.readLock().unlock();
         }
@@ -85,16 +158,9 @@ public class IndexStorageBarrel extends UnicastRemoteObject implements RMIIndexS
      */
     @Override
     public Map<String, List<String>> getIncomingLinksMap() throws RemoteException {
-        indexLock.readLock().lock();
-        try {
+        synchronized (linkGraph) {
             // Retorna uma cópia para evitar modificações externas
-            Map<String, List<String>> result = new ConcurrentHashMap<>();
-            for (Map.Entry<String, List<String>> entry : incomingLinks.entrySet()) {
-                result.put(entry.getKey(), new ArrayList<>(entry.getValue()));
-            }
-            return result;
-        } finally {
-            indexLock.readLock().unlock();
+            return linkGraph.toIncomingMap();
         }
     }
 
@@ -173,9 +239,13 @@ public class IndexStorageBarrel extends UnicastRemoteObject implements RMIIndexS
      */
     @Override
     public Set<SiteData> getSiteDataSet() throws RemoteException {
-        synchronized (siteDataSet) {
-            return new HashSet<>(siteDataSet);
+        Set<SiteData> result = new HashSet<>();
+        for (SiteData siteData : siteDataByUrl.values()) {
+            if (!tombstones.contains(siteData.url)) { // Páginas apagadas não são replicadas
+                result.add(siteData);
+            }
         }
+        return result;
     }
 
     /**
@@ -266,91 +336,57 @@ public class IndexStorageBarrel extends UnicastRemoteObject implements RMIIndexS
 
             // 0. Obter dados da barrel existente
             System.out.println(getTimestamp() + " : 🔄 Obtendo dados da barrel remota...");
-            Set<SiteData> existingSiteData = existingBarrel.getSiteDataSet();
-            Map<String, Set<String>> existingInvertedIndex = existingBarrel.getInvertedIndex();
-            Map<String, Integer> existingUrlReferences = existingBarrel.getUrlReferences();
-            Map<String, List<String>> existingIncomingLinks = existingBarrel.getIncomingLinksMap();
-            Map<String, String> existingUrlTexts = existingBarrel.getUrlTexts();
+            BarrelTransport transport = BarrelTransport.forBarrel(existingBarrel, dataTransport);
+            Set<SiteData> existingSiteData = transport.getSiteDataSet();
+            Map<String, String> existingUrlTexts = transport.getUrlTexts();
             System.out.println(getTimestamp() + " : ✅ Dados remotos obtidos.");
 
-            // 1. Fazer MERGE do siteDataSet (remoto sobrepõe local em caso de conflito de
+            // 1. Fazer MERGE dos sites (remoto sobrepõe local em caso de conflito de
             // URL)
             System.out.println(getTimestamp() + " : 🔄 Fazendo merge do SiteData...");
             if (existingSiteData != null) {
-                synchronized (siteDataSet) {
-                    for (SiteData remoteSiteData : existingSiteData) {
-                        remoteSiteData.setPropagated(true); // Marcar como já propagado
-                        // Remove duplicata local se existir, para usar a versão remota
-                        boolean removed = siteDataSet.removeIf(localSite -> localSite.url.equals(remoteSiteData.url));
-                        siteDataSet.add(remoteSiteData); // Adiciona a versão remota
-                        if (!removed) {
-                            totalItemsProcessed++; // Conta como novo item se não existia localmente
-                        }
+                for (SiteData remoteSiteData : existingSiteData) {
+                    remoteSiteData.setPropagated(true); // Marcar como já propagado
+                    // Substitui a versão local se existir, para usar a versão remota
+                    if (siteDataByUrl.put(remoteSiteData.url, remoteSiteData) == null) {
+                        totalItemsProcessed++; // Conta como novo item se não existia localmente
                     }
                 }
                 System.out.println(
                         getTimestamp() + " : ✅ SiteData merge concluído - " + existingSiteData.size()
-                                + " itens remotos processados. Tamanho atual: " + siteDataSet.size());
+                                + " itens remotos processados. Tamanho atual: " + siteDataByUrl.size());
             }
 
             // Usar write lock para atualização dos índices
             indexLock.writeLock().lock();
             try {
-                // 2. Fazer MERGE do índice invertido (palavras -> URLs)
-                System.out.println(getTimestamp() + " : 🔄 Fazendo merge do índice invertido...");
-                if (existingInvertedIndex != null) {
-                    for (Map.Entry<String, Set<String>> entry : existingInvertedIndex.entrySet()) {
-                        String word = entry.getKey();
-                        Set<String> remoteUrls = entry.getValue();
-                        if (remoteUrls == null || remoteUrls.isEmpty())
-                            continue;
-
-                        // Merge: adiciona URLs remotas ao conjunto local (Set lida com duplicatas)
-                        Set<String> localUrls = invertedIndex.computeIfAbsent(word,
-                                k -> ConcurrentHashMap.newKeySet()); // Usa set thread-safe
-                        localUrls.addAll(remoteUrls);
+                // 2. Índice invertido e frequências: reindexados a partir dos termos de
+                // cada página recebida, que substituem os da versão local (os termos que
+                // deixaram de aparecer são removidos)
+                System.out.println(getTimestamp() + " : 🔄 Reindexando termos das páginas remotas...");
+                if (existingSiteData != null) {
+                    for (SiteData remoteSiteData : existingSiteData) {
+                        tombstones.remove(remoteSiteData.url);
+                        reindexTerms(remoteSiteData.url, remoteSiteData.getTerms(), remoteSiteData.termFreqs);
                     }
-                    totalItemsProcessed += existingInvertedIndex.size(); // Conta palavras processadas
-                    System.out.println(getTimestamp() + " : ✅ Índice invertido merge concluído - "
-                            + existingInvertedIndex.size() + " palavras remotas processadas.");
+                    totalItemsProcessed += existingSiteData.size();
+                    System.out.println(getTimestamp() + " : ✅ Termos reindexados - " + bm25.termCount()
+                            + " palavras no índice.");
                 }
 
-                // 3. Fazer MERGE das referências de URLs (usando contagem máxima)
-                System.out.println(getTimestamp() + " : 🔄 Fazendo merge das referências de URLs...");
-                if (existingUrlReferences != null) {
-                    existingUrlReferences.forEach(
-                            (url, remoteCount) -> urlReferences.compute(url,
-                                    // Usa o maior valor entre o local e o remoto
-                                    (k, localCount) -> (localCount == null) ? remoteCount
-                                            : Math.max(localCount, remoteCount)));
-                    totalItemsProcessed += existingUrlReferences.size(); // Conta URLs processadas
-                    System.out.println(getTimestamp() + " : ✅ Referências de URLs merge concluído - "
-                            + existingUrlReferences.size() + " URLs remotas processadas.");
-                }
-
-                // 4. Fazer MERGE dos links de entrada (adicionando apenas links não existentes)
-                System.out.println(getTimestamp() + " : 🔄 Fazendo merge dos links de entrada...");
-                if (existingIncomingLinks != null) {
-                    for (Map.Entry<String, List<String>> entry : existingIncomingLinks.entrySet()) {
-                        String targetUrl = entry.getKey();
-                        List<String> remoteLinks = entry.getValue();
-                        if (remoteLinks == null || remoteLinks.isEmpty())
-                            continue;
-
-                        // Merge: adiciona links remotos que não existem localmente
-                        List<String> localLinks = incomingLinks.computeIfAbsent(targetUrl,
-                                k -> Collections.synchronizedList(new ArrayList<>())); // Usa lista thread-safe
-                        synchronized (localLinks) { // Sincroniza a lista específica para a verificação/adição
-                            for (String remoteLink : remoteLinks) {
-                                if (!localLinks.contains(remoteLink)) {
-                                    localLinks.add(remoteLink);
-                                }
-                            }
+                // 3/4. Links e contagens de referências: derivados das páginas recebidas
+                // (a versão remota de cada página substitui os seus links de saída), pelo
+                // que réplicas com as mesmas páginas ficam com o mesmo grafo
+                System.out.println(getTimestamp() + " : 🔄 Aplicando links das páginas remotas...");
+                if (existingSiteData != null) {
+                    int changedPages = 0;
+                    for (SiteData remoteSiteData : existingSiteData) {
+                        if (replaceOutlinks(remoteSiteData.url, remoteSiteData.getOutlinks())) {
+                            changedPages++;
                         }
                     }
-                    totalItemsProcessed += existingIncomingLinks.size(); // Conta URLs alvo processadas
-                    System.out.println(getTimestamp() + " : ✅ Links de entrada merge concluído - "
-                            + existingIncomingLinks.size() + " URLs alvo remotas processadas.");
+                    System.out.println(getTimestamp() + " : ✅ Links aplicados - " + changedPages
+                            + " páginas com links alterados, " + linkGraph.edgeCount() + " ligações.");
                 }
 
                 // 5. Fazer MERGE dos textos associados às URLs (mantendo texto local se
@@ -378,8 +414,8 @@ public class IndexStorageBarrel extends UnicastRemoteObject implements RMIIndexS
             System.out.println(getTimestamp() + " : ✅ Sincronização (merge) concluída em " + seconds + " segundos!");
             System.out.println(
                     getTimestamp() + " : 📊 Total de itens remotos processados (aproximado): " + totalItemsProcessed);
-            System.out.println(getTimestamp() + " : 📊 Estado final local - Sites: " + siteDataSet.size()
-                    + ", Palavras: " + invertedIndex.size() + ", Refs: " + urlReferences.size());
+            System.out.println(getTimestamp() + " : 📊 Estado final local - Sites: " + siteDataByUrl.size()
+                    + ", Palavras: " + bm25.termCount() + ", Refs: " + urlReferences.size());
 
             // Salvar o estado merged no arquivo local
             saveState("data/estado_barrel_" + barrelId + ".json");
@@ -467,7 +503,7 @@ public class IndexStorageBarrel extends UnicastRemoteObject implements RMIIndexS
      * @throws RemoteException Se ocorrer um erro de comunicação remota.
      */
     public void gatewaypong(String provider) throws RemoteException {
-        System.out.println(getTimestamp() + " : 🔔 " + provider + ":Pong");
+        LOG.debug(() -> "🔔 " + provider + ":Pong");
     }
 
     /**
@@ -479,13 +515,12 @@ public class IndexStorageBarrel extends UnicastRemoteObject implements RMIIndexS
      */
     @Override
     public void storeSiteData(SiteData siteData) throws RemoteException {
-        System.out.println(getTimestamp() + " : [Barrel " + barrelId + "] Recebendo storeSiteData para " + siteData.url
-                + " | isPropagated=" + siteData.isPropagated());
-
         if (siteData == null || siteData.url == null || siteData.url.isEmpty()) {
-            System.err.println(getTimestamp() + " : ⚠️ Tentativa de armazenar SiteData inválido");
+            LOG.warn("⚠️ Tentativa de armazenar SiteData inválido");
             return;
         }
+        LOG.debug(() -> "[Barrel " + barrelId + "] Recebendo storeSiteData para " + siteData.url
+                + " | isPropagated=" + siteData.isPropagated());
 
         // Se já foi propagado, apenas processa localmente
         if (siteData.isPropagated()) {
@@ -497,9 +532,7 @@ public class IndexStorageBarrel extends UnicastRemoteObject implements RMIIndexS
         processLocalUpdate(siteData);
 
         // Cria uma CÓPIA para propagar, marcando como propagado
-        SiteData copyToPropagate = new SiteData(siteData.url, siteData.tokens, siteData.links);
-        copyToPropagate.text = siteData.text;
-        copyToPropagate.title = siteData.title;
+        SiteData copyToPropagate = new SiteData(siteData);
         copyToPropagate.setPropagated(true); // Marca a CÓPIA como propagada
 
         // Propaga a CÓPIA para outras barrels (sem lock aqui)
@@ -513,94 +546,113 @@ public class IndexStorageBarrel extends UnicastRemoteObject implements RMIIndexS
      */
     private void processLocalUpdate(SiteData siteData) {
         if (siteData == null || siteData.url == null || siteData.url.isEmpty()) {
-            System.err.println(getTimestamp() + " : ⚠️ SiteData inválido para processamento local");
+            LOG.warn("⚠️ SiteData inválido para processamento local");
             return;
         }
 
-        System.out.println(getTimestamp() + " : 📝 Processando atualização local para URL: " + siteData.url);
+        LOG.debug(() -> "📝 Processando atualização local para URL: " + siteData.url);
+        long start = System.nanoTime();
 
-        // Adquirir write lock para atualizar os índices
-        indexLock.writeLock().lock();
+        // Termos e links calculados antes de qualquer lock (já tokenizados pelo
+        // downloader; dados antigos são tokenizados aqui uma única vez)
+        String[] terms = siteData.getTerms();
+        String[] outlinks = siteData.getOutlinks();
+
+        // Lock do índice em modo partilhado: atualizações de páginas diferentes correm
+        // em paralelo (só a purga, a sincronização e o carregamento são exclusivos);
+        // atualizações da mesma página são serializadas pelo lock da sua URL
+        indexLock.readLock().lock();
         try {
-            // 1. Armazenar metadados básicos
-            System.out.println(getTimestamp() + " : 🔍 Processando metadados para: " + siteData.url);
-
-            // Armazenar texto da página se disponível
-            if (siteData.text != null && !siteData.text.isEmpty()) {
-                urlTexts.put(siteData.url, siteData.text);
-                // System.out.println(getTimestamp() + " : 🧾 Texto armazenado (" +
-                // siteData.text.length() + " chars)");
-            }
+            synchronized (urlLock(siteData.url)) {
+                // 1. Armazenar metadados básicos
+                // Armazenar texto da página se disponível
+                if (siteData.text != null && !siteData.text.isEmpty()) {
+                    urlTexts.put(siteData.url, siteData.text);
+                    // System.out.println(getTimestamp() + " : 🧾 Texto armazenado (" +
+                    // siteData.text.length() + " chars)");
+                }
 
-            // 2. Processar tokens (palavras-chave)
-            if (siteData.tokens != null && !siteData.tokens.isEmpty()) {
-                // System.out.println(getTimestamp() + " : 🔠 Indexando tokens...");
-                indexTokens(siteData.tokens, siteData.url);
-            } else {
-                // System.out.println(getTimestamp() + " : ℹ️ Nenhum token para indexar");
-            }
+                // Uma página que volta a ser recebida deixa de estar marcada como apagada
+                tombstones.remove(siteData.url);
 
-            // 3. Processar links
-            if (siteData.links != null && !siteData.links.isEmpty()) {
-                // System.out.println(getTimestamp() + " : 🔗 Processando links...");
-                String[] links = siteData.links.split("\\s+");
-                int newLinks = 0;
-
-                for (String link : links) {
-                    if (link.isEmpty())
-                        continue;
-
-                    // Atualizar contagem de referências
-                    int newCount = urlReferences.compute(link, (k, v) -> (v == null) ? 1 : v + 1);
-                    // System.out.println(getTimestamp() + " : 🔗 Link encontrado: " + link
-                    // + " (contagem atual: " + newCount + ")");
-                    if (newCount == 1) {
-                        newLinks++;
-                        // System.out.println(getTimestamp() + " : 🔗 Novo link encontrado: " + link);
-                    }
+                // 2. Processar termos, aplicando só a diferença para a versão anterior da
+                // página (cada termo é atualizado atomicamente no mapa concorrente)
+                reindexTerms(siteData.url, terms, siteData.termFreqs);
 
-                    // Atualizar links de entrada
-                    List<String> incomingLinksList = incomingLinks.computeIfAbsent(link,
-                            k -> Collections.synchronizedList(new ArrayList<>()));
+                // 3. Processar links: aplica apenas a diferença entre os links anteriores e
+                // os atuais, para que recrawls e réplicas não inflacionem as contagens
+                replaceOutlinks(siteData.url, outlinks);
 
-                    synchronized (incomingLinksList) {
-                        if (!incomingLinksList.contains(siteData.url)) {
-                            incomingLinksList.add(siteData.url);
-                        }
-                    }
-                }
-                // System.out.println(getTimestamp() + " : ➕ " + newLinks + " novos links de " +
-                // links.length + " totais");
-            } else {
-                // System.out.println(getTimestamp() + " : ℹ️ Nenhum link para processar");
+                // 4. Atualizar conjunto principal de sites (substitui a versão anterior)
+                siteDataByUrl.put(siteData.url, siteData);
             }
+        } finally {
+            indexLock.readLock().unlock();
+        }
+        DOCS_INDEXED.inc();
+        PAGE_POSTINGS.record(terms.length);
+        UPDATE_TIME.recordSince(start);
 
-            // 4. Atualizar conjunto principal de sites
-            synchronized (siteDataSet) {
-                // Remover versão anterior se existir
-                boolean existed = siteDataSet.removeIf(site -> site.url.equals(siteData.url));
-                siteDataSet.add(siteData); // Adiciona a versão atual (pode ser a mesma ou nova)
-                // System.out.println(
-                // getTimestamp() + " : " + (existed ? "🔄 Atualizado" : "🆕 Novo") + " SiteData
-                // adicionado/atualizado");
-            }
+        // 5. Agendar a gravação do estado (em segundo plano, agrupando as
+        // atualizações feitas até lá)
+        requestSave();
+    }
 
-        } finally {
-            indexLock.writeLock().unlock();
+    /**
+     * Retorna o lock de uma URL (um de {@link #URL_LOCK_STRIPES}, escolhido pelo
+     * hash da URL).
+     *
+     * @param url URL da página.
+     * @return O objeto usado como lock.
+     */
+    private Object urlLock(String url) {
+        int hash = url.hashCode();
+        return urlLocks[(hash ^ (hash >>> 16)) & (URL_LOCK_STRIPES - 1)];
+    }
+
+    /**
+     * Agenda a gravação do estado da barrel e retorna de imediato. A gravação é
+     * feita pela thread {@code state-save} {@code stateSaveDelayMs} depois do
+     * primeiro pedido, incluindo todas as atualizações feitas até lá; um pedido
+     * feito durante uma gravação agenda a seguinte.
+     */
+    private void requestSave() {
+        if (loadingState) {
+            return; // O ficheiro já contém as páginas que estão a ser reindexadas
         }
+        if (!saveScheduled.compareAndSet(false, true)) {
+            return; // Já há uma gravação agendada
+        }
+        try {
+            stateSaver.schedule(this::saveStateNow, stateSaveDelayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            saveScheduled.set(false);
+        }
+    }
 
-        // 5. Salvar estado (com lock separado para evitar deadlocks)
-        // Considerar salvar estado com menos frequência para performance
+    /**
+     * Faz já a gravação agendada do estado, se houver uma, e espera pela que
+     * estiver em curso.
+     */
+    void saveStateNow() {
         stateLock.writeLock().lock();
         try {
-            // System.out.println(getTimestamp() + " : 💾 Salvando estado...");
-            saveState("data/estado_barrel_" + barrelId + ".json");
+            // As atualizações feitas a partir daqui agendam outra gravação
+            if (saveScheduled.getAndSet(false)) {
+                saveState("data/estado_barrel_" + barrelId + ".json");
+            }
         } finally {
             stateLock.writeLock().unlock();
         }
+    }
 
-        // System.out.println(getTimestamp() + " : ✅ Atualização local concluída para: "
-        // + siteData.url);
+    /**
+     * Lê o atraso da gravação do estado ({@code stateSaveDelayMs}).
+     *
+     * @param prop Propriedades da barrel.
+     */
+    private void configureStateSaves(Properties prop) {
+        stateSaveDelayMs = Long.parseLong(prop.getProperty("stateSaveDelayMs", "1000").trim());
     }
 
     /**
@@ -612,7 +664,7 @@ public class IndexStorageBarrel extends UnicastRemoteObject implements RMIIndexS
     public void propagateUpdate(SiteData siteData) throws RemoteException {
         // Garante que estamos propagando um objeto marcado
         if (!siteData.isPropagated()) {
-            System.err.println(getTimestamp() + " : ⚠️ ERRO INTERNO: Tentando propagar SiteData não marcado!");
+            LOG.warn("⚠️ ERRO INTERNO: Tentando propagar SiteData não marcado!");
             siteData.setPropagated(true); // Tenta corrigir
         }
 
@@ -624,8 +676,7 @@ public class IndexStorageBarrel extends UnicastRemoteObject implements RMIIndexS
             return;
         }
 
-        System.out.println(
-                getTimestamp() + " : 📤 Propagando atualização para " + barrelsSnapshot.size() + " outras barrels...");
+        LOG.debug(() -> "📤 Propagando atualização para " + barrelsSnapshot.size() + " outras barrels...");
         int successCount = 0;
         int failCount = 0;
 
@@ -634,69 +685,444 @@ public class IndexStorageBarrel extends UnicastRemoteObject implements RMIIndexS
             RMIIndexStorageBarrel targetBarrel = entry.getValue();
 
             try {
-                System.out.println(getTimestamp() + " : 📤 Enviando para barrel " + targetBarrelId + "...");
-                targetBarrel.storeSiteData(siteData); // Envia a cópia marcada
-                System.out.println(
-                        getTimestamp() + " : ✅ Atualização propagada com sucesso para barrel " + targetBarrelId);
+                long start = System.nanoTime();
+                BarrelTransport.forBarrel(targetBarrel, dataTransport).storeSiteData(siteData); // Envia a cópia marcada
+                REPLICATION_TIME.recordSince(start);
+                LOG.debug(() -> "✅ Atualização propagada com sucesso para barrel " + targetBarrelId);
                 successCount++;
-            } catch (RemoteException e) {
-                System.err.println(getTimestamp() + " : ❌ Falha ao propagar atualização para barrel " + targetBarrelId
-                        + ": " + e.getMessage());
+            } catch (IOException e) {
+                LOG.error("❌ Falha ao propagar atualização para barrel " + targetBarrelId + ": " + e.getMessage());
+                REPLICATION_FAILURES.inc();
                 failCount++;
 
                 // Tenta verificar se a barrel está realmente inativa antes de remover
                 try {
                     targetBarrel.gatewaypong("PropagateCheck" + barrelId);
                 } catch (RemoteException re) {
-                    System.err.println(
-                            getTimestamp() + " : ❌ Barrel " + targetBarrelId
-                                    + " não responde ao pong. Removendo do registro local.");
+                    LOG.error("❌ Barrel " + targetBarrelId + " não responde ao pong. Removendo do registro local.");
                     barrels.remove(targetBarrelId); // Remove do mapa original
                 }
             }
         }
 
-        System.out.println(
-                getTimestamp() + " : 📊 Propagação concluída - Sucesso: " + successCount + ", Falhas: " + failCount);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("📊 Propagação concluída - Sucesso: " + successCount + ", Falhas: " + failCount);
+        }
     }
 
     /**
-     * Indexa tokens (palavras) de uma página.
+     * Propaga várias atualizações para cada uma das outras barrels de uma só vez.
+     * Com o transporte binário os envios seguem em pipeline.
      *
-     * @param tokens Tokens a serem indexados.
-     * @param url    URL associada aos tokens.
+     * @param batch Dados a propagar (CÓPIAS MARCADAS COMO PROPAGADAS).
+     * @return Número de barrels que receberam o lote completo.
      */
-    private void indexTokens(String tokens, String url) {
-        if (tokens == null || tokens.isEmpty() || url == null || url.isEmpty()) {
+    private int propagateUpdates(List<SiteData> batch) {
+        int successCount = 0;
+        for (Map.Entry<Integer, RMIIndexStorageBarrel> entry : new HashMap<>(barrels).entrySet()) {
+            try {
+                BarrelTransport.forBarrel(entry.getValue(), dataTransport).storeSiteData(batch);
+                LOG.info("✅ " + batch.size() + " atualizações propagadas para barrel " + entry.getKey());
+                successCount++;
+            } catch (IOException e) {
+                REPLICATION_FAILURES.inc();
+                LOG.error("❌ Falha ao propagar lote para barrel " + entry.getKey() + ": " + e.getMessage());
+            }
+        }
+        return successCount;
+    }
+
+    /**
+     * Apaga uma página: marca-a para deixar de aparecer nas pesquisas e nos links
+     * de imediato e, se o pedido não vier de outra barrel, propaga-o. Os dados
+     * são removidos dos índices pela purga em segundo plano.
+     *
+     * @param url        URL da página a apagar.
+     * @param propagated true se o pedido já vem de outra barrel.
+     * @throws RemoteException Se ocorrer um erro de comunicação remota.
+     */
+    @Override
+    public void deleteSiteData(String url, boolean propagated) throws RemoteException {
+        if (url == null || url.isEmpty()) {
+            return;
+        }
+        if (tombstones.add(url)) {
+            LOG.debug(() -> "🪦 Página marcada como apagada: " + url);
+        }
+        if (propagated) {
             return;
         }
 
-        String[] tokenArray = tokens.split("\\s+");
-        int tokenCount = 0;
+        for (Map.Entry<Integer, RMIIndexStorageBarrel> entry : new HashMap<>(barrels).entrySet()) {
+            try {
+                BarrelTransport.forBarrel(entry.getValue(), dataTransport).deleteSiteData(url, true);
+            } catch (IOException e) {
+                LOG.error("❌ Falha ao propagar remoção para barrel " + entry.getKey() + ": " + e.getMessage());
+            }
+        }
+    }
 
-        for (String token : tokenArray) {
-            // Normaliza tokens: converte para minúsculas e remove caracteres não
-            // alfanuméricos
-            token = token.toLowerCase().replaceAll("[^a-z0-9]", "");
-            if (token.isEmpty() || token.length() < 2) {
-                continue; // Ignora tokens muito curtos ou vazios
+    /**
+     * Inicia a purga periódica das páginas apagadas, configurada por
+     * {@code purgeIntervalSeconds} (0 desativa).
+     *
+     * @param prop Propriedades da barrel.
+     */
+    private void configurePurge(Properties prop) {
+        long interval = Long.parseLong(prop.getProperty("purgeIntervalSeconds", "30").trim());
+        if (interval <= 0) {
+            return;
+        }
+        purgeScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "index-purge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        purgeScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                purgeDeletedPages();
+            } catch (Exception e) {
+                // Uma falha não pode cancelar as execuções seguintes
+                LOG.error("❌ Erro na purga de páginas apagadas: " + e.getMessage());
             }
+        }, interval, interval, TimeUnit.SECONDS);
+    }
 
-            // Adiciona URL ao conjunto para este token
-            Set<String> urlSet = invertedIndex.computeIfAbsent(token, k -> ConcurrentHashMap.newKeySet());
-            urlSet.add(url);
-            tokenCount++;
+    /**
+     * Remove dos índices as páginas marcadas como apagadas: termos (pela lista
+     * direta, sem percorrer o índice invertido), estatísticas BM25, links de
+     * saída, texto e dados do site.
+     *
+     * @return Número de páginas purgadas.
+     */
+    int purgeDeletedPages() {
+        if (tombstones.isEmpty()) {
+            return 0;
+        }
+        Set<String> purged = new HashSet<>();
+        indexLock.writeLock().lock();
+        try {
+            for (String url : new ArrayList<>(tombstones)) {
+                // Sob o lock: a página pode ter voltado a ser recebida entretanto
+                if (!tombstones.remove(url)) {
+                    continue;
+                }
+                reindexTerms(url, new String[0], null);
+                replaceOutlinks(url, new String[0]);
+                urlTexts.remove(url);
+                siteDataByUrl.remove(url);
+                purged.add(url);
+            }
+        } finally {
+            indexLock.writeLock().unlock();
         }
 
-        // if (tokenCount > 0) {
-        // System.out.println(getTimestamp() + " : 📊 Indexados " + tokenCount + "
-        // tokens para URL: " + url);
-        // }
+        LOG.info("🧹 Purga concluída - " + purged.size() + " páginas removidas dos índices");
+        saveState("data/estado_barrel_" + barrelId + ".json");
+        return purged.size();
+    }
+
+    /**
+     * Retorna o endpoint do transporte binário de dados da barrel.
+     *
+     * @return Endpoint no formato host:porta, ou null se desativado.
+     * @throws RemoteException Se ocorrer um erro de comunicação remota.
+     */
+    @Override
+    public String getDataEndpoint() throws RemoteException {
+        return dataEndpoint;
+    }
+
+    /**
+     * Configura o transporte de dados a partir das propriedades e, se for o
+     * binário, inicia o servidor correspondente.
+     *
+     * @param prop Propriedades da barrel ({@code dataTransport},
+     *             {@code dataPort}, {@code dataWorkerThreads}).
+     * @param host Host anunciado aos clientes.
+     * @throws IOException Se não for possível abrir a porta do servidor.
+     */
+    private void configureDataTransport(Properties prop, String host) throws IOException {
+        dataTransport = prop.getProperty("dataTransport", "rmi").trim();
+        if (!BarrelTransport.BINARY.equalsIgnoreCase(dataTransport)) {
+            return;
+        }
+        int port = Integer.parseInt(prop.getProperty("dataPort", "0").trim());
+        int threads = Integer.parseInt(prop.getProperty("dataWorkerThreads", "4").trim());
+        dataServer = new BinaryBarrelServer(this, port, threads);
+        dataEndpoint = host + ":" + dataServer.getPort();
+        System.out.println(getTimestamp() + " : 📡 Transporte binário de dados em " + dataEndpoint);
+    }
+
+    /**
+     * Substitui os links de saída de uma página, aplicando só a diferença entre
+     * os links atuais no grafo e os novos, e atualiza as contagens de
+     * referências dos destinos afetados (sempre iguais ao número de páginas
+     * distintas que apontam para cada URL). Se o grafo mudar, incrementa a sua
+     * versão.
+     * O grafo é alterado com o seu próprio lock, só pelo tempo de aplicar a
+     * diferença.
+     *
+     * @param url   URL da página.
+     * @param links Novos links de saída (podem ter repetições).
+     * @return true se alguma ligação foi adicionada ou removida.
+     */
+    private boolean replaceOutlinks(String url, String[] links) {
+        Set<String> added = new HashSet<>(links.length * 2);
+        for (String link : links) {
+            if (!link.isEmpty()) {
+                added.add(link);
+            }
+        }
+
+        synchronized (linkGraph) {
+            boolean changed = false;
+            for (String previous : linkGraph.outgoing(url)) {
+                if (!added.remove(previous)) { // Ligação que deixou de existir
+                    linkGraph.removeEdge(url, previous);
+                    updateReferenceCount(previous);
+                    changed = true;
+                }
+            }
+            for (String link : added) { // Só as ligações novas
+                if (linkGraph.addEdge(url, link)) {
+                    updateReferenceCount(link);
+                    changed = true;
+                }
+            }
+            if (changed) {
+                linkGraphVersion.incrementAndGet();
+            }
+            return changed;
+        }
+    }
+
+    /**
+     * Atualiza a contagem de referências de uma URL a partir do grafo.
+     * Deve ser chamado com o lock do grafo.
+     *
+     * @param url URL de destino.
+     */
+    private void updateReferenceCount(String url) {
+        int inDegree = linkGraph.inDegree(url);
+        if (inDegree == 0) {
+            urlReferences.remove(url);
+        } else {
+            urlReferences.put(url, inDegree);
+        }
+    }
+
+    /**
+     * Lê os parâmetros da ordenação dos resultados ({@code bm25K1},
+     * {@code bm25B}, {@code linkPriorWeight}, {@code searchMaxResults}) e a
+     * política de segmentos do índice ({@code segmentFlushDocs},
+     * {@code segmentMergeFactor}).
+     *
+     * @param prop Propriedades da barrel.
+     */
+    private void configureRanking(Properties prop) {
+        bm25.setParameters(Double.parseDouble(prop.getProperty("bm25K1", "1.2").trim()),
+                Double.parseDouble(prop.getProperty("bm25B", "0.75").trim()));
+        linkPriorWeight = Double.parseDouble(prop.getProperty("linkPriorWeight", "0.5").trim());
+        searchMaxResults = Integer.parseInt(prop.getProperty("searchMaxResults", "0").trim());
+        bm25.setSegmentPolicy(Integer.parseInt(prop.getProperty("segmentFlushDocs", "1000").trim()),
+                Integer.parseInt(prop.getProperty("segmentMergeFactor", "10").trim()));
+    }
+
+    /**
+     * Inicia o cálculo periódico do PageRank, configurado por
+     * {@code pageRankIntervalSeconds} (0 desativa), {@code pageRankDamping},
+     * {@code pageRankTolerance} e {@code pageRankMaxIterations}.
+     *
+     * @param prop Propriedades da barrel.
+     */
+    private void configurePageRank(Properties prop) {
+        long interval = Long.parseLong(prop.getProperty("pageRankIntervalSeconds", "60").trim());
+        if (interval <= 0) {
+            return;
+        }
+        pageRank = new PageRankJob(this::snapshotLinkGraph,
+                Double.parseDouble(prop.getProperty("pageRankDamping", "0.85").trim()),
+                Double.parseDouble(prop.getProperty("pageRankTolerance", "1e-6").trim()),
+                Integer.parseInt(prop.getProperty("pageRankMaxIterations", "50").trim()));
+        pageRankScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pagerank");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Só recalcula quando o grafo mudou desde o último cálculo
+        AtomicLong computedVersion = new AtomicLong(-1);
+        pageRankScheduler.scheduleWithFixedDelay(() -> {
+            long version = linkGraphVersion.get();
+            if (computedVersion.getAndSet(version) != version) {
+                pageRank.run();
+            }
+        }, 0, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Retorna o grafo de links em formato CSR para o PageRank (o do snapshot
+     * partilhado com as consultas, atualizado se necessário).
+     *
+     * @return O grafo.
+     */
+    private PageRankJob.Graph snapshotLinkGraph() {
+        return refreshLinkSnapshot().graph;
+    }
+
+    /**
+     * Publica um novo snapshot imutável do grafo de links, se o grafo mudou
+     * desde o último. O snapshot é criado com o lock do grafo (espera apenas
+     * pela alteração de links em curso); as consultas continuam a ler o anterior
+     * até à troca.
+     *
+     * @return O snapshot atual.
+     */
+    private LinkGraph.Snapshot refreshLinkSnapshot() {
+        LinkGraph.Snapshot current = linkSnapshot.get();
+        if (current.version == linkGraphVersion.get()) {
+            return current;
+        }
+        synchronized (linkSnapshot) {
+            current = linkSnapshot.get();
+            if (current.version == linkGraphVersion.get()) {
+                return current; // Publicado por outra thread entretanto
+            }
+            LinkGraph.Snapshot next;
+            synchronized (linkGraph) {
+                // A versão só muda com o lock do grafo, logo corresponde ao grafo copiado
+                next = linkGraph.snapshot(linkGraphVersion.get());
+            }
+            linkSnapshot.set(next);
+            linkSnapshotTime = System.currentTimeMillis();
+            return next;
+        }
+    }
+
+    /**
+     * Retorna o snapshot do grafo de links para as consultas. Só é recriado
+     * quando o grafo mudou e o atual tem mais de {@code linkSnapshotIntervalMs},
+     * pelo que a indexação sem consultas não recria snapshots e um grafo que
+     * muda continuamente é copiado no máximo uma vez por intervalo.
+     *
+     * @return O snapshot.
+     */
+    private LinkGraph.Snapshot currentLinkSnapshot() {
+        LinkGraph.Snapshot current = linkSnapshot.get();
+        if (current.version == linkGraphVersion.get()
+                || System.currentTimeMillis() - linkSnapshotTime < linkSnapshotIntervalMs) {
+            return current;
+        }
+        return refreshLinkSnapshot();
+    }
+
+    /**
+     * Configura a idade máxima de um snapshot desatualizado do grafo de links
+     * ({@code linkSnapshotIntervalMs}, 0 = sempre atualizado).
+     *
+     * @param prop Propriedades da barrel.
+     */
+    private void configureLinkSnapshots(Properties prop) {
+        linkSnapshotIntervalMs = Math.max(0,
+                Long.parseLong(prop.getProperty("linkSnapshotIntervalMs", "5000").trim()));
+    }
+
+    /**
+     * Regista as métricas do estado da barrel (lidas em cada exportação) e inicia
+     * o servidor HTTP das métricas na porta {@code metricsPort} + id da barrel
+     * (0 escolhe uma porta livre; negativa ou ausente desativa), no endereço
+     * {@code metricsHost} (por omissão só o loopback).
+     *
+     * @param prop Propriedades da barrel.
+     * @throws IOException Se não for possível abrir a porta.
+     */
+    private void configureMetrics(Properties prop) throws IOException {
+        int basePort = Integer.parseInt(prop.getProperty("metricsPort", "-1").trim());
+        if (basePort < 0) {
+            return;
+        }
+        Metrics.gauge("barrel_index_terms", "Termos no índice invertido", bm25::termCount);
+        Metrics.gauge("barrel_index_documents", "Páginas no índice de relevância", bm25::size);
+        Metrics.gauge("barrel_index_segments", "Segmentos imutáveis do índice de relevância", bm25::segmentCount);
+        Metrics.gauge("barrel_pages_deleted", "Páginas apagadas à espera da purga", tombstones::size);
+        Metrics.gauge("barrel_peers", "Outras barrels conhecidas (destinos da replicação)", barrels::size);
+        Metrics.gauge("barrel_pagerank_pages", "Páginas com PageRank", () -> getPageRankScores().size());
+        Metrics.gauge("barrel_pagerank_iterations", "Iterações do último cálculo do PageRank",
+                () -> getPageRankScores().iterations);
+        Metrics.gauge("barrel_pagerank_residual", "Resíduo L1 do último cálculo do PageRank",
+                () -> getPageRankScores().residual);
+        Metrics.gauge("barrel_pagerank_duration_seconds", "Duração do último cálculo do PageRank",
+                () -> getPageRankScores().durationMs / 1000.0);
+        String host = prop.getProperty("metricsHost", "127.0.0.1").trim();
+        int port = Metrics.startServer(host, basePort == 0 ? 0 : basePort + barrelId);
+        System.out.println(getTimestamp() + " : 📊 Métricas em http://" + host + ":" + port + "/metrics");
+    }
+
+    /**
+     * Inicia o envio periódico do tamanho do índice ao gateway, configurado por
+     * {@code statsReportIntervalSeconds} (0 desativa). O gateway agrega estes
+     * valores para as estatísticas do sistema sem ter de contactar as barrels.
+     *
+     * @param prop    Propriedades da barrel.
+     * @param gateway Gateway onde a barrel está registada.
+     */
+    private void configureStatsReport(Properties prop, RMIGatewayIBSDownloader gateway) {
+        long interval = Long.parseLong(prop.getProperty("statsReportIntervalSeconds", "5").trim());
+        if (interval <= 0) {
+            return;
+        }
+        statsReportScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stats-report");
+            thread.setDaemon(true);
+            return thread;
+        });
+        statsReportScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                gateway.reportBarrelStats(barrelId, bm25.size(), bm25.termCount());
+            } catch (Exception e) {
+                // O gateway pode estar a reiniciar; tenta de novo no próximo intervalo
+                LOG.warn("⚠️ Falha ao enviar estatísticas ao gateway: " + e.getMessage());
+            }
+        }, 0, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Retorna o último resultado do PageRank (iterações, resíduo, duração).
+     *
+     * @return Os scores atuais, ou {@link PageRankJob.Scores#EMPTY} se o
+     *         PageRank estiver desativado.
+     */
+    public PageRankJob.Scores getPageRankScores() {
+        return pageRank != null ? pageRank.getScores() : PageRankJob.Scores.EMPTY;
+    }
+
+    /**
+     * Reindexa os termos (já normalizados pelo {@link Analyzer}) de uma página no
+     * índice de relevância, que substitui a versão anterior da página.
+     * Deve ser chamado com o lock da URL (ou o write lock do índice).
+     *
+     * @param url   URL associada aos termos.
+     * @param terms Termos distintos atuais (vazio remove a página do índice).
+     * @param freqs Frequência de cada termo (null = 1 para todos).
+     */
+    private void reindexTerms(String url, String[] terms, int[] freqs) {
+        if (terms == null || url == null || url.isEmpty()) {
+            return;
+        }
+        if (terms.length > 0) {
+            bm25.addDocument(url, terms, freqs);
+        } else {
+            bm25.removeDocument(url);
+        }
     }
 
     /**
      * Pesquisa páginas que contêm todas as palavras especificadas, retornando-as
-     * ordenadas pelo número de links que apontam para elas.
+     * ordenadas por relevância: BM25 (frequência dos termos, raridade e
+     * comprimento da página) somado a uma prior de popularidade,
+     * {@code linkPriorWeight * ln(1 + PageRank)} (PageRank escalado para média
+     * 1; antes do primeiro cálculo usa o número de links de entrada).
      *
      * @param words Conjunto de palavras a serem pesquisadas.
      * @return Lista de SiteData que contêm todas as palavras especificadas,
@@ -707,60 +1133,52 @@ public class IndexStorageBarrel extends UnicastRemoteObject implements RMIIndexS
             return new ArrayList<>();
         }
 
-        Map<String, Integer> pageMatchCount = new HashMap<>();
-        indexLock.readLock().lock();
-        try {
-            // Itera sobre as palavras e conta correspondências
-            for (String word : words) {
-                word = word.toLowerCase().trim();
-                Set<String> pages = invertedIndex.get(word);
-                if (pages != null) {
-                    for (String page : pages) {
-                        pageMatchCount.put(page, pageMatchCount.getOrDefault(page, 0) + 1);
-                    }
-                }
-            }
-        } finally {
-            indexLock.readLock().unlock();
+        // Analisa as palavras da pesquisa como na indexação (acentos, stopwords,
+        // stemming)
+        Set<String> terms = new HashSet<>();
+        for (String word : words) {
+            Analyzer.getDefault().analyze(word, terms::add);
         }
-
-        // Filtra as páginas que contêm todas as palavras
-        List<String> matchingPages = new ArrayList<>();
-        for (Map.Entry<String, Integer> entry : pageMatchCount.entrySet()) {
-            if (entry.getValue() == words.size()) {
-                matchingPages.add(entry.getKey());
-            }
+        if (terms.isEmpty()) {
+            return new ArrayList<>();
+        }
+        long start = System.nanoTime();
+
+        // Pontua as páginas com todos os termos (BM25 + popularidade) e fica com as
+        // melhores. O índice de relevância é lido a partir de um snapshot dos
+        // segmentos, sem o lock do índice, pelo que não espera pelas escritas
+        List<Bm25Index.ScoredPage> ranked;
+        double priorWeight = linkPriorWeight;
+        PageRankJob.Scores ranks = pageRank != null ? pageRank.getScores() : PageRankJob.Scores.EMPTY;
+        if (ranks.size() > 0) {
+            ranked = bm25.search(new ArrayList<>(terms), searchMaxResults,
+                    url -> priorWeight * Math.log1p(ranks.score(url)), tombstones);
+        } else {
+            // Antes do primeiro cálculo do PageRank usa o número de links de entrada
+            ranked = bm25.search(new ArrayList<>(terms), searchMaxResults,
+                    url -> priorWeight * Math.log1p(urlReferences.getOrDefault(url, 0)), tombstones);
         }
 
-        // Ordena as páginas correspondentes pelo número de links de entrada
-        List<Map.Entry<String, Integer>> sortedAllPages = getPagesOrderedByIncomingLinks();
-
-        List<SiteData> result = new ArrayList<>();
-        for (Map.Entry<String, Integer> sortedEntry : sortedAllPages) {
-            String url = sortedEntry.getKey();
-            if (matchingPages.contains(url)) {
-                // Encontra o SiteData correspondente
-                synchronized (siteDataSet) {
-                    for (SiteData siteData : siteDataSet) {
-                        if (siteData.url.equals(url)) {
-                            // Cria uma cópia do SiteData para não modificar o original
-                            SiteData resultData = new SiteData();
-                            resultData.url = siteData.url;
-                            resultData.title = siteData.title;
-                            resultData.text = urlTexts.getOrDefault(url, "");
-                            resultData.tokens = siteData.tokens;
-                            resultData.links = siteData.links;
-                            result.add(resultData);
-                            break;
-                        }
-                    }
-                }
+        // Obtém os SiteData dos resultados diretamente pela URL, sem locks
+        List<SiteData> result = new ArrayList<>(ranked.size());
+        for (Bm25Index.ScoredPage page : ranked) {
+            SiteData siteData = siteDataByUrl.get(page.url);
+            if (siteData == null) {
+                continue;
             }
+            // Cria uma cópia do SiteData para não modificar o original
+            SiteData resultData = new SiteData();
+            resultData.url = siteData.url;
+            resultData.title = siteData.title;
+            resultData.text = urlTexts.getOrDefault(page.url, "");
+            resultData.tokens = siteData.tokens;
+            resultData.links = siteData.links;
+            resultData.outlinks = siteData.outlinks;
+            result.add(resultData);
         }
 
-        System.out.println(
-                getTimestamp() + " : 🔍 Pesquisa concluída - Palavras: " + words + ", Resultados ordenados: "
-                        + result.size());
+        QUERY_TIME.recordSince(start);
+        LOG.debug(() -> "🔍 Pesquisa concluída - Palavras: " + words + ", Resultados ordenados: " + result.size());
         return result;
     }
 
@@ -771,12 +1189,7 @@ public class IndexStorageBarrel extends UnicastRemoteObject implements RMIIndexS
      * @return Contagem de referências para a URL especificada.
      */
     public int getUrlReferenceCount(String url) {
-        indexLock.readLock().lock();
-        try {
-            return urlReferences.getOrDefault(url, 0);
-        } finally {
-            indexLock.readLock().unlock();
-        }
+        return urlReferences.getOrDefault(url, 0); // Mapa concorrente: leitura sem lock
     }
 
     /**
@@ -786,20 +1199,20 @@ public class IndexStorageBarrel extends UnicastRemoteObject implements RMIIndexS
      * @throws RemoteException Se ocorrer um erro de comunicação remota.
      */
     public List<Map.Entry<String, Integer>> getPagesOrderedByIncomingLinks() throws RemoteException {
-        indexLock.readLock().lock();
-        try {
-            List<Map.Entry<String, Integer>> sortedPages = new ArrayList<>(urlReferences.entrySet());
-            // Ordena decrescente pelo valor (contagem de links)
-            sortedPages.sort((entry1, entry2) -> Integer.compare(entry2.getValue(), entry1.getValue()));
-            // Log removido para não poluir
-            // for (Map.Entry<String, Integer> entry : sortedPages) {
-            // System.out.println(getTimestamp() + " : 📊 Página: " + entry.getKey() + ",
-            // Links: " + entry.getValue());
-            // }
-            return sortedPages;
-        } finally {
-            indexLock.readLock().unlock();
+        // Cópia das entradas do mapa concorrente (sem lock); a ordenação é feita
+        // sobre a cópia
+        List<Map.Entry<String, Integer>> sortedPages = new ArrayList<>(urlReferences.size());
+        for (Map.Entry<String, Integer> entry : urlReferences.entrySet()) {
+            sortedPages.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue()));
         }
+        // Ordena decrescente pelo valor (contagem de links)
+        sortedPages.sort((entry1, entry2) -> Integer.compare(entry2.getValue(), entry1.getValue()));
+        // Log removido para não poluir
+        // for (Map.Entry<String, Integer> entry : sortedPages) {
+        // System.out.println(getTimestamp() + " : 📊 Página: " + entry.getKey() + ",
+        // Links: " + entry.getValue());
+        // }
+        return sortedPages;
     }
 
     /**
@@ -809,17 +1222,13 @@ public class IndexStorageBarrel extends UnicastRemoteObject implements RMIIndexS
      * @return Lista de URLs que apontam para a URL especificada.
      */
     public List<String> getPagesLinkingTo(String url) {
-        indexLock.readLock().lock();
-        try {
-            List<String> result = incomingLinks.getOrDefault(url, Collections.emptyList()); // Usa lista vazia imutável
-            return new ArrayList<>(result); // Retorna uma cópia da lista
-        } finally {
-            indexLock.readLock().unlock();
-        }
+        return currentLinkSnapshot().incoming(url); // Já é uma cópia
     }
 
     /**
-     * Salva o estado atual da barrel em um arquivo JSON.
+     * Salva o estado atual da barrel em um arquivo JSON. O estado é escrito num
+     * ficheiro temporário que depois substitui o anterior de forma atómica, pelo
+     * que uma falha a meio da escrita não deixa o ficheiro truncado.
      *
      * @param caminhoArquivo Caminho do arquivo onde o estado deve ser salvo.
      */
@@ -833,25 +1242,25 @@ public class IndexStorageBarrel extends UnicastRemoteObject implements RMIIndexS
                 parentDir.mkdirs();
             }
 
-            Set<SiteData> siteDataCopy;
-            // Sincroniza o acesso ao siteDataSet para criar a cópia
-            synchronized (siteDataSet) {
-                siteDataCopy = new HashSet<>(siteDataSet);
-            }
+            Set<SiteData> siteDataCopy = new HashSet<>(siteDataByUrl.values());
+            siteDataCopy.removeIf(siteData -> tombstones.contains(siteData.url));
 
             Gson gson = new GsonBuilder().setPrettyPrinting().create();
-            String json = gson.toJson(siteDataCopy);
-
-            try (FileWriter writer = new FileWriter(caminhoArquivo)) {
-                writer.write(json);
+            File temporary = new File(caminhoArquivo + ".tmp");
+            try (FileWriter writer = new FileWriter(temporary)) {
+                gson.toJson(siteDataCopy, writer);
+            }
+            try {
+                Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
             }
 
-            System.out.println(
-                    getTimestamp() + " : 💾 Estado (" + siteDataCopy.size() + " sites) salvo em: " + caminhoArquivo);
+            LOG.debug(() -> "💾 Estado (" + siteDataCopy.size() + " sites) salvo em: " + caminhoArquivo);
 
         } catch (Exception e) {
-            System.err.println(getTimestamp() + " : ❌ Erro ao salvar estado no ficheiro JSON: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("❌ Erro ao salvar estado no ficheiro JSON: " + e.getMessage(), e);
         } finally {
             stateLock.writeLock().unlock();
         }
@@ -884,17 +1293,19 @@ public class IndexStorageBarrel extends UnicastRemoteObject implements RMIIndexS
             }
 
             // Limpar estruturas atuais ANTES de carregar e reindexar
-            invertedIndex.clear();
+            bm25.clear();
             urlReferences.clear();
             urlTexts.clear();
-            incomingLinks.clear();
-            synchronized (siteDataSet) {
-                siteDataSet.clear();
-                siteDataSet.addAll(loadedSiteData); // Adiciona os dados carregados
+            synchronized (linkGraph) {
+                linkGraph.clear();
+                linkGraphVersion.incrementAndGet();
             }
+            tombstones.clear();
+            siteDataByUrl.clear(); // Os dados carregados são adicionados na reindexação
 
             System.out.println(getTimestamp() + " : 🔄 Reindexando dados carregados...");
             // Reindexa dados localmente a partir do JSON carregado
+            loadingState = true;
             for (SiteData siteData : loadedSiteData) {
                 // Processar sem propagar, pois já está no estado salvo
                 siteData.setPropagated(true);
@@ -908,14 +1319,17 @@ public class IndexStorageBarrel extends UnicastRemoteObject implements RMIIndexS
             System.err.println(getTimestamp() + " : ❌ Erro ao carregar/reindexar estado do JSON: " + e.getMessage());
             e.printStackTrace();
             // Limpa tudo em caso de erro grave no carregamento
-            invertedIndex.clear();
+            bm25.clear();
             urlReferences.clear();
             urlTexts.clear();
-            incomingLinks.clear();
-            synchronized (siteDataSet) {
-                siteDataSet.clear();
+            synchronized (linkGraph) {
+                linkGraph.clear();
+                linkGraphVersion.incrementAndGet();
             }
+            tombstones.clear();
+            siteDataByUrl.clear();
         } finally {
+            loadingState = false;
             indexLock.writeLock().unlock();
             stateLock.writeLock().unlock();
         }
@@ -930,34 +1344,22 @@ public class IndexStorageBarrel extends UnicastRemoteObject implements RMIIndexS
      * @throws RemoteException Se ocorrer um erro de comunicação remota.
      */
     public List<String> getIncomingLinksForUrl(String url) throws RemoteException {
-        indexLock.readLock().lock();
-        try {
-            if (url == null || url.isEmpty()) {
-                return new ArrayList<>();
-            }
-
-            // Obtém os links que apontam para a URL
-            List<String> referenciadores = incomingLinks.getOrDefault(url, Collections.emptyList());
-            if (referenciadores.isEmpty()) {
-                return new ArrayList<>();
-            }
-
-            // Obtém todas as páginas ordenadas por número de links
-            List<Map.Entry<String, Integer>> sortedPages = getPagesOrderedByIncomingLinks();
+        if (url == null || url.isEmpty()) {
+            return new ArrayList<>();
+        }
 
-            // Filtra os referenciadores com base na ordenação global
-            List<String> ordenados = new ArrayList<>();
-            for (Map.Entry<String, Integer> entry : sortedPages) {
-                // Verifica se a página ordenada está na lista de referenciadores
-                if (referenciadores.contains(entry.getKey())) {
-                    ordenados.add(entry.getKey());
-                }
-            }
+        // Obtém os links que apontam para a URL do snapshot imutável do grafo
+        LinkGraph.Snapshot links = currentLinkSnapshot();
+        List<String> ordenados = links.incoming(url);
+        ordenados.removeIf(tombstones::contains); // Páginas apagadas ainda por purgar
 
-            return ordenados;
-        } finally {
-            indexLock.readLock().unlock();
+        // Ordena os referenciadores pelo número de links que apontam para eles
+        Map<String, Integer> inDegrees = new HashMap<>(ordenados.size() * 2);
+        for (String referenciador : ordenados) {
+            inDegrees.put(referenciador, links.inDegree(referenciador));
         }
+        ordenados.sort((url1, url2) -> Integer.compare(inDegrees.get(url2), inDegrees.get(url1)));
+        return ordenados;
     }
 
     /**
@@ -1015,6 +1417,7 @@ public class IndexStorageBarrel extends UnicastRemoteObject implements RMIIndexS
             try (InputStream input = new FileInputStream(args[1])) {
                 System.out.println(LocalDateTime.now() + " : 📝 Carregando arquivo de propriedades: " + args[1]);
                 prop.load(input);
+                Log.configure(prop);
                 System.out.println(LocalDateTime.now() + " : ✅ Arquivo de propriedades carregado com sucesso");
 
                 // Tenta obter o IP do arquivo de propriedades se não foi passado por argumento
@@ -1034,6 +1437,12 @@ public class IndexStorageBarrel extends UnicastRemoteObject implements RMIIndexS
                     System.out.println(LocalDateTime.now() + " : ⚙️ Definido java.rmi.server.hostname=" + myIP);
                 }
 
+                // Timeouts nos sockets RMI (antes de qualquer lookup ou exportação)
+                RMITimeoutSocketFactory.install(prop);
+
+                // Analyzer das pesquisas (tem de coincidir com o dos downloaders)
+                Analyzer.setDefault(Analyzer.fromProperties(prop));
+
             } catch (Exception e) {
                 System.err.println(
                         LocalDateTime.now() + " : ❌ Erro ao carregar arquivo de propriedades '" + args[1] + "': "
@@ -1088,11 +1497,21 @@ public class IndexStorageBarrel extends UnicastRemoteObject implements RMIIndexS
                 System.out.println(LocalDateTime.now() + " : 🚀 Criando IndexStorageBarrel com ID " + barrelId);
                 barrel = new IndexStorageBarrel(barrelId); // Atribui à variável declarada fora
 
+                // Transporte de dados (o RMI continua a ser o plano de controlo)
+                barrel.configureDataTransport(prop, myIP != null && !myIP.isEmpty() ? myIP : "localhost");
+                barrel.configureRanking(prop);
+                barrel.configurePageRank(prop);
+                barrel.configureLinkSnapshots(prop);
+                barrel.configurePurge(prop);
+                barrel.configureStateSaves(prop);
+                barrel.configureMetrics(prop);
+
                 // Registrar a barrel no gateway
                 System.out.println(LocalDateTime.now() + " : 🔄 Registrando barrel " + barrelId + " no gateway...");
                 gateway.registerIBS(barrel.barrelId, barrel);
                 System.out.println(
                         LocalDateTime.now() + " : ✅ Barrel " + barrelId + " registrada com sucesso no gateway!");
+                barrel.configureStatsReport(prop, gateway);
 
                 // Sincronizar com barrels existentes após o registro (fazendo merge)
                 System.out.println(
@@ -1111,42 +1530,24 @@ public class IndexStorageBarrel extends UnicastRemoteObject implements RMIIndexS
                 // outras <---
                 System.out.println(LocalDateTime.now() + " : 📤 Iniciando propagação do estado final da Barrel "
                         + barrelId + " para as outras...");
-                Set<SiteData> finalLocalState;
-                synchronized (barrel.siteDataSet) { // Acessa o set sincronizado da barrel
-                    finalLocalState = new HashSet<>(barrel.siteDataSet); // Cria uma cópia segura para iterar
-                }
+                Set<SiteData> finalLocalState = new HashSet<>(barrel.siteDataByUrl.values()); // Cópia para iterar
 
-                int propagatedCount = 0;
                 if (!finalLocalState.isEmpty()) {
                     System.out.println(LocalDateTime.now() + " : 📤 Propagando " + finalLocalState.size()
                             + " itens do estado final...");
+                    List<SiteData> copiesToPropagate = new ArrayList<>(finalLocalState.size());
                     for (SiteData siteDataToPropagate : finalLocalState) {
-                        try {
-                            // Cria uma CÓPIA para propagar, garantindo que está marcada como propagada
-                            SiteData copyToPropagate = new SiteData(siteDataToPropagate.url, siteDataToPropagate.tokens,
-                                    siteDataToPropagate.links);
-                            copyToPropagate.text = siteDataToPropagate.text;
-                            copyToPropagate.title = siteDataToPropagate.title;
-                            copyToPropagate.setPropagated(true); // ESSENCIAL: Marca a cópia como propagada
-
-                            // Chama o método que envia para todas as outras barrels conhecidas pela
-                            // instância 'barrel'
-                            barrel.propagateUpdate(copyToPropagate);
-                            propagatedCount++;
-
-                        } catch (RemoteException e) {
-                            System.err.println(LocalDateTime.now() + " : ⚠️ Erro RMI ao propagar SiteData para URL "
-                                    + siteDataToPropagate.url + ": " + e.getMessage());
-                            // Continua com o próximo item
-                        } catch (Exception e) {
-                            System.err.println(
-                                    LocalDateTime.now() + " : ❌ Erro inesperado ao preparar/propagar SiteData para URL "
-                                            + siteDataToPropagate.url + ": " + e.getMessage());
-                            e.printStackTrace(); // Log mais detalhado para erros inesperados
-                        }
+                        // Cria uma CÓPIA para propagar, garantindo que está marcada como propagada
+                        SiteData copyToPropagate = new SiteData(siteDataToPropagate);
+                        copyToPropagate.setPropagated(true); // ESSENCIAL: Marca a cópia como propagada
+                        copiesToPropagate.add(copyToPropagate);
                     }
+
+                    // Envia o lote a cada uma das outras barrels conhecidas pela instância 'barrel'
+                    int reachedBarrels = barrel.propagateUpdates(copiesToPropagate);
                     System.out.println(LocalDateTime.now() + " : 📤 Propagação do estado final concluída. "
-                            + propagatedCount + " itens enviados para outras barrels.");
+                            + copiesToPropagate.size() + " itens enviados para " + reachedBarrels
+                            + " outras barrels.");
                 } else {
                     System.out.println(
                             LocalDateTime.now() + " : ℹ️ Nenhum SiteData local para propagar após sincronização.");
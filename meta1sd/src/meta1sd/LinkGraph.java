@@ -0,0 +1,460 @@
+package meta1sd;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LinkGraph - Grafo de links de uma barrel com ids inteiros.
+ * Cada URL recebe um id; as ligações de entrada e de saída de cada página são
+ * conjuntos de ids sem repetições. Conjuntos pequenos são buffers de
+ * acrescento percorridos linearmente; a partir de {@link #LINEAR_LIMIT}
+ * elementos passam a tabelas de hash com endereçamento aberto, pelo que
+ * inserir, remover e verificar uma ligação custa O(1) amortizado mesmo em
+ * páginas com milhares de links de entrada.
+ * As tabelas são compactadas periodicamente depois de remoções. Uma URL que
+ * fica sem ligações (por exemplo depois da purga de uma página) liberta o seu
+ * id, que é reutilizado pela próxima URL nova; os ids livres ficam fora do CSR.
+ * Não é thread-safe: a barrel acede ao grafo dentro de
+ * {@code synchronized (linkGraph)}. As leituras concorrentes usam um
+ * {@link Snapshot} imutável.
+ */
+public class LinkGraph {
+
+    /**
+     * Versão imutável do grafo (CSR das ligações de entrada e mapa URL -> id),
+     * que pode ser lida por várias threads sem locks.
+     */
+    public static final class Snapshot {
+        /** Snapshot vazio */
+        public static final Snapshot EMPTY = new Snapshot(
+                new PageRankJob.Graph(new String[0], new int[1], new int[0], new int[0]), new HashMap<>(), -1);
+
+        public final PageRankJob.Graph graph;
+        public final long version; // Versão do grafo de onde foi criado
+        private final Map<String, Integer> ids;
+
+        Snapshot(PageRankJob.Graph graph, Map<String, Integer> ids, long version) {
+            this.graph = graph;
+            this.ids = ids;
+            this.version = version;
+        }
+
+        /**
+         * Retorna o número de páginas que apontam para uma URL.
+         *
+         * @param url URL de destino.
+         * @return Número de ligações de entrada.
+         */
+        public int inDegree(String url) {
+            Integer id = ids.get(url);
+            return id == null ? 0 : graph.inOffsets[id + 1] - graph.inOffsets[id];
+        }
+
+        /**
+         * Retorna as URLs que apontam para uma URL.
+         *
+         * @param url URL de destino.
+         * @return Lista (nova) das URLs de origem.
+         */
+        public List<String> incoming(String url) {
+            Integer id = ids.get(url);
+            if (id == null) {
+                return new ArrayList<>();
+            }
+            List<String> result = new ArrayList<>(graph.inOffsets[id + 1] - graph.inOffsets[id]);
+            for (int e = graph.inOffsets[id]; e < graph.inOffsets[id + 1]; e++) {
+                result.add(graph.urls[graph.inSources[e]]);
+            }
+            return result;
+        }
+    }
+
+    static final int LINEAR_LIMIT = 16; // Tamanho a partir do qual um conjunto usa hash
+
+    private final Map<String, Integer> ids = new HashMap<>(); // URL -> id
+    private final List<String> urls = new ArrayList<>(); // id -> URL
+    private IdSet[] incoming = new IdSet[1024]; // id -> ids das páginas que apontam para ele
+    private IdSet[] outgoing = new IdSet[1024]; // id -> ids das páginas para onde aponta
+    private int[] freeIds = new int[16]; // Ids libertados, por reutilizar
+    private int freeCount;
+    private long edgeCount;
+    private long removalsSinceCompaction;
+
+    /**
+     * Adiciona uma ligação, se ainda não existir.
+     *
+     * @param source URL de origem.
+     * @param target URL de destino.
+     * @return true se a ligação é nova.
+     */
+    public boolean addEdge(String source, String target) {
+        int sourceId = id(source);
+        int targetId = id(target);
+        if (!set(incoming, targetId).add(sourceId)) {
+            return false;
+        }
+        set(outgoing, sourceId).add(targetId);
+        edgeCount++;
+        return true;
+    }
+
+    /**
+     * Remove uma ligação, se existir.
+     *
+     * @param source URL de origem.
+     * @param target URL de destino.
+     * @return true se a ligação existia.
+     */
+    public boolean removeEdge(String source, String target) {
+        Integer sourceId = ids.get(source);
+        Integer targetId = ids.get(target);
+        if (sourceId == null || targetId == null || incoming[targetId] == null
+                || !incoming[targetId].remove(sourceId)) {
+            return false;
+        }
+        outgoing[sourceId].remove(targetId);
+        edgeCount--;
+        release(sourceId);
+        release(targetId);
+        if (++removalsSinceCompaction > Math.max(1024, edgeCount / 4)) {
+            compact();
+        }
+        return true;
+    }
+
+    /**
+     * Retorna o número de páginas que apontam para uma URL.
+     *
+     * @param url URL de destino.
+     * @return Número de ligações de entrada.
+     */
+    public int inDegree(String url) {
+        Integer id = ids.get(url);
+        return id == null || incoming[id] == null ? 0 : incoming[id].size;
+    }
+
+    /**
+     * Retorna as URLs que apontam para uma URL.
+     *
+     * @param url URL de destino.
+     * @return Lista (nova) das URLs de origem.
+     */
+    public List<String> incoming(String url) {
+        return resolve(incoming, url);
+    }
+
+    /**
+     * Retorna as URLs para onde uma URL aponta.
+     *
+     * @param url URL de origem.
+     * @return Lista (nova) das URLs de destino.
+     */
+    public List<String> outgoing(String url) {
+        return resolve(outgoing, url);
+    }
+
+    /**
+     * Retorna o número de ligações.
+     *
+     * @return Número de ligações.
+     */
+    public long edgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Converte o grafo para o mapa URL -> URLs que apontam para ela (formato
+     * usado na sincronização entre barrels).
+     *
+     * @return Mapa novo, só com as URLs que têm ligações de entrada.
+     */
+    public Map<String, List<String>> toIncomingMap() {
+        Map<String, List<String>> result = new HashMap<>();
+        for (int id = 0; id < urls.size(); id++) {
+            if (incoming[id] != null && incoming[id].size > 0) {
+                result.put(urls.get(id), resolve(incoming[id]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Cria uma cópia em CSR das ligações de entrada, para o PageRank.
+     *
+     * @return O grafo em CSR.
+     */
+    public PageRankJob.Graph toCsr() {
+        // Posição de cada id no CSR, sem os ids livres
+        int[] positions = new int[urls.size()];
+        int n = 0;
+        for (int id = 0; id < urls.size(); id++) {
+            positions[id] = urls.get(id) == null ? -1 : n++;
+        }
+        String[] urlArray = new String[n];
+        int[] inOffsets = new int[n + 1];
+        int[] outDegree = new int[n];
+        for (int id = 0; id < urls.size(); id++) {
+            int position = positions[id];
+            if (position >= 0) {
+                urlArray[position] = urls.get(id);
+                inOffsets[position + 1] = inOffsets[position] + (incoming[id] == null ? 0 : incoming[id].size);
+                outDegree[position] = outgoing[id] == null ? 0 : outgoing[id].size;
+            }
+        }
+        int[] inSources = new int[inOffsets[n]];
+        for (int id = 0; id < urls.size(); id++) {
+            if (positions[id] >= 0 && incoming[id] != null) {
+                incoming[id].copyTo(inSources, inOffsets[positions[id]]);
+            }
+        }
+        for (int e = 0; e < inSources.length; e++) {
+            inSources[e] = positions[inSources[e]];
+        }
+        return new PageRankJob.Graph(urlArray, inOffsets, inSources, outDegree);
+    }
+
+    /**
+     * Cria um snapshot imutável do grafo.
+     *
+     * @param version Versão do grafo a registar no snapshot.
+     * @return O snapshot.
+     */
+    public Snapshot snapshot(long version) {
+        PageRankJob.Graph graph = toCsr();
+        Map<String, Integer> positions = new HashMap<>(graph.urls.length * 2);
+        for (int i = 0; i < graph.urls.length; i++) {
+            positions.put(graph.urls[i], i);
+        }
+        return new Snapshot(graph, positions, version);
+    }
+
+    /**
+     * Remove todas as páginas e ligações.
+     */
+    public void clear() {
+        ids.clear();
+        urls.clear();
+        incoming = new IdSet[1024];
+        outgoing = new IdSet[1024];
+        freeIds = new int[16];
+        freeCount = 0;
+        edgeCount = 0;
+        removalsSinceCompaction = 0;
+    }
+
+    /**
+     * Reduz as tabelas que ficaram sobredimensionadas depois de remoções.
+     */
+    public void compact() {
+        for (int id = 0; id < urls.size(); id++) {
+            if (incoming[id] != null) {
+                incoming[id].compact();
+            }
+            if (outgoing[id] != null) {
+                outgoing[id].compact();
+            }
+        }
+        removalsSinceCompaction = 0;
+    }
+
+    /**
+     * Obtém (ou atribui) o id de uma URL.
+     */
+    private int id(String url) {
+        Integer id = ids.get(url);
+        if (id != null) {
+            return id;
+        }
+        if (freeCount > 0) {
+            int freeId = freeIds[--freeCount];
+            ids.put(url, freeId);
+            urls.set(freeId, url);
+            return freeId;
+        }
+        int newId = urls.size();
+        ids.put(url, newId);
+        urls.add(url);
+        if (newId >= incoming.length) {
+            incoming = Arrays.copyOf(incoming, incoming.length * 2);
+            outgoing = Arrays.copyOf(outgoing, outgoing.length * 2);
+        }
+        return newId;
+    }
+
+    /**
+     * Liberta o id de uma URL que ficou sem ligações de entrada e de saída.
+     */
+    private void release(int id) {
+        if (urls.get(id) == null || (incoming[id] != null && incoming[id].size > 0)
+                || (outgoing[id] != null && outgoing[id].size > 0)) {
+            return;
+        }
+        ids.remove(urls.get(id));
+        urls.set(id, null);
+        incoming[id] = null;
+        outgoing[id] = null;
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        }
+        freeIds[freeCount++] = id;
+    }
+
+    /**
+     * Obtém (criando se necessário) o conjunto de um id.
+     */
+    private static IdSet set(IdSet[] sets, int id) {
+        if (sets[id] == null) {
+            sets[id] = new IdSet();
+        }
+        return sets[id];
+    }
+
+    /**
+     * Converte os ids do conjunto de uma URL em URLs.
+     */
+    private List<String> resolve(IdSet[] sets, String url) {
+        Integer id = ids.get(url);
+        if (id == null || sets[id] == null) {
+            return new ArrayList<>();
+        }
+        return resolve(sets[id]);
+    }
+
+    /**
+     * Converte os ids de um conjunto em URLs.
+     */
+    private List<String> resolve(IdSet set) {
+        int[] members = new int[set.size];
+        set.copyTo(members, 0);
+        List<String> result = new ArrayList<>(members.length);
+        for (int member : members) {
+            result.add(urls.get(member));
+        }
+        return result;
+    }
+
+    /**
+     * Conjunto de ids: buffer linear enquanto é pequeno, tabela de hash com
+     * sondagem linear (ids guardados como id + 1, 0 = vazio) depois.
+     */
+    private static final class IdSet {
+        int[] items = new int[4];
+        int size;
+        boolean hashed;
+
+        boolean add(int id) {
+            if (!hashed) {
+                for (int i = 0; i < size; i++) {
+                    if (items[i] == id) {
+                        return false;
+                    }
+                }
+                if (size < LINEAR_LIMIT) {
+                    if (size == items.length) {
+                        items = Arrays.copyOf(items, size * 2);
+                    }
+                    items[size++] = id;
+                    return true;
+                }
+                rehash(LINEAR_LIMIT * 4);
+            } else if ((size + 1) * 4 > items.length * 3) {
+                rehash(items.length * 2);
+            }
+            int mask = items.length - 1;
+            int slot = mix(id) & mask;
+            while (items[slot] != 0) {
+                if (items[slot] == id + 1) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            items[slot] = id + 1;
+            size++;
+            return true;
+        }
+
+        boolean remove(int id) {
+            if (!hashed) {
+                for (int i = 0; i < size; i++) {
+                    if (items[i] == id) {
+                        items[i] = items[--size];
+                        return true;
+                    }
+                }
+                return false;
+            }
+            int mask = items.length - 1;
+            int slot = mix(id) & mask;
+            while (items[slot] != id + 1) {
+                if (items[slot] == 0) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            // Remoção com deslocamento para trás, sem marcas de apagado
+            int hole = slot;
+            int next = (hole + 1) & mask;
+            while (items[next] != 0) {
+                int home = mix(items[next] - 1) & mask;
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    items[hole] = items[next];
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            items[hole] = 0;
+            size--;
+            return true;
+        }
+
+        void copyTo(int[] target, int offset) {
+            if (!hashed) {
+                System.arraycopy(items, 0, target, offset, size);
+                return;
+            }
+            for (int value : items) {
+                if (value != 0) {
+                    target[offset++] = value - 1;
+                }
+            }
+        }
+
+        void compact() {
+            if (hashed && size * 8 < items.length) {
+                if (size < LINEAR_LIMIT) {
+                    int[] members = new int[Math.max(4, size)];
+                    copyTo(members, 0);
+                    items = members;
+                    hashed = false;
+                } else {
+                    rehash(Integer.highestOneBit(size * 2) << 1);
+                }
+            } else if (!hashed && items.length > 4 && size * 2 < items.length) {
+                items = Arrays.copyOf(items, Math.max(4, size));
+            }
+        }
+
+        private void rehash(int capacity) {
+            int[] members = new int[size];
+            copyTo(members, 0);
+            items = new int[capacity];
+            hashed = true;
+            int mask = capacity - 1;
+            for (int member : members) {
+                int slot = mix(member) & mask;
+                while (items[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                items[slot] = member + 1;
+            }
+        }
+
+        private static int mix(int id) {
+            int h = id * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
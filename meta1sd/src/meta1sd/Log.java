@@ -0,0 +1,361 @@
+package meta1sd;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Log - Logger assíncrono com níveis por componente.
+ * As mensagens são colocadas num buffer circular (sem locks: cada produtor
+ * reserva uma posição com CAS) e escritas por uma única thread em segundo
+ * plano, que formata o timestamp e escreve em lote no stdout (DEBUG/INFO) ou no
+ * stderr (WARN/ERROR). Quem regista nunca espera pela consola: com o buffer
+ * cheio a mensagem é descartada e o número de descartes é reportado depois.
+ * As mensagens DEBUG são limitadas por componente a {@code logDebugPerSecond}
+ * por segundo; as restantes são contadas e resumidas numa linha.
+ * <p>
+ * Configuração (ficheiros .properties): {@code logLevel} (nível por omissão),
+ * {@code logLevel.<componente>} (ex.: {@code logLevel.barrel = DEBUG}),
+ * {@code logBufferSize} e {@code logDebugPerSecond}.
+ */
+public final class Log {
+
+    /**
+     * Níveis de log, do mais detalhado ao mais grave.
+     */
+    public enum Level {
+        DEBUG, INFO, WARN, ERROR, OFF
+    }
+
+    /**
+     * Mensagem pendente no buffer.
+     */
+    private static final class Event {
+        final long time;
+        final Level level;
+        final String component;
+        final String message;
+        final Throwable error;
+
+        Event(long time, Level level, String component, String message, Throwable error) {
+            this.time = time;
+            this.level = level;
+            this.component = component;
+            this.message = message;
+            this.error = error;
+        }
+    }
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final Map<String, Log> LOGGERS = new ConcurrentHashMap<>();
+
+    private static volatile Level defaultLevel = Level.INFO;
+    private static volatile Properties config = new Properties();
+    private static volatile int debugPerSecond = 20;
+
+    // Buffer circular: produtores reservam posições em tail; a thread de escrita
+    // consome a partir de head
+    private static volatile AtomicReferenceArray<Event> slots = new AtomicReferenceArray<>(8192);
+    private static final AtomicLong tail = new AtomicLong();
+    private static volatile long head;
+    private static final AtomicLong dropped = new AtomicLong();
+    private static Thread writer;
+
+    private final String component;
+    private volatile Level level;
+    private final AtomicLong debugWindow = new AtomicLong(); // Segundo atual do limite de DEBUG
+    private final AtomicLong debugCount = new AtomicLong(); // Mensagens DEBUG neste segundo
+    private final AtomicLong debugSuppressed = new AtomicLong(); // DEBUG descartadas pelo limite
+
+    private Log(String component) {
+        this.component = component;
+        this.level = levelFor(component);
+    }
+
+    /**
+     * Obtém o logger de um componente.
+     *
+     * @param component Nome do componente (ex.: "barrel", "downloader").
+     * @return O logger (um por componente).
+     */
+    public static Log get(String component) {
+        return LOGGERS.computeIfAbsent(component, Log::new);
+    }
+
+    /**
+     * Lê a configuração dos níveis e do buffer. Deve ser chamado no arranque,
+     * antes de haver mensagens (o tamanho do buffer só muda nessa altura).
+     *
+     * @param prop Propriedades do processo.
+     */
+    public static synchronized void configure(Properties prop) {
+        config = prop;
+        defaultLevel = parseLevel(prop.getProperty("logLevel"), Level.INFO);
+        debugPerSecond = Integer.parseInt(prop.getProperty("logDebugPerSecond", "20").trim());
+        int size = Integer.highestOneBit(Math.max(64, Integer.parseInt(
+                prop.getProperty("logBufferSize", "8192").trim())));
+        if (writer == null && tail.get() == 0 && size != slots.length()) {
+            slots = new AtomicReferenceArray<>(size);
+        }
+        for (Log log : LOGGERS.values()) {
+            log.level = levelFor(log.component);
+        }
+    }
+
+    /**
+     * Verifica se as mensagens DEBUG deste componente são registadas (para
+     * evitar construir mensagens caras).
+     *
+     * @return true se o nível DEBUG está ativo.
+     */
+    public boolean isDebugEnabled() {
+        return level == Level.DEBUG;
+    }
+
+    /**
+     * Regista uma mensagem DEBUG, sujeita ao limite por segundo.
+     *
+     * @param message Mensagem.
+     */
+    public void debug(String message) {
+        if (isDebugEnabled() && allowDebug()) {
+            enqueue(Level.DEBUG, message, null);
+        }
+    }
+
+    /**
+     * Regista uma mensagem DEBUG construída só se for registada.
+     *
+     * @param message Fornece a mensagem.
+     */
+    public void debug(Supplier<String> message) {
+        if (isDebugEnabled() && allowDebug()) {
+            enqueue(Level.DEBUG, message.get(), null);
+        }
+    }
+
+    /**
+     * Regista uma mensagem INFO.
+     *
+     * @param message Mensagem.
+     */
+    public void info(String message) {
+        if (level.compareTo(Level.INFO) <= 0) {
+            enqueue(Level.INFO, message, null);
+        }
+    }
+
+    /**
+     * Regista uma mensagem WARN.
+     *
+     * @param message Mensagem.
+     */
+    public void warn(String message) {
+        if (level.compareTo(Level.WARN) <= 0) {
+            enqueue(Level.WARN, message, null);
+        }
+    }
+
+    /**
+     * Regista uma mensagem ERROR.
+     *
+     * @param message Mensagem.
+     */
+    public void error(String message) {
+        error(message, null);
+    }
+
+    /**
+     * Regista uma mensagem ERROR com a exceção que a causou.
+     *
+     * @param message Mensagem.
+     * @param error   Exceção (o stack trace é escrito a seguir), ou null.
+     */
+    public void error(String message, Throwable error) {
+        if (level.compareTo(Level.ERROR) <= 0) {
+            enqueue(Level.ERROR, message, error);
+        }
+    }
+
+    /**
+     * Aplica o limite de mensagens DEBUG por segundo deste componente.
+     *
+     * @return true se a mensagem pode ser registada.
+     */
+    private boolean allowDebug() {
+        int limit = debugPerSecond;
+        if (limit <= 0) {
+            return true;
+        }
+        long second = System.currentTimeMillis() / 1000;
+        long window = debugWindow.get();
+        if (window != second && debugWindow.compareAndSet(window, second)) {
+            debugCount.set(0);
+            long suppressed = debugSuppressed.getAndSet(0);
+            if (suppressed > 0) {
+                enqueue(Level.DEBUG, "… " + suppressed + " mensagens DEBUG suprimidas pelo limite de " + limit
+                        + "/s", null);
+            }
+        }
+        if (debugCount.incrementAndGet() <= limit) {
+            return true;
+        }
+        debugSuppressed.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Coloca uma mensagem no buffer circular, sem bloquear.
+     */
+    private void enqueue(Level level, String message, Throwable error) {
+        startWriter();
+        AtomicReferenceArray<Event> buffer = slots;
+        int capacity = buffer.length();
+        Event event = new Event(System.currentTimeMillis(), level, component, message, error);
+        while (true) {
+            long position = tail.get();
+            if (position - head >= capacity) {
+                dropped.incrementAndGet(); // Buffer cheio: a escrita está atrasada
+                return;
+            }
+            if (tail.compareAndSet(position, position + 1)) {
+                buffer.set((int) (position & (capacity - 1)), event);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Inicia a thread de escrita na primeira mensagem.
+     */
+    private static void startWriter() {
+        if (writer != null) {
+            return;
+        }
+        synchronized (Log.class) {
+            if (writer != null) {
+                return;
+            }
+            Thread thread = new Thread(Log::drainLoop, "log-writer");
+            thread.setDaemon(true);
+            thread.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(Log::flush, "log-flush"));
+            writer = thread;
+        }
+    }
+
+    /**
+     * Ciclo da thread de escrita.
+     */
+    private static void drainLoop() {
+        while (true) {
+            if (drain() == 0) {
+                LockSupport.parkNanos(2_000_000); // Sem mensagens: espera 2ms
+            }
+        }
+    }
+
+    /**
+     * Escreve as mensagens pendentes (chamado também no fecho do processo).
+     */
+    public static void flush() {
+        for (int i = 0; i < 100 && head < tail.get(); i++) {
+            drain();
+        }
+    }
+
+    /**
+     * Escreve, em lote, as mensagens disponíveis no buffer.
+     *
+     * @return Número de mensagens escritas.
+     */
+    private static synchronized int drain() {
+        AtomicReferenceArray<Event> buffer = slots;
+        int mask = buffer.length() - 1;
+        int written = 0;
+        StringBuilder out = new StringBuilder();
+        StringBuilder err = new StringBuilder();
+        long position = head;
+        while (position < tail.get()) {
+            int index = (int) (position & mask);
+            Event event = buffer.get(index);
+            if (event == null) {
+                break; // Posição reservada mas ainda não preenchida
+            }
+            buffer.set(index, null);
+            position++;
+            head = position;
+            format(event, event.level.compareTo(Level.WARN) >= 0 ? err : out);
+            written++;
+        }
+        long lost = dropped.getAndSet(0);
+        if (lost > 0) {
+            err.append(LocalDateTime.now().format(TIME_FORMATTER)).append(" : ⚠️ [log] ").append(lost)
+                    .append(" mensagens descartadas (buffer cheio)").append(System.lineSeparator());
+        }
+        write(out, System.out);
+        write(err, System.err);
+        return written;
+    }
+
+    /**
+     * Formata uma mensagem no formato usado pelos componentes.
+     */
+    private static void format(Event event, StringBuilder target) {
+        target.append(LocalDateTime.ofInstant(Instant.ofEpochMilli(event.time), ZoneId.systemDefault())
+                .format(TIME_FORMATTER))
+                .append(" : ");
+        if (event.level == Level.DEBUG) {
+            target.append("[").append(event.component).append("] ");
+        }
+        target.append(event.message).append(System.lineSeparator());
+        if (event.error != null) {
+            StringWriter trace = new StringWriter();
+            event.error.printStackTrace(new PrintWriter(trace));
+            target.append(trace);
+        }
+    }
+
+    /**
+     * Escreve um lote numa stream de uma só vez.
+     */
+    private static void write(StringBuilder text, PrintStream stream) {
+        if (text.length() > 0) {
+            stream.print(text);
+            stream.flush();
+        }
+    }
+
+    /**
+     * Obtém o nível configurado de um componente.
+     */
+    private static Level levelFor(String component) {
+        return parseLevel(config.getProperty("logLevel." + component), defaultLevel);
+    }
+
+    /**
+     * Converte o nome de um nível.
+     */
+    private static Level parseLevel(String value, Level fallback) {
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Level.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,412 @@
+package meta1sd;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Metrics - Registo de métricas do processo (contadores, gauges e histogramas)
+ * exportadas em formato de texto Prometheus por um pequeno servidor HTTP local
+ * ({@code GET /metrics}).
+ * O registo de valores não aloca memória nem usa locks: os contadores são
+ * {@link LongAdder} (com células por thread sob contenção) e os histogramas
+ * guardam contagens em baldes log-lineares (8 sub-baldes por potência de 2,
+ * erro relativo inferior a 12,5%), atualizados com incrementos atómicos.
+ * Os histogramas são exportados como histogramas Prometheus (contagens
+ * cumulativas por limite {@code le}, uma por potência de 2), pelo que os
+ * percentis de uma janela são calculados no Prometheus a partir da taxa de
+ * cada balde ({@code histogram_quantile(0.99, rate(..._bucket[5m]))}).
+ */
+public final class Metrics {
+
+    /**
+     * Contador monotónico.
+     */
+    public static final class Counter {
+        private final LongAdder value = new LongAdder();
+
+        /**
+         * Incrementa o contador.
+         */
+        public void inc() {
+            value.increment();
+        }
+
+        /**
+         * Soma um valor ao contador.
+         *
+         * @param amount Valor (não negativo).
+         */
+        public void add(long amount) {
+            value.add(amount);
+        }
+
+        /**
+         * Retorna o valor atual.
+         *
+         * @return Valor do contador.
+         */
+        public long get() {
+            return value.sum();
+        }
+    }
+
+    /**
+     * Histograma de valores inteiros não negativos (ex.: nanossegundos ou
+     * tamanhos), exportado como histograma Prometheus (baldes, soma e
+     * contagem).
+     */
+    public static final class Histogram {
+        private static final int SUB_BITS = 3; // 8 sub-baldes por potência de 2
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+        private static final int GROUPS = 64 - SUB_BITS + 1; // Grupos de sub-baldes (um por potência de 2)
+        private static final int BUCKETS = GROUPS * SUB_BUCKETS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final double scale; // Fator aplicado na exportação (ex.: 1e-9 para segundos)
+
+        Histogram(double scale) {
+            this.scale = scale;
+        }
+
+        /**
+         * Regista um valor (negativos contam como 0).
+         *
+         * @param value Valor.
+         */
+        public void record(long value) {
+            long v = Math.max(0, value);
+            buckets.incrementAndGet(bucketOf(v));
+            count.increment();
+            sum.add(v);
+        }
+
+        /**
+         * Regista o tempo decorrido desde {@code startNanos}.
+         *
+         * @param startNanos Valor de {@link System#nanoTime()} no início.
+         */
+        public void recordSince(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        /**
+         * Retorna o número de valores registados.
+         *
+         * @return Contagem.
+         */
+        public long count() {
+            return count.sum();
+        }
+
+        /**
+         * Estima um percentil desde a criação do histograma (limite superior do
+         * balde, já escalado).
+         *
+         * @param quantile Quantil entre 0 e 1.
+         * @return O valor estimado, ou 0 sem valores.
+         */
+        public double quantile(double quantile) {
+            long[] snapshot = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] = buckets.get(i);
+                total += snapshot[i];
+            }
+            return quantile(snapshot, total, quantile);
+        }
+
+        private double quantile(long[] snapshot, long total, double quantile) {
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) {
+                    return upperBound(i) * scale;
+                }
+            }
+            return upperBound(BUCKETS - 1) * scale;
+        }
+
+        /**
+         * Índice do balde de um valor: os valores abaixo de 8 têm balde próprio; os
+         * restantes usam o expoente e os 3 bits seguintes ao mais significativo.
+         */
+        static int bucketOf(long v) {
+            if (v < SUB_BUCKETS) {
+                return (int) v;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(v);
+            int sub = (int) (v >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+        }
+
+        /**
+         * Maior valor que cai num balde.
+         */
+        static long upperBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+            long sub = bucket % SUB_BUCKETS;
+            long lower = (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+            return lower + (1L << (exponent - SUB_BITS)) - 1;
+        }
+
+        /**
+         * Escreve as contagens cumulativas no fim de cada grupo (potência de 2),
+         * do primeiro ao último grupo com valores, seguidas de {@code +Inf}.
+         * Como as contagens nunca diminuem, os limites exportados só aumentam
+         * de uma leitura para a seguinte.
+         */
+        private void write(StringBuilder out, String name, String labels) {
+            long[] snapshot = new long[BUCKETS];
+            long total = 0;
+            int first = -1;
+            int last = -1;
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] = buckets.get(i);
+                total += snapshot[i];
+                if (snapshot[i] > 0) {
+                    first = first < 0 ? i : first;
+                    last = i;
+                }
+            }
+            String prefix = labels.isEmpty() ? "" : labels + ",";
+            long cumulative = 0;
+            for (int group = 0; group < GROUPS && last >= 0; group++) {
+                int end = (group + 1) * SUB_BUCKETS - 1;
+                for (int i = group * SUB_BUCKETS; i <= end; i++) {
+                    cumulative += snapshot[i];
+                }
+                if (group >= first / SUB_BUCKETS && group <= last / SUB_BUCKETS) {
+                    out.append(name).append("_bucket{").append(prefix).append("le=\"")
+                            .append(number(upperBound(end) * scale)).append("\"} ").append(cumulative).append('\n');
+                }
+            }
+            out.append(name).append("_bucket{").append(prefix).append("le=\"+Inf\"} ").append(total).append('\n');
+            String suffix = labels.isEmpty() ? "" : "{" + labels + "}";
+            out.append(name).append("_sum").append(suffix).append(' ').append(number(sum.sum() * scale)).append('\n');
+            out.append(name).append("_count").append(suffix).append(' ').append(total).append('\n');
+        }
+    }
+
+    /**
+     * Família de métricas com o mesmo nome (uma série por conjunto de labels).
+     */
+    private static final class Family {
+        final String name;
+        final String help;
+        final String type;
+        final Map<String, Object> series = new ConcurrentSkipListMap<>(); // Labels -> métrica
+
+        Family(String name, String help, String type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    private static final int MAX_LABELED_SERIES = 50; // Séries exportadas por gauge com labels dinâmicas
+    private static final Map<String, Family> FAMILIES = new ConcurrentSkipListMap<>();
+    private static HttpServer server;
+
+    private Metrics() {
+    }
+
+    /**
+     * Obtém (ou cria) um contador.
+     *
+     * @param name   Nome Prometheus (ex.: {@code barrel_docs_indexed_total}).
+     * @param help   Descrição.
+     * @param labels Pares nome/valor de labels.
+     * @return O contador (o mesmo para o mesmo nome e labels).
+     */
+    public static Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, help, "counter").series.computeIfAbsent(labels(labels), k -> new Counter());
+    }
+
+    /**
+     * Obtém (ou cria) um histograma de durações em nanossegundos, exportado em
+     * segundos.
+     *
+     * @param name   Nome Prometheus (ex.: {@code barrel_query_seconds}).
+     * @param help   Descrição.
+     * @param labels Pares nome/valor de labels.
+     * @return O histograma.
+     */
+    public static Histogram timer(String name, String help, String... labels) {
+        return histogram(name, help, 1e-9, labels);
+    }
+
+    /**
+     * Obtém (ou cria) um histograma de valores sem unidade (ex.: tamanhos).
+     *
+     * @param name   Nome Prometheus.
+     * @param help   Descrição.
+     * @param labels Pares nome/valor de labels.
+     * @return O histograma.
+     */
+    public static Histogram histogram(String name, String help, String... labels) {
+        return histogram(name, help, 1, labels);
+    }
+
+    private static Histogram histogram(String name, String help, double scale, String... labels) {
+        return (Histogram) family(name, help, "histogram").series.computeIfAbsent(labels(labels),
+                k -> new Histogram(scale));
+    }
+
+    /**
+     * Regista um gauge lido no momento da exportação.
+     *
+     * @param name   Nome Prometheus.
+     * @param help   Descrição.
+     * @param value  Fornece o valor atual.
+     * @param labels Pares nome/valor de labels.
+     */
+    public static void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, "gauge").series.put(labels(labels), value);
+    }
+
+    /**
+     * Regista um gauge com uma label de valores dinâmicos (ex.: por host); só
+     * são exportadas as {@value #MAX_LABELED_SERIES} séries com maior valor.
+     *
+     * @param name   Nome Prometheus.
+     * @param help   Descrição.
+     * @param label  Nome da label.
+     * @param values Fornece os valores atuais por valor da label.
+     */
+    public static void gauge(String name, String help, String label, Supplier<Map<String, ? extends Number>> values) {
+        family(name, help, "gauge").series.put(label, values);
+    }
+
+    private static Family family(String name, String help, String type) {
+        Family family = FAMILIES.computeIfAbsent(name, k -> new Family(name, help, type));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("Métrica " + name + " já registada como " + family.type);
+        }
+        return family;
+    }
+
+    /**
+     * Formata pares nome/valor como labels Prometheus.
+     */
+    private static String labels(String... pairs) {
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i + 1 < pairs.length; i += 2) {
+            if (out.length() > 0) {
+                out.append(',');
+            }
+            out.append(pairs[i]).append("=\"").append(escape(pairs[i + 1])).append('"');
+        }
+        return out.toString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String number(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    /**
+     * Exporta todas as métricas em formato de texto Prometheus.
+     *
+     * @return O texto da exportação.
+     */
+    @SuppressWarnings("unchecked")
+    public static String export() {
+        StringBuilder out = new StringBuilder();
+        for (Family family : FAMILIES.values()) {
+            out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+            for (Map.Entry<String, Object> entry : family.series.entrySet()) {
+                String labels = entry.getKey();
+                Object metric = entry.getValue();
+                if (metric instanceof Counter) {
+                    out.append(family.name).append(labels.isEmpty() ? "" : "{" + labels + "}").append(' ')
+                            .append(((Counter) metric).get()).append('\n');
+                } else if (metric instanceof Histogram) {
+                    ((Histogram) metric).write(out, family.name, labels);
+                } else if (metric instanceof DoubleSupplier) {
+                    out.append(family.name).append(labels.isEmpty() ? "" : "{" + labels + "}").append(' ')
+                            .append(number(((DoubleSupplier) metric).getAsDouble())).append('\n');
+                } else {
+                    writeLabeled(out, family.name, labels,
+                            ((Supplier<Map<String, ? extends Number>>) metric).get());
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    private static void writeLabeled(StringBuilder out, String name, String label,
+            Map<String, ? extends Number> values) {
+        List<Map.Entry<String, ? extends Number>> entries = new ArrayList<>(values.entrySet());
+        entries.sort(Comparator.comparingDouble((Map.Entry<String, ? extends Number> e) -> e.getValue().doubleValue())
+                .reversed());
+        for (int i = 0; i < Math.min(MAX_LABELED_SERIES, entries.size()); i++) {
+            out.append(name).append('{').append(label).append("=\"").append(escape(entries.get(i).getKey()))
+                    .append("\"} ").append(number(entries.get(i).getValue().doubleValue())).append('\n');
+        }
+    }
+
+    /**
+     * Inicia o servidor HTTP das métricas, se configurado.
+     * O endpoint não tem autenticação, por isso os componentes escutam por
+     * omissão só no loopback ({@code metricsHost = 127.0.0.1}); um endereço
+     * externo ou 0.0.0.0 expõe-no ao resto da rede.
+     *
+     * @param host Endereço onde escutar.
+     * @param port Porta (0 escolhe uma porta livre; negativa desativa).
+     * @return A porta usada, ou -1 se o servidor não foi iniciado.
+     * @throws IOException Se não for possível abrir a porta.
+     */
+    public static synchronized int startServer(String host, int port) throws IOException {
+        if (port < 0) {
+            return -1;
+        }
+        if (server == null) {
+            HttpServer http = HttpServer.create(new InetSocketAddress(host, port), 0);
+            http.createContext("/metrics", exchange -> {
+                byte[] body = export().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(body);
+                }
+            });
+            http.setExecutor(Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "metrics-http");
+                thread.setDaemon(true);
+                return thread;
+            }));
+            http.start();
+            server = http;
+        }
+        return server.getAddress().getPort();
+    }
+}
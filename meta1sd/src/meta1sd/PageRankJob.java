@@ -0,0 +1,249 @@
+package meta1sd;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * PageRankJob - Calcula o PageRank do grafo de links de uma barrel em segundo
+ * plano.
+ * O grafo é lido numa representação CSR (compressed sparse row) das ligações
+ * de entrada; cada iteração é dividida por intervalos de páginas entre os
+ * núcleos com fork/join (cada página só lê as contribuições das que apontam
+ * para ela, sem contenção). O cálculo parte do vetor anterior, pelo que após
+ * pequenas alterações converge em poucas iterações. O resultado é publicado de
+ * forma atómica como um objeto imutável, lido pela ordenação das pesquisas.
+ */
+public class PageRankJob implements Runnable {
+    private static final Log LOG = Log.get("barrel");
+
+    /**
+     * Grafo em formato CSR: as ligações de entrada da página {@code v} são
+     * {@code inSources[inOffsets[v] .. inOffsets[v + 1] - 1]}.
+     */
+    public static class Graph {
+        final String[] urls; // Id -> URL
+        final int[] inOffsets; // Tamanho urls.length + 1
+        final int[] inSources; // Ids das páginas de origem
+        final int[] outDegree; // Número de links de saída de cada página
+
+        /**
+         * Construtor do grafo.
+         *
+         * @param urls      URL de cada id.
+         * @param inOffsets Início das ligações de entrada de cada id.
+         * @param inSources Origens das ligações de entrada.
+         * @param outDegree Número de links de saída de cada id.
+         */
+        public Graph(String[] urls, int[] inOffsets, int[] inSources, int[] outDegree) {
+            this.urls = urls;
+            this.inOffsets = inOffsets;
+            this.inSources = inSources;
+            this.outDegree = outDegree;
+        }
+
+        /**
+         * Retorna o número de páginas.
+         *
+         * @return Número de páginas.
+         */
+        public int size() {
+            return urls.length;
+        }
+    }
+
+    /**
+     * Resultado imutável de um cálculo do PageRank.
+     */
+    public static final class Scores {
+        /** Resultado vazio, antes do primeiro cálculo */
+        public static final Scores EMPTY = new Scores(new HashMap<>(), new double[0], 0, 0, 0);
+
+        private final Map<String, Integer> ids;
+        private final double[] ranks;
+        public final int iterations; // Iterações até convergir
+        public final double residual; // Diferença L1 da última iteração
+        public final long durationMs; // Duração do cálculo
+
+        Scores(Map<String, Integer> ids, double[] ranks, int iterations, double residual, long durationMs) {
+            this.ids = ids;
+            this.ranks = ranks;
+            this.iterations = iterations;
+            this.residual = residual;
+            this.durationMs = durationMs;
+        }
+
+        /**
+         * Retorna o PageRank de uma URL, escalado para que a média seja 1.
+         *
+         * @param url URL da página.
+         * @return O PageRank escalado, ou 0 se a página não estiver no grafo.
+         */
+        public double score(String url) {
+            Integer id = ids.get(url);
+            return id == null ? 0 : ranks[id] * ranks.length;
+        }
+
+        /**
+         * Retorna o número de páginas com PageRank.
+         *
+         * @return Número de páginas.
+         */
+        public int size() {
+            return ranks.length;
+        }
+    }
+
+    private static final int CHUNK = 4096; // Páginas por tarefa fork/join
+
+    private final Supplier<Graph> graphSupplier;
+    private final double damping;
+    private final double tolerance;
+    private final int maxIterations;
+    private final ForkJoinPool pool = ForkJoinPool.commonPool();
+    private final AtomicReference<Scores> scores = new AtomicReference<>(Scores.EMPTY);
+
+    /**
+     * Construtor do job.
+     *
+     * @param graphSupplier Fornece um snapshot do grafo em cada execução.
+     * @param damping       Fator de amortecimento (tipicamente 0.85).
+     * @param tolerance     Diferença L1 abaixo da qual o cálculo converge.
+     * @param maxIterations Número máximo de iterações por execução.
+     */
+    public PageRankJob(Supplier<Graph> graphSupplier, double damping, double tolerance, int maxIterations) {
+        this.graphSupplier = graphSupplier;
+        this.damping = damping;
+        this.tolerance = tolerance;
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * Retorna o último resultado publicado.
+     *
+     * @return Os scores atuais (nunca null).
+     */
+    public Scores getScores() {
+        return scores.get();
+    }
+
+    /**
+     * Recalcula o PageRank e publica o resultado.
+     */
+    @Override
+    public void run() {
+        try {
+            long start = System.currentTimeMillis();
+            Graph graph = graphSupplier.get();
+            Scores next = compute(graph, scores.get(), System.currentTimeMillis() - start);
+            scores.set(next);
+            LOG.info("📈 PageRank calculado - Páginas: " + next.size()
+                    + ", Iterações: " + next.iterations + ", Resíduo: " + String.format("%.2e", next.residual)
+                    + ", Duração: " + next.durationMs + "ms");
+        } catch (Exception e) {
+            // Uma falha não pode cancelar as execuções seguintes
+            LOG.error("❌ Erro ao calcular o PageRank: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Executa as iterações do PageRank, partindo do resultado anterior.
+     *
+     * @param graph       Grafo em CSR.
+     * @param previous    Resultado anterior (vetor inicial).
+     * @param snapshotMs  Tempo gasto a obter o grafo.
+     * @return O novo resultado.
+     */
+    private Scores compute(Graph graph, Scores previous, long snapshotMs) {
+        long start = System.currentTimeMillis();
+        int n = graph.size();
+        Map<String, Integer> ids = new HashMap<>(n * 2);
+        double[] rank = new double[n];
+        if (n == 0) {
+            return new Scores(ids, rank, 0, 0, snapshotMs);
+        }
+
+        // Vetor inicial: valores anteriores (páginas novas recebem 1/n), normalizado
+        double sum = 0;
+        for (int v = 0; v < n; v++) {
+            ids.put(graph.urls[v], v);
+            double old = previous.score(graph.urls[v]) / Math.max(1, previous.size());
+            rank[v] = old > 0 ? old : 1.0 / n;
+            sum += rank[v];
+        }
+        for (int v = 0; v < n; v++) {
+            rank[v] /= sum;
+        }
+
+        double[] next = new double[n];
+        double[] contribution = new double[n];
+        int iterations = 0;
+        double residual = Double.MAX_VALUE;
+        while (iterations < maxIterations && residual > tolerance) {
+            // Páginas sem links de saída distribuem o seu valor por todas
+            double dangling = 0;
+            for (int v = 0; v < n; v++) {
+                if (graph.outDegree[v] == 0) {
+                    dangling += rank[v];
+                    contribution[v] = 0;
+                } else {
+                    contribution[v] = rank[v] / graph.outDegree[v];
+                }
+            }
+            double base = (1 - damping) / n + damping * dangling / n;
+            pool.invoke(new Iteration(graph, contribution, next, base, 0, n));
+
+            residual = 0;
+            for (int v = 0; v < n; v++) {
+                residual += Math.abs(next[v] - rank[v]);
+            }
+            double[] swap = rank;
+            rank = next;
+            next = swap;
+            iterations++;
+        }
+        return new Scores(ids, rank, iterations, residual, snapshotMs + System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Calcula o novo valor de um intervalo de páginas (divide-se ao meio até
+     * {@link #CHUNK} páginas).
+     */
+    private class Iteration extends RecursiveAction {
+        private final Graph graph;
+        private final double[] contribution;
+        private final double[] next;
+        private final double base;
+        private final int from;
+        private final int to;
+
+        Iteration(Graph graph, double[] contribution, double[] next, double base, int from, int to) {
+            this.graph = graph;
+            this.contribution = contribution;
+            this.next = next;
+            this.base = base;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > CHUNK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Iteration(graph, contribution, next, base, from, middle),
+                        new Iteration(graph, contribution, next, base, middle, to));
+                return;
+            }
+            for (int v = from; v < to; v++) {
+                double incoming = 0;
+                for (int e = graph.inOffsets[v]; e < graph.inOffsets[v + 1]; e++) {
+                    incoming += contribution[graph.inSources[e]];
+                }
+                next[v] = base + damping * incoming;
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package meta1sd;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * RMIBarrelTransport - Transporte de dados que usa diretamente os métodos RMI
+ * da barrel. É o transporte por omissão.
+ * As transferências de páginas usam o timeout de leitura dos dados
+ * ({@link RMITimeoutSocketFactory#dataCall}), não o das chamadas de controlo.
+ */
+public class RMIBarrelTransport implements BarrelTransport {
+    private final RMIIndexStorageBarrel barrel; // Referência RMI da barrel
+
+    /**
+     * Construtor do transporte RMI.
+     *
+     * @param barrel Referência RMI da barrel.
+     */
+    public RMIBarrelTransport(RMIIndexStorageBarrel barrel) {
+        this.barrel = barrel;
+    }
+
+    @Override
+    public void storeSiteData(SiteData siteData) throws IOException {
+        RMITimeoutSocketFactory.dataCall(() -> {
+            barrel.storeSiteData(siteData);
+            return null;
+        });
+    }
+
+    @Override
+    public void storeSiteData(List<SiteData> batch) throws IOException {
+        RMITimeoutSocketFactory.dataCall(() -> {
+            for (SiteData siteData : batch) {
+                barrel.storeSiteData(siteData);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteSiteData(String url, boolean propagated) throws IOException {
+        barrel.deleteSiteData(url, propagated);
+    }
+
+    @Override
+    public Set<SiteData> getSiteDataSet() throws IOException {
+        return RMITimeoutSocketFactory.dataCall(barrel::getSiteDataSet);
+    }
+
+    @Override
+    public Map<String, String> getUrlTexts() throws IOException {
+        return RMITimeoutSocketFactory.dataCall(barrel::getUrlTexts);
+    }
+}
@@ -293,7 +293,11 @@ public class RMIClient {
             case 4:
                 System.out.println(CYAN + "           ADMINISTRATION PANEL" + RESET);
                 printSeparator();
-                System.out.println(RED + "⚠ This feature is currently not implemented." + RESET);
+                try {
+                    printSystemStats(gateway.getSystemStats());
+                } catch (RemoteException e) {
+                    System.out.println(RED + "\n❌ Error while fetching system statistics: " + e.getMessage() + RESET);
+                }
                 break;
 
             case 5:
@@ -312,6 +316,37 @@ public class RMIClient {
         }
     }
 
+    /**
+     * Imprime as estatísticas do sistema obtidas do gateway.
+     * 
+     * @param stats Estatísticas do sistema.
+     */
+    private void printSystemStats(SystemStats stats) {
+        System.out.println(YELLOW + "Active Barrels (" + stats.getBarrels().size() + ")" + RESET);
+        if (stats.getBarrels().isEmpty()) {
+            System.out.println("  No barrels registered.");
+        }
+        for (SystemStats.BarrelStats barrel : stats.getBarrels()) {
+            System.out.printf("  " + GREEN + "Barrel %d" + RESET + " - %d pages, %d terms, avg response %.1f ms"
+                    + " (%d calls)%n", barrel.getId(), barrel.getPages(), barrel.getTerms(),
+                    barrel.getAvgResponseMs(), barrel.getRequests());
+        }
+
+        System.out.println();
+        System.out.println(YELLOW + "Top " + stats.getTopQueries().size() + " Searches" + RESET);
+        if (stats.getTopQueries().isEmpty()) {
+            System.out.println("  No searches yet.");
+        }
+        int rank = 1;
+        for (SystemStats.QueryCount query : stats.getTopQueries()) {
+            System.out.printf("  %2d. %s " + PURPLE + "(%d)" + RESET + "%n", rank++, query.getQuery(),
+                    query.getCount());
+        }
+
+        System.out.println();
+        System.out.println(YELLOW + "URLs waiting to be crawled: " + RESET + stats.getFrontierSize());
+    }
+
     /**
      * Verifica se a entrada do usuário é um número inteiro.
      * 
@@ -374,6 +409,9 @@ public class RMIClient {
             prop.load(input);
             input.close();
 
+            // Timeouts nos sockets RMI para não bloquear o terminal numa gateway lenta
+            RMITimeoutSocketFactory.install(prop);
+
             String registryN = prop.getProperty("registryN");
             client.characterLimit = Integer.parseInt(prop.getProperty("limChar"));
 
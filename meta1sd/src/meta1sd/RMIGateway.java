@@ -1,16 +1,25 @@
 package meta1sd;
 
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.TreeSet;
 import java.util.Random;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.List;
@@ -25,10 +34,76 @@ public class RMIGateway extends UnicastRemoteObject
 
     private LinkedBlockingQueue<String> urlQueue;
     private int urlSearchCount, urlSearchDepth;
+    private long queuePollTimeoutMs = 5000; // Espera máxima de popqueue (inferior ao timeout de leitura RMI)
     private HashSet<String> isqueued;
-    private Map<Integer, RMIIndexStorageBarrel> barrels = new HashMap<>();
+    private Map<Integer, RMIIndexStorageBarrel> barrels = new ConcurrentHashMap<>();
     private Random random = new Random();
-    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final Log LOG = Log.get("gateway"); // Seleção de barrels (DEBUG limitado)
+    private final Map<String, Long> frontierByHost = new ConcurrentHashMap<>(); // Host -> URLs na fila
+
+    // Estatísticas do sistema, agregadas à medida que as operações acontecem
+    private static final int TOP_QUERIES = 10;
+    private final Map<Integer, BarrelActivity> barrelActivity = new ConcurrentHashMap<>();
+    private volatile HeavyHitters queryFrequency = new HeavyHitters(100, 2048, 4, 0); // Pesquisas mais frequentes
+
+    // Cache dos resultados das pesquisas frequentes (termos analisados -> resultados)
+    private final Map<String, CachedSearch> searchCache = new ConcurrentHashMap<>();
+    private int searchCacheSize = 0; // 0 = cache desativada
+    private long searchCacheTtlMs = 10000;
+    private long searchCacheMinFrequency = 2;
+    private ScheduledExecutorService searchCacheWarmer;
+
+    /**
+     * Resultados de uma pesquisa, a barrel que os devolveu e a geração do índice
+     * dessa barrel no momento da pesquisa.
+     */
+    private static class CachedSearch {
+        final String query; // Pesquisa normalizada (palavras) que os obteve
+        final List<SiteData> results;
+        final int barrelId;
+        final long generation;
+        final long createdAt;
+
+        CachedSearch(String query, List<SiteData> results, int barrelId, long generation, long createdAt) {
+            this.query = query;
+            this.results = results;
+            this.barrelId = barrelId;
+            this.generation = generation;
+            this.createdAt = createdAt;
+        }
+    }
+
+    /**
+     * Atividade de uma barrel vista pelo gateway: tempos de resposta das chamadas
+     * feitas pelo gateway e último tamanho do índice reportado pela barrel.
+     */
+    private static class BarrelActivity {
+        final LongAdder calls = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        volatile int pages;
+        volatile int terms;
+        volatile long reportedAt;
+        final AtomicLong generation = new AtomicLong(); // Muda quando o tamanho do índice muda
+
+        void record(long nanos) {
+            calls.increment();
+            totalNanos.add(nanos);
+        }
+    }
+
+    // Métricas (exportadas em /metrics quando metricsPort está configurado)
+    private static final Metrics.Histogram PONG_TIME = Metrics.timer("rmi_call_seconds",
+            "Duração das chamadas RMI feitas por este processo", "method", "gatewaypong");
+    private static final Metrics.Histogram SEARCH_TIME = Metrics.timer("rmi_call_seconds",
+            "Duração das chamadas RMI feitas por este processo", "method", "searchPagesByWords");
+    private static final Metrics.Histogram LINKS_TIME = Metrics.timer("rmi_call_seconds",
+            "Duração das chamadas RMI feitas por este processo", "method", "getIncomingLinksForUrl");
+    private static final Metrics.Counter CACHE_HITS = Metrics.counter("gateway_search_cache_hits_total",
+            "Pesquisas respondidas pela cache do gateway");
+    private static final Metrics.Counter CACHE_MISSES = Metrics.counter("gateway_search_cache_misses_total",
+            "Pesquisas enviadas a uma barrel com a cache ativa");
+    private static final Metrics.Counter CACHE_WARMED = Metrics.counter("gateway_search_cache_warmed_total",
+            "Pesquisas frequentes atualizadas na cache antes de expirarem");
 
     /**
      * Construtor da classe RMIGateway.
@@ -41,24 +116,26 @@ public class RMIGateway extends UnicastRemoteObject
     }
 
     /**
-     * Obtém o timestamp atual formatado.
+     * Obtém uma barrel aleatória registrada.
      * 
-     * @return O timestamp formatado como uma string.
+     * @return A barrel aleatória ou null se não houver barrels disponíveis.
+     * @throws RemoteException Se ocorrer um erro de comunicação remota.
      */
-    private String getTimestamp() {
-        return LocalDateTime.now().format(TIME_FORMATTER);
+    public RMIIndexStorageBarrel getRandomBarrel() throws RemoteException {
+        Map.Entry<Integer, RMIIndexStorageBarrel> selected = selectBarrel();
+        return selected != null ? selected.getValue() : null;
     }
 
     /**
-     * Obtém uma barrel aleatória registrada.
+     * Escolhe uma barrel aleatória que responda, removendo do registro as que
+     * não respondem.
      * 
-     * @return A barrel aleatória ou null se não houver barrels disponíveis.
-     * @throws RemoteException Se ocorrer um erro de comunicação remota.
+     * @return O ID e a barrel escolhida, ou null se não houver barrels
+     *         disponíveis.
      */
-    public RMIIndexStorageBarrel getRandomBarrel() throws RemoteException {
+    private Map.Entry<Integer, RMIIndexStorageBarrel> selectBarrel() {
         if (barrels.isEmpty()) {
-            System.out.println(
-                    getTimestamp() + " : ⚠️ Tentativa de obter barrel aleatória, mas não há barrels registradas");
+            LOG.warn("⚠️ Tentativa de obter barrel aleatória, mas não há barrels registradas");
             return null;
         }
 
@@ -75,26 +152,42 @@ public class RMIGateway extends UnicastRemoteObject
             // Testar se a barrel está funcionando
             try {
                 // Teste simples: chamar um método que não altera estado
+                long start = System.nanoTime();
                 selectedBarrel.gatewaypong("Gateway");
-                System.out.println(getTimestamp() + " : 🎲 Barrel aleatória selecionada e testada: " + randomId);
-                return selectedBarrel;
+                recordCall(randomId, PONG_TIME, start);
+                LOG.debug(() -> "🎲 Barrel aleatória selecionada e testada: " + randomId);
+                return new AbstractMap.SimpleImmutableEntry<>(randomId, selectedBarrel);
             } catch (RemoteException e) {
                 // A barrel não está respondendo, remover do registro
-                System.out.println(
-                        getTimestamp() + " : ⚠️ Barrel " + randomId + " não está respondendo. Removendo do registro.");
+                LOG.warn("⚠️ Barrel " + randomId + " não está respondendo. Removendo do registro.");
                 barrels.remove(randomId);
+                barrelActivity.remove(randomId);
                 barrelIds.remove(randomIndex);
 
                 // Registrar o erro para diagnóstico
-                System.err.println(getTimestamp() + " : ❌ Erro ao testar barrel " + randomId + ": " + e.getMessage());
+                LOG.error("❌ Erro ao testar barrel " + randomId + ": " + e.getMessage());
             }
         }
 
         // Se chegou aqui, não encontrou nenhuma barrel funcional
-        System.out.println(getTimestamp() + " : ❌ Não foi possível encontrar uma barrel funcional");
+        LOG.error("❌ Não foi possível encontrar uma barrel funcional");
         return null;
     }
 
+    /**
+     * Regista a duração de uma chamada a uma barrel (métricas e tempo médio de
+     * resposta da barrel).
+     * 
+     * @param barrelId ID da barrel.
+     * @param timer    Histograma da operação.
+     * @param start    Valor de {@link System#nanoTime()} no início da chamada.
+     */
+    private void recordCall(int barrelId, Metrics.Histogram timer, long start) {
+        long nanos = System.nanoTime() - start;
+        timer.record(nanos);
+        barrelActivity.computeIfAbsent(barrelId, id -> new BarrelActivity()).record(nanos);
+    }
+
     /**
      * Adiciona uma URL à fila de indexação.
      * 
@@ -104,35 +197,171 @@ public class RMIGateway extends UnicastRemoteObject
      */
     public void clientIndexUrl(String url) throws InterruptedException, RemoteException {
         if (urlQueue.contains(url) || isqueued.contains(url)) {
-            System.out.println(getTimestamp() + " : URL (" + url + ") was already queued or indexed.");
+            LOG.debug(() -> "URL (" + url + ") was already queued or indexed.");
             return;
         }
         urlQueue.offer(url);
-        System.out.println(getTimestamp() + " : URL " + url + " added to the queue.");
+        frontierByHost.merge(hostOf(url), 1L, Long::sum);
+        LOG.debug(() -> "URL " + url + " added to the queue.");
         isqueued.add(url);
         urlSearchCount = 0;
     }
 
     /**
-     * Retorna páginas que correspondem às palavras fornecidas.
+     * Retorna páginas que correspondem às palavras fornecidas. As pesquisas
+     * frequentes são respondidas pela cache enquanto os resultados não expiram.
+     * <p>
+     * A cache é indexada pelos termos analisados da pesquisa (como a barrel os
+     * pesquisa), pelo que variações de maiúsculas, acentos, flexões e stopwords
+     * partilham a entrada. As páginas são guardadas pelos downloaders
+     * diretamente nas barrels, sem passar pelo gateway; cada resultado guarda a
+     * geração do índice da barrel que o devolveu e deixa de ser válido quando
+     * essa barrel reporta um índice de tamanho diferente
+     * ({@link #reportBarrelStats}). Uma página reindexada sem alterar esses
+     * tamanhos pode aparecer com os resultados antigos até
+     * {@code searchCacheTtlMs}.
      * 
      * @param words As palavras a serem pesquisadas.
      * @return Lista de SiteData que correspondem às palavras.
      * @throws RemoteException Se ocorrer um erro de comunicação remota.
      */
     public List<SiteData> returnPagesbyWords(String words) throws RemoteException {
-        RMIIndexStorageBarrel barrel = getRandomBarrel();
-        if (barrel == null) {
-            System.out.println(getTimestamp() + " : ⚠️ Não há barrels disponíveis para pesquisa de palavras");
+        String query = normalizeQuery(words);
+        if (query.isEmpty()) {
+            return new ArrayList<>();
+        }
+        long frequency = queryFrequency.record(query);
+        String key = cacheKey(query);
+        if (searchCacheSize > 0 && !key.isEmpty()) {
+            CachedSearch cached = searchCache.get(key);
+            if (cached != null && isFresh(cached, searchCacheTtlMs)) {
+                CACHE_HITS.inc();
+                return cached.results;
+            }
+            CACHE_MISSES.inc();
+        }
+
+        CachedSearch search = searchBarrels(query);
+        if (search == null) {
+            LOG.warn("⚠️ Não há barrels disponíveis para pesquisa de palavras");
             return new ArrayList<>();
         }
+        cacheSearch(key, frequency, search);
+        return search.results;
+    }
+
+    /**
+     * Envia uma pesquisa a uma barrel.
+     * 
+     * @param query A pesquisa normalizada.
+     * @return Os resultados e a geração do índice da barrel que os devolveu, ou
+     *         null se não houver barrels disponíveis.
+     * @throws RemoteException Se ocorrer um erro de comunicação remota.
+     */
+    private CachedSearch searchBarrels(String query) throws RemoteException {
+        Map.Entry<Integer, RMIIndexStorageBarrel> barrel = selectBarrel();
+        if (barrel == null) {
+            return null;
+        }
+        // Lida antes da pesquisa: um índice alterado durante a pesquisa invalida-a
+        long generation = generationOf(barrel.getKey());
+        Set<String> wordsSet = new HashSet<>(Arrays.asList(query.split(" ")));
+        long start = System.nanoTime();
+        List<SiteData> result = barrel.getValue().searchPagesByWords(wordsSet);
+        recordCall(barrel.getKey(), SEARCH_TIME, start);
+        return new CachedSearch(query, result, barrel.getKey(), generation, System.currentTimeMillis());
+    }
+
+    /**
+     * Retorna a geração atual do índice de uma barrel.
+     * 
+     * @param barrelId ID da barrel.
+     * @return A geração (0 antes do primeiro envio de estatísticas).
+     */
+    private long generationOf(int barrelId) {
+        BarrelActivity activity = barrelActivity.get(barrelId);
+        return activity == null ? 0 : activity.generation.get();
+    }
+
+    /**
+     * Verifica se um resultado da cache ainda pode ser usado: não é mais antigo
+     * do que {@code maxAgeMs} e o índice da barrel que o devolveu não mudou.
+     * 
+     * @param cached   O resultado guardado.
+     * @param maxAgeMs Idade máxima.
+     * @return true se o resultado é válido.
+     */
+    private boolean isFresh(CachedSearch cached, long maxAgeMs) {
+        return System.currentTimeMillis() - cached.createdAt < maxAgeMs
+                && cached.generation == generationOf(cached.barrelId);
+    }
+
+    /**
+     * Guarda os resultados de uma pesquisa na cache se a pesquisa for frequente.
+     * Com a cache cheia, a pesquisa só entra se for mais frequente do que a
+     * menos frequente das guardadas (ou se houver resultados expirados), para que
+     * pesquisas feitas uma única vez não expulsem as populares.
+     * 
+     * @param key       A chave da pesquisa na cache ({@link #cacheKey}).
+     * @param frequency A frequência estimada da pesquisa.
+     * @param search    Os resultados da pesquisa.
+     */
+    private void cacheSearch(String key, long frequency, CachedSearch search) {
+        if (searchCacheSize <= 0 || key.isEmpty() || frequency < searchCacheMinFrequency) {
+            return;
+        }
+        if (searchCache.size() >= searchCacheSize && !searchCache.containsKey(key)) {
+            String victim = null;
+            long victimFrequency = Long.MAX_VALUE;
+            for (Map.Entry<String, CachedSearch> entry : searchCache.entrySet()) {
+                if (!isFresh(entry.getValue(), searchCacheTtlMs)) {
+                    victim = entry.getKey();
+                    victimFrequency = 0;
+                    break;
+                }
+                long candidate = queryFrequency.estimate(entry.getValue().query);
+                if (candidate < victimFrequency) {
+                    victim = entry.getKey();
+                    victimFrequency = candidate;
+                }
+            }
+            if (victim == null || victimFrequency >= frequency) {
+                return;
+            }
+            searchCache.remove(victim);
+        }
+        searchCache.put(key, search);
+    }
 
-        Set<String> wordsSet = new HashSet<>();
-        String[] wordsArray = words.split(" ");
-        for (String word : wordsArray) {
-            wordsSet.add(word);
+    /**
+     * Atualiza na cache as pesquisas mais frequentes que ainda não estão na
+     * cache, que passaram metade do tempo de validade ou cuja barrel alterou o
+     * índice, para que continuem a ser respondidas sem esperar por uma barrel.
+     * 
+     * @param topK Número de pesquisas frequentes a manter atualizadas.
+     */
+    private void warmSearchCache(int topK) {
+        for (SystemStats.QueryCount hot : queryFrequency.top(topK)) {
+            if (hot.getCount() < searchCacheMinFrequency) {
+                return; // O top está ordenado: as restantes também não entram
+            }
+            String key = cacheKey(hot.getQuery());
+            CachedSearch cached = searchCache.get(key);
+            if (key.isEmpty() || cached != null && isFresh(cached, searchCacheTtlMs / 2)) {
+                continue;
+            }
+            try {
+                CachedSearch search = searchBarrels(hot.getQuery());
+                if (search == null) {
+                    return; // Sem barrels
+                }
+                cacheSearch(key, hot.getCount(), search);
+                CACHE_WARMED.inc();
+            } catch (Exception e) {
+                // A barrel pode ter falhado; a pesquisa é atualizada no próximo intervalo
+                LOG.warn("⚠️ Falha ao atualizar a pesquisa '" + hot.getQuery() + "' na cache: " + e.getMessage());
+            }
         }
-        return barrel.searchPagesByWords(wordsSet);
     }
 
     /**
@@ -143,13 +372,90 @@ public class RMIGateway extends UnicastRemoteObject
      * @throws RemoteException Se ocorrer um erro de comunicação remota.
      */
     public List<String> returnLinkedUrls(String url) throws RemoteException {
-        RMIIndexStorageBarrel barrel = getRandomBarrel();
+        Map.Entry<Integer, RMIIndexStorageBarrel> barrel = selectBarrel();
         if (barrel == null) {
-            System.out.println(getTimestamp() + " : ⚠️ Não há barrels disponíveis para consulta de URLs vinculadas");
+            LOG.warn("⚠️ Não há barrels disponíveis para consulta de URLs vinculadas");
             return new ArrayList<>();
         }
 
-        return barrel.getIncomingLinksForUrl(url);
+        long start = System.nanoTime();
+        List<String> result = barrel.getValue().getIncomingLinksForUrl(url);
+        recordCall(barrel.getKey(), LINKS_TIME, start);
+        return result;
+    }
+
+    /**
+     * Normaliza uma pesquisa como o conjunto das suas palavras (minúsculas, sem
+     * repetições, por ordem), pois a ordem das palavras não altera os
+     * resultados.
+     * 
+     * @param words As palavras pesquisadas.
+     * @return A pesquisa normalizada, vazia se não tiver palavras.
+     */
+    private static String normalizeQuery(String words) {
+        if (words == null || words.isBlank()) {
+            return "";
+        }
+        return String.join(" ", new TreeSet<>(Arrays.asList(
+                words.trim().toLowerCase(Locale.ROOT).split("\\s+"))));
+    }
+
+    /**
+     * Retorna a chave de uma pesquisa na cache: os termos produzidos pelo
+     * {@link Analyzer} (acentos, stopwords e stemming, como na barrel), sem
+     * repetições e por ordem.
+     * 
+     * @param query A pesquisa normalizada.
+     * @return A chave, vazia se a pesquisa não tiver termos pesquisáveis.
+     */
+    private static String cacheKey(String query) {
+        return String.join(" ", new TreeSet<>(Analyzer.getDefault().terms(query)));
+    }
+
+    /**
+     * Retorna as estatísticas do sistema a partir dos valores já agregados pelo
+     * gateway (sem contactar as barrels).
+     * 
+     * @return As estatísticas atuais.
+     * @throws RemoteException Se ocorrer um erro de comunicação remota.
+     */
+    public SystemStats getSystemStats() throws RemoteException {
+        List<SystemStats.BarrelStats> barrelStats = new ArrayList<>();
+        for (Integer id : new TreeSet<>(barrels.keySet())) {
+            BarrelActivity activity = barrelActivity.get(id);
+            if (activity == null) {
+                barrelStats.add(new SystemStats.BarrelStats(id, 0, 0, 0, 0, 0));
+                continue;
+            }
+            long calls = activity.calls.sum();
+            double avgMs = calls == 0 ? 0 : activity.totalNanos.sum() / (calls * 1e6);
+            barrelStats.add(new SystemStats.BarrelStats(id, activity.pages, activity.terms, calls, avgMs,
+                    activity.reportedAt));
+        }
+
+        List<SystemStats.QueryCount> top = new ArrayList<>(queryFrequency.top(TOP_QUERIES));
+        return new SystemStats(barrelStats, top, urlQueue.size(), System.currentTimeMillis());
+    }
+
+    /**
+     * Recebe o tamanho atual do índice de uma barrel. Se o tamanho mudou desde o
+     * último envio, a barrel guardou ou apagou páginas: a geração do seu índice
+     * avança e os resultados que ela devolveu deixam de ser válidos na cache (os
+     * das outras barrels mantêm-se).
+     * 
+     * @param id    O ID da barrel.
+     * @param pages Número de páginas indexadas.
+     * @param terms Número de termos no índice invertido.
+     * @throws RemoteException Se ocorrer um erro de comunicação remota.
+     */
+    public void reportBarrelStats(int id, int pages, int terms) throws RemoteException {
+        BarrelActivity activity = barrelActivity.computeIfAbsent(id, k -> new BarrelActivity());
+        if (activity.pages != pages || activity.terms != terms) {
+            activity.generation.incrementAndGet();
+        }
+        activity.pages = pages;
+        activity.terms = terms;
+        activity.reportedAt = System.currentTimeMillis();
     }
 
     /**
@@ -163,23 +469,100 @@ public class RMIGateway extends UnicastRemoteObject
             return;
         }
         if (urlQueue.contains(url) || isqueued.contains(url)) {
-            System.out.println(getTimestamp() + " : URL (" + url + ") was already queued or indexed.");
+            LOG.debug(() -> "URL (" + url + ") was already queued or indexed.");
             return;
         }
         urlQueue.offer(url);
-        System.out.println(getTimestamp() + " : URL " + url + " added to the queue.");
+        frontierByHost.merge(hostOf(url), 1L, Long::sum);
+        LOG.debug(() -> "URL " + url + " added to the queue.");
         isqueued.add(url);
         urlSearchCount++;
     }
 
     /**
      * Remove e retorna a próxima URL da fila.
+     * Espera no máximo {@code queuePollTimeoutMs}, para que a chamada remota
+     * termine antes do timeout de leitura dos sockets RMI dos downloaders.
      * 
-     * @return A próxima URL da fila.
+     * @return A próxima URL da fila, ou null se a fila continuar vazia.
      * @throws InterruptedException Se a operação for interrompida.
      */
     public String popqueue() throws InterruptedException {
-        return urlQueue.take();
+        String url = urlQueue.poll(queuePollTimeoutMs, TimeUnit.MILLISECONDS);
+        if (url != null) {
+            frontierByHost.computeIfPresent(hostOf(url), (host, count) -> count > 1 ? count - 1 : null);
+        }
+        return url;
+    }
+
+    /**
+     * Obtém o host de uma URL, para as métricas da fila por host.
+     * 
+     * @param url A URL.
+     * @return O host, ou "invalido" se a URL não tiver host.
+     */
+    private static String hostOf(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host != null ? host : "invalido";
+        } catch (IllegalArgumentException e) {
+            return "invalido";
+        }
+    }
+
+    /**
+     * Regista as métricas do gateway (fila de URLs e barrels) e inicia o
+     * servidor HTTP das métricas na porta {@code metricsPort} (0 escolhe uma
+     * porta livre; negativa ou ausente desativa), no endereço
+     * {@code metricsHost} (por omissão só o loopback).
+     * 
+     * @param prop Propriedades do gateway.
+     * @throws IOException Se não for possível abrir a porta.
+     */
+    private void configureMetrics(Properties prop) throws IOException {
+        int port = Integer.parseInt(prop.getProperty("metricsPort", "-1").trim());
+        if (port < 0) {
+            return;
+        }
+        Metrics.gauge("gateway_frontier_depth", "URLs na fila à espera de downloaders", urlQueue::size);
+        Metrics.gauge("gateway_frontier_host_depth", "URLs na fila por host (os hosts com mais URLs)", "host",
+                () -> frontierByHost);
+        Metrics.gauge("gateway_urls_seen", "URLs já colocadas na fila", () -> isqueued.size());
+        Metrics.gauge("gateway_barrels", "Barrels registadas", () -> barrels.size());
+        Metrics.gauge("gateway_search_cache_entries", "Pesquisas guardadas na cache", () -> searchCache.size());
+        String host = prop.getProperty("metricsHost", "127.0.0.1").trim();
+        port = Metrics.startServer(host, port);
+        LOG.info("📊 Métricas em http://" + host + ":" + port + "/metrics");
+    }
+
+    /**
+     * Configura a contagem das pesquisas frequentes e a cache dos seus
+     * resultados, e inicia a thread que mantém atualizadas na cache as
+     * pesquisas mais frequentes.
+     * 
+     * @param prop Propriedades do gateway.
+     */
+    void configureSearchCache(Properties prop) {
+        queryFrequency = new HeavyHitters(
+                Integer.parseInt(prop.getProperty("queryTopK", "100").trim()),
+                Integer.parseInt(prop.getProperty("querySketchWidth", "2048").trim()),
+                Integer.parseInt(prop.getProperty("querySketchDepth", "4").trim()),
+                Long.parseLong(prop.getProperty("querySketchDecayEvery", "0").trim()));
+        searchCacheSize = Integer.parseInt(prop.getProperty("searchCacheSize", "0").trim());
+        searchCacheTtlMs = Long.parseLong(prop.getProperty("searchCacheTtlMs", "10000").trim());
+        searchCacheMinFrequency = Long.parseLong(prop.getProperty("searchCacheMinFrequency", "2").trim());
+        long warmInterval = Long.parseLong(prop.getProperty("searchCacheWarmIntervalSeconds", "5").trim());
+        int warmTopK = Integer.parseInt(prop.getProperty("searchCacheWarmTopK", "20").trim());
+        if (searchCacheSize <= 0 || warmInterval <= 0 || warmTopK <= 0) {
+            return;
+        }
+        searchCacheWarmer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "search-cache-warmer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        searchCacheWarmer.scheduleWithFixedDelay(() -> warmSearchCache(warmTopK), warmInterval, warmInterval,
+                TimeUnit.SECONDS);
     }
 
     /**
@@ -193,7 +576,7 @@ public class RMIGateway extends UnicastRemoteObject
         barrels.put(id, barrel);
         barrels.get(id).gatewaypong("Gateway");
         barrels.get(id).registerallIBS(barrels, id, barrel);
-        System.out.println(getTimestamp() + " : 📝 Barrel" + id + " registrada!");
+        LOG.info("📝 Barrel" + id + " registrada!");
     }
 
     /**
@@ -206,10 +589,11 @@ public class RMIGateway extends UnicastRemoteObject
     public boolean unsubscribeIBS(int id) throws RemoteException {
         if (barrels.containsKey(id)) {
             barrels.remove(id);
-            System.out.println(getTimestamp() + " : Barrel " + id + " removida do registro");
+            barrelActivity.remove(id);
+            LOG.info("Barrel " + id + " removida do registro");
             return true;
         } else {
-            System.out.println(getTimestamp() + " : Barrel " + id + " não encontrada no registro");
+            LOG.warn("Barrel " + id + " não encontrada no registro");
             return false;
         }
     }
@@ -235,10 +619,16 @@ public class RMIGateway extends UnicastRemoteObject
         String gatewayClientN, gatewayDownloaderN, gatewayIBSDownloaderN;
 
         try {
-            RMIGateway gateway = new RMIGateway();
             Properties prop = new Properties();
             InputStream input = new FileInputStream(args[0]);
             prop.load(input);
+            Log.configure(prop);
+            // Analyzer das chaves da cache de pesquisas (igual ao das barrels)
+            Analyzer.setDefault(Analyzer.fromProperties(prop));
+
+            // A fábrica de sockets tem de ser instalada antes de exportar o gateway
+            RMITimeoutSocketFactory.install(prop);
+            RMIGateway gateway = new RMIGateway();
 
             gatewayClientPort = Integer.parseInt(prop.getProperty("gatewayClientPort"));
             gatewayClientN = prop.getProperty("gatewayClientN");
@@ -250,29 +640,28 @@ public class RMIGateway extends UnicastRemoteObject
             gatewayIBSDownloaderN = prop.getProperty("gatewayIBSDownloaderN");
 
             gateway.urlSearchDepth = Integer.parseInt(prop.getProperty("urlSearchDepth"));
+            gateway.queuePollTimeoutMs = Long.parseLong(prop.getProperty("queuePollTimeoutMs", "5000").trim());
+            gateway.configureSearchCache(prop);
+            gateway.configureMetrics(prop);
 
             try {
                 java.rmi.registry.LocateRegistry.createRegistry(gatewayClientPort).rebind(gatewayClientN, gateway);
-                System.out.println("RMI Registry started on port " + gatewayClientPort);
-                System.out.println("Gateway registered as '" + gatewayClientN + "' on port " + gatewayClientPort);
+                LOG.info("RMI Registry started on port " + gatewayClientPort);
+                LOG.info("Gateway registered as '" + gatewayClientN + "' on port " + gatewayClientPort);
 
                 java.rmi.registry.LocateRegistry.createRegistry(gatewayDownloaderPort).rebind(gatewayDownloaderN,
                         gateway);
-                System.out
-                        .println("Gateway registered as '" + gatewayDownloaderN + "' on port " + gatewayDownloaderPort);
+                LOG.info("Gateway registered as '" + gatewayDownloaderN + "' on port " + gatewayDownloaderPort);
 
                 java.rmi.registry.LocateRegistry.createRegistry(gatewayIBSDownloaderPort).rebind(gatewayIBSDownloaderN,
                         gateway);
-                System.out.println(
-                        "Gateway registered as '" + gatewayIBSDownloaderN + "' on port " + gatewayIBSDownloaderPort);
+                LOG.info("Gateway registered as '" + gatewayIBSDownloaderN + "' on port " + gatewayIBSDownloaderPort);
 
             } catch (Exception e) {
-                System.out.println("Error registering gateway: " + e.getMessage());
-                e.printStackTrace();
+                LOG.error("Error registering gateway: " + e.getMessage(), e);
             }
         } catch (Exception e) {
-            System.out.println("Error initializing gateway: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Error initializing gateway: " + e.getMessage(), e);
         }
     }
 }
\ No newline at end of file
@@ -36,4 +36,13 @@ public interface RMIGatewayClientInterface extends Remote {
      * @throws RemoteException Se ocorrer um erro de comunicação remota.
      */
     public List<String> returnLinkedUrls(String url) throws RemoteException;
+
+    /**
+     * Retorna as estatísticas do sistema para o painel de administração (barrels
+     * ativas, pesquisas mais frequentes e tamanho da fila de URLs).
+     * 
+     * @return As estatísticas agregadas pelo gateway.
+     * @throws RemoteException Se ocorrer um erro de comunicação remota.
+     */
+    public SystemStats getSystemStats() throws RemoteException;
 }
@@ -20,9 +20,9 @@ public interface RMIGatewayDownloaderInterface extends Remote {
     public void queueUrls(String url) throws InterruptedException, RemoteException;
 
     /**
-     * Remove e retorna a próxima URL da fila.
+     * Remove e retorna a próxima URL da fila, esperando um tempo limitado.
      * 
-     * @return A próxima URL da fila.
+     * @return A próxima URL da fila, ou null se a fila continuar vazia.
      * @throws InterruptedException Se a operação for interrompida.
      * @throws RemoteException      Se ocorrer um erro de comunicação remota.
      */
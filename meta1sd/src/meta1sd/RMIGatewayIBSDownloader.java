@@ -45,4 +45,15 @@ public interface RMIGatewayIBSDownloader extends Remote {
      * @throws RemoteException Se ocorrer um erro de comunicação remota.
      */
     public boolean unsubscribeIBS(int id) throws RemoteException;
+
+    /**
+     * Recebe o tamanho atual do índice de uma barrel (enviado periodicamente
+     * pela barrel, para as estatísticas do sistema).
+     * 
+     * @param id    O ID da barrel.
+     * @param pages Número de páginas indexadas.
+     * @param terms Número de termos no índice invertido.
+     * @throws RemoteException Se ocorrer um erro de comunicação remota.
+     */
+    public void reportBarrelStats(int id, int pages, int terms) throws RemoteException;
 }
\ No newline at end of file
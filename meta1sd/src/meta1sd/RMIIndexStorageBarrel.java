@@ -30,6 +30,18 @@ public interface RMIIndexStorageBarrel extends Remote {
      */
     public void storeSiteData(SiteData siteData) throws RemoteException;
 
+    /**
+     * Apaga uma página (por exemplo, quando deixou de existir: HTTP 404/410).
+     * A página deixa de aparecer nas pesquisas de imediato e os seus dados são
+     * removidos dos índices em segundo plano.
+     * 
+     * @param url        URL da página a apagar.
+     * @param propagated true se o pedido já vem de outra barrel (não é
+     *                   propagado de novo).
+     * @throws RemoteException Se ocorrer um erro de comunicação remota.
+     */
+    public void deleteSiteData(String url, boolean propagated) throws RemoteException;
+
     /**
      * Pesquisa páginas que contêm todas as palavras especificadas.
      * 
@@ -134,4 +146,13 @@ public interface RMIIndexStorageBarrel extends Remote {
      */
     public void syncFromExistingBarrel(RMIIndexStorageBarrel existingBarrel) throws RemoteException;
 
+    /**
+     * Retorna o endpoint do transporte binário de dados da barrel.
+     * 
+     * @return Endpoint no formato host:porta, ou null se a barrel só aceitar
+     *         dados por RMI.
+     * @throws RemoteException Se ocorrer um erro de comunicação remota.
+     */
+    public String getDataEndpoint() throws RemoteException;
+
 }
\ No newline at end of file
@@ -0,0 +1,322 @@
+package meta1sd;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.rmi.server.RMISocketFactory;
+import java.util.Properties;
+
+/**
+ * RMITimeoutSocketFactory - Fábrica de sockets RMI com timeouts de ligação e
+ * de leitura configuráveis, TCP_NODELAY e keep-alive.
+ * É instalada como fábrica global do processo, pelo que se aplica tanto às
+ * chamadas remotas como aos lookups no registry. Assim uma barrel meio morta
+ * faz falhar a chamada ao fim do timeout configurado em vez de bloquear o
+ * chamador até ao timeout TCP do sistema operativo.
+ * <p>
+ * O timeout de leitura é aplicado por chamada: antes de cada leitura o socket
+ * usa o limite da thread que lê a resposta. As transferências de dados entre
+ * barrels (sincronização e propagação), que podem demorar muito mais do que uma
+ * chamada de controlo, correm com {@link #dataCall} e usam
+ * {@code rmiDataReadTimeoutMs} em vez de {@code rmiReadTimeoutMs}.
+ */
+public class RMITimeoutSocketFactory extends RMISocketFactory implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final Log LOG = Log.get("rmi");
+
+    // Timeout de leitura da chamada em curso nesta thread (null = readTimeoutMs)
+    private static final ThreadLocal<Integer> CALL_READ_TIMEOUT = new ThreadLocal<>();
+
+    /**
+     * Chamada remota executada com um timeout de leitura próprio.
+     *
+     * @param <T> Tipo do resultado.
+     * @param <E> Exceção lançada pela chamada.
+     */
+    @FunctionalInterface
+    public interface Call<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    private final int connectTimeoutMs; // Timeout para estabelecer a ligação (0 = sem timeout)
+    private final int readTimeoutMs; // Timeout de leitura de cada resposta (0 = sem timeout)
+    private final int dataReadTimeoutMs; // Timeout de leitura das transferências de dados (0 = sem timeout)
+    private final boolean tcpNoDelay; // Desativa o algoritmo de Nagle
+    private final boolean keepAlive; // Ativa o keep-alive TCP
+
+    /**
+     * Construtor da fábrica de sockets.
+     *
+     * @param connectTimeoutMs Timeout de ligação em milissegundos (0 = sem
+     *                         timeout).
+     * @param readTimeoutMs    Timeout de leitura em milissegundos (0 = sem
+     *                         timeout).
+     * @param tcpNoDelay       Se deve ativar TCP_NODELAY.
+     * @param keepAlive        Se deve ativar SO_KEEPALIVE.
+     */
+    public RMITimeoutSocketFactory(int connectTimeoutMs, int readTimeoutMs, boolean tcpNoDelay, boolean keepAlive) {
+        this(connectTimeoutMs, readTimeoutMs, 0, tcpNoDelay, keepAlive);
+    }
+
+    /**
+     * Construtor da fábrica de sockets com um timeout próprio para as
+     * transferências de dados.
+     *
+     * @param connectTimeoutMs  Timeout de ligação em milissegundos (0 = sem
+     *                          timeout).
+     * @param readTimeoutMs     Timeout de leitura em milissegundos (0 = sem
+     *                          timeout).
+     * @param dataReadTimeoutMs Timeout de leitura das chamadas feitas com
+     *                          {@link #dataCall} (0 = sem timeout).
+     * @param tcpNoDelay        Se deve ativar TCP_NODELAY.
+     * @param keepAlive         Se deve ativar SO_KEEPALIVE.
+     */
+    public RMITimeoutSocketFactory(int connectTimeoutMs, int readTimeoutMs, int dataReadTimeoutMs, boolean tcpNoDelay,
+            boolean keepAlive) {
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.readTimeoutMs = readTimeoutMs;
+        this.dataReadTimeoutMs = dataReadTimeoutMs;
+        this.tcpNoDelay = tcpNoDelay;
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * Cria a fábrica a partir de um ficheiro de propriedades já carregado.
+     * Propriedades ausentes usam os valores por omissão.
+     *
+     * @param prop Propriedades do componente.
+     * @return A fábrica configurada.
+     */
+    public static RMITimeoutSocketFactory fromProperties(Properties prop) {
+        return new RMITimeoutSocketFactory(
+                Integer.parseInt(prop.getProperty("rmiConnectTimeoutMs", "3000").trim()),
+                Integer.parseInt(prop.getProperty("rmiReadTimeoutMs", "30000").trim()),
+                Integer.parseInt(prop.getProperty("rmiDataReadTimeoutMs", "0").trim()),
+                Boolean.parseBoolean(prop.getProperty("rmiTcpNoDelay", "true").trim()),
+                Boolean.parseBoolean(prop.getProperty("rmiKeepAlive", "true").trim()));
+    }
+
+    /**
+     * Instala a fábrica configurada nas propriedades como fábrica global de
+     * sockets RMI.
+     * Também define durante quanto tempo as ligações inativas são mantidas para
+     * reutilização ({@code rmiConnectionReuseMs}).
+     * Deve ser chamado antes de exportar objetos ou fazer lookups.
+     *
+     * @param prop Propriedades do componente.
+     * @return A fábrica instalada.
+     */
+    public static RMITimeoutSocketFactory install(Properties prop) {
+        String reuseMs = prop.getProperty("rmiConnectionReuseMs");
+        if (reuseMs != null && System.getProperty("sun.rmi.transport.connectionTimeout") == null) {
+            System.setProperty("sun.rmi.transport.connectionTimeout", reuseMs.trim());
+        }
+        return install(fromProperties(prop));
+    }
+
+    /**
+     * Instala uma fábrica como fábrica global de sockets RMI.
+     * A fábrica global só pode ser definida uma vez por processo; chamadas
+     * seguintes são ignoradas.
+     *
+     * @param factory A fábrica a instalar.
+     * @return A fábrica instalada.
+     */
+    public static synchronized RMITimeoutSocketFactory install(RMITimeoutSocketFactory factory) {
+        if (RMISocketFactory.getSocketFactory() != null) {
+            LOG.info("ℹ️ Fábrica de sockets RMI já instalada, a ignorar " + factory);
+            return factory;
+        }
+        try {
+            RMISocketFactory.setSocketFactory(factory);
+            LOG.info("⚙️ Fábrica de sockets RMI instalada: " + factory);
+        } catch (IOException e) {
+            LOG.warn("⚠️ Não foi possível instalar a fábrica de sockets RMI: " + e.getMessage());
+        }
+        return factory;
+    }
+
+    /**
+     * Executa uma chamada remota com um timeout de leitura próprio, em vez do
+     * configurado na fábrica. Aplica-se às leituras feitas por esta thread
+     * durante a chamada, mesmo em ligações reutilizadas.
+     *
+     * @param <T>       Tipo do resultado.
+     * @param <E>       Exceção lançada pela chamada.
+     * @param timeoutMs Timeout de leitura em milissegundos (0 = sem timeout).
+     * @param call      A chamada.
+     * @return O resultado da chamada.
+     * @throws E Se a chamada falhar.
+     */
+    public static <T, E extends Exception> T withReadTimeout(int timeoutMs, Call<T, E> call) throws E {
+        Integer previous = CALL_READ_TIMEOUT.get();
+        CALL_READ_TIMEOUT.set(timeoutMs);
+        try {
+            return call.call();
+        } finally {
+            if (previous == null) {
+                CALL_READ_TIMEOUT.remove();
+            } else {
+                CALL_READ_TIMEOUT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Executa uma transferência de dados entre barrels com o timeout
+     * {@code rmiDataReadTimeoutMs} da fábrica instalada (sem timeout se não
+     * houver).
+     *
+     * @param <T>  Tipo do resultado.
+     * @param <E>  Exceção lançada pela chamada.
+     * @param call A chamada.
+     * @return O resultado da chamada.
+     * @throws E Se a chamada falhar.
+     */
+    public static <T, E extends Exception> T dataCall(Call<T, E> call) throws E {
+        RMISocketFactory installed = RMISocketFactory.getSocketFactory();
+        int timeoutMs = installed instanceof RMITimeoutSocketFactory
+                ? ((RMITimeoutSocketFactory) installed).dataReadTimeoutMs
+                : 0;
+        return withReadTimeout(timeoutMs, call);
+    }
+
+    /**
+     * Cria um socket cliente ligado ao host e porta indicados, respeitando o
+     * timeout de ligação.
+     *
+     * @param host Host de destino.
+     * @param port Porta de destino.
+     * @return O socket ligado.
+     * @throws IOException Se não for possível ligar dentro do timeout.
+     */
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        // O transporte RMI redefine o SO_TIMEOUT durante e depois do handshake; o
+        // limite da chamada em curso é aplicado antes de cada leitura, porque as
+        // ligações são reutilizadas por chamadas com limites diferentes
+        Socket socket = new Socket() {
+            private int requested; // Valor pedido pelo transporte RMI
+            private int applied = -1; // Valor atual do SO_TIMEOUT
+
+            @Override
+            public void setSoTimeout(int timeout) throws SocketException {
+                requested = timeout;
+                applyReadTimeout();
+            }
+
+            @Override
+            public InputStream getInputStream() throws IOException {
+                return new FilterInputStream(super.getInputStream()) {
+                    @Override
+                    public int read() throws IOException {
+                        applyReadTimeout();
+                        return super.read();
+                    }
+
+                    @Override
+                    public int read(byte[] buffer, int offset, int length) throws IOException {
+                        applyReadTimeout();
+                        return super.read(buffer, offset, length);
+                    }
+                };
+            }
+
+            private void applyReadTimeout() throws SocketException {
+                int limit = currentReadTimeout();
+                boolean exceedsLimit = requested == 0 || requested > limit;
+                int timeout = limit > 0 && exceedsLimit ? limit : requested;
+                if (timeout != applied) {
+                    super.setSoTimeout(timeout);
+                    applied = timeout;
+                }
+            }
+        };
+        try {
+            configure(socket);
+            socket.connect(new InetSocketAddress(host, port), connectTimeoutMs);
+            return socket;
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Cria um socket servidor cujos sockets aceites usam TCP_NODELAY e
+     * keep-alive.
+     * O timeout de leitura não é aplicado do lado do servidor, onde as ligações
+     * inativas são geridas pelo próprio RMI.
+     *
+     * @param port Porta a escutar (0 = porta anónima).
+     * @return O socket servidor.
+     * @throws IOException Se não for possível abrir a porta.
+     */
+    @Override
+    public ServerSocket createServerSocket(int port) throws IOException {
+        return new ServerSocket(port) {
+            @Override
+            public Socket accept() throws IOException {
+                Socket socket = super.accept();
+                socket.setTcpNoDelay(tcpNoDelay);
+                socket.setKeepAlive(keepAlive);
+                return socket;
+            }
+        };
+    }
+
+    /**
+     * Obtém o timeout de leitura da chamada em curso na thread atual.
+     *
+     * @return Timeout em milissegundos (0 = sem timeout).
+     */
+    private int currentReadTimeout() {
+        Integer callTimeout = CALL_READ_TIMEOUT.get();
+        return callTimeout != null ? callTimeout : readTimeoutMs;
+    }
+
+    /**
+     * Aplica as opções configuradas a um socket cliente.
+     *
+     * @param socket O socket a configurar.
+     * @throws SocketException Se alguma opção não for suportada.
+     */
+    private void configure(Socket socket) throws SocketException {
+        socket.setTcpNoDelay(tcpNoDelay);
+        socket.setKeepAlive(keepAlive); // O timeout de leitura é aplicado em cada leitura
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || obj.getClass() != getClass()) {
+            return false;
+        }
+        RMITimeoutSocketFactory other = (RMITimeoutSocketFactory) obj;
+        return connectTimeoutMs == other.connectTimeoutMs && readTimeoutMs == other.readTimeoutMs
+                && dataReadTimeoutMs == other.dataReadTimeoutMs && tcpNoDelay == other.tcpNoDelay && keepAlive == other.keepAlive;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = connectTimeoutMs;
+        result = 31 * result + readTimeoutMs;
+        result = 31 * result + dataReadTimeoutMs;
+        result = 31 * result + (tcpNoDelay ? 1 : 0);
+        result = 31 * result + (keepAlive ? 1 : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "connectTimeoutMs=" + connectTimeoutMs + ", readTimeoutMs=" + readTimeoutMs + ", dataReadTimeoutMs="
+                + dataReadTimeoutMs + ", tcpNoDelay=" + tcpNoDelay + ", keepAlive=" + keepAlive;
+    }
+}
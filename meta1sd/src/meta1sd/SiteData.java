@@ -1,18 +1,27 @@
 package meta1sd;
 
-import java.io.Serializable;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 
 /**
  * SiteData - Classe que representa os dados de um site, incluindo URL, título,
- * texto, tokens e links. Implementa a interface Serializable para permitir a
- * transmissão de objetos via RMI.
+ * texto, tokens e links. Implementa a interface Externalizable para permitir a
+ * transmissão de objetos via RMI, usando a codificação compacta de
+ * {@link SiteDataCodec} em vez da serialização Java por omissão.
  */
-public class SiteData implements Serializable {
+public class SiteData implements Externalizable {
+    private static final long serialVersionUID = 2L;
+
     public String url; // URL do site
     public String title; // Título do site
     public String text; // Texto do site
     public String tokens; // Tokens extraídos do site
-    public String links; // Links encontrados no site
+    public String links; // Links encontrados no site (formato antigo, separados por espaços)
+    public String[] terms; // Termos distintos já tokenizados (null = tokenizar a partir de tokens)
+    public int[] termFreqs; // Número de ocorrências de cada termo em terms
+    public String[] outlinks; // Links de saída (null = usar links)
     private boolean isPropagated; // Indica se os dados foram propagados
 
     /**
@@ -43,6 +52,50 @@ public class SiteData implements Serializable {
         this.isPropagated = false;
     }
 
+    /**
+     * Construtor de cópia. Os arrays são partilhados, pois não são alterados
+     * depois de preenchidos.
+     *
+     * @param other Dados a copiar (o estado de propagação não é copiado).
+     */
+    public SiteData(SiteData other) {
+        this.url = other.url;
+        this.title = other.title;
+        this.text = other.text;
+        this.tokens = other.tokens;
+        this.links = other.links;
+        this.terms = other.terms;
+        this.termFreqs = other.termFreqs;
+        this.outlinks = other.outlinks;
+        this.isPropagated = false;
+    }
+
+    /**
+     * Retorna os termos já tokenizados, tokenizando {@link #tokens} se vierem
+     * no formato antigo.
+     *
+     * @return Os termos distintos do site.
+     */
+    public String[] getTerms() {
+        if (terms == null || termFreqs == null || termFreqs.length != terms.length) {
+            Tokenizer.tokenize(this);
+        }
+        return terms;
+    }
+
+    /**
+     * Retorna os links de saída, dividindo {@link #links} se vierem no formato
+     * antigo.
+     *
+     * @return Os links de saída do site.
+     */
+    public String[] getOutlinks() {
+        if (outlinks == null) {
+            outlinks = Tokenizer.splitLinks(links);
+        }
+        return outlinks;
+    }
+
     /**
      * Verifica se o objeto SiteData está vazio.
      * 
@@ -53,7 +106,9 @@ public class SiteData implements Serializable {
         return (title == null || title.isEmpty()) &&
                 (text == null || text.isEmpty()) &&
                 (tokens == null || tokens.isEmpty()) &&
-                (links == null || links.isEmpty());
+                (links == null || links.isEmpty()) &&
+                (terms == null || terms.length == 0) &&
+                (outlinks == null || outlinks.length == 0);
     }
 
     /**
@@ -100,4 +155,26 @@ public class SiteData implements Serializable {
     public String getText() {
         return text;
     }
+
+    /**
+     * Escreve o objeto no formato de {@link SiteDataCodec}.
+     *
+     * @param out Destino.
+     * @throws IOException Se ocorrer um erro de escrita.
+     */
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        SiteDataCodec.write(out, this);
+    }
+
+    /**
+     * Lê o objeto no formato de {@link SiteDataCodec}.
+     *
+     * @param in Origem.
+     * @throws IOException Se ocorrer um erro de leitura.
+     */
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        SiteDataCodec.read(in, this);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,155 @@
+package meta1sd;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * SiteDataCodec - Codificação binária compacta de {@link SiteData}, usada pelo
+ * transporte binário entre barrels e downloaders e pela serialização RMI
+ * ({@link SiteData#writeExternal}).
+ * Evita os descritores de classe e o overhead da serialização Java: os
+ * comprimentos são varints, os links seguem como lista e os tokens são omitidos
+ * quando podem ser recalculados a partir do texto. Os termos já tokenizados
+ * seguem como lista, com as frequências em varint.
+ */
+public final class SiteDataCodec {
+
+    static final int FLAG_PROPAGATED = 1; // Bit do estado de propagação
+    private static final int FLAG_TOKENS_FROM_TEXT = 2; // Tokens = texto em minúsculas (omitidos)
+    private static final int FLAG_TERMS = 4; // Termos e frequências incluídos
+
+    private SiteDataCodec() {
+    }
+
+    /**
+     * Escreve um SiteData.
+     *
+     * @param out      Destino.
+     * @param siteData Dados a escrever.
+     * @throws IOException Se ocorrer um erro de escrita.
+     */
+    public static void write(DataOutput out, SiteData siteData) throws IOException {
+        boolean tokensFromText = tokensFromText(siteData);
+        boolean hasTerms = siteData.terms != null && siteData.termFreqs != null
+                && siteData.termFreqs.length == siteData.terms.length;
+        int flags = (siteData.isPropagated() ? FLAG_PROPAGATED : 0)
+                | (tokensFromText ? FLAG_TOKENS_FROM_TEXT : 0)
+                | (hasTerms ? FLAG_TERMS : 0);
+        WireFormat.writeVarInt(out, flags);
+        WireFormat.writeString(out, siteData.url);
+        WireFormat.writeString(out, siteData.title);
+        WireFormat.writeString(out, siteData.text);
+        if (!tokensFromText) {
+            WireFormat.writeString(out, siteData.tokens);
+        }
+        if (hasTerms) {
+            WireFormat.writeVarInt(out, siteData.terms.length);
+            for (int i = 0; i < siteData.terms.length; i++) {
+                WireFormat.writeString(out, siteData.terms[i]);
+                WireFormat.writeVarInt(out, siteData.termFreqs[i]);
+            }
+        }
+        writeLinks(out, siteData);
+    }
+
+    /**
+     * Lê um SiteData escrito por {@link #write}.
+     *
+     * @param in Origem.
+     * @return Os dados lidos.
+     * @throws IOException Se ocorrer um erro de leitura.
+     */
+    public static SiteData read(DataInput in) throws IOException {
+        SiteData siteData = new SiteData();
+        read(in, siteData);
+        return siteData;
+    }
+
+    /**
+     * Lê um SiteData escrito por {@link #write} para um objeto existente.
+     *
+     * @param in       Origem.
+     * @param siteData Objeto a preencher.
+     * @throws IOException Se ocorrer um erro de leitura ou os dados forem
+     *                     inválidos.
+     */
+    static void read(DataInput in, SiteData siteData) throws IOException {
+        int flags = WireFormat.readVarInt(in);
+        siteData.url = WireFormat.readString(in);
+        siteData.title = WireFormat.readString(in);
+        siteData.text = WireFormat.readString(in);
+        if ((flags & FLAG_TOKENS_FROM_TEXT) != 0) {
+            siteData.tokens = siteData.text.toLowerCase(Locale.ROOT);
+        } else {
+            siteData.tokens = WireFormat.readString(in);
+        }
+        if ((flags & FLAG_TERMS) != 0) {
+            int size = WireFormat.checkLength(in, WireFormat.readVarInt(in));
+            siteData.terms = new String[size];
+            siteData.termFreqs = new int[size];
+            for (int i = 0; i < size; i++) {
+                siteData.terms[i] = WireFormat.readString(in);
+                siteData.termFreqs[i] = WireFormat.readVarInt(in);
+            }
+        }
+        readLinks(in, siteData);
+        siteData.setPropagated((flags & FLAG_PROPAGATED) != 0);
+    }
+
+    /**
+     * Verifica se os tokens podem ser recalculados a partir do texto.
+     *
+     * @param siteData Dados a verificar.
+     * @return true se os tokens forem o texto em minúsculas.
+     */
+    private static boolean tokensFromText(SiteData siteData) {
+        return siteData.text != null && siteData.tokens != null && !siteData.tokens.isEmpty()
+                && siteData.tokens.length() == siteData.text.length()
+                && siteData.tokens.equals(siteData.text.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Escreve os links de saída como lista prefixada pelo número de elementos
+     * (0 = sem links definidos).
+     *
+     * @param out      Destino.
+     * @param siteData Dados cujos links são escritos.
+     * @throws IOException Se ocorrer um erro de escrita.
+     */
+    private static void writeLinks(DataOutput out, SiteData siteData) throws IOException {
+        if (siteData.outlinks == null && siteData.links == null) {
+            WireFormat.writeVarInt(out, 0);
+            return;
+        }
+        String[] outlinks = siteData.getOutlinks();
+        WireFormat.writeVarInt(out, outlinks.length + 1);
+        for (String link : outlinks) {
+            WireFormat.writeString(out, link);
+        }
+    }
+
+    /**
+     * Lê os links escritos por {@link #writeLinks} para
+     * {@link SiteData#outlinks}.
+     *
+     * @param in       Origem.
+     * @param siteData Objeto a preencher.
+     * @throws IOException Se ocorrer um erro de leitura.
+     */
+    private static void readLinks(DataInput in, SiteData siteData) throws IOException {
+        int size = WireFormat.readVarInt(in) - 1;
+        if (size == -1) {
+            siteData.links = null;
+            siteData.outlinks = null;
+            return;
+        }
+        String[] outlinks = new String[WireFormat.checkLength(in, size)];
+        for (int i = 0; i < size; i++) {
+            outlinks[i] = WireFormat.readString(in);
+        }
+        siteData.links = "";
+        siteData.outlinks = outlinks;
+    }
+}
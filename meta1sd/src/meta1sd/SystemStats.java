@@ -0,0 +1,139 @@
+package meta1sd;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * SystemStats - Estatísticas do sistema devolvidas pelo gateway ao painel de
+ * administração: barrels ativas (com o tamanho do índice e o tempo médio de
+ * resposta), as pesquisas mais frequentes e o tamanho da fila de URLs.
+ * Os valores são agregados pelo gateway à medida que as operações acontecem,
+ * pelo que obter as estatísticas não contacta as barrels.
+ */
+public class SystemStats implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Estado de uma barrel ativa.
+     */
+    public static class BarrelStats implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final int id;
+        private final int pages; // Páginas indexadas (último valor reportado pela barrel)
+        private final int terms; // Termos no índice invertido
+        private final long requests; // Chamadas do gateway medidas
+        private final double avgResponseMs; // Tempo médio de resposta dessas chamadas
+        private final long reportedAt; // Instante do último relatório (ms), 0 se nunca reportou
+
+        /**
+         * Construtor das estatísticas de uma barrel.
+         *
+         * @param id            ID da barrel.
+         * @param pages         Páginas indexadas.
+         * @param terms         Termos no índice invertido.
+         * @param requests      Número de chamadas medidas.
+         * @param avgResponseMs Tempo médio de resposta em milissegundos.
+         * @param reportedAt    Instante do último relatório da barrel.
+         */
+        public BarrelStats(int id, int pages, int terms, long requests, double avgResponseMs, long reportedAt) {
+            this.id = id;
+            this.pages = pages;
+            this.terms = terms;
+            this.requests = requests;
+            this.avgResponseMs = avgResponseMs;
+            this.reportedAt = reportedAt;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public int getPages() {
+            return pages;
+        }
+
+        public int getTerms() {
+            return terms;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        public double getAvgResponseMs() {
+            return avgResponseMs;
+        }
+
+        public long getReportedAt() {
+            return reportedAt;
+        }
+    }
+
+    /**
+     * Pesquisa e número de vezes que foi feita.
+     */
+    public static class QueryCount implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String query;
+        private final long count;
+
+        /**
+         * Construtor da contagem de uma pesquisa.
+         *
+         * @param query Pesquisa (normalizada).
+         * @param count Número de vezes que foi feita.
+         */
+        public QueryCount(String query, long count) {
+            this.query = query;
+            this.count = count;
+        }
+
+        public String getQuery() {
+            return query;
+        }
+
+        public long getCount() {
+            return count;
+        }
+    }
+
+    private final List<BarrelStats> barrels;
+    private final List<QueryCount> topQueries;
+    private final int frontierSize;
+    private final long generatedAt;
+
+    /**
+     * Construtor das estatísticas do sistema.
+     *
+     * @param barrels      Barrels ativas, por ID.
+     * @param topQueries   Pesquisas mais frequentes, da mais frequente para a
+     *                     menos.
+     * @param frontierSize URLs na fila à espera de downloaders.
+     * @param generatedAt  Instante em que as estatísticas foram obtidas (ms).
+     */
+    public SystemStats(List<BarrelStats> barrels, List<QueryCount> topQueries, int frontierSize,
+            long generatedAt) {
+        this.barrels = barrels;
+        this.topQueries = topQueries;
+        this.frontierSize = frontierSize;
+        this.generatedAt = generatedAt;
+    }
+
+    public List<BarrelStats> getBarrels() {
+        return barrels;
+    }
+
+    public List<QueryCount> getTopQueries() {
+        return topQueries;
+    }
+
+    public int getFrontierSize() {
+        return frontierSize;
+    }
+
+    public long getGeneratedAt() {
+        return generatedAt;
+    }
+}
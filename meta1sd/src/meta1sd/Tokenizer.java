@@ -0,0 +1,90 @@
+package meta1sd;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tokenizer - Prepara os dados de um site para indexação: calcula os termos
+ * (com o {@link Analyzer} do processo) e divide os links, sem expressões
+ * regulares.
+ * A tokenização é feita uma vez no downloader; as barrels e as réplicas usam os
+ * termos já calculados em {@link SiteData#terms}.
+ */
+public final class Tokenizer {
+
+    private Tokenizer() {
+    }
+
+    /**
+     * Preenche {@link SiteData#terms} e {@link SiteData#termFreqs} a partir de
+     * {@link SiteData#tokens}: termos distintos, pela ordem da primeira
+     * ocorrência, e o número de ocorrências de cada um.
+     *
+     * @param siteData Dados do site a tokenizar.
+     */
+    public static void tokenize(SiteData siteData) {
+        tokenize(siteData, Analyzer.getDefault());
+    }
+
+    /**
+     * Preenche {@link SiteData#terms} e {@link SiteData#termFreqs} a partir de
+     * {@link SiteData#tokens}, com o analyzer indicado.
+     *
+     * @param siteData Dados do site a tokenizar.
+     * @param analyzer Analyzer a usar.
+     */
+    public static void tokenize(SiteData siteData, Analyzer analyzer) {
+        Map<String, int[]> counts = new LinkedHashMap<>();
+        analyzer.analyze(siteData.tokens, term -> counts.computeIfAbsent(term, k -> new int[1])[0]++);
+
+        String[] terms = new String[counts.size()];
+        int[] freqs = new int[counts.size()];
+        int i = 0;
+        for (Map.Entry<String, int[]> entry : counts.entrySet()) {
+            terms[i] = entry.getKey();
+            freqs[i] = entry.getValue()[0];
+            i++;
+        }
+        siteData.terms = terms;
+        siteData.termFreqs = freqs;
+    }
+
+    /**
+     * Divide uma lista de links separados por espaços.
+     *
+     * @param links Links separados por espaços (pode ser null).
+     * @return Array de links, sem entradas vazias.
+     */
+    public static String[] splitLinks(String links) {
+        if (links == null || links.isEmpty()) {
+            return new String[0];
+        }
+        List<String> result = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= links.length(); i++) {
+            boolean separator = i == links.length() || isWhitespace(links.charAt(i));
+            if (separator) {
+                if (start >= 0) {
+                    result.add(links.substring(start, i));
+                    start = -1;
+                }
+            } else if (start < 0) {
+                start = i;
+            }
+        }
+        return result.toArray(new String[0]);
+    }
+
+    /**
+     * Verifica se um carácter é espaço em branco (o mesmo conjunto que
+     * {@code \s} nas expressões regulares Java).
+     *
+     * @param c Carácter a verificar.
+     * @return true se for espaço em branco.
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
@@ -0,0 +1,170 @@
+package meta1sd;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * WireFormat - Primitivas da codificação binária compacta usada no transporte
+ * de dados entre componentes: inteiros de comprimento variável (varint) e
+ * strings UTF-8 prefixadas pelo comprimento.
+ */
+public final class WireFormat {
+    // Maior comprimento aceite quando a origem não indica os bytes por ler
+    static final int MAX_LENGTH = 8 * 1024 * 1024;
+
+    private WireFormat() {
+    }
+
+    /**
+     * Origem de leitura sobre uma trama já recebida por completo, que sabe
+     * quantos bytes faltam ler.
+     */
+    public static final class FrameInput extends DataInputStream {
+
+        public FrameInput(byte[] frame) {
+            super(new ByteArrayInputStream(frame));
+        }
+
+        /**
+         * @return Número de bytes da trama ainda por ler.
+         */
+        public int remaining() {
+            try {
+                return available();
+            } catch (IOException e) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Verifica um comprimento lido da rede antes de se reservar memória para
+     * ele. Cada byte ou elemento ocupa pelo menos um byte codificado, por isso
+     * numa {@link FrameInput} o comprimento não pode exceder os bytes por ler;
+     * noutras origens é limitado a {@link #MAX_LENGTH}.
+     *
+     * @param in     Origem.
+     * @param length Comprimento lido.
+     * @return O comprimento, se for válido.
+     * @throws IOException Se o comprimento for negativo ou maior do que os
+     *                     dados disponíveis.
+     */
+    public static int checkLength(DataInput in, int length) throws IOException {
+        int limit = in instanceof FrameInput ? ((FrameInput) in).remaining() : MAX_LENGTH;
+        if (length < 0 || length > limit) {
+            throw new IOException("Comprimento inválido: " + length + " (máximo " + limit + ")");
+        }
+        return length;
+    }
+
+    /**
+     * Escreve um inteiro não negativo em formato varint (7 bits por byte).
+     *
+     * @param out   Destino.
+     * @param value Valor a escrever (não negativo).
+     * @throws IOException Se ocorrer um erro de escrita.
+     */
+    public static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Lê um inteiro em formato varint.
+     *
+     * @param in Origem.
+     * @return O valor lido.
+     * @throws IOException Se ocorrer um erro de leitura ou o varint for inválido.
+     */
+    public static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Varint inválido");
+    }
+
+    /**
+     * Escreve uma string em UTF-8 prefixada pelo comprimento (varint).
+     * O comprimento é guardado com +1 para distinguir null (0) de vazia (1).
+     *
+     * @param out   Destino.
+     * @param value String a escrever (pode ser null).
+     * @throws IOException Se ocorrer um erro de escrita.
+     */
+    public static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    /**
+     * Lê uma string escrita por {@link #writeString}.
+     *
+     * @param in Origem.
+     * @return A string lida (pode ser null).
+     * @throws IOException Se ocorrer um erro de leitura ou o comprimento for
+     *                     inválido.
+     */
+    public static String readString(DataInput in) throws IOException {
+        int length = readVarInt(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        if (length == 0) {
+            return "";
+        }
+        byte[] bytes = new byte[checkLength(in, length)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Escreve uma coleção de strings prefixada pelo número de elementos.
+     *
+     * @param out    Destino.
+     * @param values Coleção a escrever.
+     * @throws IOException Se ocorrer um erro de escrita.
+     */
+    public static void writeStrings(DataOutput out, Collection<String> values) throws IOException {
+        writeVarInt(out, values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    /**
+     * Lê uma lista de strings escrita por {@link #writeStrings}.
+     *
+     * @param in Origem.
+     * @return A lista lida.
+     * @throws IOException Se ocorrer um erro de leitura ou os dados forem
+     *                     inválidos.
+     */
+    public static List<String> readStrings(DataInput in) throws IOException {
+        int size = checkLength(in, readVarInt(in));
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+}
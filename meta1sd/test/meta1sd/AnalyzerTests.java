@@ -0,0 +1,72 @@
+package meta1sd;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.text.Normalizer;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class AnalyzerTests {
+
+    private static final Analyzer PLAIN = new Analyzer(Set.of(), Analyzer.Stemmer.NONE);
+
+    @Test
+    void accentsAndCaseAreFolded() {
+        assertEquals(List.of("acao", "coracao", "unica", "pinguim", "nino"),
+                PLAIN.terms("Ação CORAÇÃO Única pingüim Niño"));
+    }
+
+    @Test
+    void decomposedAccentsFoldLikeComposedOnes() {
+        String decomposed = Normalizer.normalize("Ação Única", Normalizer.Form.NFD);
+        assertEquals(PLAIN.terms("Ação Única"), PLAIN.terms(decomposed));
+    }
+
+    @Test
+    void punctuationIsDroppedAndShortTermsIgnored() {
+        assertEquals(List.of("email", "sd2024", "rmi"), PLAIN.terms("e-mail, (SD2024) x! rmi..."));
+        assertEquals(List.of("東京", "москва"), PLAIN.terms("東京 Москва"));
+    }
+
+    @Test
+    void stopwordsAreFoldedAndRemoved() {
+        Analyzer analyzer = new Analyzer(Set.of("Não", "the"), Analyzer.Stemmer.NONE);
+        assertEquals(List.of("sei", "googol"), analyzer.terms("NÃO sei the Googol nao"));
+    }
+
+    @Test
+    void portuguesePluralsAreReduced() {
+        Analyzer analyzer = new Analyzer(Set.of(), Analyzer.Stemmer.PORTUGUESE);
+        assertEquals(List.of("acao", "pao", "bom", "animal", "papel", "flor", "luz", "casa", "lapis", "virus"),
+                analyzer.terms("ações pães bons animais papeis flores luzes casas lápis vírus"));
+    }
+
+    @Test
+    void englishPluralsAreReduced() {
+        Analyzer analyzer = new Analyzer(Set.of(), Analyzer.Stemmer.ENGLISH);
+        assertEquals(List.of("story", "system", "class", "status", "gas"),
+                analyzer.terms("stories systems class status gas"));
+    }
+
+    @Test
+    void propertiesSelectStopwordsAndStemmer() {
+        Properties prop = new Properties();
+        prop.setProperty("analyzerStopwords", "en, googol");
+        prop.setProperty("analyzerStemmer", "en");
+        Analyzer analyzer = Analyzer.fromProperties(prop);
+        assertEquals(List.of("de", "story"), analyzer.terms("the Googol de stories"));
+
+        prop.setProperty("analyzerStopwords", "none");
+        prop.setProperty("analyzerStemmer", "none");
+        assertEquals(List.of("the", "stories"), Analyzer.fromProperties(prop).terms("the stories"));
+    }
+
+    @Test
+    void defaultPropertiesUsePortugueseAndEnglishStopwords() {
+        assertEquals(List.of("motor", "pesquisa", "googol"),
+                Analyzer.fromProperties(new Properties()).terms("O motor de pesquisa the Googol"));
+    }
+}
@@ -0,0 +1,117 @@
+package meta1sd;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.net.Socket;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BinaryBarrelServerTests {
+
+    private static final int BARREL_ID = 9901;
+
+    private IndexStorageBarrel barrel;
+    private BinaryBarrelServer server;
+    private BinaryBarrelTransport transport;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        stateFile().delete();
+        barrel = new IndexStorageBarrel(BARREL_ID);
+        server = new BinaryBarrelServer(barrel, 0, 4);
+        transport = BinaryBarrelTransport.connect("localhost:" + server.getPort());
+    }
+
+    @AfterEach
+    void stopServer() throws Exception {
+        transport.close();
+        server.close();
+        barrel.saveStateNow();
+        UnicastRemoteObject.unexportObject(barrel, true);
+        stateFile().delete();
+    }
+
+    @Test
+    void pipelinedBatchIsAnsweredInOrder() throws Exception {
+        List<SiteData> batch = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            String text = "googol pagina numero" + i;
+            SiteData page = new SiteData("http://test.local/" + i, text, "");
+            page.title = text;
+            page.text = text;
+            batch.add(page);
+        }
+
+        // Com várias threads os pedidos terminam fora de ordem; o cliente
+        // rejeitaria uma resposta com um ID diferente do esperado
+        transport.storeSiteData(batch);
+        transport.ping();
+
+        assertEquals(500, barrel.searchPagesByWords(Set.of("googol")).size());
+        assertEquals(1, barrel.searchPagesByWords(Set.of("numero42")).size());
+    }
+
+    @Test
+    void requestsBeyondTheWindowWaitInsteadOfFailing() throws Exception {
+        int requests = BinaryBarrelServer.MAX_IN_FLIGHT * 3;
+        try (Socket socket = new Socket("localhost", server.getPort())) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            // Envia todos os pedidos antes de ler qualquer resposta
+            for (int id = 0; id < requests; id++) {
+                out.writeInt(5);
+                out.writeByte(BinaryBarrelTransport.OP_PING);
+                out.writeInt(id);
+            }
+            out.flush();
+
+            for (int id = 0; id < requests; id++) {
+                assertEquals(5, in.readInt());
+                assertEquals(BinaryBarrelTransport.STATUS_OK, in.readByte());
+                assertEquals(id, in.readInt());
+            }
+        }
+    }
+
+    @Test
+    void siteDataLargerThanOneChunkIsStreamed() throws Exception {
+        String filler = "x".repeat(100 * 1024);
+        List<SiteData> batch = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            SiteData page = new SiteData("http://test.local/" + i, "googol", "");
+            page.title = "googol";
+            page.text = "googol " + i + " " + filler;
+            batch.add(page);
+        }
+        transport.storeSiteData(batch);
+
+        // Cerca de 6MB em blocos de 1MB, cada trama abaixo do limite de uma resposta
+        Set<SiteData> siteData = transport.getSiteDataSet();
+        assertEquals(60, siteData.size());
+        for (SiteData page : siteData) {
+            int i = Integer.parseInt(page.url.substring("http://test.local/".length()));
+            assertEquals(batch.get(i).text, page.text);
+        }
+        Map<String, String> texts = transport.getUrlTexts();
+        assertEquals(60, texts.size());
+        assertEquals(batch.get(7).text, texts.get("http://test.local/7"));
+
+        transport.ping(); // A ligação continua utilizável depois das respostas em blocos
+    }
+
+    private static File stateFile() {
+        return new File("data/estado_barrel_" + BARREL_ID + ".json");
+    }
+}
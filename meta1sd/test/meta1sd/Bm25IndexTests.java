@@ -0,0 +1,171 @@
+package meta1sd;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class Bm25IndexTests {
+
+    private static final List<List<String>> QUERIES = List.of(
+            List.of("t0"), List.of("t1", "t2"), List.of("t3", "t7"), List.of("t0", "t5", "t9"), List.of("t11"));
+
+    @Test
+    void resultsDoNotChangeAcrossFlushesMergesAndDeletes() throws Exception {
+        Random random = new Random(7);
+        Map<String, String[]> live = new LinkedHashMap<>();
+        Bm25Index segmented = new Bm25Index();
+        segmented.setSegmentPolicy(8, 2);
+
+        for (int step = 0; step < 600; step++) {
+            String url = "http://test.local/" + random.nextInt(150);
+            if (random.nextInt(4) == 0) {
+                segmented.removeDocument(url);
+                live.remove(url);
+            } else {
+                String[] terms = randomTerms(random);
+                segmented.addDocument(url, terms, freqs(terms));
+                live.put(url, terms);
+            }
+            if (step % 100 == 0) {
+                assertSameResults(reference(live), segmented);
+            }
+        }
+        segmented.flush();
+        awaitMerges(segmented);
+
+        Bm25Index reference = reference(live);
+        assertEquals(live.size(), segmented.size());
+        assertTrue(segmented.segmentCount() < live.size() / 8);
+        assertSameResults(reference, segmented);
+    }
+
+    @Test
+    void segmentMostlyDeletedIsRewritten() throws Exception {
+        Bm25Index index = new Bm25Index();
+        index.setSegmentPolicy(10, 4);
+        for (int i = 0; i < 20; i++) {
+            index.addDocument("http://test.local/" + i, new String[] { "t" + (i % 3), "common" }, null);
+        }
+        assertEquals(2, index.segmentCount());
+
+        for (int i = 0; i < 10; i++) {
+            index.removeDocument("http://test.local/" + i);
+        }
+        awaitMerges(index);
+
+        assertEquals(1, index.segmentCount());
+        assertEquals(10, index.size());
+        List<Bm25Index.ScoredPage> results = index.search(List.of("common"), 0, url -> 0, Set.of());
+        assertEquals(10, results.size());
+        for (Bm25Index.ScoredPage page : results) {
+            assertFalse(Integer.parseInt(page.url.substring("http://test.local/".length())) < 10);
+        }
+    }
+
+    @Test
+    void termsAndInvertedIndexCoverTheBufferAndTheLiveSegmentPages() {
+        Bm25Index index = new Bm25Index();
+        index.setSegmentPolicy(2, 10);
+        index.addDocument("http://test.local/a", new String[] { "x", "y" }, null);
+        index.addDocument("http://test.local/b", new String[] { "y" }, null);
+        index.addDocument("http://test.local/c", new String[] { "z" }, null);
+        index.addDocument("http://test.local/a", new String[] { "y", "w" }, null);
+        assertEquals(2, index.segmentCount());
+
+        assertEquals(3, index.termCount());
+        Map<String, Set<String>> inverted = index.invertedIndex();
+        assertEquals(Set.of("y", "z", "w"), inverted.keySet());
+        assertEquals(Set.of("http://test.local/a", "http://test.local/b"), inverted.get("y"));
+
+        index.removeDocument("http://test.local/c");
+        assertEquals(2, index.termCount());
+        assertFalse(index.invertedIndex().containsKey("z"));
+    }
+
+    @Test
+    void deletingAPageDecrementsTheDocumentFrequencyOfItsTerms() {
+        IndexSegment segment = IndexSegment.build(
+                List.of("http://test.local/a", "http://test.local/b", "http://test.local/c"),
+                List.of(new String[] { "x", "y" }, new String[] { "y", "z" }, new String[] { "x", "y", "z" }),
+                List.of(new int[] { 1, 2 }, new int[] { 1, 1 }, new int[] { 3, 1, 1 }));
+        assertEquals(2, segment.docFreq("x"));
+        assertEquals(3, segment.docFreq("y"));
+
+        segment.delete(2);
+        segment.delete(2);
+        assertEquals(1, segment.docFreq("x"));
+        assertEquals(2, segment.docFreq("y"));
+        assertEquals(1, segment.docFreq("z"));
+
+        segment.delete(0);
+        assertEquals(0, segment.docFreq("x"));
+        assertEquals(1, segment.docFreq("y"));
+        assertEquals(0, segment.docFreq("w"));
+    }
+
+    private static void assertSameResults(Bm25Index expected, Bm25Index actual) {
+        for (List<String> query : QUERIES) {
+            assertEquals(scores(expected, query), scores(actual, query), query.toString());
+        }
+    }
+
+    /**
+     * Pontuação de todas as páginas que contêm os termos, arredondada para
+     * que diferenças na ordem das somas não contem.
+     */
+    private static Map<String, Long> scores(Bm25Index index, List<String> query) {
+        Map<String, Long> result = new HashMap<>();
+        for (Bm25Index.ScoredPage page : index.search(query, 0, url -> 0, Set.of())) {
+            result.put(page.url, Math.round(page.score * 1e9));
+        }
+        return result;
+    }
+
+    /**
+     * Índice só com as versões atuais das páginas, sem segmentos.
+     */
+    private static Bm25Index reference(Map<String, String[]> live) {
+        Bm25Index index = new Bm25Index();
+        index.setSegmentPolicy(Integer.MAX_VALUE, 2);
+        for (Map.Entry<String, String[]> page : live.entrySet()) {
+            index.addDocument(page.getKey(), page.getValue(), freqs(page.getValue()));
+        }
+        return index;
+    }
+
+    private static String[] randomTerms(Random random) {
+        return random.ints(0, 12).distinct().limit(1 + random.nextInt(6)).mapToObj(t -> "t" + t)
+                .toArray(String[]::new);
+    }
+
+    private static int[] freqs(String[] terms) {
+        int[] freqs = new int[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            freqs[i] = 1 + terms[i].length() % 3 + i;
+        }
+        return freqs;
+    }
+
+    /**
+     * Espera que a thread de fusão deixe de alterar a lista de segmentos.
+     */
+    private static void awaitMerges(Bm25Index index) throws InterruptedException {
+        int stable = 0;
+        int previous = -1;
+        for (int i = 0; i < 200 && stable < 5; i++) {
+            Thread.sleep(20);
+            int count = index.segmentCount();
+            stable = count == previous ? stable + 1 : 0;
+            previous = count;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package meta1sd;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class CountMinSketchTests {
+
+    @Test
+    void estimateIsNeverBelowTheExactCount() {
+        CountMinSketch sketch = new CountMinSketch(64, 4);
+        for (int i = 0; i < 2000; i++) {
+            sketch.add("query" + (i % 200));
+        }
+        for (int i = 0; i < 200; i++) {
+            assertTrue(sketch.estimate("query" + i) >= 10);
+        }
+    }
+
+    @Test
+    void rareKeyIsNotInflatedByAHotKey() {
+        CountMinSketch sketch = new CountMinSketch(2048, 4);
+        for (int i = 0; i < 10_000; i++) {
+            sketch.add("hot");
+        }
+        sketch.add("rare");
+        assertEquals(10_000, sketch.estimate("hot"));
+        assertEquals(1, sketch.estimate("rare"));
+    }
+
+    @Test
+    void halveAndMerge() {
+        CountMinSketch first = new CountMinSketch(256, 4);
+        CountMinSketch second = new CountMinSketch(256, 4);
+        for (int i = 0; i < 8; i++) {
+            first.add("a");
+            second.add("a");
+        }
+        first.merge(second);
+        assertEquals(16, first.estimate("a"));
+        first.halve();
+        assertEquals(8, first.estimate("a"));
+        assertThrows(IllegalArgumentException.class, () -> first.merge(new CountMinSketch(512, 4)));
+    }
+
+    @Test
+    void heavyHittersRankTheMostFrequentQueries() {
+        HeavyHitters hitters = new HeavyHitters(10, 1024, 4, 0);
+        for (int i = 0; i < 50; i++) {
+            hitters.record("java rmi");
+        }
+        for (int i = 0; i < 30; i++) {
+            hitters.record("googol");
+        }
+        for (int i = 0; i < 500; i++) {
+            hitters.record("tail" + i); // Cada uma só uma vez
+        }
+        List<SystemStats.QueryCount> top = hitters.top(2);
+        assertEquals("java rmi", top.get(0).getQuery());
+        assertEquals("googol", top.get(1).getQuery());
+        assertEquals(50, hitters.estimate("java rmi"));
+    }
+}
@@ -0,0 +1,164 @@
+package meta1sd;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class IndexStorageBarrelTests {
+
+    private static final int BARREL_ID = 9900;
+
+    private IndexStorageBarrel barrel;
+
+    @BeforeEach
+    void createBarrel() throws Exception {
+        stateFile().delete();
+        barrel = new IndexStorageBarrel(BARREL_ID);
+    }
+
+    @AfterEach
+    void closeBarrel() throws Exception {
+        barrel.saveStateNow();
+        UnicastRemoteObject.unexportObject(barrel, true);
+        stateFile().delete();
+    }
+
+    @Test
+    void storedPageCanBeSearched() throws Exception {
+        barrel.storeSiteData(page("http://test.local/1", "googol motor de pesquisa"));
+        barrel.storeSiteData(page("http://test.local/2", "outra pagina sobre java"));
+
+        List<SiteData> results = barrel.searchPagesByWords(Set.of("googol", "pesquisa"));
+
+        assertEquals(1, results.size());
+        assertEquals("http://test.local/1", results.get(0).url);
+    }
+
+    @Test
+    void reindexedPageLosesOldTerms() throws Exception {
+        barrel.storeSiteData(page("http://test.local/1", "googol motor"));
+        barrel.storeSiteData(page("http://test.local/1", "java rmi"));
+
+        assertTrue(barrel.searchPagesByWords(Set.of("googol")).isEmpty());
+        assertEquals(1, barrel.searchPagesByWords(Set.of("rmi")).size());
+    }
+
+    @Test
+    void invertedIndexFollowsTheCurrentTerms() throws Exception {
+        barrel.storeSiteData(page("http://test.local/1", "googol java"));
+        barrel.storeSiteData(page("http://test.local/2", "java"));
+        barrel.storeSiteData(page("http://test.local/1", "rmi java"));
+
+        Map<String, Set<String>> index = barrel.getInvertedIndex();
+        assertEquals(Set.of("java", "rmi"), index.keySet());
+        assertEquals(Set.of("http://test.local/1", "http://test.local/2"), index.get("java"));
+        assertEquals(Set.of("http://test.local/1"), index.get("rmi"));
+    }
+
+    @Test
+    void searchReturnsEveryMatchingPage() throws Exception {
+        for (int i = 0; i < 600; i++) {
+            barrel.storeSiteData(page("http://test.local/" + i, "googol"));
+        }
+
+        assertEquals(600, barrel.searchPagesByWords(Set.of("googol")).size());
+    }
+
+    @Test
+    void deletedPageIsNotReturned() throws Exception {
+        barrel.storeSiteData(page("http://test.local/1", "googol motor"));
+        barrel.deleteSiteData("http://test.local/1", true);
+
+        assertTrue(barrel.searchPagesByWords(Set.of("googol")).isEmpty());
+    }
+
+    @Test
+    void purgeRemovesTheDeletedPagesTermsAndLinks() throws Exception {
+        barrel.storeSiteData(page("http://test.local/a", "googol motor", "http://test.local/b"));
+        barrel.storeSiteData(page("http://test.local/x", "googol java", "http://test.local/b"));
+        barrel.deleteSiteData("http://test.local/a", true);
+
+        assertEquals(1, barrel.purgeDeletedPages());
+        assertEquals(0, barrel.purgeDeletedPages());
+        assertTrue(barrel.searchPagesByWords(Set.of("motor")).isEmpty());
+        assertEquals(1, barrel.searchPagesByWords(Set.of("googol")).size());
+        assertEquals(1, barrel.getUrlReferenceCount("http://test.local/b"));
+        assertEquals(List.of("http://test.local/x"), barrel.getPagesLinkingTo("http://test.local/b"));
+    }
+
+    @Test
+    void pageStoredAgainBeforeThePurgeIsKept() throws Exception {
+        barrel.storeSiteData(page("http://test.local/a", "googol motor"));
+        barrel.deleteSiteData("http://test.local/a", true);
+        barrel.storeSiteData(page("http://test.local/a", "googol motor"));
+
+        assertEquals(0, barrel.purgeDeletedPages());
+        assertEquals(1, barrel.searchPagesByWords(Set.of("motor")).size());
+    }
+
+    @Test
+    void storingThePageAgainKeepsReferenceCounts() throws Exception {
+        String links = "http://test.local/b http://test.local/c http://test.local/b";
+        barrel.storeSiteData(page("http://test.local/a", "googol", links));
+        barrel.storeSiteData(page("http://test.local/a", "googol", links));
+        SiteData replica = page("http://test.local/a", "googol", links);
+        replica.setPropagated(true);
+        barrel.storeSiteData(replica);
+
+        assertEquals(1, barrel.getUrlReferenceCount("http://test.local/b"));
+        assertEquals(1, barrel.getUrlReferenceCount("http://test.local/c"));
+        assertEquals(List.of("http://test.local/a"), barrel.getPagesLinkingTo("http://test.local/b"));
+    }
+
+    @Test
+    void changedOutlinksReplaceTheOldOnes() throws Exception {
+        barrel.storeSiteData(page("http://test.local/a", "googol", "http://test.local/b http://test.local/c"));
+        barrel.storeSiteData(page("http://test.local/x", "googol", "http://test.local/c"));
+        barrel.storeSiteData(page("http://test.local/a", "googol", "http://test.local/c http://test.local/d"));
+
+        assertEquals(0, barrel.getUrlReferenceCount("http://test.local/b"));
+        assertTrue(barrel.getPagesLinkingTo("http://test.local/b").isEmpty());
+        assertEquals(2, barrel.getUrlReferenceCount("http://test.local/c"));
+        assertEquals(1, barrel.getUrlReferenceCount("http://test.local/d"));
+    }
+
+    @Test
+    void stateIsSavedInTheBackgroundAndReloaded() throws Exception {
+        barrel.storeSiteData(page("http://test.local/1", "googol motor"));
+        barrel.saveStateNow();
+
+        assertTrue(stateFile().exists());
+        assertFalse(new File(stateFile().getPath() + ".tmp").exists());
+        IndexStorageBarrel reloaded = new IndexStorageBarrel(BARREL_ID);
+        try {
+            assertEquals(1, reloaded.searchPagesByWords(Set.of("motor")).size());
+        } finally {
+            UnicastRemoteObject.unexportObject(reloaded, true);
+        }
+    }
+
+    private static SiteData page(String url, String text) {
+        return page(url, text, "");
+    }
+
+    private static SiteData page(String url, String text, String links) {
+        SiteData page = new SiteData(url, text, links);
+        page.title = text;
+        page.text = text;
+        return page;
+    }
+
+    private static File stateFile() {
+        return new File("data/estado_barrel_" + BARREL_ID + ".json");
+    }
+}
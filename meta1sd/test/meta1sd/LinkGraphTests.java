@@ -0,0 +1,226 @@
+package meta1sd;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class LinkGraphTests {
+
+    @Test
+    void setGrowsPastTheLinearLimitAndShrinksBack() {
+        LinkGraph graph = new LinkGraph();
+        int sources = LinkGraph.LINEAR_LIMIT * 10;
+        for (int i = 0; i < sources; i++) {
+            assertTrue(graph.addEdge("http://s" + i, "http://target"));
+        }
+        for (int i = 0; i < sources; i++) {
+            assertFalse(graph.addEdge("http://s" + i, "http://target"));
+        }
+        assertEquals(sources, graph.inDegree("http://target"));
+        assertEquals(sources, graph.edgeCount());
+
+        for (int i = 0; i < sources; i += 2) {
+            assertTrue(graph.removeEdge("http://s" + i, "http://target"));
+            assertFalse(graph.removeEdge("http://s" + i, "http://target"));
+        }
+        Set<String> expected = new HashSet<>();
+        for (int i = 1; i < sources; i += 2) {
+            expected.add("http://s" + i);
+        }
+        assertEquals(expected, new HashSet<>(graph.incoming("http://target")));
+
+        // Abaixo do limite depois de compactar: volta ao buffer linear
+        for (int i = 1; i < sources - 4; i += 2) {
+            assertTrue(graph.removeEdge("http://s" + i, "http://target"));
+        }
+        graph.compact();
+        assertEquals(2, graph.inDegree("http://target"));
+        assertEquals(Set.of("http://s" + (sources - 3), "http://s" + (sources - 1)),
+                new HashSet<>(graph.incoming("http://target")));
+        assertTrue(graph.addEdge("http://s0", "http://target"));
+        assertFalse(graph.addEdge("http://s0", "http://target"));
+        assertEquals(3, graph.edgeCount());
+    }
+
+    @Test
+    void urlsWithoutLinksFreeTheirIds() {
+        LinkGraph graph = new LinkGraph();
+        graph.addEdge("http://a", "http://b");
+        graph.addEdge("http://a", "http://c");
+        graph.addEdge("http://x", "http://c");
+        assertEquals(4, graph.toCsr().urls.length);
+
+        // Purga de a: b fica sem ligações, c continua com a ligação de x
+        graph.removeEdge("http://a", "http://b");
+        graph.removeEdge("http://a", "http://c");
+        PageRankJob.Graph csr = graph.toCsr();
+        assertEquals(Set.of("http://x", "http://c"), new HashSet<>(Arrays.asList(csr.urls)));
+        assertEquals(1, graph.snapshot(0).inDegree("http://c"));
+        assertEquals(List.of("http://x"), graph.snapshot(0).incoming("http://c"));
+        assertEquals(0, graph.snapshot(0).inDegree("http://a"));
+
+        // Os ids livres são reutilizados
+        graph.addEdge("http://d", "http://e");
+        assertEquals(4, graph.toCsr().urls.length);
+        assertEquals(List.of("http://d"), graph.incoming("http://e"));
+        assertEquals(List.of("http://x"), graph.incoming("http://c"));
+        assertEquals(List.of("http://x"), graph.snapshot(1).incoming("http://c"));
+    }
+
+    @Test
+    void randomAddsAndRemovesMatchAReferenceSet() {
+        LinkGraph graph = new LinkGraph();
+        Set<Integer> reference = new HashSet<>();
+        Random random = new Random(42);
+        for (int step = 0; step < 20_000; step++) {
+            int source = random.nextInt(300);
+            if (random.nextInt(3) == 0) {
+                assertEquals(reference.remove(source), graph.removeEdge("http://s" + source, "http://hub"));
+            } else {
+                assertEquals(reference.add(source), graph.addEdge("http://s" + source, "http://hub"));
+            }
+            if (step % 5_000 == 0) {
+                graph.compact();
+            }
+        }
+        Set<String> expected = new HashSet<>();
+        for (int source : reference) {
+            expected.add("http://s" + source);
+            assertEquals(List.of("http://hub"), graph.outgoing("http://s" + source));
+        }
+        assertEquals(reference.size(), graph.inDegree("http://hub"));
+        assertEquals(expected, new HashSet<>(graph.incoming("http://hub")));
+        assertEquals(reference.size(), graph.edgeCount());
+    }
+
+    @Test
+    void csrHoldsEveryIncomingEdge() {
+        LinkGraph graph = smallWeb();
+        PageRankJob.Graph csr = graph.toCsr();
+        assertEquals(graph.edgeCount(), csr.inOffsets[csr.size()]);
+        for (int v = 0; v < csr.size(); v++) {
+            Set<String> sources = new HashSet<>();
+            for (int e = csr.inOffsets[v]; e < csr.inOffsets[v + 1]; e++) {
+                sources.add(csr.urls[csr.inSources[e]]);
+            }
+            assertEquals(new HashSet<>(graph.incoming(csr.urls[v])), sources);
+            assertEquals(graph.outgoing(csr.urls[v]).size(), csr.outDegree[v]);
+        }
+    }
+
+    @Test
+    void pageRankConvergesToThePowerIterationResult() {
+        LinkGraph graph = smallWeb();
+        PageRankJob job = new PageRankJob(graph::toCsr, 0.85, 1e-10, 200);
+        job.run();
+        PageRankJob.Scores scores = job.getScores();
+        assertTrue(scores.residual <= 1e-10);
+        assertTrue(scores.iterations < 200);
+
+        Map<String, Double> expected = powerIteration(graph.toCsr(), 0.85);
+        double total = 0;
+        for (Map.Entry<String, Double> entry : expected.entrySet()) {
+            assertEquals(entry.getValue() * expected.size(), scores.score(entry.getKey()), 1e-6);
+            total += scores.score(entry.getKey());
+        }
+        assertEquals(expected.size(), total, 1e-6);
+        assertTrue(scores.score("http://hub") > scores.score("http://leaf"));
+
+        // Sem alterações, o resultado anterior já é o ponto fixo
+        job.run();
+        assertTrue(job.getScores().iterations <= 2);
+    }
+
+    @Test
+    void snapshotKeepsTheGraphAsItWasWhenTaken() {
+        LinkGraph graph = smallWeb();
+        LinkGraph.Snapshot snapshot = graph.snapshot(1);
+        Set<String> hubSources = new HashSet<>(graph.incoming("http://hub"));
+
+        graph.removeEdge("http://p0", "http://hub");
+        graph.addEdge("http://new", "http://hub");
+        graph.addEdge("http://new", "http://leaf");
+        graph.clear();
+
+        assertEquals(1, snapshot.version);
+        assertEquals(40, snapshot.inDegree("http://hub"));
+        assertEquals(hubSources, new HashSet<>(snapshot.incoming("http://hub")));
+        assertEquals(List.of("http://a"), snapshot.incoming("http://leaf"));
+        assertEquals(0, snapshot.inDegree("http://new"));
+        assertTrue(snapshot.incoming("http://new").isEmpty());
+
+        graph.addEdge("http://new", "http://hub");
+        LinkGraph.Snapshot next = graph.snapshot(2);
+        assertEquals(List.of("http://new"), next.incoming("http://hub"));
+        assertEquals(40, snapshot.inDegree("http://hub"));
+    }
+
+    /**
+     * Um anel de três páginas, várias páginas a apontar para um hub e uma
+     * página sem links de saída.
+     */
+    private static LinkGraph smallWeb() {
+        LinkGraph graph = new LinkGraph();
+        graph.addEdge("http://a", "http://b");
+        graph.addEdge("http://b", "http://c");
+        graph.addEdge("http://c", "http://a");
+        for (int i = 0; i < 40; i++) {
+            graph.addEdge("http://p" + i, "http://hub");
+            graph.addEdge("http://p" + i, "http://p" + ((i + 1) % 40));
+        }
+        graph.addEdge("http://hub", "http://a");
+        graph.addEdge("http://a", "http://leaf");
+        return graph;
+    }
+
+    /**
+     * PageRank de referência, calculado sequencialmente a partir das
+     * ligações de saída.
+     */
+    private static Map<String, Double> powerIteration(PageRankJob.Graph csr, double damping) {
+        int n = csr.size();
+        List<List<Integer>> outgoing = new ArrayList<>();
+        for (int v = 0; v < n; v++) {
+            outgoing.add(new ArrayList<>());
+        }
+        for (int v = 0; v < n; v++) {
+            for (int e = csr.inOffsets[v]; e < csr.inOffsets[v + 1]; e++) {
+                outgoing.get(csr.inSources[e]).add(v);
+            }
+        }
+        double[] rank = new double[n];
+        Arrays.fill(rank, 1.0 / n);
+        for (int iteration = 0; iteration < 1000; iteration++) {
+            double[] next = new double[n];
+            double dangling = 0;
+            for (int v = 0; v < n; v++) {
+                if (outgoing.get(v).isEmpty()) {
+                    dangling += rank[v];
+                }
+                for (int target : outgoing.get(v)) {
+                    next[target] += damping * rank[v] / outgoing.get(v).size();
+                }
+            }
+            for (int v = 0; v < n; v++) {
+                next[v] += (1 - damping) / n + damping * dangling / n;
+            }
+            rank = next;
+        }
+        Map<String, Double> result = new HashMap<>();
+        for (int v = 0; v < n; v++) {
+            result.put(csr.urls[v], rank[v]);
+        }
+        return result;
+    }
+}
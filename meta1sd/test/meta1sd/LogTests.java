@@ -0,0 +1,116 @@
+package meta1sd;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class LogTests {
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+    private PrintStream originalOut;
+    private PrintStream originalErr;
+
+    @BeforeEach
+    void captureConsole() {
+        originalOut = System.out;
+        originalErr = System.err;
+        System.setOut(new PrintStream(out, true, StandardCharsets.UTF_8));
+        System.setErr(new PrintStream(err, true, StandardCharsets.UTF_8));
+    }
+
+    @AfterEach
+    void restoreConsole() {
+        Log.configure(new Properties());
+        System.setOut(originalOut);
+        System.setErr(originalErr);
+    }
+
+    @Test
+    void infoGoesToStdoutAndErrorsToStderrWithTheirTrace() throws Exception {
+        Log log = Log.get("log-test-streams");
+        log.info("mensagem informativa");
+        log.error("mensagem de erro", new IllegalStateException("causa do erro"));
+
+        String errors = awaitText(err, "causa do erro");
+        assertTrue(errors.contains("mensagem de erro"));
+        assertTrue(errors.contains("java.lang.IllegalStateException"));
+        String info = awaitText(out, "mensagem informativa");
+        assertFalse(info.contains("mensagem de erro"));
+    }
+
+    @Test
+    void componentLevelFiltersLowerMessages() throws Exception {
+        Properties prop = new Properties();
+        prop.setProperty("logLevel.log-test-levels", "WARN");
+        Log.configure(prop);
+        Log log = Log.get("log-test-levels");
+
+        assertFalse(log.isDebugEnabled());
+        log.info("informação escondida");
+        log.warn("aviso visível");
+
+        awaitText(err, "aviso visível");
+        assertFalse(text(out).contains("informação escondida"));
+    }
+
+    @Test
+    void debugIsRateLimitedPerComponent() throws Exception {
+        Properties prop = new Properties();
+        prop.setProperty("logLevel.log-test-debug", "DEBUG");
+        prop.setProperty("logDebugPerSecond", "5");
+        Log.configure(prop);
+        Log log = Log.get("log-test-debug");
+
+        assertTrue(log.isDebugEnabled());
+        for (int i = 0; i < 100; i++) {
+            log.debug("depuração " + i);
+        }
+        log.warn("fim da depuração");
+
+        awaitText(err, "fim da depuração");
+        long written = text(out).lines().filter(line -> line.contains("[log-test-debug] depuração")).count();
+        // O lote pode atravessar a mudança de segundo: no máximo duas janelas
+        assertTrue(written >= 5 && written <= 10, written + " mensagens escritas");
+    }
+
+    @Test
+    void unknownLevelFallsBackToTheDefault() {
+        Properties prop = new Properties();
+        prop.setProperty("logLevel", "DEBUG");
+        prop.setProperty("logLevel.log-test-fallback", "VERBOSO");
+        Log.configure(prop);
+
+        assertTrue(Log.get("log-test-fallback").isDebugEnabled());
+        assertTrue(Log.get("log-test-other").isDebugEnabled());
+    }
+
+    /**
+     * Espera que a thread de escrita escreva um texto (as mensagens são
+     * escritas por ordem, logo as anteriores também já foram escritas).
+     */
+    private static String awaitText(ByteArrayOutputStream stream, String expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            Log.flush();
+            String current = text(stream);
+            if (current.contains(expected)) {
+                return current;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("Texto não escrito: " + expected);
+    }
+
+    private static String text(ByteArrayOutputStream stream) {
+        return stream.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,60 @@
+package meta1sd;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class MetricsTests {
+
+    @Test
+    void bucketsAreContiguousAndContainTheirValues() {
+        Random random = new Random(45);
+        for (int i = 0; i < 100_000; i++) {
+            long value = i < 10_000 ? i : random.nextLong() >>> (1 + random.nextInt(63));
+            int bucket = Metrics.Histogram.bucketOf(value);
+            assertTrue(Metrics.Histogram.upperBound(bucket) >= value, "valor " + value);
+            if (bucket > 0) {
+                assertTrue(Metrics.Histogram.upperBound(bucket - 1) < value, "valor " + value);
+            }
+        }
+        int last = Metrics.Histogram.bucketOf(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, Metrics.Histogram.upperBound(last));
+    }
+
+    @Test
+    void bucketErrorIsBoundedByTheSubBuckets() {
+        Random random = new Random(46);
+        for (int i = 0; i < 100_000; i++) {
+            long value = 8 + (random.nextLong() >>> (1 + random.nextInt(60)));
+            long upper = Metrics.Histogram.upperBound(Metrics.Histogram.bucketOf(value));
+            assertTrue((upper - value) <= value / 8.0, "valor " + value + " no balde até " + upper);
+        }
+    }
+
+    @Test
+    void cumulativeBucketsAndTotalsAreExported() {
+        Metrics.Histogram histogram = Metrics.histogram("metrics_test_sizes", "Tamanhos de teste.");
+        for (int value = 1; value <= 1000; value++) {
+            histogram.record(value);
+        }
+
+        assertEquals(1000, histogram.count());
+        double median = histogram.quantile(0.5);
+        assertTrue(median >= 500 && median <= 500 * 1.125, "mediana " + median);
+        assertEquals(1000, histogram.quantile(1), 1000 / 8.0);
+
+        String export = Metrics.export();
+        assertTrue(export.contains("# TYPE metrics_test_sizes histogram\n"));
+        assertTrue(export.contains("metrics_test_sizes_bucket{le=\"7\"} 7\n"));
+        assertTrue(export.contains("metrics_test_sizes_bucket{le=\"511\"} 511\n"));
+        assertTrue(export.contains("metrics_test_sizes_bucket{le=\"1023\"} 1000\n"));
+        assertTrue(export.contains("metrics_test_sizes_bucket{le=\"+Inf\"} 1000\n"));
+        assertFalse(export.contains("metrics_test_sizes_bucket{le=\"2047\"}"));
+        assertTrue(export.contains("metrics_test_sizes_count 1000\n"));
+        assertTrue(export.contains("metrics_test_sizes_sum 500500\n"));
+    }
+}
@@ -0,0 +1,74 @@
+package meta1sd;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.lang.reflect.Proxy;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RMIGatewayTests {
+
+    private RMIGateway gateway;
+    private final AtomicInteger searches = new AtomicInteger();
+
+    @BeforeEach
+    void createGateway() throws Exception {
+        gateway = new RMIGateway();
+        Properties prop = new Properties();
+        prop.setProperty("searchCacheSize", "10");
+        prop.setProperty("searchCacheMinFrequency", "1");
+        prop.setProperty("searchCacheWarmIntervalSeconds", "0");
+        gateway.configureSearchCache(prop);
+        gateway.registerIBS(1, barrel());
+    }
+
+    @AfterEach
+    void closeGateway() throws Exception {
+        UnicastRemoteObject.unexportObject(gateway, true);
+    }
+
+    @Test
+    void queriesWithTheSameAnalyzedTermsShareTheCacheEntry() throws Exception {
+        gateway.returnPagesbyWords("Pesquisas Motor");
+        gateway.returnPagesbyWords("motor de pesquisa");
+        gateway.returnPagesbyWords("MOTOR pesquisas");
+
+        assertEquals(1, searches.get());
+    }
+
+    @Test
+    void onlyTheBarrelWhoseIndexChangedInvalidatesItsResults() throws Exception {
+        gateway.reportBarrelStats(1, 10, 100);
+        gateway.returnPagesbyWords("googol");
+
+        gateway.reportBarrelStats(2, 20, 200);
+        gateway.reportBarrelStats(1, 10, 100);
+        gateway.returnPagesbyWords("googol");
+        assertEquals(1, searches.get());
+
+        gateway.reportBarrelStats(1, 11, 101);
+        gateway.returnPagesbyWords("googol");
+        assertEquals(2, searches.get());
+    }
+
+    /**
+     * Barrel que conta as pesquisas recebidas.
+     */
+    private RMIIndexStorageBarrel barrel() {
+        return (RMIIndexStorageBarrel) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { RMIIndexStorageBarrel.class }, (proxy, method, args) -> {
+                    if (method.getName().equals("searchPagesByWords")) {
+                        searches.incrementAndGet();
+                        return new ArrayList<SiteData>(List.of(new SiteData("http://test.local/1", "", "")));
+                    }
+                    return null;
+                });
+    }
+}
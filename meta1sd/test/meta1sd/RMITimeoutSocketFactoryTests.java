@@ -0,0 +1,86 @@
+package meta1sd;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RMITimeoutSocketFactoryTests {
+
+    private final RMITimeoutSocketFactory factory = new RMITimeoutSocketFactory(1000, 200, true, true);
+    private ServerSocket server;
+    private Thread peer;
+
+    @BeforeEach
+    void startPeer() throws Exception {
+        server = new ServerSocket(0);
+        // Responde com um byte 600ms depois de aceitar cada ligação
+        peer = new Thread(() -> {
+            while (!server.isClosed()) {
+                try (Socket socket = server.accept(); OutputStream out = socket.getOutputStream()) {
+                    Thread.sleep(600);
+                    out.write(42);
+                    out.flush();
+                    socket.getInputStream().read();
+                } catch (Exception e) {
+                    // Ligação fechada pelo teste
+                }
+            }
+        });
+        peer.setDaemon(true);
+        peer.start();
+    }
+
+    @AfterEach
+    void stopPeer() throws Exception {
+        server.close();
+        peer.join(2000);
+    }
+
+    @Test
+    void readsAreCappedAtTheConfiguredTimeout() throws Exception {
+        try (Socket socket = factory.createSocket("localhost", server.getLocalPort())) {
+            socket.setSoTimeout(0); // O transporte RMI pede leituras sem timeout
+            InputStream in = socket.getInputStream();
+            long start = System.nanoTime();
+            assertThrows(SocketTimeoutException.class, in::read);
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue(elapsedMs >= 150 && elapsedMs < 550, elapsedMs + " ms");
+        }
+    }
+
+    @Test
+    void dataCallsUseTheirOwnTimeoutOnTheSameConnection() throws Exception {
+        try (Socket socket = factory.createSocket("localhost", server.getLocalPort())) {
+            socket.setSoTimeout(0);
+            InputStream in = socket.getInputStream();
+            int value = RMITimeoutSocketFactory.withReadTimeout(0, () -> in.read());
+            assertEquals(42, value);
+
+            // Fora da chamada volta a valer o limite da fábrica
+            assertThrows(SocketTimeoutException.class, in::read);
+        }
+    }
+
+    @Test
+    void shorterTimeoutsRequestedByTheTransportAreKept() throws Exception {
+        try (Socket socket = factory.createSocket("localhost", server.getLocalPort())) {
+            socket.setSoTimeout(50);
+            InputStream in = socket.getInputStream();
+            long start = System.nanoTime();
+            assertThrows(SocketTimeoutException.class, in::read);
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 190);
+            assertEquals(50, socket.getSoTimeout());
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package meta1sd;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Locale;
+
+import org.junit.jupiter.api.Test;
+
+class SiteDataCodecTests {
+
+    @Test
+    void roundTripKeepsEveryField() throws IOException {
+        SiteData page = new SiteData("http://test.local/a", "googol motor pesquisa", "http://b http://c");
+        page.title = "Googol";
+        page.text = "Googol: o motor de pesquisa";
+        page.setPropagated(true);
+
+        SiteData copy = roundTrip(page);
+
+        assertEquals(page.url, copy.url);
+        assertEquals(page.title, copy.title);
+        assertEquals(page.text, copy.text);
+        assertEquals(page.tokens, copy.tokens);
+        assertArrayEquals(new String[] { "http://b", "http://c" }, copy.getOutlinks());
+        assertTrue(copy.isPropagated());
+    }
+
+    @Test
+    void tokensAreRebuiltFromTheText() throws IOException {
+        SiteData page = new SiteData("http://test.local/a", "", "");
+        page.title = "Título";
+        page.text = "Sistemas Distribuídos em Java";
+        page.tokens = page.text.toLowerCase(Locale.ROOT);
+
+        SiteData copy = roundTrip(page);
+
+        assertEquals(page.tokens, copy.tokens);
+        assertFalse(copy.isPropagated());
+    }
+
+    @Test
+    void termsAndOutlinksSurviveTheRoundTrip() throws IOException {
+        SiteData page = new SiteData("http://test.local/a", "", "");
+        page.title = "Googol";
+        page.text = "googol googol motor";
+        page.terms = new String[] { "googol", "motor" };
+        page.termFreqs = new int[] { 2, 300 };
+        page.outlinks = new String[] { "http://b", "http://c" };
+
+        SiteData copy = roundTrip(page);
+
+        assertArrayEquals(page.terms, copy.terms);
+        assertArrayEquals(page.termFreqs, copy.termFreqs);
+        assertArrayEquals(page.outlinks, copy.getOutlinks());
+    }
+
+    @Test
+    void lengthsLargerThanTheFrameAreRejected() throws IOException {
+        ByteArrayOutputStream links = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(links);
+        for (int i = 0; i < 5; i++) {
+            WireFormat.writeVarInt(out, 0); // flags, url, title, text e tokens
+        }
+        WireFormat.writeVarInt(out, Integer.MAX_VALUE);
+        assertThrows(IOException.class, () -> SiteDataCodec.read(new WireFormat.FrameInput(links.toByteArray())));
+
+        ByteArrayOutputStream string = new ByteArrayOutputStream();
+        WireFormat.writeVarInt(new DataOutputStream(string), 1000);
+        string.write(new byte[10]);
+        assertThrows(IOException.class, () -> WireFormat.readString(new WireFormat.FrameInput(string.toByteArray())));
+    }
+
+    private static SiteData roundTrip(SiteData page) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        SiteDataCodec.write(new DataOutputStream(buffer), page);
+        return SiteDataCodec.read(new DataInputStream(new ByteArrayInputStream(buffer.toByteArray())));
+    }
+}
@@ -0,0 +1,58 @@
+package meta1sd;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class TokenizerTests {
+
+    // Só ASCII: letras acentuadas passaram a ser dobradas em vez de descartadas
+    private static final String ALPHABET = "abcXYZ019 \t\n\r-.,!?'/";
+
+    @Test
+    void asciiTermsMatchTheOldSplitAndReplaceAll() {
+        Analyzer analyzer = new Analyzer(Set.of(), Analyzer.Stemmer.NONE);
+        Random random = new Random(11);
+        for (int round = 0; round < 2000; round++) {
+            StringBuilder text = new StringBuilder();
+            for (int i = random.nextInt(80); i > 0; i--) {
+                text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+            assertEquals(oldTerms(text.toString()), analyzer.terms(text), text.toString());
+        }
+    }
+
+    @Test
+    void tokenizeCountsDistinctTermsInOrder() {
+        SiteData page = new SiteData("http://test.local/a", "Java rmi, JAVA! x rmi java", "");
+        Tokenizer.tokenize(page);
+        assertArrayEquals(new String[] { "java", "rmi" }, page.terms);
+        assertArrayEquals(new int[] { 3, 2 }, page.termFreqs);
+    }
+
+    @Test
+    void linksAreSplitOnAnyWhitespace() {
+        assertArrayEquals(new String[] { "http://a", "http://b" }, Tokenizer.splitLinks(" http://a\t\nhttp://b "));
+        assertArrayEquals(new String[0], Tokenizer.splitLinks(null));
+    }
+
+    /**
+     * Normalização que as barrels faziam antes do Tokenizer.
+     */
+    private static List<String> oldTerms(String tokens) {
+        List<String> terms = new ArrayList<>();
+        for (String token : tokens.split("\\s+")) {
+            token = token.toLowerCase().replaceAll("[^a-z0-9]", "");
+            if (!token.isEmpty() && token.length() >= 2) {
+                terms.add(token);
+            }
+        }
+        return terms;
+    }
+}
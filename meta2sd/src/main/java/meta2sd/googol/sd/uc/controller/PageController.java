@@ -6,12 +6,19 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.ui.Model;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import meta2sd.googol.sd.uc.controller.model.WebClient;
+import meta2sd.googol.sd.uc.service.AdminStatsService;
 import meta2sd.googol.sd.uc.service.HackerNewsService;
+import meta2sd.googol.sd.uc.service.SearchCursor;
+import meta2sd.googol.sd.uc.service.SearchCursorService;
 import com.google.gson.JsonObject;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import meta1sd.SiteData;
 import java.util.Objects;
 import org.slf4j.Logger;
@@ -31,6 +38,9 @@ public class PageController {
 
     private static final Logger logger = LoggerFactory.getLogger(PageController.class);
 
+    /** Número máximo de resultados enviados para a análise do Gemini */
+    private static final int ANALYSIS_MAX_RESULTS = 10;
+
     @Autowired
     private WebClient client;
 
@@ -40,6 +50,12 @@ public class PageController {
     @Autowired
     private GeminiService geminiService;
 
+    @Autowired
+    private SearchCursorService searchCursorService;
+
+    @Autowired
+    private AdminStatsService adminStatsService;
+
     /**
      * Exibe a página inicial da aplicação.
      * 
@@ -65,7 +81,8 @@ public class PageController {
      * apropriada.
      * 
      * @param option Opção selecionada pelo usuário (0: indexar URL, 1: buscar
-     *               termos, 2: buscar links, 3: buscar Hacker News)
+     *               termos, 2: buscar links, 3: buscar Hacker News, 4: painel
+     *               de administração)
      * @param model  Modelo para a view
      * @return Redirecionamento para a página correspondente à opção selecionada
      */
@@ -80,6 +97,8 @@ public class PageController {
                 return "redirect:/search-page?type=url";
             case 3:
                 return "redirect:/hacker-news-search";
+            case 4:
+                return "redirect:/admin";
             default:
                 return "redirect:/";
         }
@@ -97,22 +116,25 @@ public class PageController {
 
     /**
      * Processa a adição de uma nova URL para indexação.
+     * O pedido ao gateway é assíncrono, pelo que a thread do servidor não fica
+     * bloqueada à espera da resposta.
      * 
      * @param url   URL a ser indexada
      * @param model Modelo para a view
      * @return Nome da view da página de adição de URL com mensagem de sucesso/erro
      */
     @PostMapping("/add-url")
-    public String processAddUrl(@RequestParam("url") String url, Model model) {
-        boolean success = client.addURL(url);
-        if (success) {
-            model.addAttribute("message", "URL successfully submitted for indexing!");
-            model.addAttribute("messageType", "success");
-        } else {
-            model.addAttribute("message", "Failed to submit URL for indexing. Please try again.");
-            model.addAttribute("messageType", "error");
-        }
-        return "add-url";
+    public CompletableFuture<String> processAddUrl(@RequestParam("url") String url, Model model) {
+        return client.addURLAsync(url).thenApply(success -> {
+            if (success) {
+                model.addAttribute("message", "URL successfully submitted for indexing!");
+                model.addAttribute("messageType", "success");
+            } else {
+                model.addAttribute("message", "Failed to submit URL for indexing. Please try again.");
+                model.addAttribute("messageType", "error");
+            }
+            return "add-url";
+        });
     }
 
     /**
@@ -130,236 +152,270 @@ public class PageController {
 
     /**
      * Processa a busca por termos e exibe os resultados na primeira página.
+     * Os resultados ficam guardados num cursor para a paginação seguinte.
      * 
      * @param terms Termos de busca
      * @param model Modelo para a view
      * @return Nome da view da página de resultados
      */
     @PostMapping("/search")
-    public String search(@RequestParam("terms") String terms, Model model) {
+    public CompletableFuture<String> search(@RequestParam("terms") String terms, Model model) {
         logger.info("Searching for terms: {}", terms);
-        List<SiteData> results = client.getPagesbyTerms(terms);
-        model.addAttribute("searchTerms", terms);
-
-        if (results != null) {
-            // Remove resultados nulos e garante que os campos necessários não sejam nulos
-            results.removeIf(Objects::isNull);
-            results.forEach(result -> {
-                if (result.title == null)
-                    result.title = "";
-                if (result.text == null)
-                    result.text = "";
-                if (result.url == null)
-                    result.url = "";
-            });
-
-            int pageSize = 10;
-            int totalPages = (int) Math.ceil((double) results.size() / pageSize);
-            int currentPage = 1;
-
-            // Calcular índices para a primeira página
-            int startIndex = 0;
-            int endIndex = Math.min(pageSize, results.size());
-
-            // Obter resultados da página
-            List<SiteData> pageResults = results.subList(startIndex, endIndex);
-
-            model.addAttribute("results", pageResults);
-            model.addAttribute("totalResults", results.size());
-            model.addAttribute("pageSize", pageSize);
-            model.addAttribute("currentPage", currentPage);
-            model.addAttribute("totalPages", totalPages);
-
-            if (results.isEmpty()) {
-                model.addAttribute("message", "No results found for your search terms.");
-                model.addAttribute("messageType", "info");
-            } else {
-                // Gerar análise com Gemini apenas na primeira página
-                StringBuilder searchResultsText = new StringBuilder();
-                for (SiteData result : results) {
-                    searchResultsText.append("Título: ").append(result.title).append("\n");
-                    searchResultsText.append("URL: ").append(result.url).append("\n");
-                    searchResultsText.append("Texto: ").append(result.text).append("\n\n");
-                }
-                String analysis = geminiService.generateAnalysis(terms, searchResultsText.toString());
-                logger.info("Generated analysis: {}", analysis);
-                model.addAttribute("analysis", analysis);
+        return searchTerms(terms).thenApply(cursor -> {
+            model.addAttribute("searchTerms", terms);
+            if (cursor == null) {
+                model.addAttribute("message", "An error occurred while searching. Please try again.");
+                model.addAttribute("messageType", "error");
+                return "search-results";
             }
-        } else {
-            model.addAttribute("message", "An error occurred while searching. Please try again.");
-            model.addAttribute("messageType", "error");
-        }
-        return "search-results";
+            showPage(cursor, 1, model);
+            return "search-results";
+        });
     }
 
     /**
      * Processa a busca por páginas que linkam para uma URL específica.
+     * Os resultados ficam guardados num cursor para a paginação seguinte.
      * 
      * @param url   URL para buscar páginas que a referenciam
      * @param model Modelo para a view
      * @return Nome da view da página de resultados
      */
     @PostMapping("/search-links")
-    public String searchLinks(@RequestParam("url") String url, Model model) {
+    public CompletableFuture<String> searchLinks(@RequestParam("url") String url, Model model) {
         logger.info("Searching for pages linking to: {}", url);
-        List<String> results = client.getPagesbyUrl(url);
-        model.addAttribute("searchUrl", url);
-
-        if (results != null) {
-            // Remove resultados nulos
-            results.removeIf(Objects::isNull);
-            int pageSize = 10;
-            int totalPages = (int) Math.ceil((double) results.size() / pageSize);
-            int currentPage = 1;
-
-            // Calcular índices para a primeira página
-            int startIndex = 0;
-            int endIndex = Math.min(pageSize, results.size());
-
-            // Obter resultados da página
-            List<String> pageResults = results.subList(startIndex, endIndex);
-
-            model.addAttribute("results", pageResults);
-            model.addAttribute("totalResults", results.size());
-            model.addAttribute("pageSize", pageSize);
-            model.addAttribute("currentPage", currentPage);
-            model.addAttribute("totalPages", totalPages);
-
-            if (results.isEmpty()) {
-                model.addAttribute("message", "No pages found linking to this URL.");
-                model.addAttribute("messageType", "info");
-            } else {
-                // Gerar análise com Gemini apenas na primeira página
-                StringBuilder searchResultsText = new StringBuilder();
-                for (String result : results) {
-                    searchResultsText.append("URL: ").append(result).append("\n");
-                }
-                String analysis = geminiService.generateAnalysis("Páginas que linkam para: " + url,
-                        searchResultsText.toString());
-                logger.info("Generated analysis: {}", analysis);
-                model.addAttribute("analysis", analysis);
+        return searchLinkingPages(url).thenApply(cursor -> {
+            model.addAttribute("searchUrl", url);
+            if (cursor == null) {
+                model.addAttribute("message",
+                        "An error occurred while searching for linked pages. Please try again.");
+                model.addAttribute("messageType", "error");
+                return "search-results";
             }
-        } else {
-            model.addAttribute("message", "An error occurred while searching for linked pages. Please try again.");
-            model.addAttribute("messageType", "error");
-        }
-        return "search-results";
+            showPage(cursor, 1, model);
+            return "search-results";
+        });
     }
 
     /**
      * Exibe os resultados da busca com paginação.
+     * As páginas são lidas do cursor indicado; a pesquisa só é repetida se o
+     * cursor não existir ou já tiver expirado.
      * A análise do Gemini é gerada apenas na primeira página.
      * 
-     * @param terms Termos de busca (opcional)
-     * @param url   URL para buscar páginas que a referenciam (opcional)
-     * @param page  Número da página atual
-     * @param model Modelo para a view
+     * @param cursorToken Token do cursor de resultados (opcional)
+     * @param terms       Termos de busca (opcional)
+     * @param url         URL para buscar páginas que a referenciam (opcional)
+     * @param page        Número da página atual
+     * @param model       Modelo para a view
      * @return Nome da view da página de resultados
      */
     @GetMapping("/search-results")
-    public String searchResults(
+    public CompletableFuture<String> searchResults(
+            @RequestParam(value = "cursor", required = false) String cursorToken,
             @RequestParam(value = "terms", required = false) String terms,
             @RequestParam(value = "url", required = false) String url,
             @RequestParam(value = "page", defaultValue = "1") int page,
             Model model) {
 
-        if (terms != null && !terms.isEmpty()) {
+        SearchCursor cached = searchCursorService.get(cursorToken);
+        CompletableFuture<SearchCursor> lookup;
+        if (cached != null) {
+            logger.info("Reading page {} from search cursor {}", page, cursorToken);
+            terms = cached.getTerms();
+            url = cached.getUrl();
+            lookup = CompletableFuture.completedFuture(cached);
+        } else if (terms != null && !terms.isEmpty()) {
             logger.info("Searching for terms: {} (page {})", terms, page);
-            List<SiteData> results = client.getPagesbyTerms(terms);
-            model.addAttribute("searchTerms", terms);
-
-            if (results != null) {
-                // Remove resultados nulos e garante que os campos necessários não sejam nulos
-                results.removeIf(Objects::isNull);
-                results.forEach(result -> {
-                    if (result.title == null)
-                        result.title = "";
-                    if (result.text == null)
-                        result.text = "";
-                    if (result.url == null)
-                        result.url = "";
-                });
-
-                int pageSize = 10;
-                int totalPages = (int) Math.ceil((double) results.size() / pageSize);
-
-                page = Math.max(1, Math.min(page, totalPages));
-
-                int startIndex = (page - 1) * pageSize;
-                int endIndex = Math.min(startIndex + pageSize, results.size());
-
-                List<SiteData> pageResults = results.subList(startIndex, endIndex);
-
-                model.addAttribute("results", pageResults);
-                model.addAttribute("totalResults", results.size());
-                model.addAttribute("pageSize", pageSize);
-                model.addAttribute("currentPage", page);
-                model.addAttribute("totalPages", totalPages);
+            lookup = searchTerms(terms);
+        } else if (url != null && !url.isEmpty()) {
+            logger.info("Searching for pages linking to: {} (page {})", url, page);
+            lookup = searchLinkingPages(url);
+        } else {
+            return CompletableFuture.completedFuture("search-results");
+        }
 
-                if (results.isEmpty()) {
-                    model.addAttribute("message", "No results found for your search terms.");
-                    model.addAttribute("messageType", "info");
-                } else if (page == 1) {
-                    // Gerar análise com Gemini apenas na primeira página
-                    StringBuilder searchResultsText = new StringBuilder();
-                    for (SiteData result : results) {
-                        searchResultsText.append("Título: ").append(result.title).append("\n");
-                        searchResultsText.append("URL: ").append(result.url).append("\n");
-                        searchResultsText.append("Texto: ").append(result.text).append("\n\n");
-                    }
-                    String analysis = geminiService.generateAnalysis(terms, searchResultsText.toString());
-                    logger.info("Generated analysis: {}", analysis);
-                    model.addAttribute("analysis", analysis);
+        String searchTerms = terms;
+        String searchUrl = url;
+        return lookup.thenApply(cursor -> {
+            model.addAttribute("searchTerms", searchTerms);
+            model.addAttribute("searchUrl", searchUrl);
+            if (cursor == null) {
+                if (searchTerms != null && !searchTerms.isEmpty()) {
+                    model.addAttribute("message", "An error occurred while searching. Please try again.");
+                } else {
+                    model.addAttribute("message",
+                            "An error occurred while searching for linked pages. Please try again.");
                 }
-            } else {
-                model.addAttribute("message", "An error occurred while searching. Please try again.");
                 model.addAttribute("messageType", "error");
+                return "search-results";
             }
-        } else if (url != null && !url.isEmpty()) {
-            logger.info("Searching for pages linking to: {} (page {})", url, page);
-            List<String> results = client.getPagesbyUrl(url);
-            model.addAttribute("searchUrl", url);
-
-            if (results != null) {
-                // Remove resultados nulos
-                results.removeIf(Objects::isNull);
-                int pageSize = 10;
-                int totalPages = (int) Math.ceil((double) results.size() / pageSize);
 
-                page = Math.max(1, Math.min(page, totalPages));
+            showPage(cursor, page, model);
+            return "search-results";
+        });
+    }
 
-                int startIndex = (page - 1) * pageSize;
-                int endIndex = Math.min(startIndex + pageSize, results.size());
+    /**
+     * Pesquisa termos no gateway e guarda os resultados num novo cursor.
+     * 
+     * @param terms Termos de busca
+     * @return Future com o cursor criado, ou null se a pesquisa falhar
+     */
+    private CompletableFuture<SearchCursor> searchTerms(String terms) {
+        return client.getPagesbyTermsAsync(terms).thenApply(results -> {
+            if (results == null) {
+                return null;
+            }
+            // Remove resultados nulos e garante que os campos necessários não sejam nulos
+            List<SiteData> cleaned = new ArrayList<>(results);
+            cleaned.removeIf(Objects::isNull);
+            cleaned.forEach(result -> {
+                if (result.title == null)
+                    result.title = "";
+                if (result.text == null)
+                    result.text = "";
+                if (result.url == null)
+                    result.url = "";
+            });
+            return searchCursorService.create(terms, null, cleaned);
+        });
+    }
 
-                List<String> pageResults = results.subList(startIndex, endIndex);
+    /**
+     * Pesquisa no gateway as páginas que linkam para uma URL e guarda os
+     * resultados num novo cursor.
+     * 
+     * @param url URL para buscar páginas que a referenciam
+     * @return Future com o cursor criado, ou null se a pesquisa falhar
+     */
+    private CompletableFuture<SearchCursor> searchLinkingPages(String url) {
+        return client.getPagesbyUrlAsync(url).thenApply(results -> {
+            if (results == null) {
+                return null;
+            }
+            // Remove resultados nulos
+            List<String> cleaned = new ArrayList<>(results);
+            cleaned.removeIf(Objects::isNull);
+            return searchCursorService.create(null, url, cleaned);
+        });
+    }
 
-                model.addAttribute("results", pageResults);
-                model.addAttribute("totalResults", results.size());
-                model.addAttribute("pageSize", pageSize);
-                model.addAttribute("currentPage", page);
-                model.addAttribute("totalPages", totalPages);
+    /**
+     * Preenche o modelo com uma página de resultados lida do cursor.
+     * Na primeira página é também pedida a análise do Gemini.
+     * 
+     * @param cursor Cursor com os resultados da pesquisa
+     * @param page   Número da página pedida
+     * @param model  Modelo para a view
+     */
+    private void showPage(SearchCursor cursor, int page, Model model) {
+        int pageSize = 10;
+        int totalPages = cursor.totalPages(pageSize);
+        page = Math.max(1, Math.min(page, totalPages));
+
+        model.addAttribute("cursor", cursor.getToken());
+        model.addAttribute("results", cursor.page(page, pageSize));
+        model.addAttribute("totalResults", cursor.size());
+        model.addAttribute("pageSize", pageSize);
+        model.addAttribute("currentPage", page);
+        model.addAttribute("totalPages", totalPages);
+
+        boolean termsSearch = cursor.getTerms() != null;
+        if (cursor.size() == 0) {
+            model.addAttribute("message",
+                    termsSearch ? "No results found for your search terms." : "No pages found linking to this URL.");
+            model.addAttribute("messageType", "info");
+        } else if (page == 1) {
+            requestAnalysis(cursor, model);
+        }
+    }
 
-                if (results.isEmpty()) {
-                    model.addAttribute("message", "No pages found linking to this URL.");
-                    model.addAttribute("messageType", "info");
-                } else if (page == 1) {
-                    // Gerar análise com Gemini apenas na primeira página
-                    StringBuilder searchResultsText = new StringBuilder();
-                    for (String result : results) {
-                        searchResultsText.append("URL: ").append(result).append("\n");
-                    }
-                    String analysis = geminiService.generateAnalysis("Páginas que linkam para: " + url,
-                            searchResultsText.toString());
-                    logger.info("Generated analysis: {}", analysis);
-                    model.addAttribute("analysis", analysis);
-                }
-            } else {
-                model.addAttribute("message", "An error occurred while searching for linked pages. Please try again.");
-                model.addAttribute("messageType", "error");
+    /**
+     * Pede a análise do Gemini para os primeiros resultados de um cursor.
+     * A análise é gerada de forma assíncrona; se já estiver disponível em cache é
+     * colocada diretamente no modelo, caso contrário a página recebe a chave da
+     * análise e obtém-na depois através de {@code /analysis}.
+     * 
+     * @param cursor Cursor com os resultados da pesquisa
+     * @param model  Modelo para a view
+     */
+    private void requestAnalysis(SearchCursor cursor, Model model) {
+        List<?> analyzed = cursor.page(1, ANALYSIS_MAX_RESULTS);
+        StringBuilder searchResultsText = new StringBuilder();
+        List<String> urls = new ArrayList<>();
+        String analysisTerms;
+        if (cursor.getTerms() != null) {
+            for (Object item : analyzed) {
+                SiteData result = (SiteData) item;
+                searchResultsText.append("Título: ").append(result.title).append("\n");
+                searchResultsText.append("URL: ").append(result.url).append("\n");
+                searchResultsText.append("Texto: ").append(result.text).append("\n\n");
+                urls.add(result.url);
             }
+            analysisTerms = cursor.getTerms();
+        } else {
+            for (Object result : analyzed) {
+                searchResultsText.append("URL: ").append(result).append("\n");
+                urls.add(result.toString());
+            }
+            analysisTerms = "Páginas que linkam para: " + cursor.getUrl();
         }
 
-        return "search-results";
+        String key = geminiService.fingerprint(analysisTerms, urls);
+        CompletableFuture<String> analysis = geminiService.requestAnalysis(key, analysisTerms,
+                searchResultsText.toString());
+        if (analysis.isDone()) {
+            model.addAttribute("analysis", analysis.join());
+        } else {
+            model.addAttribute("analysisKey", key);
+        }
+    }
+
+    /**
+     * Devolve o estado de uma análise do Gemini pedida anteriormente.
+     * Usado pela página de resultados para obter a análise sem bloquear a
+     * pesquisa.
+     * 
+     * @param key Chave da análise
+     * @return Mapa JSON com o estado ("pending", "done" ou "unknown") e a análise
+     */
+    @GetMapping("/analysis")
+    @ResponseBody
+    public Map<String, String> analysis(@RequestParam("key") String key) {
+        CompletableFuture<String> analysis = geminiService.getAnalysis(key);
+        if (analysis == null) {
+            return Map.of("status", "unknown");
+        }
+        if (!analysis.isDone()) {
+            return Map.of("status", "pending");
+        }
+        String text = analysis.join();
+        logger.info("Generated analysis: {}", text);
+        return Map.of("status", "done", "analysis", text);
+    }
+
+    /**
+     * Exibe o painel de administração. As estatísticas são recebidas pela página
+     * através de {@code /admin/stream}.
+     * 
+     * @return Nome da view do painel de administração
+     */
+    @GetMapping("/admin")
+    public String admin() {
+        return "admin";
+    }
+
+    /**
+     * Liga o painel de administração às estatísticas do sistema (Server-Sent
+     * Events): o estado atual é enviado de imediato e depois cada alteração.
+     * 
+     * @return Emitter SSE com eventos "stats" em JSON
+     */
+    @GetMapping(value = "/admin/stream", produces = "text/event-stream")
+    @ResponseBody
+    public SseEmitter adminStream() {
+        return adminStatsService.subscribe();
     }
 
     /**
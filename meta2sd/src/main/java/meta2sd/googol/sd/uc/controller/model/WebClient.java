@@ -2,17 +2,29 @@ package meta2sd.googol.sd.uc.controller.model;
 
 import java.net.MalformedURLException;
 import java.rmi.Naming;
+import java.rmi.NoSuchObjectException;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import meta1sd.RMIGatewayClientInterface;
+import meta1sd.RMITimeoutSocketFactory;
 import meta1sd.SiteData;
+import meta1sd.SystemStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -21,6 +33,13 @@ import org.slf4j.LoggerFactory;
  * busca e indexação.
  * Implementa a interface UnicastRemoteObject para suportar comunicação RMI.
  * 
+ * As chamadas ao gateway correm em executores limitados e separados para
+ * pesquisa e para indexação (bulkheads), cada uma com um prazo máximo. Os
+ * métodos assíncronos devolvem um {@link CompletableFuture} que nunca falha:
+ * erros, prazos excedidos e pedidos rejeitados por excesso de carga resultam no
+ * mesmo valor que os métodos síncronos devolvem em caso de erro (null ou
+ * false). Assim uma barrel lenta não consegue esgotar as threads do Tomcat.
+ * 
  * @author Bernardo Pedro nº2021231014 e João Matos nº2021222748
  * @version 1.0
  */
@@ -38,15 +57,65 @@ public class WebClient extends UnicastRemoteObject {
     @Value("${registryName}")
     private String registryName;
 
+    @Value("${webClient.searchThreads:8}")
+    private int searchThreads;
+
+    @Value("${webClient.searchQueueCapacity:64}")
+    private int searchQueueCapacity;
+
+    @Value("${webClient.searchTimeoutSeconds:10}")
+    private long searchTimeoutSeconds;
+
+    @Value("${webClient.indexThreads:2}")
+    private int indexThreads;
+
+    @Value("${webClient.indexQueueCapacity:32}")
+    private int indexQueueCapacity;
+
+    @Value("${webClient.indexTimeoutSeconds:5}")
+    private long indexTimeoutSeconds;
+
+    @Value("${rmi.connectTimeoutMs:3000}")
+    private int rmiConnectTimeoutMs;
+
+    @Value("${rmi.readTimeoutMs:15000}")
+    private int rmiReadTimeoutMs;
+
+    @Value("${rmi.tcpNoDelay:true}")
+    private boolean rmiTcpNoDelay;
+
+    @Value("${rmi.keepAlive:true}")
+    private boolean rmiKeepAlive;
+
+    /** Executor das pesquisas (termos e ligações) */
+    private ThreadPoolExecutor searchExecutor;
+
+    /** Executor dos pedidos de indexação, isolado das pesquisas */
+    private ThreadPoolExecutor indexExecutor;
+
     private static final Logger logger = LoggerFactory.getLogger(WebClient.class);
 
+    /**
+     * Chamada a um método do gateway.
+     *
+     * @param <T> Tipo do resultado
+     */
+    @FunctionalInterface
+    private interface GatewayCall<T> {
+        T call(RMIGatewayClientInterface gateway) throws RemoteException, InterruptedException;
+    }
+
     /**
      * Construtor padrão para inicialização do bean Spring.
+     * O construtor de UnicastRemoteObject exporta o objeto com os sockets por
+     * omissão, antes de as propriedades serem injetadas; a exportação é desfeita
+     * aqui e repetida em {@link #init()} com a fábrica de sockets com timeouts.
      * 
      * @throws RemoteException se ocorrer um erro RMI
      */
     public WebClient() throws RemoteException {
         super();
+        UnicastRemoteObject.unexportObject(this, true);
     }
 
     /**
@@ -55,6 +124,17 @@ public class WebClient extends UnicastRemoteObject {
      */
     @PostConstruct
     public void init() {
+        searchExecutor = boundedExecutor("webclient-search", searchThreads, searchQueueCapacity);
+        indexExecutor = boundedExecutor("webclient-index", indexThreads, indexQueueCapacity);
+        // Timeouts nos sockets RMI, para que as threads dos executores não fiquem presas;
+        // a fábrica é instalada antes de exportar o cliente e de qualquer lookup
+        RMITimeoutSocketFactory socketFactory = RMITimeoutSocketFactory.install(new RMITimeoutSocketFactory(
+                rmiConnectTimeoutMs, rmiReadTimeoutMs, rmiTcpNoDelay, rmiKeepAlive));
+        try {
+            UnicastRemoteObject.exportObject(this, 0, socketFactory, socketFactory);
+        } catch (RemoteException e) {
+            logger.error("Failed to export WebClient: {}", e.getMessage());
+        }
         if (registryName == null || registryName.trim().isEmpty()) {
             logger.error("registryName property is not set in application.properties");
             return;
@@ -128,6 +208,25 @@ public class WebClient extends UnicastRemoteObject {
         return id;
     }
 
+    /**
+     * Termina os executores e desfaz a exportação RMI quando a aplicação é
+     * encerrada.
+     */
+    @PreDestroy
+    public void shutdown() {
+        try {
+            UnicastRemoteObject.unexportObject(this, true);
+        } catch (NoSuchObjectException e) {
+            // Não chegou a ser exportado
+        }
+        if (searchExecutor != null) {
+            searchExecutor.shutdownNow();
+        }
+        if (indexExecutor != null) {
+            indexExecutor.shutdownNow();
+        }
+    }
+
     /**
      * Adiciona uma URL à fila de indexação no gateway.
      * 
@@ -135,19 +234,23 @@ public class WebClient extends UnicastRemoteObject {
      * @return true se a URL foi adicionada com sucesso, false caso contrário
      */
     public boolean addURL(String url) {
-        if (gateway == null) {
-            logger.error("Cannot add URL: Gateway not connected");
-            return false;
-        }
-        try {
-            logger.info("Adding URL to index queue: {}", url);
+        return addURLAsync(url).join();
+    }
+
+    /**
+     * Adiciona uma URL à fila de indexação no gateway, de forma assíncrona.
+     * 
+     * @param url URL a ser indexada
+     * @return Future com true se a URL foi adicionada com sucesso, false caso
+     *         contrário
+     */
+    public CompletableFuture<Boolean> addURLAsync(String url) {
+        logger.info("Adding URL to index queue: {}", url);
+        return submit(indexExecutor, indexTimeoutSeconds, "add URL to index queue", false, gateway -> {
             gateway.clientIndexUrl(url);
             logger.info("URL successfully added to index queue: {}", url);
             return true;
-        } catch (Exception e) {
-            logger.error("Error adding URL to index queue: {}", e.getMessage());
-            return false;
-        }
+        });
     }
 
     /**
@@ -157,19 +260,23 @@ public class WebClient extends UnicastRemoteObject {
      * @return lista de SiteData com os resultados da busca
      */
     public List<SiteData> getPagesbyTerms(String terms) {
-        if (gateway == null) {
-            logger.error("Cannot search terms: Gateway not connected");
-            return null;
-        }
-        try {
-            logger.info("Searching for terms: {}", terms);
+        return getPagesbyTermsAsync(terms).join();
+    }
+
+    /**
+     * Solicita ao gateway para buscar os termos, de forma assíncrona.
+     * 
+     * @param terms termos a serem buscados
+     * @return Future com a lista de SiteData com os resultados da busca, ou null
+     *         em caso de erro
+     */
+    public CompletableFuture<List<SiteData>> getPagesbyTermsAsync(String terms) {
+        logger.info("Searching for terms: {}", terms);
+        return submit(searchExecutor, searchTimeoutSeconds, "search terms", null, gateway -> {
             List<SiteData> results = gateway.returnPagesbyWords(terms);
             logger.info("Found {} results for terms: {}", results != null ? results.size() : 0, terms);
             return results;
-        } catch (RemoteException e) {
-            logger.error("Error searching for terms: {}", e.getMessage());
-            return null;
-        }
+        });
     }
 
     /**
@@ -179,19 +286,7 @@ public class WebClient extends UnicastRemoteObject {
      * @return lista de URLs que linkam para a URL consultada
      */
     public List<String> returnLinkedUrls(String urlConsult) {
-        if (gateway == null) {
-            logger.error("Cannot search linked URLs: Gateway not connected");
-            return null;
-        }
-        try {
-            logger.info("Searching for URLs linking to: {}", urlConsult);
-            List<String> results = gateway.returnLinkedUrls(urlConsult);
-            logger.info("Found {} URLs linking to: {}", results != null ? results.size() : 0, urlConsult);
-            return results;
-        } catch (Exception e) {
-            logger.error("Error searching for linked URLs: {}", e.getMessage());
-            return null;
-        }
+        return getPagesbyUrlAsync(urlConsult).join();
     }
 
     /**
@@ -201,18 +296,104 @@ public class WebClient extends UnicastRemoteObject {
      * @return lista de URLs que linkam para a URL especificada
      */
     public List<String> getPagesbyUrl(String url) {
-        if (gateway == null) {
-            logger.error("Cannot search pages by URL: Gateway not connected");
-            return null;
-        }
-        try {
-            logger.info("Searching for pages linking to: {}", url);
+        return getPagesbyUrlAsync(url).join();
+    }
+
+    /**
+     * Obtém páginas que linkam para uma URL específica, de forma assíncrona.
+     * 
+     * @param url URL para buscar páginas que a referenciam
+     * @return Future com a lista de URLs que linkam para a URL especificada, ou
+     *         null em caso de erro
+     */
+    public CompletableFuture<List<String>> getPagesbyUrlAsync(String url) {
+        logger.info("Searching for pages linking to: {}", url);
+        return submit(searchExecutor, searchTimeoutSeconds, "search pages by URL", null, gateway -> {
             List<String> results = gateway.returnLinkedUrls(url);
             logger.info("Found {} pages linking to: {}", results != null ? results.size() : 0, url);
             return results;
-        } catch (RemoteException e) {
-            logger.error("Error searching for pages by URL: {}", e.getMessage());
-            return null;
+        });
+    }
+
+    /**
+     * Obtém as estatísticas do sistema (barrels, pesquisas mais frequentes e fila
+     * de URLs) agregadas pelo gateway, de forma assíncrona.
+     * 
+     * @return Future com as estatísticas, ou null em caso de erro
+     */
+    public CompletableFuture<SystemStats> getSystemStatsAsync() {
+        return submit(searchExecutor, searchTimeoutSeconds, "get system statistics", null,
+                RMIGatewayClientInterface::getSystemStats);
+    }
+
+    /**
+     * Executa uma chamada ao gateway num executor limitado, com prazo máximo.
+     * Se o executor estiver cheio o pedido é rejeitado de imediato em vez de
+     * ficar à espera. Quando o prazo é excedido a tarefa é cancelada: sai da
+     * fila se ainda não começou; uma chamada RMI já enviada não é interrompível
+     * e termina com o timeout de leitura dos sockets ({@code rmi.readTimeoutMs}).
+     * 
+     * @param <T>            Tipo do resultado
+     * @param executor       Executor (bulkhead) onde a chamada corre
+     * @param timeoutSeconds Prazo máximo da chamada
+     * @param operation      Descrição da operação, para o log
+     * @param fallback       Valor devolvido em caso de erro
+     * @param call           Chamada a executar
+     * @return Future com o resultado da chamada, ou o valor de fallback
+     */
+    private <T> CompletableFuture<T> submit(ThreadPoolExecutor executor, long timeoutSeconds, String operation,
+            T fallback, GatewayCall<T> call) {
+        RMIGatewayClientInterface current = gateway;
+        if (current == null) {
+            logger.error("Cannot {}: Gateway not connected", operation);
+            return CompletableFuture.completedFuture(fallback);
+        }
+
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Future<?> task;
+        try {
+            task = executor.submit(() -> {
+                try {
+                    future.complete(call.call(current));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    future.completeExceptionally(e);
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warn("Cannot {}: too many pending gateway calls", operation);
+            return CompletableFuture.completedFuture(fallback);
         }
+
+        return future.orTimeout(timeoutSeconds, TimeUnit.SECONDS).exceptionally(e -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof TimeoutException) {
+                task.cancel(true);
+                logger.warn("Gateway did not answer in {}s: {}", timeoutSeconds, operation);
+            } else {
+                logger.error("Error trying to {}: {}", operation, cause.getMessage());
+            }
+            return fallback;
+        });
+    }
+
+    /**
+     * Cria um executor com um número fixo de threads daemon e uma fila limitada.
+     * 
+     * @param name          Prefixo do nome das threads
+     * @param threads       Número de threads
+     * @param queueCapacity Capacidade da fila de pedidos pendentes
+     * @return O executor
+     */
+    private static ThreadPoolExecutor boundedExecutor(String name, int threads, int queueCapacity) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
     }
 }
@@ -0,0 +1,160 @@
+package meta2sd.googol.sd.uc.service;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.google.gson.Gson;
+
+import jakarta.annotation.PreDestroy;
+import meta1sd.SystemStats;
+import meta2sd.googol.sd.uc.controller.model.WebClient;
+
+/**
+ * Serviço que envia as estatísticas do sistema aos painéis de administração
+ * abertos, através de Server-Sent Events.
+ * Uma única thread pede as estatísticas ao gateway a cada intervalo, apenas
+ * enquanto houver painéis ligados, e só as envia quando mudaram; cada painel
+ * recebe o estado atual assim que se liga. Assim o número de painéis abertos
+ * não aumenta a carga no gateway.
+ *
+ * @author Bernardo Pedro nº2021231014 e João Matos nº2021222748
+ * @version 1.0
+ */
+@Service
+public class AdminStatsService {
+    /** Logger para registro de eventos */
+    private static final Logger logger = LoggerFactory.getLogger(AdminStatsService.class);
+
+    /** Nome dos eventos enviados aos painéis */
+    private static final String EVENT_NAME = "stats";
+
+    private final WebClient client;
+    private final long refreshMs;
+    private final long emitterTimeoutMs;
+    private final Gson gson = new Gson();
+
+    /** Painéis ligados */
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+
+    /** Agenda os pedidos periódicos ao gateway */
+    private final ScheduledExecutorService poller;
+
+    /** Últimas estatísticas obtidas (JSON), ou null antes do primeiro pedido */
+    private volatile String lastStats;
+
+    /** Conteúdo das últimas estatísticas enviadas, sem o instante de geração */
+    private volatile String lastStatsContent;
+
+    /**
+     * Construtor usado pelo Spring.
+     *
+     * @param client           Cliente do gateway
+     * @param refreshMs        Intervalo entre pedidos ao gateway
+     * @param emitterTimeoutMs Tempo máximo de cada ligação SSE (o browser volta
+     *                         a ligar-se automaticamente)
+     */
+    public AdminStatsService(WebClient client,
+            @Value("${admin.refreshMs:1000}") long refreshMs,
+            @Value("${admin.emitterTimeoutMs:600000}") long emitterTimeoutMs) {
+        this.client = client;
+        this.refreshMs = refreshMs;
+        this.emitterTimeoutMs = emitterTimeoutMs;
+        this.poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "admin-stats");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.poller.scheduleWithFixedDelay(this::refresh, refreshMs, refreshMs, TimeUnit.MILLISECONDS);
+        logger.info("AdminStatsService initialized (refresh={}ms)", refreshMs);
+    }
+
+    /**
+     * Termina a thread de pedidos e fecha as ligações quando a aplicação é
+     * encerrada.
+     */
+    @PreDestroy
+    public void shutdown() {
+        poller.shutdownNow();
+        emitters.forEach(SseEmitter::complete);
+    }
+
+    /**
+     * Liga um novo painel. O painel recebe de imediato as últimas estatísticas
+     * conhecidas e depois cada alteração.
+     *
+     * @return O emitter SSE do painel
+     */
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(e -> emitters.remove(emitter));
+        emitters.add(emitter);
+
+        String current = lastStats;
+        if (current != null) {
+            send(emitter, current);
+        } else {
+            poller.execute(this::refresh); // Primeiro painel: não espera pelo intervalo
+        }
+        return emitter;
+    }
+
+    /**
+     * Pede as estatísticas ao gateway e envia-as aos painéis se mudaram.
+     */
+    private void refresh() {
+        if (emitters.isEmpty()) {
+            // Sem painéis não há pedidos; o próximo painel recebe valores novos
+            lastStats = null;
+            lastStatsContent = null;
+            return;
+        }
+        try {
+            SystemStats stats = client.getSystemStatsAsync().get(refreshMs * 10, TimeUnit.MILLISECONDS);
+            if (stats == null) {
+                return; // Gateway indisponível: os painéis mantêm os últimos valores
+            }
+            // O instante de geração muda sempre; só conta para a comparação o conteúdo
+            String json = gson.toJson(stats);
+            String content = gson.toJson(new SystemStats(stats.getBarrels(), stats.getTopQueries(),
+                    stats.getFrontierSize(), 0));
+            String previous = lastStatsContent;
+            lastStats = json;
+            if (content.equals(previous)) {
+                return;
+            }
+            lastStatsContent = content;
+            for (SseEmitter emitter : emitters) {
+                send(emitter, json);
+            }
+        } catch (Exception e) {
+            logger.warn("Could not refresh system statistics: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Envia as estatísticas a um painel, desligando-o se a ligação falhar.
+     *
+     * @param emitter Emitter do painel
+     * @param json    Estatísticas em JSON
+     */
+    private void send(SseEmitter emitter, String json) {
+        try {
+            emitter.send(SseEmitter.event().name(EVENT_NAME).data(json));
+        } catch (IOException | IllegalStateException e) {
+            emitters.remove(emitter);
+            emitter.completeWithError(e);
+        }
+    }
+}
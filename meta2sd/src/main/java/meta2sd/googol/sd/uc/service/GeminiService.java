@@ -1,11 +1,8 @@
 package meta2sd.googol.sd.uc.service;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonParser;
@@ -15,6 +12,26 @@ import java.io.FileInputStream;
 import java.util.Properties;
 import java.io.File;
 import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
 
 /**
  * Serviço responsável por interagir com a API Gemini para geração de análises
@@ -37,24 +54,101 @@ public class GeminiService {
     /** URL base da API Gemini para geração de conteúdo */
     private static final String GEMINI_API_URL = "https://generativelanguage.googleapis.com/v1beta/models/gemini-2.0-flash:generateContent";
 
-    /** Template REST para fazer requisições HTTP */
-    private final RestTemplate restTemplate;
+    /** Mensagem devolvida enquanto não há análise disponível */
+    public static final String UNAVAILABLE_MESSAGE = "Não foi possível gerar uma análise no momento.";
+
+    /** Mensagem devolvida quando a geração da análise falha */
+    private static final String ERROR_MESSAGE = "Ocorreu um erro ao gerar a análise.";
+
+    /** Mensagem devolvida quando não há chave de API */
+    private static final String NO_API_KEY_MESSAGE = "Não foi possível gerar uma análise: API key não configurada.";
+
+    /** Cliente HTTP (um envio interrompido cancela o pedido) */
+    private final HttpClient httpClient;
 
     /** Chave de API do Gemini para autenticação */
     private final String apiKey;
 
+    /** URL da API Gemini (configurável para testes com um servidor local) */
+    private final String apiUrl;
+
+    /** Tempo máximo de espera por uma análise, em segundos */
+    private final int timeoutSeconds;
+
+    /** Número máximo de caracteres de resultados enviados no prompt */
+    private final int maxInputChars;
+
+    /** Executor limitado onde as análises são geradas */
+    private final ThreadPoolExecutor executor;
+
+    /** Cache de análises (termos + impressão digital dos resultados -> análise) */
+    private final Cache<String, CompletableFuture<String>> analysisCache;
+
+    /**
+     * Construtor usado pelo Spring.
+     * Carrega a chave de API do Gemini e configura o executor e a cache a partir
+     * das propriedades da aplicação.
+     * 
+     * @param apiUrl          URL da API Gemini
+     * @param timeoutSeconds  Tempo máximo de espera por uma análise
+     * @param threads         Número de threads do executor
+     * @param queueCapacity   Número máximo de análises em espera
+     * @param maxInputChars   Número máximo de caracteres de resultados no prompt
+     * @param cacheSize       Número máximo de análises em cache
+     * @param cacheTtlMinutes Tempo de vida de cada análise em cache
+     */
+    @Autowired
+    public GeminiService(
+            @Value("${gemini.apiUrl:" + GEMINI_API_URL + "}") String apiUrl,
+            @Value("${gemini.timeoutSeconds:20}") int timeoutSeconds,
+            @Value("${gemini.threads:2}") int threads,
+            @Value("${gemini.queueCapacity:16}") int queueCapacity,
+            @Value("${gemini.maxInputChars:4000}") int maxInputChars,
+            @Value("${gemini.cacheSize:500}") int cacheSize,
+            @Value("${gemini.cacheTtlMinutes:30}") int cacheTtlMinutes) {
+        this(apiUrl, loadApiKey(), timeoutSeconds, threads, queueCapacity, maxInputChars, cacheSize,
+                cacheTtlMinutes);
+    }
+
     /**
      * Construtor da classe GeminiService.
-     * Inicializa o RestTemplate e carrega a chave de API do Gemini.
+     * Inicializa o cliente HTTP com timeouts, o executor limitado e a cache de
+     * análises.
      * Registra logs informativos sobre o status da inicialização e disponibilidade
      * da chave de API.
      * 
-     * O construtor verifica se a chave de API está disponível e registra
-     * informações sobre seu status para fins de depuração.
+     * @param apiUrl          URL da API Gemini
+     * @param apiKey          Chave de API do Gemini
+     * @param timeoutSeconds  Tempo máximo de espera por uma análise
+     * @param threads         Número de threads do executor
+     * @param queueCapacity   Número máximo de análises em espera
+     * @param maxInputChars   Número máximo de caracteres de resultados no prompt
+     * @param cacheSize       Número máximo de análises em cache
+     * @param cacheTtlMinutes Tempo de vida de cada análise em cache
      */
-    public GeminiService() {
-        this.restTemplate = new RestTemplate();
-        this.apiKey = loadApiKey();
+    public GeminiService(String apiUrl, String apiKey, int timeoutSeconds, int threads, int queueCapacity,
+            int maxInputChars, int cacheSize, int cacheTtlMinutes) {
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(timeoutSeconds))
+                .build();
+        this.apiUrl = apiUrl;
+        this.apiKey = apiKey;
+        this.timeoutSeconds = timeoutSeconds;
+        this.maxInputChars = maxInputChars;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "gemini-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+        this.analysisCache = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(Duration.ofMinutes(cacheTtlMinutes))
+                .build();
+
         logger.info("GeminiService initialized. API Key available: {}", apiKey != null && !apiKey.isEmpty());
         if (apiKey == null || apiKey.isEmpty()) {
             logger.error("API Key is null or empty!");
@@ -65,6 +159,14 @@ public class GeminiService {
         }
     }
 
+    /**
+     * Termina o executor quando a aplicação é encerrada.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
     /**
      * Carrega a chave de API do Gemini.
      * Primeiro tenta obter a chave das variáveis de ambiente do sistema.
@@ -77,7 +179,7 @@ public class GeminiService {
      * @return A chave de API do Gemini
      * @throws RuntimeException se a chave não for encontrada em nenhum local
      */
-    private String loadApiKey() {
+    private static String loadApiKey() {
         // Primeiro tenta obter da variável de ambiente
         String apiKey = System.getenv("GEMINI_API_KEY");
         if (apiKey != null && !apiKey.isEmpty()) {
@@ -124,7 +226,12 @@ public class GeminiService {
             // Verifica se a chave de API está disponível
             if (apiKey == null || apiKey.isEmpty()) {
                 logger.error("Gemini API key not found in environment variables");
-                return "Não foi possível gerar uma análise: API key não configurada.";
+                return NO_API_KEY_MESSAGE;
+            }
+
+            // Limita o tamanho do prompt, independentemente do número de resultados
+            if (searchResults.length() > maxInputChars) {
+                searchResults = searchResults.substring(0, maxInputChars);
             }
 
             logger.info("Generating analysis for search terms: {}", searchTerms);
@@ -140,11 +247,6 @@ public class GeminiService {
                     searchTerms,
                     searchResults);
 
-            // Configura os headers da requisição
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("x-goog-api-key", apiKey);
-
             // Prepara o corpo da requisição
             JsonObject requestBody = new JsonObject();
             JsonArray contents = new JsonArray();
@@ -166,18 +268,24 @@ public class GeminiService {
             requestBody.add("generation_config", generationConfig);
 
             logger.debug("Sending request to Gemini API with body: {}", requestBody.toString());
-            HttpEntity<String> request = new HttpEntity<>(requestBody.toString(), headers);
+            // Configura os headers e o timeout da requisição
+            HttpRequest request = HttpRequest.newBuilder(URI.create(apiUrl))
+                    .timeout(Duration.ofSeconds(timeoutSeconds))
+                    .header("Content-Type", "application/json")
+                    .header("x-goog-api-key", apiKey)
+                    .POST(HttpRequest.BodyPublishers.ofString(requestBody.toString()))
+                    .build();
 
             try {
                 // Envia a requisição para a API
-                logger.info("Making request to Gemini API at: {}", GEMINI_API_URL);
-                ResponseEntity<String> response = restTemplate.postForEntity(GEMINI_API_URL, request, String.class);
-                logger.info("Received response from Gemini API with status: {}", response.getStatusCode());
-                logger.debug("Response body: {}", response.getBody());
+                logger.info("Making request to Gemini API at: {}", apiUrl);
+                HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+                logger.info("Received response from Gemini API with status: {}", response.statusCode());
+                logger.debug("Response body: {}", response.body());
 
                 // Processa a resposta
-                if (response.getStatusCode().is2xxSuccessful()) {
-                    JsonObject responseJson = JsonParser.parseString(response.getBody()).getAsJsonObject();
+                if (response.statusCode() / 100 == 2) {
+                    JsonObject responseJson = JsonParser.parseString(response.body()).getAsJsonObject();
                     JsonArray candidates = responseJson.getAsJsonArray("candidates");
                     if (candidates != null && candidates.size() > 0) {
                         JsonObject candidate = candidates.get(0).getAsJsonObject();
@@ -190,11 +298,15 @@ public class GeminiService {
                         }
                     }
                     logger.warn("No analysis generated from Gemini API response. Response body: {}",
-                            response.getBody());
+                            response.body());
                 } else {
-                    logger.error("Gemini API returned non-2xx status code: {}", response.getStatusCode());
-                    logger.error("Response body: {}", response.getBody());
+                    logger.error("Gemini API returned non-2xx status code: {}", response.statusCode());
+                    logger.error("Response body: {}", response.body());
                 }
+            } catch (InterruptedException e) {
+                // O pedido foi cancelado pelo timeout de requestAnalysis
+                logger.warn("Gemini request cancelled after {} seconds", timeoutSeconds);
+                return UNAVAILABLE_MESSAGE;
             } catch (Exception e) {
                 logger.error("Error calling Gemini API: {}", e.getMessage(), e);
                 if (e.getCause() != null) {
@@ -203,13 +315,108 @@ public class GeminiService {
                 throw e;
             }
 
-            return "Não foi possível gerar uma análise no momento.";
+            return UNAVAILABLE_MESSAGE;
         } catch (Exception e) {
             logger.error("Error generating analysis with Gemini: {}", e.getMessage(), e);
             if (e.getCause() != null) {
                 logger.error("Caused by: {}", e.getCause().getMessage());
             }
-            return "Ocorreu um erro ao gerar a análise.";
+            return ERROR_MESSAGE;
+        }
+    }
+
+    /**
+     * Calcula a chave de cache de uma análise a partir dos termos de busca e das
+     * URLs dos resultados.
+     * 
+     * @param searchTerms Os termos utilizados na busca
+     * @param resultUrls  As URLs dos resultados, pela ordem apresentada
+     * @return Impressão digital hexadecimal (SHA-256)
+     */
+    public String fingerprint(String searchTerms, List<String> resultUrls) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(searchTerms.getBytes(StandardCharsets.UTF_8));
+            for (String url : resultUrls) {
+                digest.update((byte) '\n');
+                digest.update(url.getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Pede uma análise de forma assíncrona.
+     * Se já existir uma análise (ou um pedido em curso) para a mesma chave, é
+     * reutilizada. Caso contrário o pedido é submetido ao executor limitado e
+     * termina, no máximo, após o timeout configurado; nesse caso o pedido HTTP
+     * em curso é cancelado. O pedido fica na cache enquanto está em curso e só
+     * é removido depois de terminar, se não tiver produzido uma análise.
+     * 
+     * @param key           Chave da análise (ver {@link #fingerprint})
+     * @param searchTerms   Os termos utilizados na busca
+     * @param searchResults Os resultados da busca a serem analisados
+     * @return Future com a análise
+     */
+    public CompletableFuture<String> requestAnalysis(String key, String searchTerms, String searchResults) {
+        CompletableFuture<String> cached = analysisCache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        CompletableFuture<String> future = new CompletableFuture<>();
+        CompletableFuture<String> existing = analysisCache.asMap().putIfAbsent(key, future);
+        if (existing != null) {
+            return existing;
+        }
+
+        Future<?> task;
+        try {
+            task = executor.submit(() -> {
+                future.complete(generateAnalysis(searchTerms, searchResults));
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warn("Gemini executor saturated, skipping analysis for: {}", searchTerms);
+            analysisCache.asMap().remove(key, future);
+            future.complete(UNAVAILABLE_MESSAGE);
+            return future;
+        }
+
+        future.completeOnTimeout(UNAVAILABLE_MESSAGE, timeoutSeconds, TimeUnit.SECONDS);
+        future.whenComplete((analysis, error) -> {
+            // Depois de um timeout, interromper a thread cancela o pedido HTTP
+            task.cancel(true);
+            // Falhas, timeouts e mensagens de recurso não ficam em cache
+            if (error != null || isFallback(analysis)) {
+                analysisCache.asMap().remove(key, future);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Verifica se um texto é uma das mensagens devolvidas quando não há análise.
+     * 
+     * @param analysis Texto devolvido pela geração
+     * @return true se não for uma análise
+     */
+    private static boolean isFallback(String analysis) {
+        return analysis == null || analysis.equals(UNAVAILABLE_MESSAGE) || analysis.equals(ERROR_MESSAGE)
+                || analysis.equals(NO_API_KEY_MESSAGE);
+    }
+
+    /**
+     * Obtém o pedido de análise associado a uma chave.
+     * 
+     * @param key Chave da análise
+     * @return Future com a análise, ou null se a chave não for conhecida
+     */
+    public CompletableFuture<String> getAnalysis(String key) {
+        if (key == null || key.isEmpty()) {
+            return null;
         }
+        return analysisCache.getIfPresent(key);
     }
-}
\ No newline at end of file
+}
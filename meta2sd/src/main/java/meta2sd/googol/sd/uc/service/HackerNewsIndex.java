@@ -0,0 +1,149 @@
+package meta2sd.googol.sd.uc.service;
+
+import com.google.gson.JsonObject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import meta1sd.Analyzer;
+
+/**
+ * Índice invertido imutável das histórias do Hacker News em cache.
+ * Os títulos são analisados com um {@link Analyzer} inglês (sem acentos nem
+ * pontuação, sem stopwords inglesas, com stemming inglês), já que as histórias
+ * do Hacker News são em inglês; o analyzer das barrels usa o stemmer português
+ * e truncaria palavras inglesas de forma errada. As histórias ficam ordenadas
+ * por popularidade (pontuação no Hacker News), tal como a pesquisa principal
+ * ordena por número de ligações.
+ *
+ * Uma pesquisa intersecta as listas de histórias de cada termo, começando pela
+ * mais curta, pelo que o custo é proporcional ao número de correspondências e
+ * não ao número de histórias em cache.
+ *
+ * @author Bernardo Pedro nº2021231014 e João Matos nº2021222748
+ * @version 1.0
+ */
+final class HackerNewsIndex {
+    /** Índice vazio, usado antes da primeira atualização */
+    static final HackerNewsIndex EMPTY = new HackerNewsIndex(Collections.emptyList(), Collections.emptyMap());
+
+    /** Analyzer dos títulos e das queries */
+    private static final Analyzer ANALYZER =
+            new Analyzer(new HashSet<>(Analyzer.ENGLISH_STOPWORDS), Analyzer.Stemmer.ENGLISH);
+
+    /** Histórias indexadas, por ordem de popularidade */
+    private final List<JsonObject> stories;
+
+    /** Termo -> posições (ordenadas) das histórias que o contêm */
+    private final Map<String, int[]> postings;
+
+    private HackerNewsIndex(List<JsonObject> stories, Map<String, int[]> postings) {
+        this.stories = stories;
+        this.postings = postings;
+    }
+
+    /**
+     * Constrói o índice a partir das histórias em cache.
+     * Apenas histórias com título e URL são indexadas.
+     *
+     * @param storyIds IDs das histórias (ordem do top)
+     * @param cache    Cache de histórias (ID -> história)
+     * @return O novo índice
+     */
+    static HackerNewsIndex build(int[] storyIds, Map<Integer, JsonObject> cache) {
+        List<JsonObject> ranked = new ArrayList<>();
+        for (int id : storyIds) {
+            JsonObject story = cache.get(id);
+            if (story != null && story.has("title") && story.has("url")) {
+                ranked.add(story);
+            }
+        }
+        // Ordenação estável: histórias com a mesma pontuação mantêm a ordem do top
+        ranked.sort(Comparator.comparingInt(HackerNewsIndex::score).reversed());
+
+        Map<String, List<Integer>> lists = new HashMap<>();
+        for (int position = 0; position < ranked.size(); position++) {
+            for (String term : tokenize(ranked.get(position).get("title").getAsString())) {
+                lists.computeIfAbsent(term, k -> new ArrayList<>()).add(position);
+            }
+        }
+
+        Map<String, int[]> postings = new HashMap<>(lists.size() * 2);
+        lists.forEach((term, positions) -> postings.put(term,
+                positions.stream().mapToInt(Integer::intValue).toArray()));
+        return new HackerNewsIndex(Collections.unmodifiableList(ranked), postings);
+    }
+
+    /**
+     * Pesquisa as histórias que contêm todos os termos da query.
+     *
+     * @param query Termos de busca
+     * @return Histórias correspondentes, por ordem de popularidade
+     */
+    List<JsonObject> search(String query) {
+        Set<String> terms = tokenize(query);
+        if (terms.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        int[][] lists = new int[terms.size()][];
+        int i = 0;
+        for (String term : terms) {
+            int[] positions = postings.get(term);
+            if (positions == null) {
+                return Collections.emptyList();
+            }
+            lists[i++] = positions;
+        }
+        Arrays.sort(lists, Comparator.comparingInt(list -> list.length));
+
+        List<JsonObject> result = new ArrayList<>();
+        for (int position : lists[0]) {
+            boolean matchesAll = true;
+            for (int j = 1; j < lists.length && matchesAll; j++) {
+                matchesAll = Arrays.binarySearch(lists[j], position) >= 0;
+            }
+            if (matchesAll) {
+                result.add(stories.get(position));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Retorna o número de histórias indexadas.
+     *
+     * @return Número de histórias
+     */
+    int size() {
+        return stories.size();
+    }
+
+    /**
+     * Tokeniza um texto com o analyzer inglês dos títulos.
+     *
+     * @param text Texto a tokenizar
+     * @return Termos distintos, pela ordem em que aparecem
+     */
+    static Set<String> tokenize(String text) {
+        Set<String> terms = new LinkedHashSet<>();
+        ANALYZER.analyze(text, terms::add);
+        return terms;
+    }
+
+    /**
+     * Obtém a pontuação de uma história.
+     *
+     * @param story História do Hacker News
+     * @return Pontuação, ou 0 se não existir
+     */
+    private static int score(JsonObject story) {
+        return story.has("score") ? story.get("score").getAsInt() : 0;
+    }
+}
@@ -1,65 +1,174 @@
 package meta2sd.googol.sd.uc.service;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.reflect.TypeToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import jakarta.annotation.PreDestroy;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Serviço responsável por interagir com a API do Hacker News.
  * Esta classe gerencia a busca e cache de histórias do Hacker News,
  * incluindo paginação e atualização periódica do cache.
- * 
+ *
+ * As histórias são obtidas com um {@link HttpClient} assíncrono (HTTP/2, com
+ * reutilização de ligações) e um número limitado de pedidos em simultâneo. A
+ * atualização é incremental: só são pedidas as histórias novas ou alteradas, e
+ * corre em segundo plano em vez de bloquear as pesquisas: até à primeira carga
+ * as pesquisas usam o índice vazio (ou o cache em disco), e uma carga falhada é
+ * repetida com recuo exponencial. Opcionalmente o cache é guardado em disco para
+ * sobreviver a reinícios.
+ *
+ * As pesquisas usam um índice invertido ({@link HackerNewsIndex}) reconstruído
+ * a cada atualização, com a mesma tokenização das barrels, em vez de percorrer
+ * os títulos de todas as histórias.
+ *
  * @author Bernardo Pedro nº2021231014 e João Matos nº2021222748
  * @version 1.0
  */
 @Service
 public class HackerNewsService {
+    /** Logger para registro de eventos e erros */
+    private static final Logger logger = LoggerFactory.getLogger(HackerNewsService.class);
+
     /** Número de histórias por página */
     private static final int STORIES_PER_PAGE = 10;
 
-    /** URL para obter as histórias mais populares */
-    private static final String TOP_STORIES_URL = "https://hacker-news.firebaseio.com/v0/topstories.json";
+    /** Espera antes de repetir a primeira atualização falhada, em segundos */
+    private static final long MIN_RETRY_SECONDS = 5;
 
-    /** URL base para obter detalhes de uma história específica */
-    private static final String ITEM_URL = "https://hacker-news.firebaseio.com/v0/item/%d.json";
+    /** URL base por omissão da API do Hacker News */
+    private static final String DEFAULT_BASE_URL = "https://hacker-news.firebaseio.com/v0";
 
     /** Instância do Gson para manipulação de JSON */
     private final Gson gson = new Gson();
 
-    /** Cache de resultados de busca */
-    private final Map<String, List<JsonObject>> searchCache = new ConcurrentHashMap<>();
+    /** Índice invertido das histórias em cache */
+    private volatile HackerNewsIndex index = HackerNewsIndex.EMPTY;
 
     /** Cache de histórias individuais */
     private final Map<Integer, JsonObject> storyCache = new ConcurrentHashMap<>();
 
     /** IDs das histórias em cache */
-    private int[] cachedStoryIds;
+    private volatile int[] cachedStoryIds;
+
+    /** URL base da API (configurável para testes com um servidor local) */
+    private final String baseUrl;
+
+    /** Intervalo entre atualizações do cache, em segundos */
+    private final long refreshIntervalSeconds;
+
+    /** Tempo máximo de cada pedido HTTP, em segundos */
+    private final long requestTimeoutSeconds;
+
+    /** Ficheiro onde o cache é persistido (null se desativado) */
+    private final File cacheFile;
+
+    /** Limita o número de pedidos HTTP em simultâneo */
+    private final Semaphore requestPermits;
+
+    /** Executor das respostas HTTP (não usa o ForkJoinPool comum) */
+    private final ExecutorService httpExecutor;
+
+    /** Cliente HTTP partilhado por todos os pedidos */
+    private final HttpClient httpClient;
+
+    /** Agenda as atualizações periódicas em segundo plano */
+    private final ScheduledExecutorService refresher;
 
-    /** Timestamp da última atualização do cache */
-    private long lastCacheUpdate;
+    /** Indica se as atualizações periódicas já foram agendadas */
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+
+    /** Atualizações falhadas seguidas (só usado pela thread de atualização) */
+    private int consecutiveFailures;
+
+    /** Impede atualizações concorrentes do cache */
+    private final Object refreshLock = new Object();
+
+    /**
+     * Construtor usado pelo Spring.
+     *
+     * @param baseUrl                URL base da API do Hacker News
+     * @param maxConcurrentRequests  Número máximo de pedidos HTTP em simultâneo
+     * @param refreshIntervalSeconds Intervalo entre atualizações do cache
+     * @param requestTimeoutSeconds  Tempo máximo de cada pedido HTTP
+     * @param cacheFile              Caminho do ficheiro de cache (vazio para
+     *                               desativar)
+     */
+    @Autowired
+    public HackerNewsService(
+            @Value("${hackernews.baseUrl:" + DEFAULT_BASE_URL + "}") String baseUrl,
+            @Value("${hackernews.maxConcurrentRequests:16}") int maxConcurrentRequests,
+            @Value("${hackernews.refreshIntervalSeconds:300}") long refreshIntervalSeconds,
+            @Value("${hackernews.requestTimeoutSeconds:10}") long requestTimeoutSeconds,
+            @Value("${hackernews.cacheFile:}") String cacheFile) {
+        this.baseUrl = baseUrl;
+        this.refreshIntervalSeconds = refreshIntervalSeconds;
+        this.requestTimeoutSeconds = requestTimeoutSeconds;
+        this.cacheFile = (cacheFile == null || cacheFile.isEmpty()) ? null : new File(cacheFile);
+        this.requestPermits = new Semaphore(maxConcurrentRequests);
+        this.httpExecutor = Executors.newFixedThreadPool(Math.max(1, Math.min(4, maxConcurrentRequests)),
+                daemonThreads("hackernews-http"));
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofSeconds(requestTimeoutSeconds))
+                .executor(httpExecutor)
+                .build();
+        this.refresher = Executors.newSingleThreadScheduledExecutor(daemonThreads("hackernews-refresh"));
+        loadCacheFromDisk();
+    }
+
+    /**
+     * Termina os executores quando a aplicação é encerrada.
+     */
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+        httpExecutor.shutdownNow();
+    }
 
     /**
      * Busca histórias do Hacker News com base em uma query e página específica.
-     * 
+     *
      * @param query Termos de busca
      * @param page  Número da página desejada
      * @return Lista de histórias que correspondem à busca, paginadas
      */
     public List<JsonObject> searchStories(String query, int page) {
         try {
-            // Atualiza o cache se necessário (a cada 5 minutos)
-            updateCacheIfNeeded();
+            // Agenda a carga em segundo plano; até lá o índice pode estar vazio
+            ensureLoaded();
 
-            // Obtém histórias correspondentes do cache
-            List<JsonObject> matchingStories = searchCache.computeIfAbsent(query.toLowerCase(),
-                    this::findMatchingStories);
+            // Obtém histórias correspondentes do índice
+            List<JsonObject> matchingStories = index.search(query);
 
             // Calcula paginação
             int startIndex = (page - 1) * STORIES_PER_PAGE;
@@ -73,131 +182,272 @@ public class HackerNewsService {
             return new ArrayList<>();
 
         } catch (Exception e) {
-            e.printStackTrace();
+            logger.error("Error searching Hacker News stories: {}", e.getMessage(), e);
             return new ArrayList<>();
         }
     }
 
     /**
      * Obtém o número total de resultados para uma query específica.
-     * 
+     *
      * @param query Termos de busca
      * @return Número total de histórias que correspondem à busca
      */
     public int getTotalResults(String query) {
         try {
-            // Atualiza o cache se necessário
-            updateCacheIfNeeded();
+            // Agenda a carga em segundo plano; até lá o índice pode estar vazio
+            ensureLoaded();
 
-            // Obtém histórias correspondentes do cache
-            List<JsonObject> matchingStories = searchCache.computeIfAbsent(query.toLowerCase(),
-                    this::findMatchingStories);
+            // Obtém histórias correspondentes do índice
+            List<JsonObject> matchingStories = index.search(query);
             return matchingStories.size();
         } catch (Exception e) {
-            e.printStackTrace();
+            logger.error("Error counting Hacker News results: {}", e.getMessage(), e);
             return 0;
         }
     }
 
     /**
-     * Atualiza o cache de histórias se necessário.
-     * O cache é atualizado a cada 5 minutos.
-     * 
-     * @throws Exception se houver erro ao atualizar o cache
+     * Agenda, no primeiro pedido, a carga inicial e as atualizações periódicas em
+     * segundo plano. Nunca espera pela carga: até lá as pesquisas usam o índice
+     * atual (vazio, ou o cache em disco).
      */
-    private void updateCacheIfNeeded() throws Exception {
-        long currentTime = System.currentTimeMillis();
-        if (cachedStoryIds == null || currentTime - lastCacheUpdate > 300000) { // 5 minutos
-            String topStoriesJson = fetchUrl(TOP_STORIES_URL);
-            cachedStoryIds = gson.fromJson(topStoriesJson, int[].class);
-            storyCache.clear();
-            searchCache.clear();
-            lastCacheUpdate = currentTime;
+    private void ensureLoaded() {
+        if (refreshScheduled.compareAndSet(false, true)) {
+            refresher.execute(this::scheduledRefresh);
         }
     }
 
     /**
-     * Encontra histórias que correspondem aos termos de busca.
-     * 
-     * @param query Termos de busca
-     * @return Lista de histórias que correspondem aos termos
+     * Executa uma atualização e agenda a seguinte: após o intervalo configurado
+     * se correu bem, ou com recuo exponencial (5s, 10s, 20s, ... até ao
+     * intervalo) se falhou, para não insistir com a API em baixo.
      */
-    private List<JsonObject> findMatchingStories(String query) {
-        String[] terms = query.split("\\s+");
-        return Arrays.stream(cachedStoryIds)
-                .parallel()
-                .mapToObj(this::getStoryFromCache)
-                .filter(Objects::nonNull)
-                .filter(story -> matchesTerms(story, terms))
-                .collect(Collectors.toList());
+    private void scheduledRefresh() {
+        long delay = refreshIntervalSeconds;
+        try {
+            refresh();
+            consecutiveFailures = 0;
+        } catch (Exception e) {
+            consecutiveFailures++;
+            delay = Math.min(refreshIntervalSeconds, MIN_RETRY_SECONDS << Math.min(consecutiveFailures - 1, 16));
+            logger.error("Error refreshing Hacker News cache (retrying in {}s): {}", delay, e.getMessage());
+        }
+        try {
+            refresher.schedule(this::scheduledRefresh, delay, TimeUnit.SECONDS);
+        } catch (RejectedExecutionException e) {
+            // Serviço encerrado
+        }
     }
 
     /**
-     * Obtém uma história do cache ou busca da API se necessário.
-     * 
-     * @param id ID da história
-     * @return Objeto JSON contendo os detalhes da história
+     * Atualiza o cache de histórias de forma incremental.
+     * Obtém a lista atual de top stories, pede apenas as histórias que ainda não
+     * estão em cache ou que aparecem em {@code updates.json}, e remove as que
+     * deixaram de estar no top.
+     *
+     * @return Número de histórias pedidas à API nesta atualização
      */
-    private JsonObject getStoryFromCache(int id) {
-        return storyCache.computeIfAbsent(id, this::fetchStory);
+    public int refresh() {
+        synchronized (refreshLock) {
+            long start = System.currentTimeMillis();
+            int[] topIds = gson.fromJson(fetchUrl(baseUrl + "/topstories.json"), int[].class);
+            if (topIds == null) {
+                topIds = new int[0];
+            }
+
+            Set<Integer> changedIds = fetchChangedIds();
+            Set<Integer> toFetch = new LinkedHashSet<>();
+            Set<Integer> topSet = new HashSet<>();
+            for (int id : topIds) {
+                topSet.add(id);
+                if (!storyCache.containsKey(id) || changedIds.contains(id)) {
+                    toFetch.add(id);
+                }
+            }
+
+            Map<Integer, JsonObject> fetched = fetchStories(toFetch);
+            storyCache.putAll(fetched);
+            storyCache.keySet().retainAll(topSet);
+
+            boolean changed = !fetched.isEmpty() || !Arrays.equals(topIds, cachedStoryIds);
+            cachedStoryIds = topIds;
+            if (changed) {
+                index = HackerNewsIndex.build(topIds, storyCache);
+                saveCacheToDisk();
+            }
+
+            logger.info("Hacker News cache refreshed: {} stories, {} fetched in {}ms", topIds.length, fetched.size(),
+                    System.currentTimeMillis() - start);
+            return toFetch.size();
+        }
     }
 
     /**
-     * Busca uma história específica da API do Hacker News.
-     * 
-     * @param id ID da história
-     * @return Objeto JSON contendo os detalhes da história, ou null se houver erro
+     * Obtém os IDs de itens alterados recentemente.
+     *
+     * @return Conjunto de IDs alterados (vazio se o endpoint falhar)
      */
-    private JsonObject fetchStory(int id) {
+    private Set<Integer> fetchChangedIds() {
+        Set<Integer> changed = new HashSet<>();
         try {
-            String storyJson = fetchUrl(String.format(ITEM_URL, id));
-            return gson.fromJson(storyJson, JsonObject.class);
+            JsonObject updates = gson.fromJson(fetchUrl(baseUrl + "/updates.json"), JsonObject.class);
+            JsonArray items = updates != null ? updates.getAsJsonArray("items") : null;
+            if (items != null) {
+                for (JsonElement item : items) {
+                    changed.add(item.getAsInt());
+                }
+            }
         } catch (Exception e) {
-            return null;
+            logger.warn("Could not fetch Hacker News updates: {}", e.getMessage());
         }
+        return changed;
     }
 
     /**
-     * Verifica se uma história corresponde aos termos de busca.
-     * 
-     * @param story História a ser verificada
-     * @param terms Termos de busca
-     * @return true se a história corresponder a todos os termos, false caso
-     *         contrário
+     * Pede várias histórias em paralelo, com um número limitado de pedidos em
+     * simultâneo.
+     *
+     * @param ids IDs das histórias a pedir
+     * @return Mapa com as histórias obtidas com sucesso
      */
-    private boolean matchesTerms(JsonObject story, String[] terms) {
-        if (story == null || !story.has("title") || !story.has("url")) {
-            return false;
-        }
-
-        String title = story.get("title").getAsString().toLowerCase();
-        for (String term : terms) {
-            if (!title.contains(term)) {
-                return false;
+    private Map<Integer, JsonObject> fetchStories(Collection<Integer> ids) {
+        Map<Integer, JsonObject> fetched = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        for (int id : ids) {
+            try {
+                requestPermits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            CompletableFuture<HttpResponse<String>> sent;
+            try {
+                sent = httpClient.sendAsync(get(String.format("%s/item/%d.json", baseUrl, id)),
+                        HttpResponse.BodyHandlers.ofString());
+            } catch (RuntimeException e) {
+                // O pedido nem chegou a ser enviado: a licença é devolvida aqui
+                requestPermits.release();
+                logger.debug("Error sending request for story {}: {}", id, e.getMessage());
+                continue;
             }
+            CompletableFuture<Void> request = sent
+                    .thenAccept(response -> {
+                        if (response.statusCode() == 200) {
+                            JsonObject story = gson.fromJson(response.body(), JsonObject.class);
+                            if (story != null) {
+                                fetched.put(id, story);
+                            }
+                        }
+                    })
+                    .exceptionally(e -> {
+                        logger.debug("Error fetching story {}: {}", id, e.getMessage());
+                        return null;
+                    })
+                    .whenComplete((ignored, e) -> requestPermits.release());
+            pending.add(request);
         }
-        return true;
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).join();
+        return fetched;
+    }
+
+    /**
+     * Cria um pedido HTTP GET com o timeout configurado.
+     *
+     * @param url URL do pedido
+     * @return O pedido HTTP
+     */
+    private HttpRequest get(String url) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(requestTimeoutSeconds))
+                .GET()
+                .build();
     }
 
     /**
      * Faz uma requisição HTTP GET para uma URL específica.
-     * 
+     *
      * @param urlString URL para fazer a requisição
      * @return Resposta da requisição como String
-     * @throws Exception se houver erro na requisição
+     * @throws IllegalStateException se houver erro na requisição
      */
-    private String fetchUrl(String urlString) throws Exception {
-        URL url = new URL(urlString);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestMethod("GET");
-
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(conn.getInputStream()))) {
-            StringBuilder response = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                response.append(line);
+    private String fetchUrl(String urlString) {
+        try {
+            HttpResponse<String> response = httpClient.send(get(urlString), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("HTTP " + response.statusCode() + " for " + urlString);
+            }
+            return response.body();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while fetching " + urlString, e);
+        } catch (IOException e) {
+            throw new IllegalStateException("Error fetching " + urlString + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Carrega o cache de histórias guardado em disco, se existir.
+     */
+    private void loadCacheFromDisk() {
+        if (cacheFile == null || !cacheFile.exists()) {
+            return;
+        }
+        try (Reader reader = new FileReader(cacheFile)) {
+            Map<Integer, JsonObject> stories = gson.fromJson(reader, new TypeToken<Map<Integer, JsonObject>>() {
+            }.getType());
+            if (stories != null) {
+                storyCache.putAll(stories);
+                // A ordem do top é reposta na próxima atualização
+                cachedStoryIds = stories.keySet().stream().mapToInt(Integer::intValue).toArray();
+                index = HackerNewsIndex.build(cachedStoryIds, storyCache);
+                logger.info("Loaded {} Hacker News stories from {}", stories.size(), cacheFile);
             }
-            return response.toString();
+        } catch (Exception e) {
+            logger.warn("Could not load Hacker News cache from {}: {}", cacheFile, e.getMessage());
+        }
+    }
+
+    /**
+     * Guarda o cache de histórias em disco, se a persistência estiver ativa.
+     */
+    private void saveCacheToDisk() {
+        if (cacheFile == null) {
+            return;
+        }
+        File parentDir = cacheFile.getAbsoluteFile().getParentFile();
+        if (parentDir != null && !parentDir.exists()) {
+            parentDir.mkdirs();
+        }
+        File tmp = new File(cacheFile.getPath() + ".tmp");
+        try (Writer writer = new FileWriter(tmp)) {
+            gson.toJson(new HashMap<>(storyCache), writer);
+        } catch (Exception e) {
+            logger.warn("Could not save Hacker News cache to {}: {}", cacheFile, e.getMessage());
+            return;
+        }
+        if (!tmp.renameTo(cacheFile)) {
+            cacheFile.delete();
+            tmp.renameTo(cacheFile);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Fábrica de threads daemon com nome, para não impedir o fim da aplicação.
+     *
+     * @param prefix Prefixo do nome das threads
+     * @return A fábrica de threads
+     */
+    private static ThreadFactory daemonThreads(String prefix) {
+        return new ThreadFactory() {
+            private int count;
+
+            @Override
+            public synchronized Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, prefix + "-" + (++count));
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
@@ -0,0 +1,112 @@
+package meta2sd.googol.sd.uc.service;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Snapshot imutável dos resultados de uma pesquisa.
+ * Permite paginar os resultados sem voltar a consultar o gateway e mantém a
+ * ordem consistente mesmo que o índice das barrels mude entretanto.
+ *
+ * @author Bernardo Pedro nº2021231014 e João Matos nº2021222748
+ * @version 1.0
+ */
+public class SearchCursor {
+    /** Token opaco que identifica o cursor no URL */
+    private final String token;
+
+    /** Termos pesquisados (null se for uma pesquisa por URL) */
+    private final String terms;
+
+    /** URL pesquisada (null se for uma pesquisa por termos) */
+    private final String url;
+
+    /** Resultados completos da pesquisa */
+    private final List<?> results;
+
+    /**
+     * Construtor do cursor.
+     *
+     * @param token   Token opaco do cursor
+     * @param terms   Termos pesquisados
+     * @param url     URL pesquisada
+     * @param results Resultados da pesquisa, sem nulos (é feita uma cópia)
+     */
+    public SearchCursor(String token, String terms, String url, List<?> results) {
+        this.token = token;
+        this.terms = terms;
+        this.url = url;
+        this.results = List.copyOf(results);
+    }
+
+    /**
+     * Retorna o token do cursor.
+     *
+     * @return Token opaco
+     */
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * Retorna os termos pesquisados.
+     *
+     * @return Termos de busca ou null
+     */
+    public String getTerms() {
+        return terms;
+    }
+
+    /**
+     * Retorna a URL pesquisada.
+     *
+     * @return URL ou null
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Retorna o número total de resultados.
+     *
+     * @return Total de resultados
+     */
+    public int size() {
+        return results.size();
+    }
+
+    /**
+     * Retorna todos os resultados do cursor.
+     *
+     * @return Lista imutável de resultados
+     */
+    public List<?> getResults() {
+        return results;
+    }
+
+    /**
+     * Calcula o número de páginas para um dado tamanho de página.
+     *
+     * @param pageSize Número de resultados por página
+     * @return Número total de páginas
+     */
+    public int totalPages(int pageSize) {
+        return (int) Math.ceil((double) results.size() / pageSize);
+    }
+
+    /**
+     * Retorna os resultados de uma página.
+     *
+     * @param page     Número da página (começa em 1, já validado)
+     * @param pageSize Número de resultados por página
+     * @return Sublista imutável com os resultados da página
+     */
+    public List<?> page(int page, int pageSize) {
+        int startIndex = Math.max(0, (page - 1) * pageSize);
+        int endIndex = Math.min(startIndex + pageSize, results.size());
+        if (startIndex >= endIndex) {
+            return Collections.emptyList();
+        }
+        return results.subList(startIndex, endIndex);
+    }
+}
@@ -0,0 +1,80 @@
+package meta2sd.googol.sd.uc.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Serviço que guarda, por pouco tempo, os resultados de cada pesquisa num
+ * cursor identificado por um token opaco.
+ * A paginação lê do cursor em vez de repetir a pesquisa no gateway.
+ *
+ * A cache é limitada em memória pelo número total de resultados guardados e os
+ * cursores expiram após um TTL configurável.
+ *
+ * @author Bernardo Pedro nº2021231014 e João Matos nº2021222748
+ * @version 1.0
+ */
+@Service
+public class SearchCursorService {
+    /** Logger para registro de eventos */
+    private static final Logger logger = LoggerFactory.getLogger(SearchCursorService.class);
+
+    /** Cache de cursores (token -> cursor) */
+    private final Cache<String, SearchCursor> cursors;
+
+    /**
+     * Construtor do serviço.
+     *
+     * @param ttlSeconds Tempo de vida de cada cursor em segundos
+     * @param maxResults Número máximo de resultados guardados no total
+     */
+    public SearchCursorService(
+            @Value("${searchCursor.ttlSeconds:300}") long ttlSeconds,
+            @Value("${searchCursor.maxResults:50000}") long maxResults) {
+        this.cursors = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .maximumWeight(maxResults)
+                .weigher((String token, SearchCursor cursor) -> cursor.size() + 1)
+                .executor(Runnable::run) // Remoções imediatas: o limite vale logo após cada pesquisa
+                .build();
+        logger.info("SearchCursorService initialized (ttl={}s, maxResults={})", ttlSeconds, maxResults);
+    }
+
+    /**
+     * Cria um novo cursor com os resultados de uma pesquisa.
+     *
+     * @param terms   Termos pesquisados (ou null)
+     * @param url     URL pesquisada (ou null)
+     * @param results Resultados da pesquisa
+     * @return O cursor criado
+     */
+    public SearchCursor create(String terms, String url, List<?> results) {
+        String token = UUID.randomUUID().toString().replace("-", "");
+        SearchCursor cursor = new SearchCursor(token, terms, url, results);
+        cursors.put(token, cursor);
+        logger.debug("Created search cursor {} with {} results", token, cursor.size());
+        return cursor;
+    }
+
+    /**
+     * Obtém um cursor ainda válido.
+     *
+     * @param token Token do cursor
+     * @return O cursor, ou null se não existir ou tiver expirado
+     */
+    public SearchCursor get(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        return cursors.getIfPresent(token);
+    }
+}
@@ -0,0 +1,98 @@
+package meta2sd.googol.sd.uc.controller.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.rmi.RemoteException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import meta1sd.RMIGatewayClientInterface;
+import meta1sd.SiteData;
+
+class WebClientTests {
+
+	private final CountDownLatch release = new CountDownLatch(1);
+	private WebClient client;
+
+	/**
+	 * Gateway cujas pesquisas só respondem quando o teste o permitir (os
+	 * restantes métodos da interface não são usados).
+	 */
+	private Object answer(Object proxy, Method method, Object[] args) throws Exception {
+		switch (method.getName()) {
+		case "clientIndexUrl":
+			return null;
+		case "returnPagesbyWords":
+			if (args[0].equals("erro")) {
+				throw new RemoteException("barrel em baixo");
+			}
+			release.await();
+			return List.of(new SiteData("http://test.local", (String) args[0], ""));
+		case "returnLinkedUrls":
+			release.await();
+			return List.of("http://test.local");
+		default:
+			throw new UnsupportedOperationException(method.getName());
+		}
+	}
+
+	@BeforeEach
+	void createClient() throws Exception {
+		client = new WebClient();
+		ReflectionTestUtils.setField(client, "registryName", "");
+		ReflectionTestUtils.setField(client, "searchThreads", 1);
+		ReflectionTestUtils.setField(client, "searchQueueCapacity", 1);
+		ReflectionTestUtils.setField(client, "searchTimeoutSeconds", 1L);
+		ReflectionTestUtils.setField(client, "indexThreads", 1);
+		ReflectionTestUtils.setField(client, "indexQueueCapacity", 1);
+		ReflectionTestUtils.setField(client, "indexTimeoutSeconds", 1L);
+		client.init();
+		ReflectionTestUtils.setField(client, "gateway", Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { RMIGatewayClientInterface.class }, this::answer));
+	}
+
+	@AfterEach
+	void stopClient() {
+		release.countDown();
+		client.shutdown();
+	}
+
+	@Test
+	void slowSearchReturnsTheFallbackAtTheDeadline() {
+		long start = System.nanoTime();
+		assertNull(client.getPagesbyTermsAsync("googol").join());
+		long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		assertTrue(elapsedMs >= 900 && elapsedMs < 5000, elapsedMs + " ms");
+	}
+
+	@Test
+	void fullSearchExecutorRejectsWithoutBlockingIndexing() {
+		CompletableFuture<List<SiteData>> running = client.getPagesbyTermsAsync("a");
+		CompletableFuture<List<String>> queued = client.getPagesbyUrlAsync("http://test.local");
+		CompletableFuture<List<SiteData>> rejected = client.getPagesbyTermsAsync("c");
+
+		assertTrue(rejected.isDone());
+		assertNull(rejected.join());
+		assertEquals(true, client.addURLAsync("http://test.local/novo").join());
+
+		release.countDown();
+		assertEquals(1, running.join().size());
+		assertEquals(List.of("http://test.local"), queued.join());
+	}
+
+	@Test
+	void gatewayErrorReturnsTheFallback() {
+		assertNull(client.getPagesbyTermsAsync("erro").join());
+	}
+}
@@ -0,0 +1,118 @@
+package meta2sd.googol.sd.uc.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+class GeminiServiceTests {
+
+	private static final String RESPONSE = "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"resumo\"}]}}]}";
+
+	private HttpServer server;
+	private final AtomicInteger requests = new AtomicInteger();
+	private volatile long delayMs;
+
+	@BeforeEach
+	void startStub() throws Exception {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/generate", exchange -> {
+			requests.incrementAndGet();
+			try {
+				Thread.sleep(delayMs);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			byte[] body = RESPONSE.getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.start();
+	}
+
+	@AfterEach
+	void stopStub() {
+		server.stop(0);
+	}
+
+	private GeminiService service(int timeoutSeconds) {
+		return service("test-key", timeoutSeconds);
+	}
+
+	private GeminiService service(String apiKey, int timeoutSeconds) {
+		String url = "http://localhost:" + server.getAddress().getPort() + "/generate";
+		return new GeminiService(url, apiKey, timeoutSeconds, 1, 4, 1000, 10, 5);
+	}
+
+	@Test
+	void analysisIsGeneratedAsynchronouslyAndCached() throws Exception {
+		GeminiService gemini = service(5);
+		String key = gemini.fingerprint("sd", List.of("http://a", "http://b"));
+
+		CompletableFuture<String> first = gemini.requestAnalysis(key, "sd", "resultados");
+		assertEquals("resumo", first.get(5, TimeUnit.SECONDS));
+
+		CompletableFuture<String> second = gemini.requestAnalysis(key, "sd", "resultados");
+		assertSame(first, second);
+		assertSame(first, gemini.getAnalysis(key));
+		assertEquals(1, requests.get());
+		gemini.shutdown();
+	}
+
+	@Test
+	void slowApiFallsBackAndIsNotCached() throws Exception {
+		delayMs = 3000;
+		GeminiService gemini = service(1);
+		String key = gemini.fingerprint("lento", List.of("http://a"));
+
+		String analysis = gemini.requestAnalysis(key, "lento", "resultados").get(5, TimeUnit.SECONDS);
+		assertNotEquals("resumo", analysis);
+		assertNull(gemini.getAnalysis(key));
+		gemini.shutdown();
+	}
+
+	@Test
+	void timedOutRequestFreesTheWorker() throws Exception {
+		delayMs = 4000;
+		GeminiService gemini = service(1);
+
+		String slow = gemini.requestAnalysis("lento", "lento", "resultados").get(5, TimeUnit.SECONDS);
+		assertNotEquals("resumo", slow);
+
+		// O executor tem uma só thread: só fica livre se o pedido lento foi cancelado
+		delayMs = 0;
+		String fast = gemini.requestAnalysis("rapido", "rapido", "resultados").get(5, TimeUnit.SECONDS);
+		assertEquals("resumo", fast);
+		gemini.shutdown();
+	}
+
+	@Test
+	void missingApiKeyIsNotCached() throws Exception {
+		GeminiService gemini = service("", 5);
+
+		String analysis = gemini.requestAnalysis("sem-chave", "sd", "resultados").get(5, TimeUnit.SECONDS);
+		assertNotEquals("resumo", analysis);
+		assertNull(gemini.getAnalysis("sem-chave"));
+		assertEquals(0, requests.get());
+		gemini.shutdown();
+	}
+}
@@ -0,0 +1,185 @@
+package meta2sd.googol.sd.uc.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+class HackerNewsServiceTests {
+
+	private HttpServer server;
+	private final Map<String, String> responses = new ConcurrentHashMap<>();
+	private final AtomicInteger itemRequests = new AtomicInteger();
+	private final AtomicInteger topStoriesRequests = new AtomicInteger();
+	private volatile CountDownLatch topStoriesGate = new CountDownLatch(0);
+
+	@TempDir
+	Path tempDir;
+
+	@BeforeEach
+	void startMock() throws Exception {
+		responses.put("/v0/topstories.json", "[1,2,3]");
+		responses.put("/v0/updates.json", "{\"items\":[],\"profiles\":[]}");
+		responses.put("/v0/item/1.json", story(1, "Distributed systems in Java"));
+		responses.put("/v0/item/2.json", story(2, "Rust for systems programming"));
+		responses.put("/v0/item/3.json", story(3, "Cooking with Java beans"));
+
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/v0/", this::handle);
+		server.start();
+	}
+
+	@AfterEach
+	void stopMock() {
+		topStoriesGate.countDown();
+		server.stop(0);
+	}
+
+	private void handle(HttpExchange exchange) throws java.io.IOException {
+		String path = exchange.getRequestURI().getPath();
+		if (path.startsWith("/v0/item/")) {
+			itemRequests.incrementAndGet();
+		}
+		if (path.equals("/v0/topstories.json")) {
+			topStoriesRequests.incrementAndGet();
+			try {
+				topStoriesGate.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		String body = responses.get(path);
+		byte[] bytes = body == null ? new byte[0] : body.getBytes(StandardCharsets.UTF_8);
+		exchange.sendResponseHeaders(body == null ? 404 : 200, body == null ? -1 : bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	private static String story(int id, String title) {
+		return "{\"id\":" + id + ",\"title\":\"" + title + "\",\"url\":\"http://example.com/" + id + "\"}";
+	}
+
+	private HackerNewsService service(String cacheFile) {
+		String baseUrl = "http://localhost:" + server.getAddress().getPort() + "/v0";
+		return new HackerNewsService(baseUrl, 4, 3600, 5, cacheFile);
+	}
+
+	private static void awaitTotalResults(HackerNewsService hackerNews, String query, int expected)
+			throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (hackerNews.getTotalResults(query) != expected && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(expected, hackerNews.getTotalResults(query));
+	}
+
+	@Test
+	void searchUsesFetchedStories() {
+		HackerNewsService hackerNews = service("");
+		hackerNews.refresh();
+		List<JsonObject> results = hackerNews.searchStories("java", 1);
+		assertEquals(2, results.size());
+		assertEquals(2, hackerNews.getTotalResults("java"));
+		assertEquals(3, itemRequests.get());
+		hackerNews.shutdown();
+	}
+
+	@Test
+	void searchMatchesWholeTermsLikeTheBarrels() {
+		HackerNewsService hackerNews = service("");
+		hackerNews.refresh();
+		assertEquals(1, hackerNews.getTotalResults("Java, systems!"));
+		assertEquals(2, hackerNews.getTotalResults("systems"));
+		assertEquals(0, hackerNews.getTotalResults("jav"));
+		hackerNews.shutdown();
+	}
+
+	@Test
+	void titlesAreAnalyzedAsEnglish() {
+		HackerNewsService hackerNews = service("");
+		hackerNews.refresh();
+		assertEquals(2, hackerNews.getTotalResults("system"));
+		assertEquals(1, hackerNews.getTotalResults("the bean"));
+		hackerNews.shutdown();
+	}
+
+	@Test
+	void firstSearchDoesNotWaitForTheLoad() throws Exception {
+		topStoriesGate = new CountDownLatch(1);
+		HackerNewsService hackerNews = service("");
+
+		long start = System.nanoTime();
+		assertEquals(0, hackerNews.getTotalResults("java"));
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+
+		topStoriesGate.countDown();
+		awaitTotalResults(hackerNews, "java", 2);
+		hackerNews.shutdown();
+	}
+
+	@Test
+	void failedLoadIsRetriedWithBackoff() throws Exception {
+		responses.remove("/v0/topstories.json");
+		HackerNewsService hackerNews = service("");
+
+		assertEquals(0, hackerNews.getTotalResults("java"));
+		long deadline = System.currentTimeMillis() + 5000;
+		while (topStoriesRequests.get() == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		Thread.sleep(500);
+		for (int i = 0; i < 10; i++) {
+			assertEquals(0, hackerNews.getTotalResults("java"));
+		}
+		assertEquals(1, topStoriesRequests.get());
+		hackerNews.shutdown();
+	}
+
+	@Test
+	void refreshOnlyFetchesNewAndChangedStories() {
+		HackerNewsService hackerNews = service("");
+		assertEquals(3, hackerNews.refresh());
+
+		responses.put("/v0/topstories.json", "[1,2,3,4]");
+		responses.put("/v0/updates.json", "{\"items\":[2],\"profiles\":[]}");
+		responses.put("/v0/item/2.json", story(2, "Rust and Java interop"));
+		responses.put("/v0/item/4.json", story(4, "Java virtual threads"));
+
+		assertEquals(2, hackerNews.refresh());
+		assertEquals(5, itemRequests.get());
+		assertEquals(4, hackerNews.getTotalResults("java"));
+		hackerNews.shutdown();
+	}
+
+	@Test
+	void cacheIsPersistedToDisk() {
+		String cacheFile = tempDir.resolve("hn-cache.json").toString();
+		HackerNewsService first = service(cacheFile);
+		first.refresh();
+		first.shutdown();
+
+		HackerNewsService second = service(cacheFile);
+		assertEquals(0, second.refresh());
+		assertEquals(3, itemRequests.get());
+		second.shutdown();
+	}
+}
@@ -0,0 +1,54 @@
+package meta2sd.googol.sd.uc.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class SearchCursorServiceTests {
+
+	@Test
+	void cursorPagesAreStableWhenTheSourceListChanges() {
+		List<String> results = new ArrayList<>(List.of("a", "b", "c", "d", "e"));
+		SearchCursor cursor = new SearchCursorService(300, 1000).create("googol", null, results);
+		results.clear();
+
+		assertEquals(5, cursor.size());
+		assertEquals(3, cursor.totalPages(2));
+		assertEquals(List.of("c", "d"), cursor.page(2, 2));
+		assertEquals(List.of("e"), cursor.page(3, 2));
+		assertTrue(cursor.page(4, 2).isEmpty());
+	}
+
+	@Test
+	void cursorIsFoundByItsToken() {
+		SearchCursorService service = new SearchCursorService(300, 1000);
+		SearchCursor first = service.create("googol", null, List.of("a"));
+		SearchCursor second = service.create(null, "http://test.local", List.of("b"));
+
+		assertNotEquals(first.getToken(), second.getToken());
+		assertSame(first, service.get(first.getToken()));
+		assertSame(second, service.get(second.getToken()));
+		assertNull(service.get("unknown"));
+		assertNull(service.get(null));
+	}
+
+	@Test
+	void cacheIsBoundedByTheTotalNumberOfResults() {
+		SearchCursorService service = new SearchCursorService(300, 100);
+		List<SearchCursor> cursors = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			cursors.add(service.create("q" + i, null, List.of(1, 2, 3, 4, 5, 6, 7, 8, 9)));
+		}
+
+		// Cada cursor pesa 10 (resultados + 1): no máximo 10 cabem no limite
+		long alive = cursors.stream().filter(c -> service.get(c.getToken()) != null).count();
+		assertTrue(alive <= 10, alive + " cursores guardados");
+	}
+}
@@ -16,9 +16,10 @@ try {
     exit 1
 }
 
-# Verifica se o arquivo JAR existe
-if (-not (Test-Path "../meta1sd.jar")) {
-    Write-Host "❌ Arquivo meta1sd.jar não encontrado. Por favor, compile o projeto primeiro."
+# Verifica se os jars dos componentes existem (mvn -pl meta1sd package)
+$JAR_DIR = "../meta1sd/target"
+if (-not (Test-Path "$JAR_DIR/meta1sd-1.0-SNAPSHOT-gateway.jar")) {
+    Write-Host "❌ Jars do meta1sd não encontrados em meta1sd/target. Por favor, compile o projeto primeiro."
     exit 1
 }
 
@@ -28,8 +29,6 @@ if (-not (Test-Path "../config")) {
     exit 1
 }
 
-$JAR_PATH = "../meta1sd.jar"
-$LIBS_PATH = "../meta1sd/src/libs/jars/*"
 $CONFIG_PATH = "../config"
 
 # Função para verificar se o arquivo de configuração existe
@@ -46,24 +45,24 @@ switch ($Component) {
         $configFile = "$CONFIG_PATH/gateway.properties"
         Test-ConfigFile $configFile
         Write-Host "🚀 Iniciando Gateway..."
-        java -cp "$JAR_PATH;$LIBS_PATH" meta1sd.RMIGateway $configFile
+        java -jar "$JAR_DIR/meta1sd-1.0-SNAPSHOT-gateway.jar" $configFile
     }
     "barrel" {
         $configFile = "$CONFIG_PATH/indexstoragebarrels.properties"
         Test-ConfigFile $configFile
         Write-Host "🚀 Iniciando Barrel $ID..."
-        java -cp "$JAR_PATH;$LIBS_PATH" meta1sd.IndexStorageBarrel $ID $configFile
+        java -jar "$JAR_DIR/meta1sd-1.0-SNAPSHOT-barrel.jar" $ID $configFile
     }
     "downloader" {
         $configFile = "$CONFIG_PATH/downloaders.properties"
         Test-ConfigFile $configFile
         Write-Host "🚀 Iniciando Downloader..."
-        java -cp "$JAR_PATH;$LIBS_PATH" meta1sd.Downloader $configFile
+        java -jar "$JAR_DIR/meta1sd-1.0-SNAPSHOT-downloader.jar" $configFile
     }
     "client" {
         $configFile = "$CONFIG_PATH/client.properties"
         Test-ConfigFile $configFile
         Write-Host "🚀 Iniciando Cliente $ID..."
-        java -cp "$JAR_PATH;$LIBS_PATH" meta1sd.RMIClient $ID $configFile
+        java -cp "$JAR_DIR/meta1sd-1.0-SNAPSHOT-gateway.jar" meta1sd.RMIClient $ID $configFile
     }
 } 
\ No newline at end of file
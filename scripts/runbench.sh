@@ -0,0 +1,117 @@
+#!/bin/bash
+
+# Caminho absoluto para o diretório raiz do projeto
+project_root=$(dirname $(dirname $(realpath $0)))
+
+# Diretórios dos benchmarks
+JMH_SOURCES="$project_root/meta1sd/jmh"
+RESULTS_DIR="$project_root/meta1sd/jmh/results"
+BUILD_DIR="$project_root/target/jmh"
+WORK_DIR="$project_root/target/jmh-work"
+LIBS="$project_root/meta1sd/src/libs/jars/*"
+
+# Opções por omissão
+jmh_jars="${JMH_JARS:-}"
+save_baseline=false
+threshold=10
+
+# Função para imprimir linha separadora
+print_separator() {
+    echo "═══════════════════════════════════════════════════════════════════════════"
+}
+
+# Processar argumentos da linha de comando (os restantes são passados ao JMH,
+# ex.: um filtro dos benchmarks a correr)
+while getopts ":j:t:bh" opt; do
+    case $opt in
+        j) jmh_jars="$OPTARG"
+           ;;
+        t) threshold="$OPTARG"
+           ;;
+        b) save_baseline=true
+           ;;
+        h) echo -e "\n📋 Usage: $0 [-j jmh_jars_dir] [-t threshold] [-b] [-- jmh options]"
+           echo "  -j: Directory with the JMH jars (jmh-core, jmh-generator-annprocess, jopt-simple,"
+           echo "      commons-math3); default: \$JMH_JARS, or build with Maven if unset"
+           echo "  -t: Regression threshold in percent (default: 10)"
+           echo "  -b: Save this run as the new baseline"
+           echo "  -h: Show this help message"
+           echo ""
+           echo "  Example: $0 -j ~/jmh -- SearchBenchmark -p corpusSize=1000"
+           echo ""
+           exit 0
+           ;;
+        \?) echo "❌ Invalid option -$OPTARG"
+            exit 1
+            ;;
+    esac
+done
+shift $((OPTIND - 1))
+
+if [ -n "$jmh_jars" ] && [ ! -d "$jmh_jars" ]; then
+    echo "❌ Error: JMH jars directory not found: $jmh_jars"
+    exit 1
+fi
+if [ -z "$jmh_jars" ] && ! command -v mvn > /dev/null; then
+    echo "❌ Error: Maven not found. Use -j <dir> or set JMH_JARS."
+    exit 1
+fi
+
+print_separator
+echo -e "\n⏱️  JMH BENCHMARKS\n"
+print_separator
+
+rm -rf "$BUILD_DIR"
+mkdir -p "$BUILD_DIR" "$WORK_DIR" "$RESULTS_DIR"
+if [ -z "$jmh_jars" ]; then
+    # Build com Maven: os benchmarks são compilados com os testes do meta1sd
+    echo -e "\n🔄 Compiling sources and benchmarks with Maven..."
+    if ! mvn -B -q -f "$project_root/pom.xml" -pl meta1sd test-compile dependency:build-classpath \
+            -Dmdep.includeScope=test -Dmdep.outputFile="$BUILD_DIR/classpath.txt"; then
+        echo -e "❌ Compilation failed!"
+        exit 1
+    fi
+    CLASSPATH="$project_root/meta1sd/target/test-classes:$project_root/meta1sd/target/classes:$(cat "$BUILD_DIR/classpath.txt")"
+else
+    # Compilar o código e os benchmarks (o processador de anotações do JMH gera as
+    # classes dos benchmarks)
+    CLASSPATH="$BUILD_DIR:$LIBS:$jmh_jars/*"
+    find "$project_root/meta1sd/src/meta1sd" "$JMH_SOURCES" -name "*.java" -type f > "$BUILD_DIR/sources.txt"
+    echo -e "\n🔄 Compiling sources and benchmarks..."
+    if ! javac -encoding UTF-8 -cp "$LIBS:$jmh_jars/*" -d "$BUILD_DIR" @"$BUILD_DIR/sources.txt"; then
+        echo -e "❌ Compilation failed!"
+        exit 1
+    fi
+fi
+
+# Resultado identificado pela data e pelo commit
+commit=$(git -C "$project_root" rev-parse --short HEAD 2>/dev/null || echo "unknown")
+result="$RESULTS_DIR/$(date +%Y%m%d_%H%M%S)_${commit}.json"
+
+# Correr a partir de um diretório próprio: as barrels dos benchmarks escrevem o
+# estado em data/
+echo -e "\n🚀 Running benchmarks (results: \033[1;33m$result\033[0m)\n"
+cd "$WORK_DIR"
+if ! java -cp "$CLASSPATH" org.openjdk.jmh.Main -rf json -rff "$result" "$@"; then
+    echo -e "❌ Benchmarks failed!"
+    exit 1
+fi
+
+print_separator
+baseline="$RESULTS_DIR/baseline.json"
+status=0
+if [ -f "$baseline" ]; then
+    echo -e "\n📊 Comparison with the baseline (threshold ${threshold}%):\n"
+    java -cp "$CLASSPATH" meta1sd.BenchmarkCompare "$baseline" "$result" "$threshold"
+    status=$?
+else
+    echo -e "\nℹ️  No baseline yet; use -b to save this run as the baseline."
+fi
+
+if [ "$save_baseline" = true ]; then
+    cp "$result" "$baseline"
+    echo -e "✅ Baseline updated: \033[1;33m$baseline\033[0m"
+fi
+print_separator
+echo ""
+exit $status
@@ -0,0 +1,64 @@
+#!/bin/bash
+
+# Caminho absoluto para o diretório raiz do projeto
+project_root=$(dirname $(dirname $(realpath $0)))
+
+# Diretórios do teste de carga
+LOADTEST_SOURCES="$project_root/meta1sd/loadtest"
+BUILD_DIR="$project_root/target/loadtest/classes"
+LIBS="$project_root/meta1sd/src/libs/jars/*"
+
+# Opções por omissão
+config_file="$project_root/config/loadtest.properties"
+
+# Função para imprimir linha separadora
+print_separator() {
+    echo "═══════════════════════════════════════════════════════════════════════════"
+}
+
+# Processar argumentos da linha de comando
+while getopts ":c:h" opt; do
+    case $opt in
+        c) config_file=$(realpath "$OPTARG")
+           ;;
+        h) echo -e "\n📋 Usage: $0 [-c config_file]"
+           echo "  -c: Load test configuration (default: config/loadtest.properties)"
+           echo "  -h: Show this help message"
+           echo ""
+           exit 0
+           ;;
+        \?) echo "❌ Invalid option -$OPTARG"
+            exit 1
+            ;;
+    esac
+done
+
+if [ ! -f "$config_file" ]; then
+    echo "❌ Error: Configuration file not found: $config_file"
+    exit 1
+fi
+
+print_separator
+echo -e "\n🔥 END-TO-END LOAD TEST\n"
+print_separator
+
+# Compilar o código e o teste de carga (o corpus sintético está com os benchmarks)
+rm -rf "$BUILD_DIR"
+mkdir -p "$BUILD_DIR"
+find "$project_root/meta1sd/src/meta1sd" "$LOADTEST_SOURCES" -name "*.java" -type f > "$BUILD_DIR/../sources.txt"
+echo "$project_root/meta1sd/jmh/meta1sd/SyntheticCorpus.java" >> "$BUILD_DIR/../sources.txt"
+echo -e "\n🔄 Compiling sources and load test..."
+if ! javac -encoding UTF-8 -cp "$LIBS" -d "$BUILD_DIR" @"$BUILD_DIR/../sources.txt"; then
+    echo -e "❌ Compilation failed!"
+    exit 1
+fi
+
+# Correr a partir da raiz do projeto: configDir e workDir são relativos a ela
+echo -e "\n🚀 Running load test (configuration: \033[1;33m$config_file\033[0m)\n"
+cd "$project_root"
+java -cp "$BUILD_DIR:$LIBS" meta1sd.LoadTest "$config_file"
+status=$?
+
+print_separator
+echo ""
+exit $status